@@ -61,6 +61,7 @@ import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
 
+import org.opennms.core.db.TablePartitioner;
 import org.opennms.core.db.install.columnchanges.AutoIntegerReplacement;
 import org.opennms.core.db.install.columnchanges.DoNotAddColumnReplacement;
 import org.opennms.core.db.install.columnchanges.EventSourceReplacement;
@@ -2998,4 +2999,47 @@ public class InstallerDb {
             m_out.println("OK");
         }
     }
+
+    /**
+     * Partitions a table by time, see {@link TablePartitioner}. Nothing is
+     * done if the table has already been partitioned.
+     *
+     * @param table the table to partition
+     * @param column the timestamp column to partition it by
+     * @param interval day, week or month
+     * @param premake the number of partitions to create ahead
+     * @throws java.sql.SQLException if any.
+     */
+    public void partitionTable(final String table, final String column, final String interval, final int premake) throws SQLException {
+        m_out.print("- partitioning table \"" + table + "\" by " + column + " per " + interval + "... ");
+        final TablePartitioner partitioner = new TablePartitioner(getConnection());
+        if (partitioner.partitionTable(table, column, TablePartitioner.Interval.fromString(interval), premake)) {
+            m_out.println("OK");
+            for (final String key : partitioner.getDroppedForeignKeys(table)) {
+                m_out.println("  - dropped foreign key " + key + ", rows it references are kept by vacuumd instead");
+            }
+        } else {
+            m_out.println("ALREADY PARTITIONED");
+        }
+    }
+
+    /**
+     * Drops the foreign keys that reference a partitioned table again, for
+     * example because a schema upgrade added them back, see
+     * {@link TablePartitioner#dropForeignKeys()}.
+     *
+     * @throws java.sql.SQLException if any.
+     */
+    public void checkPartitionedTables() throws SQLException {
+        m_out.print("- checking for foreign keys referencing partitioned tables... ");
+        final List<String> dropped = new TablePartitioner(getConnection()).dropForeignKeys();
+        if (dropped.isEmpty()) {
+            m_out.println("NONE");
+        } else {
+            m_out.println("FOUND");
+            for (final String key : dropped) {
+                m_out.println("  - dropped foreign key " + key + ", a partitioned table cannot be referenced by a foreign key");
+            }
+        }
+    }
 }
@@ -0,0 +1,716 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits a table into child tables, one per day, week or month of a
+ * timestamp column, using PostgreSQL table inheritance. Old data can then be
+ * removed by dropping a whole child table instead of deleting its rows one by
+ * one.
+ *
+ * <p>Rows are inserted into the parent table as before. A BEFORE INSERT
+ * trigger, which fires ahead of the other triggers of the parent, inserts
+ * each row into the child table for its time instead, where the triggers of
+ * the parent have been copied to. An insert of a row that went to a child
+ * table reports 0 rows to the caller; the Hibernate mappings of the tables
+ * that are partitioned do not check the row count of inserts. A row for
+ * which there is no child table stays in the parent. Queries on the parent
+ * see the rows of all child tables, and PostgreSQL skips the child tables
+ * whose CHECK constraint rules them out.</p>
+ *
+ * <p>Foreign keys only see the rows of the table they reference, not the rows
+ * of its children, so the foreign keys of other tables referencing the
+ * partitioned table are dropped and remembered in the
+ * <code>partitioned_references</code> table. Before a child table is
+ * dropped, its rows that are still referenced (or that match the retain
+ * condition given by the caller) are moved to the <code>_retained</code>
+ * child table, so the references stay valid. Foreign keys added again later,
+ * for example by a schema upgrade, are removed by
+ * {@link #dropForeignKeys()}.</p>
+ *
+ * <p>The rows that were in the table before it was partitioned stay in the
+ * parent table and are deleted once they are older than the retention.</p>
+ *
+ * <p>The insert trigger needs PostgreSQL 8.4 or later.</p>
+ */
+public class TablePartitioner {
+    private static final Logger LOG = LoggerFactory.getLogger(TablePartitioner.class);
+
+    /**
+     * The table recording the partitioned tables
+     */
+    public static final String TABLES_TABLE = "partitioned_tables";
+
+    /**
+     * The table recording the foreign keys dropped from the tables
+     * referencing a partitioned table
+     */
+    public static final String REFERENCES_TABLE = "partitioned_references";
+
+    /**
+     * The suffix of the child table keeping referenced rows of dropped
+     * partitions
+     */
+    public static final String RETAINED_SUFFIX = "_retained";
+
+    private static final int MAX_NAME_LENGTH = 63;
+
+    private static final Pattern INDEX_PATTERN = Pattern.compile("(?i)^(CREATE (?:UNIQUE )?INDEX) \\S+ ON (?:ONLY )?\\S+ (USING .*)$");
+
+    /**
+     * The time covered by one partition
+     */
+    public static enum Interval {
+        DAY, WEEK, MONTH;
+
+        /**
+         * @return the name of the interval for date_trunc()
+         */
+        public String getUnit() {
+            return name().toLowerCase();
+        }
+
+        /**
+         * @param interval
+         *            day, week or month
+         * @return an Interval
+         */
+        public static Interval fromString(final String interval) {
+            if (interval == null) {
+                return MONTH;
+            }
+            return valueOf(interval.trim().toUpperCase());
+        }
+    }
+
+    private static class PartitionedTable {
+        private final String m_table;
+        private final String m_column;
+        private final String m_keyColumn;
+        private final Interval m_interval;
+
+        PartitionedTable(final String table, final String column, final String keyColumn, final Interval interval) {
+            m_table = table;
+            m_column = column;
+            m_keyColumn = keyColumn;
+            m_interval = interval;
+        }
+    }
+
+    private final Connection m_connection;
+
+    /**
+     * <p>Constructor for TablePartitioner.</p>
+     *
+     * @param connection
+     *            the connection to use, it is not closed
+     */
+    public TablePartitioner(final Connection connection) {
+        m_connection = connection;
+    }
+
+    /**
+     * <p>isPartitioned</p>
+     *
+     * @param table a {@link java.lang.String} object.
+     * @return true if the table has been partitioned
+     * @throws java.sql.SQLException if any.
+     */
+    public boolean isPartitioned(final String table) throws SQLException {
+        return getPartitionedTable(table) != null;
+    }
+
+    /**
+     * Partitions a table by the given column. The partitions for the current
+     * interval and the given number of intervals ahead are created.
+     *
+     * @param table the table to partition
+     * @param column the timestamp column to partition it by
+     * @param interval the time covered by one partition
+     * @param premake the number of partitions to create ahead
+     * @return false if the table had already been partitioned
+     * @throws java.sql.SQLException if any.
+     */
+    public boolean partitionTable(final String table, final String column, final Interval interval, final int premake) throws SQLException {
+        final String tableName = table.toLowerCase();
+        final String columnName = column.toLowerCase();
+
+        final boolean autoCommit = m_connection.getAutoCommit();
+        m_connection.setAutoCommit(false);
+        try {
+            createMetadataTables();
+            if (isPartitioned(tableName)) {
+                m_connection.rollback();
+                return false;
+            }
+
+            final String keyColumn = getPrimaryKeyColumn(tableName);
+            dropReferences(tableName, keyColumn);
+
+            final PreparedStatement st = m_connection.prepareStatement("INSERT INTO " + TABLES_TABLE + " (tablename, columnname, keycolumn, unit) VALUES (?, ?, ?, ?)");
+            try {
+                st.setString(1, tableName);
+                st.setString(2, columnName);
+                st.setString(3, keyColumn);
+                st.setString(4, interval.getUnit());
+                st.executeUpdate();
+            } finally {
+                st.close();
+            }
+
+            final PartitionedTable partitioned = new PartitionedTable(tableName, columnName, keyColumn, interval);
+            createChildTable(partitioned, tableName + RETAINED_SUFFIX, null);
+            createInsertTrigger(partitioned);
+            createPartitions(partitioned, premake);
+
+            m_connection.commit();
+            return true;
+        } catch (final SQLException e) {
+            m_connection.rollback();
+            throw e;
+        } finally {
+            m_connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Creates the partition for the current interval and the given number of
+     * intervals ahead, if they do not exist yet.
+     *
+     * @param table a partitioned table
+     * @param premake the number of partitions to create ahead
+     * @return the names of the partitions created
+     * @throws java.sql.SQLException if any.
+     */
+    public List<String> createPartitions(final String table, final int premake) throws SQLException {
+        final PartitionedTable partitioned = getRequiredPartitionedTable(table);
+
+        final boolean autoCommit = m_connection.getAutoCommit();
+        m_connection.setAutoCommit(false);
+        try {
+            final List<String> created = createPartitions(partitioned, premake);
+            m_connection.commit();
+            return created;
+        } catch (final SQLException e) {
+            m_connection.rollback();
+            throw e;
+        } finally {
+            m_connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Drops the partitions that end before the start of the current interval
+     * minus the given number of intervals. The rows of a dropped partition
+     * that are still referenced by another table, or that match the retain
+     * condition, are moved to the <code>_retained</code> table first. Rows
+     * of the same age that are left in the parent table, or that were
+     * retained and are not referenced any more, are deleted.
+     *
+     * <p>The rows of the tables in <code>cascade</code> referencing the rows
+     * that are dropped are deleted, as a foreign key with ON DELETE CASCADE
+     * would, instead of keeping the rows they reference.</p>
+     *
+     * @param table a partitioned table
+     * @param keep the number of whole intervals before the current one to keep
+     * @param retain an SQL condition on the rows to keep, may be null
+     * @param cascade the referencing tables to delete from
+     * @return the names of the partitions dropped
+     * @throws java.sql.SQLException if any.
+     */
+    public List<String> dropPartitions(final String table, final int keep, final String retain, final Collection<String> cascade) throws SQLException {
+        final PartitionedTable partitioned = getRequiredPartitionedTable(table);
+
+        final List<String[]> cascadeReferences = new ArrayList<String[]>();
+        final StringBuilder condition = new StringBuilder();
+        for (final String[] reference : getReferences(partitioned)) {
+            if (cascade.contains(reference[0])) {
+                cascadeReferences.add(reference);
+                continue;
+            }
+            if (condition.length() > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("EXISTS (SELECT 1 FROM ").append(reference[0]).append(" AS r WHERE r.").append(reference[1]).append(" = p.").append(partitioned.m_keyColumn).append(")");
+        }
+        if (retain != null && retain.trim().length() > 0) {
+            if (condition.length() > 0) {
+                condition.append(" OR ");
+            }
+            condition.append("(").append(retain).append(")");
+        }
+        final String retainCondition = condition.length() == 0 ? "false" : condition.toString();
+
+        final String cutoff;
+        final String cutoffName;
+        final PreparedStatement st = m_connection.prepareStatement("SELECT CAST(s AS text), to_char(s, 'YYYYMMDD') FROM (SELECT date_trunc('" + partitioned.m_interval.getUnit() + "', now()) - CAST(? AS integer) * interval '1 " + partitioned.m_interval.getUnit() + "' AS s) AS x");
+        try {
+            st.setInt(1, keep);
+            final ResultSet rs = st.executeQuery();
+            rs.next();
+            cutoff = rs.getString(1);
+            cutoffName = getPartitionPrefix(partitioned) + rs.getString(2);
+            rs.close();
+        } finally {
+            st.close();
+        }
+
+        final List<String> dropped = new ArrayList<String>();
+        final boolean autoCommit = m_connection.getAutoCommit();
+        m_connection.setAutoCommit(false);
+        try {
+            for (final String partition : getPartitions(partitioned.m_table)) {
+                // the names sort by time, and a partition starting before the cutoff ends at or before it
+                if (partition.compareTo(cutoffName) >= 0) {
+                    continue;
+                }
+
+                execute("INSERT INTO " + partitioned.m_table + RETAINED_SUFFIX + " SELECT * FROM " + partition + " AS p WHERE " + retainCondition);
+                deleteReferences(cascadeReferences, partitioned, partition + " AS p WHERE NOT (" + retainCondition + ")");
+                execute("DROP TABLE " + partition);
+                m_connection.commit();
+                dropped.add(partition);
+            }
+
+            final String expired = " AS p WHERE p." + partitioned.m_column + " < '" + cutoff + "' AND NOT (" + retainCondition + ")";
+            deleteReferences(cascadeReferences, partitioned, "ONLY " + partitioned.m_table + expired);
+            execute("DELETE FROM ONLY " + partitioned.m_table + expired);
+            deleteReferences(cascadeReferences, partitioned, partitioned.m_table + RETAINED_SUFFIX + expired);
+            execute("DELETE FROM " + partitioned.m_table + RETAINED_SUFFIX + expired);
+            m_connection.commit();
+
+            return dropped;
+        } catch (final SQLException e) {
+            m_connection.rollback();
+            throw e;
+        } finally {
+            m_connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Returns the names of the time partitions of a table, oldest first. The
+     * <code>_retained</code> table is not included.
+     *
+     * @param table a partitioned table
+     * @return a {@link java.util.List} object.
+     * @throws java.sql.SQLException if any.
+     */
+    public List<String> getPartitions(final String table) throws SQLException {
+        final PartitionedTable partitioned = getRequiredPartitionedTable(table);
+        final String prefix = getPartitionPrefix(partitioned);
+
+        final List<String> partitions = new ArrayList<String>();
+        final PreparedStatement st = m_connection.prepareStatement("SELECT c.relname FROM pg_catalog.pg_inherits i JOIN pg_catalog.pg_class c ON c.oid = i.inhrelid JOIN pg_catalog.pg_class p ON p.oid = i.inhparent WHERE p.relname = ? AND pg_catalog.pg_table_is_visible(p.oid)");
+        try {
+            st.setString(1, partitioned.m_table);
+            final ResultSet rs = st.executeQuery();
+            while (rs.next()) {
+                final String name = rs.getString(1);
+                if (name.startsWith(prefix) && name.length() == prefix.length() + 8) {
+                    partitions.add(name);
+                }
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    /**
+     * Returns the foreign keys that were dropped because they reference the
+     * table.
+     *
+     * @param table a partitioned table
+     * @return the foreign keys as <code>table.constraint</code>
+     * @throws java.sql.SQLException if any.
+     */
+    public List<String> getDroppedForeignKeys(final String table) throws SQLException {
+        final PartitionedTable partitioned = getRequiredPartitionedTable(table);
+
+        final List<String> keys = new ArrayList<String>();
+        final PreparedStatement st = m_connection.prepareStatement("SELECT reftable, constraintname FROM " + REFERENCES_TABLE + " WHERE tablename = ? ORDER BY reftable, constraintname");
+        try {
+            st.setString(1, partitioned.m_table);
+            final ResultSet rs = st.executeQuery();
+            while (rs.next()) {
+                keys.add(rs.getString(1) + "." + rs.getString(2));
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+        return keys;
+    }
+
+    /**
+     * Drops the foreign keys referencing a partitioned table that have been
+     * added since it was partitioned, for example by a schema upgrade. They
+     * would reject the rows referencing rows in the partitions. The dropped
+     * keys are recorded like the ones dropped when the table was
+     * partitioned.
+     *
+     * @return the dropped foreign keys as <code>table.constraint</code>
+     * @throws java.sql.SQLException if any.
+     */
+    public List<String> dropForeignKeys() throws SQLException {
+        if (!tableExists(TABLES_TABLE)) {
+            return Collections.emptyList();
+        }
+
+        final List<String[]> tables = new ArrayList<String[]>();
+        final Statement st = m_connection.createStatement();
+        try {
+            final ResultSet rs = st.executeQuery("SELECT tablename, keycolumn FROM " + TABLES_TABLE + " ORDER BY tablename");
+            while (rs.next()) {
+                tables.add(new String[] { rs.getString(1), rs.getString(2) });
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+
+        final List<String> dropped = new ArrayList<String>();
+        final boolean autoCommit = m_connection.getAutoCommit();
+        m_connection.setAutoCommit(false);
+        try {
+            for (final String[] table : tables) {
+                dropped.addAll(dropReferences(table[0], table[1]));
+            }
+            m_connection.commit();
+            return dropped;
+        } catch (final SQLException e) {
+            m_connection.rollback();
+            throw e;
+        } finally {
+            m_connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private List<String> createPartitions(final PartitionedTable partitioned, final int premake) throws SQLException {
+        final String unit = partitioned.m_interval.getUnit();
+        final List<String> created = new ArrayList<String>();
+
+        final PreparedStatement st = m_connection.prepareStatement("SELECT to_char(s, 'YYYYMMDD'), CAST(s AS text), CAST(s + interval '1 " + unit + "' AS text) FROM (SELECT date_trunc('" + unit + "', now()) + CAST(? AS integer) * interval '1 " + unit + "' AS s) AS x");
+        try {
+            for (int i = 0; i <= premake; i++) {
+                st.setInt(1, i);
+                final ResultSet rs = st.executeQuery();
+                rs.next();
+                final String partition = getPartitionPrefix(partitioned) + rs.getString(1);
+                final String check = partitioned.m_column + " >= '" + rs.getString(2) + "' AND " + partitioned.m_column + " < '" + rs.getString(3) + "'";
+                rs.close();
+
+                if (!tableExists(partition)) {
+                    createChildTable(partitioned, partition, check);
+                    created.add(partition);
+                }
+            }
+        } finally {
+            st.close();
+        }
+        return created;
+    }
+
+    /**
+     * Creates a child table with the indexes, foreign keys and triggers of
+     * the parent, which PostgreSQL does not inherit.
+     */
+    private void createChildTable(final PartitionedTable partitioned, final String child, final String check) throws SQLException {
+        final String parent = partitioned.m_table;
+        execute("CREATE TABLE " + child + " (" + (check == null ? "" : "CHECK (" + check + ")") + ") INHERITS (" + parent + ")");
+
+        for (final Map.Entry<String, String> index : getDefinitions("SELECT ic.relname, pg_catalog.pg_get_indexdef(i.indexrelid) FROM pg_catalog.pg_index i JOIN pg_catalog.pg_class ic ON ic.oid = i.indexrelid JOIN pg_catalog.pg_class t ON t.oid = i.indrelid WHERE t.relname = ? AND pg_catalog.pg_table_is_visible(t.oid)", parent).entrySet()) {
+            final Matcher m = INDEX_PATTERN.matcher(index.getValue());
+            if (!m.matches()) {
+                throw new SQLException("Could not parse the definition of index " + index.getKey() + ": " + index.getValue());
+            }
+            execute(m.group(1) + " " + getChildObjectName(child, index.getKey()) + " ON " + child + " " + m.group(2));
+        }
+
+        for (final Map.Entry<String, String> constraint : getDefinitions("SELECT c.conname, pg_catalog.pg_get_constraintdef(c.oid) FROM pg_catalog.pg_constraint c JOIN pg_catalog.pg_class t ON t.oid = c.conrelid WHERE c.contype = 'f' AND t.relname = ? AND pg_catalog.pg_table_is_visible(t.oid)", parent).entrySet()) {
+            execute("ALTER TABLE " + child + " ADD CONSTRAINT " + getChildObjectName(child, constraint.getKey()) + " " + constraint.getValue());
+        }
+
+        // the insert trigger of the parent stops the other triggers of the parent for rows that go to a child
+        for (final Map.Entry<String, String> trigger : getDefinitions("SELECT tg.tgname, pg_catalog.pg_get_triggerdef(tg.oid) FROM pg_catalog.pg_trigger tg JOIN pg_catalog.pg_class t ON t.oid = tg.tgrelid WHERE t.relname = ? AND pg_catalog.pg_table_is_visible(t.oid) AND tg.tgname NOT LIKE 'RI\\_ConstraintTrigger%'", parent).entrySet()) {
+            if (trigger.getKey().equals(getInsertTriggerName(partitioned))) {
+                continue;
+            }
+            execute(trigger.getValue().replaceFirst("(?i) ON (?:\\S+\\.)?\"?" + Pattern.quote(parent) + "\"? ", " ON " + child + " "));
+        }
+    }
+
+    private void createInsertTrigger(final PartitionedTable partitioned) throws SQLException {
+        final String table = partitioned.m_table;
+        final String function = table + "_partition_insert";
+        execute("CREATE OR REPLACE FUNCTION " + function + "() RETURNS trigger AS $$\n"
+                + "BEGIN\n"
+                + "    IF NEW." + partitioned.m_column + " IS NOT NULL THEN\n"
+                + "        BEGIN\n"
+                + "            EXECUTE 'INSERT INTO ' || quote_ident('" + getPartitionPrefix(partitioned) + "' || to_char(date_trunc('" + partitioned.m_interval.getUnit() + "', NEW." + partitioned.m_column + "), 'YYYYMMDD')) || ' SELECT ($1).*' USING NEW;\n"
+                + "            RETURN NULL;\n"
+                + "        EXCEPTION WHEN undefined_table OR check_violation THEN\n"
+                + "            -- no partition for this row, keep it in the parent table\n"
+                + "            NULL;\n"
+                + "        END;\n"
+                + "    END IF;\n"
+                + "    RETURN NEW;\n"
+                + "END;\n"
+                + "$$ LANGUAGE plpgsql");
+        execute("CREATE TRIGGER " + getInsertTriggerName(partitioned) + " BEFORE INSERT ON " + table + " FOR EACH ROW EXECUTE PROCEDURE " + function + "()");
+    }
+
+    /**
+     * Drops the foreign keys referencing the table, which would not see the
+     * rows of the partitions, and records them so that referenced rows are
+     * kept when a partition is dropped.
+     *
+     * @return the dropped foreign keys as <code>table.constraint</code>
+     */
+    private List<String> dropReferences(final String table, final String keyColumn) throws SQLException {
+        // a referencing table may itself be partitioned, its partitions have a copy of its foreign keys
+        final List<String[]> constraints = new ArrayList<String[]>();
+        final Map<String, String[]> references = new LinkedHashMap<String, String[]>();
+        final PreparedStatement st = m_connection.prepareStatement("SELECT c.conname, r.relname, a.attname, pg_catalog.array_upper(c.conkey, 1), fa.attname, (SELECT ip.relname FROM pg_catalog.pg_inherits i JOIN pg_catalog.pg_class ip ON ip.oid = i.inhparent WHERE i.inhrelid = r.oid LIMIT 1) FROM pg_catalog.pg_constraint c JOIN pg_catalog.pg_class t ON t.oid = c.confrelid JOIN pg_catalog.pg_class r ON r.oid = c.conrelid JOIN pg_catalog.pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1] JOIN pg_catalog.pg_attribute fa ON fa.attrelid = c.confrelid AND fa.attnum = c.confkey[1] WHERE c.contype = 'f' AND t.relname = ? AND pg_catalog.pg_table_is_visible(t.oid)");
+        try {
+            st.setString(1, table);
+            final ResultSet rs = st.executeQuery();
+            try {
+                while (rs.next()) {
+                    final String constraint = rs.getString(1);
+                    final String refTable = rs.getString(2);
+                    final String refColumn = rs.getString(3);
+                    if (rs.getInt(4) != 1 || !keyColumn.equals(rs.getString(5))) {
+                        throw new SQLException("Foreign key " + constraint + " on table " + refTable + " does not reference the primary key of table " + table + ", the table cannot be partitioned");
+                    }
+                    constraints.add(new String[] { constraint, refTable });
+
+                    final String owner = rs.getString(6) == null ? refTable : rs.getString(6);
+                    if (!references.containsKey(owner + "." + refColumn)) {
+                        references.put(owner + "." + refColumn, new String[] { constraint, owner, refColumn });
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+
+        final Set<String> recorded = new HashSet<String>();
+        for (final String[] reference : getReferences(table)) {
+            recorded.add(reference[0] + "." + reference[1]);
+        }
+
+        final PreparedStatement insert = m_connection.prepareStatement("INSERT INTO " + REFERENCES_TABLE + " (tablename, reftable, refcolumn, constraintname) VALUES (?, ?, ?, ?)");
+        try {
+            for (final String[] reference : references.values()) {
+                if (recorded.contains(reference[1] + "." + reference[2])) {
+                    continue;
+                }
+                insert.setString(1, table);
+                insert.setString(2, reference[1]);
+                insert.setString(3, reference[2]);
+                insert.setString(4, reference[0]);
+                insert.executeUpdate();
+            }
+        } finally {
+            insert.close();
+        }
+
+        final List<String> dropped = new ArrayList<String>();
+        for (final String[] constraint : constraints) {
+            LOG.warn("Dropping foreign key {} of table {}: it cannot see the rows in the partitions of table {}", constraint[0], constraint[1], table);
+            execute("ALTER TABLE " + constraint[1] + " DROP CONSTRAINT " + constraint[0]);
+            dropped.add(constraint[1] + "." + constraint[0]);
+        }
+        return dropped;
+    }
+
+    /**
+     * @return the table and column of the recorded references to the table
+     */
+    private List<String[]> getReferences(final PartitionedTable partitioned) throws SQLException {
+        return getReferences(partitioned.m_table);
+    }
+
+    private List<String[]> getReferences(final String table) throws SQLException {
+        final List<String[]> references = new ArrayList<String[]>();
+        final PreparedStatement st = m_connection.prepareStatement("SELECT reftable, refcolumn FROM " + REFERENCES_TABLE + " WHERE tablename = ?");
+        try {
+            st.setString(1, table);
+            final ResultSet rs = st.executeQuery();
+            while (rs.next()) {
+                references.add(new String[] { rs.getString(1), rs.getString(2) });
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+        return references;
+    }
+
+    private void deleteReferences(final List<String[]> references, final PartitionedTable partitioned, final String rows) throws SQLException {
+        for (final String[] reference : references) {
+            execute("DELETE FROM " + reference[0] + " WHERE " + reference[1] + " IN (SELECT p." + partitioned.m_keyColumn + " FROM " + rows + ")");
+        }
+    }
+
+    private String getPrimaryKeyColumn(final String table) throws SQLException {
+        final PreparedStatement st = m_connection.prepareStatement("SELECT a.attname FROM pg_catalog.pg_constraint c JOIN pg_catalog.pg_class t ON t.oid = c.conrelid JOIN pg_catalog.pg_attribute a ON a.attrelid = t.oid AND a.attnum = ANY (c.conkey) WHERE c.contype = 'p' AND t.relname = ? AND pg_catalog.pg_table_is_visible(t.oid)");
+        try {
+            st.setString(1, table);
+            final ResultSet rs = st.executeQuery();
+            final List<String> columns = new ArrayList<String>();
+            while (rs.next()) {
+                columns.add(rs.getString(1));
+            }
+            rs.close();
+            if (columns.size() != 1) {
+                throw new SQLException("Table " + table + " needs a primary key on a single column to be partitioned");
+            }
+            return columns.get(0);
+        } finally {
+            st.close();
+        }
+    }
+
+    private PartitionedTable getRequiredPartitionedTable(final String table) throws SQLException {
+        final PartitionedTable partitioned = getPartitionedTable(table);
+        if (partitioned == null) {
+            throw new SQLException("Table " + table + " is not partitioned");
+        }
+        return partitioned;
+    }
+
+    private PartitionedTable getPartitionedTable(final String table) throws SQLException {
+        if (!tableExists(TABLES_TABLE)) {
+            return null;
+        }
+
+        final PreparedStatement st = m_connection.prepareStatement("SELECT tablename, columnname, keycolumn, unit FROM " + TABLES_TABLE + " WHERE tablename = ?");
+        try {
+            st.setString(1, table.toLowerCase());
+            final ResultSet rs = st.executeQuery();
+            try {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new PartitionedTable(rs.getString(1), rs.getString(2), rs.getString(3), Interval.fromString(rs.getString(4)));
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    private void createMetadataTables() throws SQLException {
+        if (!tableExists(TABLES_TABLE)) {
+            execute("CREATE TABLE " + TABLES_TABLE + " (tablename varchar(64) NOT NULL, columnname varchar(64) NOT NULL, keycolumn varchar(64) NOT NULL, unit varchar(8) NOT NULL, CONSTRAINT pk_partitioned_tables PRIMARY KEY (tablename))");
+        }
+        if (!tableExists(REFERENCES_TABLE)) {
+            execute("CREATE TABLE " + REFERENCES_TABLE + " (tablename varchar(64) NOT NULL, reftable varchar(64) NOT NULL, refcolumn varchar(64) NOT NULL, constraintname varchar(64) NOT NULL)");
+        }
+    }
+
+    private boolean tableExists(final String table) throws SQLException {
+        final PreparedStatement st = m_connection.prepareStatement("SELECT 1 FROM pg_catalog.pg_class WHERE relname = ? AND relkind = 'r' AND pg_catalog.pg_table_is_visible(oid)");
+        try {
+            st.setString(1, table);
+            final ResultSet rs = st.executeQuery();
+            final boolean exists = rs.next();
+            rs.close();
+            return exists;
+        } finally {
+            st.close();
+        }
+    }
+
+    private Map<String, String> getDefinitions(final String query, final String table) throws SQLException {
+        final Map<String, String> definitions = new LinkedHashMap<String, String>();
+        final PreparedStatement st = m_connection.prepareStatement(query);
+        try {
+            st.setString(1, table);
+            final ResultSet rs = st.executeQuery();
+            while (rs.next()) {
+                definitions.put(rs.getString(1), rs.getString(2));
+            }
+            rs.close();
+        } finally {
+            st.close();
+        }
+        return definitions;
+    }
+
+    private void execute(final String sql) throws SQLException {
+        final Statement st = m_connection.createStatement();
+        try {
+            st.execute(sql);
+        } finally {
+            st.close();
+        }
+    }
+
+    private static String getPartitionPrefix(final PartitionedTable partitioned) {
+        return partitioned.m_table + "_p";
+    }
+
+    private static String getInsertTriggerName(final PartitionedTable partitioned) {
+        // triggers fire in the order of their names, this one has to fire first
+        return "_" + partitioned.m_table + "_partition_insert_trigger";
+    }
+
+    private static String getChildObjectName(final String child, final String name) {
+        final String childName = child + "_" + name;
+        return childName.length() > MAX_NAME_LENGTH ? childName.substring(0, MAX_NAME_LENGTH) : childName;
+    }
+}
@@ -29,7 +29,9 @@
 package org.opennms.netmgt.snmp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public class AggregateTracker extends CollectionTracker {
@@ -275,6 +277,27 @@ public class AggregateTracker extends CollectionTracker {
         return true;
     }
     
+    /**
+     * Returns the child trackers in the order they were passed in.
+     *
+     * @return an unmodifiable {@link java.util.List} object.
+     */
+    protected List<CollectionTracker> getChildTrackers() {
+        return Collections.unmodifiableList(Arrays.asList(m_children));
+    }
+
+    /**
+     * Returns the child trackers in the order they get room in the next PDU.
+     * By default the first children are walked to the end before the later
+     * ones get a turn; subclasses may override this to walk them side by
+     * side.
+     *
+     * @return a {@link java.util.List} object.
+     */
+    protected List<CollectionTracker> getNextChildTrackers() {
+        return getChildTrackers();
+    }
+
     @Override
     public ResponseProcessor buildNextPdu(final PduBuilder parentBuilder) {
         
@@ -282,8 +305,10 @@ public class AggregateTracker extends CollectionTracker {
         int count = 0;
         int maxVars = parentBuilder.getMaxVarsPerPdu();
         final List<ChildTrackerPduBuilder> builders = new ArrayList<ChildTrackerPduBuilder>(m_children.length);
-        for (int i = 0; i < m_children.length && count < maxVars; i++) {
-            CollectionTracker childTracker = m_children[i];
+        for (final CollectionTracker childTracker : getNextChildTrackers()) {
+            if (count >= maxVars) {
+                break;
+            }
             if (!childTracker.isFinished()) {
                 ChildTrackerPduBuilder childBuilder = new ChildTrackerPduBuilder(maxVars-count);
                 ResponseProcessor rp = childTracker.buildNextPdu(childBuilder);
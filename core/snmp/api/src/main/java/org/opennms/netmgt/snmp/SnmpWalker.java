@@ -180,6 +180,16 @@ public abstract class SnmpWalker implements Closeable {
         }
     }
 
+    /**
+     * Returns true once the walk has completed or failed, that is once
+     * {@link #waitFor()} would no longer block.
+     *
+     * @return a boolean.
+     */
+    public boolean isFinished() {
+        return m_signal.getCount() == 0;
+    }
+
     public void waitFor() throws InterruptedException {
         m_signal.await();
     }
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.TimeoutModel;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.smi.Address;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.MultiThreadedMessageDispatcher;
+import org.snmp4j.util.ThreadPool;
+
+/**
+ * A small, fixed set of SNMP sessions shared by all SNMPv1 and SNMPv2c
+ * requests, instead of a new session and UDP socket for every walker and
+ * every get.  The responses are matched to their requests by the request ID,
+ * which is done by the message dispatcher of each session, and the session
+ * is picked by the address of the agent.
+ *
+ * <p>The number of requests in flight to a single agent is limited, requests
+ * over the limit are queued and sent as soon as an earlier request to the
+ * same agent completes or times out.</p>
+ *
+ * <p>The response listeners of the requests are called on a pool of
+ * dispatcher threads per session rather than on the listen thread of the
+ * session, so a slow listener doesn't hold up the responses of every other
+ * agent sharing the session.</p>
+ *
+ * <p>SNMPv3 requests can't use the shared sessions because the USM holding
+ * the users is part of the session, see
+ * {@link Snmp4JAgentConfig#createSnmpSession()}.</p>
+ */
+public class Snmp4JSessionPool implements Snmp4JSessionPoolMBean {
+    private static final transient Logger LOG = LoggerFactory.getLogger(Snmp4JSessionPool.class);
+
+    /** The name the pool is registered with in the platform MBean server */
+    public static final String OBJECT_NAME = "OpenNMS:Name=Snmp4JSessionPool";
+
+    private final Snmp[] m_sessions;
+
+    private final ThreadPool[] m_dispatcherPools;
+
+    private final int m_maxInFlightPerAgent;
+
+    private final int m_dispatcherThreads;
+
+    private final ConcurrentMap<Address, AgentQueue> m_agents = new ConcurrentHashMap<Address, AgentQueue>();
+
+    private final CountingTimeoutModel m_timeoutModel = new CountingTimeoutModel();
+
+    private final AtomicLong m_outstanding = new AtomicLong();
+    private final AtomicLong m_queued = new AtomicLong();
+    private final AtomicLong m_sent = new AtomicLong();
+    private final AtomicLong m_timeouts = new AtomicLong();
+    private final AtomicLong m_errors = new AtomicLong();
+
+    private volatile boolean m_closed = false;
+
+    /**
+     * A request waiting to be sent.
+     */
+    private static class PendingRequest {
+        private final PDU m_pdu;
+        private final Target m_target;
+        private final ResponseListener m_listener;
+
+        PendingRequest(final PDU pdu, final Target target, final ResponseListener listener) {
+            m_pdu = pdu;
+            m_target = target;
+            m_listener = listener;
+        }
+    }
+
+    /**
+     * The requests in flight and queued for one agent.  Once it is empty
+     * it is retired and removed from the map, a request for the same agent
+     * then creates a new one.
+     */
+    private static class AgentQueue {
+        private final LinkedList<PendingRequest> m_pending = new LinkedList<PendingRequest>();
+        private int m_inFlight = 0;
+        private boolean m_retired = false;
+    }
+
+    /**
+     * Counts the retransmissions and otherwise times out requests like the
+     * default SNMP4J timeout model, with the same timeout for each retry.
+     */
+    private static class CountingTimeoutModel implements TimeoutModel {
+        private final AtomicLong m_retries = new AtomicLong();
+
+        @Override
+        public long getRetryTimeout(final int retryCount, final int totalNumberOfRetries, final long targetTimeout) {
+            if (retryCount > 0) {
+                m_retries.incrementAndGet();
+            }
+            return targetTimeout;
+        }
+
+        @Override
+        public long getRequestTimeout(final int totalNumberOfRetries, final long targetTimeout) {
+            return (totalNumberOfRetries + 1) * targetTimeout;
+        }
+    }
+
+    /**
+     * Completes a request sent through the pool and hands the permit of
+     * the agent to the next queued request before passing the response on.
+     */
+    private class PooledResponseListener implements ResponseListener {
+        private final Address m_address;
+        private final AgentQueue m_queue;
+        private final ResponseListener m_delegate;
+        private final AtomicBoolean m_done = new AtomicBoolean(false);
+
+        PooledResponseListener(final Address address, final AgentQueue queue, final ResponseListener delegate) {
+            m_address = address;
+            m_queue = queue;
+            m_delegate = delegate;
+        }
+
+        @Override
+        public void onResponse(final ResponseEvent event) {
+            // the request has to be cancelled or SNMP4J keeps it around forever
+            ((Snmp)event.getSource()).cancel(event.getRequest(), this);
+
+            if (!m_done.compareAndSet(false, true)) {
+                return;
+            }
+
+            m_outstanding.decrementAndGet();
+            if (event.getError() != null) {
+                m_errors.incrementAndGet();
+            } else if (event.getResponse() == null) {
+                m_timeouts.incrementAndGet();
+            }
+
+            release(m_address, m_queue);
+            m_delegate.onResponse(event);
+        }
+    }
+
+    /**
+     * <p>Constructor for Snmp4JSessionPool.</p>
+     *
+     * @param sessionCount the number of shared sessions
+     * @param maxInFlightPerAgent the maximum number of requests in flight to one agent
+     */
+    public Snmp4JSessionPool(final int sessionCount, final int maxInFlightPerAgent) {
+        this(sessionCount, maxInFlightPerAgent, 4);
+    }
+
+    /**
+     * <p>Constructor for Snmp4JSessionPool.</p>
+     *
+     * @param sessionCount the number of shared sessions
+     * @param maxInFlightPerAgent the maximum number of requests in flight to one agent
+     * @param dispatcherThreads the number of threads calling the response listeners of each session
+     */
+    public Snmp4JSessionPool(final int sessionCount, final int maxInFlightPerAgent, final int dispatcherThreads) {
+        m_sessions = new Snmp[Math.max(1, sessionCount)];
+        m_dispatcherPools = new ThreadPool[m_sessions.length];
+        m_maxInFlightPerAgent = Math.max(1, maxInFlightPerAgent);
+        m_dispatcherThreads = Math.max(1, dispatcherThreads);
+    }
+
+    /**
+     * Register the pool in the platform MBean server.  A failure is logged
+     * and otherwise ignored, the pool works without it.
+     */
+    public void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (final Exception e) {
+            LOG.warn("Unable to register the SNMP session pool as {}", OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Send a request and call the listener once the response arrives or the
+     * request timed out.  The request is queued if the agent already has the
+     * maximum number of requests in flight.
+     *
+     * @param pdu the request
+     * @param target the agent
+     * @param listener receives the response
+     * @throws IOException if the request can't be sent right away
+     */
+    public void send(final PDU pdu, final Target target, final ResponseListener listener) throws IOException {
+        final Address address = target.getAddress();
+        final PendingRequest request = new PendingRequest(pdu, target, listener);
+
+        while (true) {
+            AgentQueue queue = m_agents.get(address);
+            if (queue == null) {
+                final AgentQueue newQueue = new AgentQueue();
+                queue = m_agents.putIfAbsent(address, newQueue);
+                if (queue == null) {
+                    queue = newQueue;
+                }
+            }
+
+            synchronized (queue) {
+                if (queue.m_retired) {
+                    continue;
+                }
+                if (queue.m_inFlight >= m_maxInFlightPerAgent) {
+                    queue.m_pending.add(request);
+                    m_queued.incrementAndGet();
+                    LOG.debug("send: {} requests in flight to {}, queueing the request", queue.m_inFlight, address);
+                    return;
+                }
+                queue.m_inFlight++;
+            }
+
+            try {
+                dispatch(address, queue, request);
+            } catch (final IOException e) {
+                release(address, queue);
+                throw e;
+            }
+            return;
+        }
+    }
+
+    private void dispatch(final Address address, final AgentQueue queue, final PendingRequest request) throws IOException {
+        final Snmp session = getSession(address);
+        m_outstanding.incrementAndGet();
+        try {
+            session.send(request.m_pdu, request.m_target, null, new PooledResponseListener(address, queue, request.m_listener));
+            m_sent.incrementAndGet();
+        } catch (final IOException e) {
+            m_outstanding.decrementAndGet();
+            m_errors.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Hand the permit of a completed request to the next queued request for
+     * the agent, or give it back.
+     */
+    private void release(final Address address, final AgentQueue queue) {
+        while (true) {
+            final PendingRequest next;
+            synchronized (queue) {
+                next = queue.m_pending.poll();
+                if (next == null) {
+                    queue.m_inFlight--;
+                    if (queue.m_inFlight == 0) {
+                        queue.m_retired = true;
+                        m_agents.remove(address, queue);
+                    }
+                    return;
+                }
+            }
+            m_queued.decrementAndGet();
+
+            try {
+                dispatch(address, queue, next);
+                return;
+            } catch (final IOException e) {
+                LOG.warn("release: unable to send a queued request to {}", address, e);
+                next.m_listener.onResponse(new ResponseEvent(this, address, next.m_pdu, null, null, e));
+            }
+        }
+    }
+
+    private Snmp getSession(final Address address) throws IOException {
+        final int index = (address.hashCode() & Integer.MAX_VALUE) % m_sessions.length;
+        synchronized (m_sessions) {
+            if (m_closed) {
+                throw new IOException("The SNMP session pool is closed");
+            }
+            if (m_sessions[index] == null) {
+                final ThreadPool dispatcherPool = ThreadPool.create("Snmp4JSessionPool-" + (index + 1), m_dispatcherThreads);
+                final MultiThreadedMessageDispatcher dispatcher = new MultiThreadedMessageDispatcher(dispatcherPool, new MessageDispatcherImpl());
+                dispatcher.addMessageProcessingModel(new MPv1());
+                dispatcher.addMessageProcessingModel(new MPv2c());
+
+                final Snmp session = new Snmp(dispatcher, new DefaultUdpTransportMapping());
+                session.setTimeoutModel(m_timeoutModel);
+                try {
+                    session.listen();
+                } catch (final IOException e) {
+                    dispatcherPool.stop();
+                    throw e;
+                }
+                LOG.debug("getSession: opened shared SNMP session {} of {} with {} dispatcher threads", index + 1, m_sessions.length, m_dispatcherThreads);
+                m_sessions[index] = session;
+                m_dispatcherPools[index] = dispatcherPool;
+            }
+            return m_sessions[index];
+        }
+    }
+
+    /**
+     * Close all shared sessions and stop their dispatcher threads.  Requests
+     * still in flight are completed with an error by SNMP4J.
+     */
+    public void close() {
+        synchronized (m_sessions) {
+            m_closed = true;
+            for (int i = 0; i < m_sessions.length; i++) {
+                if (m_sessions[i] != null) {
+                    try {
+                        m_sessions[i].close();
+                    } catch (final IOException e) {
+                        LOG.warn("close: error closing shared SNMP session", e);
+                    }
+                    m_sessions[i] = null;
+                }
+                if (m_dispatcherPools[i] != null) {
+                    m_dispatcherPools[i].stop();
+                    m_dispatcherPools[i] = null;
+                }
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getSessionCount() {
+        return m_sessions.length;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getMaxInFlightPerAgent() {
+        return m_maxInFlightPerAgent;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getDispatcherThreads() {
+        return m_dispatcherThreads;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getActiveAgents() {
+        return m_agents.size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getOutstanding() {
+        return m_outstanding.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getQueued() {
+        return m_queued.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRequestsSent() {
+        return m_sent.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getTimeouts() {
+        return m_timeouts.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getRetries() {
+        return m_timeoutModel.m_retries.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getErrors() {
+        return m_errors.get();
+    }
+}
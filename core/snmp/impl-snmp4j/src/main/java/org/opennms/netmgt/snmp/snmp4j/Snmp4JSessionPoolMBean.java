@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+/**
+ * JMX interface of the {@link Snmp4JSessionPool}.
+ */
+public interface Snmp4JSessionPoolMBean {
+
+    /**
+     * @return the number of shared SNMP sessions, each with its own UDP socket
+     */
+    int getSessionCount();
+
+    /**
+     * @return the maximum number of requests in flight to a single agent
+     */
+    int getMaxInFlightPerAgent();
+
+    /**
+     * @return the number of threads calling the response listeners of each session
+     */
+    int getDispatcherThreads();
+
+    /**
+     * @return the number of agents with requests in flight or queued
+     */
+    int getActiveAgents();
+
+    /**
+     * @return the number of requests sent and waiting for a response
+     */
+    long getOutstanding();
+
+    /**
+     * @return the number of requests waiting for the in-flight limit of
+     *         their agent
+     */
+    long getQueued();
+
+    /**
+     * @return the total number of requests sent
+     */
+    long getRequestsSent();
+
+    /**
+     * @return the total number of requests that timed out after all retries
+     */
+    long getTimeouts();
+
+    /**
+     * @return the total number of retransmissions
+     */
+    long getRetries();
+
+    /**
+     * @return the total number of requests that failed with an error
+     */
+    long getErrors();
+}
@@ -36,6 +36,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.opennms.netmgt.snmp.CollectionTracker;
 import org.opennms.netmgt.snmp.SnmpAgentConfig;
@@ -61,8 +63,10 @@ import org.snmp4j.PDUv1;
 import org.snmp4j.SNMP4JSettings;
 import org.snmp4j.ScopedPDU;
 import org.snmp4j.Snmp;
+import org.snmp4j.Target;
 import org.snmp4j.TransportMapping;
 import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
 import org.snmp4j.mp.MPv3;
 import org.snmp4j.mp.MessageProcessingModel;
 import org.snmp4j.mp.PduHandle;
@@ -87,13 +91,31 @@ public class Snmp4JStrategy implements SnmpStrategy {
     private static Map<TrapNotificationListener, RegistrationInfo> s_registrations = new HashMap<TrapNotificationListener, RegistrationInfo>();
     
     private static boolean s_initialized = false;
+
+    /** Constant <code>TRANSPORT_PROPERTY="org.opennms.snmp.snmp4j.transport"</code> */
+    public static final String TRANSPORT_PROPERTY = "org.opennms.snmp.snmp4j.transport";
+
+    /** Constant <code>SHARED_SESSIONS_PROPERTY="org.opennms.snmp.snmp4j.sharedSessions"</code> */
+    public static final String SHARED_SESSIONS_PROPERTY = "org.opennms.snmp.snmp4j.sharedSessions";
+
+    /** Constant <code>MAX_IN_FLIGHT_PER_AGENT_PROPERTY="org.opennms.snmp.snmp4j.maxInFlightPerAgent"</code> */
+    public static final String MAX_IN_FLIGHT_PER_AGENT_PROPERTY = "org.opennms.snmp.snmp4j.maxInFlightPerAgent";
+
+    /** Constant <code>DISPATCHER_THREADS_PROPERTY="org.opennms.snmp.snmp4j.dispatcherThreads"</code> */
+    public static final String DISPATCHER_THREADS_PROPERTY = "org.opennms.snmp.snmp4j.dispatcherThreads";
+
+    /**
+     * The sessions shared by the SNMPv1 and SNMPv2c requests, null if every
+     * request uses its own session
+     */
+    private static Snmp4JSessionPool s_sessionPool = null;
     
     private Snmp4JValueFactory m_valueFactory;
 
     /**
      * Initialize for v3 communications
      */
-    private static void initialize() {
+    private static synchronized void initialize() {
         if (s_initialized) {
             return;
         }
@@ -111,6 +133,18 @@ public class Snmp4JStrategy implements SnmpStrategy {
         if (Boolean.getBoolean("org.opennms.snmp.snmp4j.forwardRuntimeExceptions")) {
         	SNMP4JSettings.setForwardRuntimeExceptions(true);
         }
+
+        final String transport = System.getProperty(TRANSPORT_PROPERTY, "shared");
+        if ("perRequest".equalsIgnoreCase(transport)) {
+            LOG.debug("initialize: using a new SNMP session for every request");
+        } else {
+            if (!"shared".equalsIgnoreCase(transport)) {
+                LOG.warn("initialize: unknown SNMP transport {}, using shared sessions", transport);
+            }
+            s_sessionPool = new Snmp4JSessionPool(Integer.getInteger(SHARED_SESSIONS_PROPERTY, 4), Integer.getInteger(MAX_IN_FLIGHT_PER_AGENT_PROPERTY, 4), Integer.getInteger(DISPATCHER_THREADS_PROPERTY, 4));
+            s_sessionPool.register();
+            LOG.debug("initialize: using {} shared SNMP sessions with at most {} requests in flight per agent", s_sessionPool.getSessionCount(), s_sessionPool.getMaxInFlightPerAgent());
+        }
         
         s_initialized = true;
     }
@@ -128,7 +162,17 @@ public class Snmp4JStrategy implements SnmpStrategy {
      */
         @Override
     public SnmpWalker createWalker(SnmpAgentConfig snmpAgentConfig, String name, CollectionTracker tracker) {
-        return new Snmp4JWalker(new Snmp4JAgentConfig(snmpAgentConfig), name, tracker);
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(snmpAgentConfig);
+        return new Snmp4JWalker(agentConfig, name, tracker, getSessionPool(agentConfig));
+    }
+
+    /**
+     * Returns the shared sessions to use for the agent, or null if the
+     * requests to the agent need a session of their own.  SNMPv3 requests
+     * always get their own session since the USM is part of the session.
+     */
+    private static Snmp4JSessionPool getSessionPool(final Snmp4JAgentConfig agentConfig) {
+        return agentConfig.isSnmpV3() ? null : s_sessionPool;
     }
     
     /**
@@ -246,6 +290,11 @@ public class Snmp4JStrategy implements SnmpStrategy {
      * @return
      */
     protected SnmpValue[] send(Snmp4JAgentConfig agentConfig, PDU pdu, boolean expectResponse) {
+        final Snmp4JSessionPool sessionPool = getSessionPool(agentConfig);
+        if (expectResponse && sessionPool != null) {
+            return send(sessionPool, agentConfig, pdu);
+        }
+
         Snmp session;
 
         try {
@@ -284,7 +333,41 @@ public class Snmp4JStrategy implements SnmpStrategy {
             closeQuietly(session);
         }
     }
-    
+
+    private static SnmpValue[] send(final Snmp4JSessionPool sessionPool, final Snmp4JAgentConfig agentConfig, final PDU pdu) {
+        final Target target = agentConfig.getTarget();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ResponseEvent[] responseEvent = new ResponseEvent[1];
+
+        try {
+            sessionPool.send(pdu, target, new ResponseListener() {
+                @Override
+                public void onResponse(final ResponseEvent event) {
+                    responseEvent[0] = event;
+                    latch.countDown();
+                }
+            });
+
+            // SNMP4J reports the timeout itself, this only guards against a
+            // request that is queued behind others for the same agent forever
+            final long timeout = (target.getRetries() + 1) * target.getTimeout();
+            if (!latch.await(Math.max(timeout, 1000) * 10, TimeUnit.MILLISECONDS)) {
+                LOG.warn("send: no response or timeout reported for request to agent {}", agentConfig);
+                return new SnmpValue[] { null };
+            }
+            return processResponse(agentConfig, responseEvent[0]);
+        } catch (final InterruptedException e) {
+            LOG.warn("send: interrupted while waiting for a response from agent {}", agentConfig);
+            Thread.currentThread().interrupt();
+            return new SnmpValue[] { null };
+        } catch (final IOException e) {
+            LOG.error("send: error during SNMP operation", e);
+            return new SnmpValue[] { null };
+        } catch (final RuntimeException e) {
+            LOG.error("send: unexpected error during SNMP operation", e);
+            return new SnmpValue[] { null };
+        }
+    }
 
     protected PDU buildPdu(Snmp4JAgentConfig agentConfig, int pduType, SnmpObjId[] oids, SnmpValue[] values) {
         PDU pdu = agentConfig.createPdu(pduType);
@@ -159,8 +159,14 @@ public class Snmp4JWalker extends SnmpWalker {
 
         @Override
         public void onResponse(ResponseEvent responseEvent) {
-            // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
-            m_session.cancel(responseEvent.getRequest(), this);
+            if (m_sessionPool == null) {
+                // need to cancel the request here otherwise SNMP4J Keeps it around forever... go figure
+                m_session.cancel(responseEvent.getRequest(), this);
+            } else if (m_closed) {
+                // the walk is over, but a shared session has no way to drop the request
+                LOG.debug("Ignoring a response from {} for the closed walker {}", getAddress(), getName());
+                return;
+            }
 
             // Check to see if we got an interrupted exception
             if (responseEvent.getError() instanceof InterruptedException) {
@@ -182,14 +188,25 @@ public class Snmp4JWalker extends SnmpWalker {
     }
     
     private Snmp m_session;
+    private final Snmp4JSessionPool m_sessionPool;
+    private volatile boolean m_closed = false;
     private final Target m_tgt;
     private final ResponseListener m_listener;
     private final Snmp4JAgentConfig m_agentConfig;
 
     public Snmp4JWalker(Snmp4JAgentConfig agentConfig, String name, CollectionTracker tracker) {
+        this(agentConfig, name, tracker, null);
+    }
+
+    /**
+     * @param sessionPool the shared sessions to send the requests with, or
+     *            null to open a session for the walk
+     */
+    public Snmp4JWalker(Snmp4JAgentConfig agentConfig, String name, CollectionTracker tracker, Snmp4JSessionPool sessionPool) {
         super(agentConfig.getInetAddress(), name, agentConfig.getMaxVarsPerPdu(), agentConfig.getMaxRepetitions(), tracker);
         
         m_agentConfig = agentConfig;
+        m_sessionPool = sessionPool;
         
         m_tgt = agentConfig.getTarget();
         m_listener = new Snmp4JResponseListener();
@@ -213,6 +230,15 @@ public class Snmp4JWalker extends SnmpWalker {
         @Override
     protected void sendNextPdu(WalkerPduBuilder pduBuilder) throws IOException {
         Snmp4JPduBuilder snmp4JPduBuilder = (Snmp4JPduBuilder)pduBuilder;
+        if (m_sessionPool != null) {
+            if (m_closed) {
+                return;
+            }
+            LOG.debug("Sending tracker pdu of size {} over a shared session", snmp4JPduBuilder.getPdu().size());
+            m_sessionPool.send(snmp4JPduBuilder.getPdu(), m_tgt, m_listener);
+            return;
+        }
+
         if (m_session == null) {
             m_session = m_agentConfig.createSnmpSession();
             m_session.listen();
@@ -228,6 +254,7 @@ public class Snmp4JWalker extends SnmpWalker {
 
     @Override
     public void close() throws IOException {
+        m_closed = true;
         if (m_session != null) {
             m_session.close();
             m_session = null;
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.snmp.snmp4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.opennms.netmgt.snmp.SnmpObjId;
+import org.snmp4j.PDU;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+
+/**
+ * Tests for the shared SNMP sessions of the SNMP4J strategy.
+ */
+public class Snmp4JSessionPoolTest extends MockSnmpAgentTestCase {
+
+    private Snmp4JSessionPool m_pool;
+
+    @Override
+    protected boolean usingMockStrategy() {
+        return false;
+    }
+
+    @After
+    public void closePool() {
+        if (m_pool != null) {
+            m_pool.close();
+        }
+    }
+
+    @Test
+    public void testRequestsOverTheLimitAreQueued() throws Exception {
+        m_pool = new Snmp4JSessionPool(2, 1);
+
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig());
+        final Target target = agentConfig.getTarget();
+        final int requests = 10;
+        final CountDownLatch latch = new CountDownLatch(requests);
+        final AtomicInteger responses = new AtomicInteger();
+
+        for (int i = 0; i < requests; i++) {
+            final PDU pdu = new Snmp4JStrategy().buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") }, null);
+            assertNotNull(pdu);
+            m_pool.send(pdu, target, new ResponseListener() {
+                @Override
+                public void onResponse(final ResponseEvent event) {
+                    if (event.getResponse() != null && event.getResponse().size() == 1) {
+                        responses.incrementAndGet();
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue("not all requests completed", latch.await(10, TimeUnit.SECONDS));
+        assertEquals(requests, responses.get());
+        assertEquals(requests, m_pool.getRequestsSent());
+        assertEquals(0, m_pool.getOutstanding());
+        assertEquals(0, m_pool.getQueued());
+        assertEquals(0, m_pool.getTimeouts());
+        assertEquals(0, m_pool.getActiveAgents());
+    }
+
+    @Test
+    public void testTimeoutAndRetriesAreCounted() throws Exception {
+        m_pool = new Snmp4JSessionPool(1, 4);
+
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig());
+        final Target target = agentConfig.getTarget();
+        target.setRetries(1);
+        target.setTimeout(200);
+        getAgent().shutDownAndWait();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final ResponseEvent[] responseEvent = new ResponseEvent[1];
+        final PDU pdu = new Snmp4JStrategy().buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") }, null);
+        m_pool.send(pdu, target, new ResponseListener() {
+            @Override
+            public void onResponse(final ResponseEvent event) {
+                responseEvent[0] = event;
+                latch.countDown();
+            }
+        });
+
+        assertTrue("the request did not time out", latch.await(5, TimeUnit.SECONDS));
+        assertEquals(null, responseEvent[0].getResponse());
+        assertEquals(1, m_pool.getTimeouts());
+        assertEquals(1, m_pool.getRetries());
+        assertEquals(0, m_pool.getOutstanding());
+    }
+
+    @Test
+    public void testSlowListenerDoesNotBlockOtherResponses() throws Exception {
+        m_pool = new Snmp4JSessionPool(1, 4, 2);
+
+        final Snmp4JAgentConfig agentConfig = new Snmp4JAgentConfig(getAgentConfig());
+        final Target target = agentConfig.getTarget();
+        final CountDownLatch secondResponse = new CountDownLatch(1);
+        final CountDownLatch firstResponse = new CountDownLatch(1);
+        final AtomicInteger responses = new AtomicInteger();
+
+        // the first listener waits for the second response, which never
+        // arrives if the listeners are called on the listen thread alone
+        final PDU firstPdu = new Snmp4JStrategy().buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") }, null);
+        m_pool.send(firstPdu, target, new ResponseListener() {
+            @Override
+            public void onResponse(final ResponseEvent event) {
+                try {
+                    if (secondResponse.await(5, TimeUnit.SECONDS) && event.getResponse() != null) {
+                        responses.incrementAndGet();
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                firstResponse.countDown();
+            }
+        });
+
+        final PDU secondPdu = new Snmp4JStrategy().buildPdu(agentConfig, PDU.GET, new SnmpObjId[] { SnmpObjId.get(".1.3.5.1.1.3.0") }, null);
+        m_pool.send(secondPdu, target, new ResponseListener() {
+            @Override
+            public void onResponse(final ResponseEvent event) {
+                if (event.getResponse() != null) {
+                    responses.incrementAndGet();
+                }
+                secondResponse.countDown();
+            }
+        });
+
+        assertTrue("the first request did not complete", firstResponse.await(10, TimeUnit.SECONDS));
+        assertEquals(2, responses.get());
+        assertEquals(2, m_pool.getDispatcherThreads());
+    }
+}
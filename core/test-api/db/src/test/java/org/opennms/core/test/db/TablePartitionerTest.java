@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.core.test.db;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.opennms.core.db.TablePartitioner;
+import org.opennms.core.db.TablePartitioner.Interval;
+
+public class TablePartitionerTest extends TemporaryDatabaseTestCase {
+    private Connection m_connection;
+
+    private TablePartitioner m_partitioner;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        if (!isEnabled()) {
+            return;
+        }
+
+        executeSQL(new String[] {
+            "CREATE TABLE node (nodeid integer NOT NULL, CONSTRAINT pk_nodeid PRIMARY KEY (nodeid))",
+            "CREATE TABLE events (eventid integer NOT NULL, nodeid integer, eventtime timestamp with time zone NOT NULL, CONSTRAINT pk_eventid PRIMARY KEY (eventid), CONSTRAINT fk_nodeid FOREIGN KEY (nodeid) REFERENCES node (nodeid) ON DELETE CASCADE)",
+            "CREATE INDEX events_nodeid_idx ON events (nodeid)",
+            "CREATE TABLE outages (outageid integer NOT NULL, svclosteventid integer, CONSTRAINT pk_outageid PRIMARY KEY (outageid), CONSTRAINT fk_eventid1 FOREIGN KEY (svclosteventid) REFERENCES events (eventid) ON DELETE CASCADE)",
+            "CREATE TABLE alarms (alarmid integer NOT NULL, lasteventid integer, CONSTRAINT pk_alarmid PRIMARY KEY (alarmid), CONSTRAINT fk_eventidak2 FOREIGN KEY (lasteventid) REFERENCES events (eventid) ON DELETE CASCADE)",
+            "INSERT INTO node (nodeid) VALUES (1)"
+        });
+
+        m_connection = getConnection();
+        m_partitioner = new TablePartitioner(m_connection);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (isEnabled()) {
+            m_connection.close();
+        }
+        super.tearDown();
+    }
+
+    public void testPartitionTable() throws Exception {
+        assertFalse(m_partitioner.isPartitioned("events"));
+        assertTrue(m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2));
+        assertTrue(m_partitioner.isPartitioned("events"));
+
+        // the current month and two ahead
+        final List<String> partitions = m_partitioner.getPartitions("events");
+        assertEquals(3, partitions.size());
+        assertEquals(partitions.get(0), "events_p" + queryForString("SELECT to_char(date_trunc('month', now()), 'YYYYMMDD')"));
+
+        // the foreign keys referencing events are gone, the ones of events are copied
+        assertEquals(0, queryForInt("SELECT count(*) FROM pg_constraint WHERE conname IN ('fk_eventid1', 'fk_eventidak2')"));
+        assertEquals(2, queryForInt("SELECT count(*) FROM " + TablePartitioner.REFERENCES_TABLE + " WHERE tablename = 'events'"));
+        assertEquals(Arrays.asList("alarms.fk_eventidak2", "outages.fk_eventid1"), m_partitioner.getDroppedForeignKeys("events"));
+        assertEquals(1, queryForInt("SELECT count(*) FROM pg_constraint c JOIN pg_class t ON t.oid = c.conrelid WHERE t.relname = '" + partitions.get(0) + "' AND c.contype = 'f'"));
+        assertEquals(2, queryForInt("SELECT count(*) FROM pg_indexes WHERE tablename = '" + partitions.get(0) + "'"));
+
+        assertFalse(m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2));
+    }
+
+    public void testInsert() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+        final String partition = m_partitioner.getPartitions("events").get(0);
+
+        // the row goes to the partition instead of the parent
+        assertEquals(0, getJdbcTemplate().update("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())"));
+        // there is no partition for this one
+        assertEquals(1, getJdbcTemplate().update("INSERT INTO events (eventid, nodeid, eventtime) VALUES (2, 1, now() - interval '1 year')"));
+
+        assertEquals(2, queryForInt("SELECT count(*) FROM events"));
+        assertEquals(1, queryForInt("SELECT count(*) FROM " + partition));
+        assertEquals(2, queryForInt("SELECT eventid FROM ONLY events"));
+
+        executeSQL("UPDATE events SET nodeid = NULL WHERE eventid = 1");
+        assertEquals(1, queryForInt("SELECT count(*) FROM " + partition + " WHERE nodeid IS NULL"));
+    }
+
+    public void testTriggersFireOnce() throws Exception {
+        executeSQL(new String[] {
+            "CREATE TABLE event_log (eventid integer)",
+            "CREATE FUNCTION log_event() RETURNS trigger AS $$ BEGIN INSERT INTO event_log VALUES (NEW.eventid); RETURN NULL; END; $$ LANGUAGE plpgsql",
+            "CREATE TRIGGER log_event_trigger AFTER INSERT ON events FOR EACH ROW EXECUTE PROCEDURE log_event()"
+        });
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())");
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (2, 1, now() - interval '1 year')");
+
+        assertEquals(1, queryForInt("SELECT count(*) FROM event_log WHERE eventid = 1"));
+        assertEquals(1, queryForInt("SELECT count(*) FROM event_log WHERE eventid = 2"));
+    }
+
+    public void testDropForeignKeys() throws Exception {
+        assertEquals(0, m_partitioner.dropForeignKeys().size());
+
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+        assertEquals(0, m_partitioner.dropForeignKeys().size());
+
+        // added back by an upgrade, and a new one
+        executeSQL(new String[] {
+            "ALTER TABLE outages ADD CONSTRAINT fk_eventid1 FOREIGN KEY (svclosteventid) REFERENCES events (eventid) ON DELETE CASCADE",
+            "CREATE TABLE memos (memoid integer NOT NULL, eventid integer, CONSTRAINT fk_memo_eventid FOREIGN KEY (eventid) REFERENCES events (eventid))"
+        });
+
+        assertEquals(Arrays.asList("memos.fk_memo_eventid", "outages.fk_eventid1"), sorted(m_partitioner.dropForeignKeys()));
+        assertEquals(0, queryForInt("SELECT count(*) FROM pg_constraint WHERE conname IN ('fk_eventid1', 'fk_memo_eventid')"));
+        assertEquals(Arrays.asList("alarms.fk_eventidak2", "memos.fk_memo_eventid", "outages.fk_eventid1"), m_partitioner.getDroppedForeignKeys("events"));
+        assertEquals(0, m_partitioner.dropForeignKeys().size());
+    }
+
+    public void testCreatePartitions() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.DAY, 1);
+        assertEquals(2, m_partitioner.getPartitions("events").size());
+
+        assertEquals(3, m_partitioner.createPartitions("events", 4).size());
+        assertEquals(5, m_partitioner.getPartitions("events").size());
+        assertEquals(0, m_partitioner.createPartitions("events", 4).size());
+    }
+
+    public void testNodeDeleteCascades() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.WEEK, 1);
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())");
+
+        executeSQL("DELETE FROM node WHERE nodeid = 1");
+        assertEquals(0, queryForInt("SELECT count(*) FROM events"));
+    }
+
+    public void testDropPartitions() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+        final String partition = m_partitioner.getPartitions("events").get(0);
+
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())");
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (2, 1, now())");
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (3, 1, now())");
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (4, 1, now() - interval '1 year')");
+        executeSQL("INSERT INTO outages (outageid, svclosteventid) VALUES (1, 1)");
+        executeSQL("INSERT INTO alarms (alarmid, lasteventid) VALUES (1, 2)");
+
+        // a negative number of intervals to keep expires the current one
+        assertEquals(Collections.singletonList(partition), m_partitioner.dropPartitions("events", -1, null, Collections.singleton("alarms")));
+        assertEquals(2, m_partitioner.getPartitions("events").size());
+
+        // the event of the outage is kept, the alarm is deleted with its event
+        assertEquals(1, queryForInt("SELECT count(*) FROM events"));
+        assertEquals(1, queryForInt("SELECT eventid FROM events" + TablePartitioner.RETAINED_SUFFIX));
+        assertEquals(1, queryForInt("SELECT count(*) FROM outages"));
+        assertEquals(0, queryForInt("SELECT count(*) FROM alarms"));
+
+        executeSQL("DELETE FROM outages");
+        m_partitioner.dropPartitions("events", -1, null, Collections.<String>emptySet());
+        assertEquals(0, queryForInt("SELECT count(*) FROM events"));
+    }
+
+    public void testDropPartitionsRetain() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())");
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (2, NULL, now())");
+
+        m_partitioner.dropPartitions("events", -1, "p.nodeid IS NULL", Collections.<String>emptySet());
+        assertEquals(2, queryForInt("SELECT eventid FROM events"));
+    }
+
+    public void testDropPartitionsKeep() throws Exception {
+        m_partitioner.partitionTable("events", "eventtime", Interval.MONTH, 2);
+        executeSQL("INSERT INTO events (eventid, nodeid, eventtime) VALUES (1, 1, now())");
+
+        assertEquals(0, m_partitioner.dropPartitions("events", 0, null, Collections.<String>emptySet()).size());
+        assertEquals(1, queryForInt("SELECT count(*) FROM events"));
+    }
+
+    private static List<String> sorted(final List<String> list) {
+        final List<String> sorted = new ArrayList<String>(list);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private int queryForInt(final String sql) {
+        return getJdbcTemplate().queryForObject(sql, Integer.class);
+    }
+
+    private String queryForString(final String sql) {
+        return getJdbcTemplate().queryForObject(sql, String.class);
+    }
+}
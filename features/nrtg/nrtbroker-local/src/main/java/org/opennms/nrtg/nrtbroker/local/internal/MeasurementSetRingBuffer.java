@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.nrtbroker.local.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.opennms.nrtg.api.model.MeasurementSet;
+
+/**
+ * Bounded, lock-free queue of the {@link MeasurementSet}s waiting for one
+ * destination. When the buffer is full the oldest sets are dropped to make
+ * room for new ones, so a browser that stops polling costs at most the
+ * capacity of its buffer.
+ *
+ * Every slot carries a sequence number telling producers and consumers
+ * whether it is free to write or ready to read, so any number of threads
+ * can publish and receive without taking a lock.
+ */
+class MeasurementSetRingBuffer {
+
+    private final int m_mask;
+    private final AtomicReferenceArray<MeasurementSet> m_slots;
+    private final AtomicLongArray m_sequences;
+
+    // next position to write and to read
+    private final AtomicLong m_tail = new AtomicLong();
+    private final AtomicLong m_head = new AtomicLong();
+
+    private volatile long m_lastAccess = System.currentTimeMillis();
+
+    /**
+     * @param capacity the number of sets to keep, rounded up to a power of two
+     */
+    public MeasurementSetRingBuffer(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        m_mask = size - 1;
+        m_slots = new AtomicReferenceArray<MeasurementSet>(size);
+        m_sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            m_sequences.set(i, i);
+        }
+    }
+
+    public int getCapacity() {
+        return m_mask + 1;
+    }
+
+    /**
+     * Adds a set, dropping the oldest sets while the buffer is full.
+     *
+     * @return the number of sets dropped
+     */
+    public int add(final MeasurementSet measurementSet) {
+        int dropped = 0;
+        while (!offer(measurementSet)) {
+            if (poll() != null) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Removes all sets in the buffer and marks it as accessed.
+     */
+    public List<MeasurementSet> drain() {
+        m_lastAccess = System.currentTimeMillis();
+        final List<MeasurementSet> measurementSets = new ArrayList<MeasurementSet>();
+        MeasurementSet measurementSet;
+        while ((measurementSet = poll()) != null) {
+            measurementSets.add(measurementSet);
+        }
+        return measurementSets;
+    }
+
+    public int size() {
+        final long size = m_tail.get() - m_head.get();
+        return (int) Math.max(0, Math.min(size, getCapacity()));
+    }
+
+    /**
+     * @return the time in milliseconds the buffer was created or last drained
+     */
+    public long getLastAccess() {
+        return m_lastAccess;
+    }
+
+    private boolean offer(final MeasurementSet measurementSet) {
+        long position = m_tail.get();
+        while (true) {
+            final int index = (int) (position & m_mask);
+            final long difference = m_sequences.get(index) - position;
+            if (difference == 0) {
+                if (m_tail.compareAndSet(position, position + 1)) {
+                    m_slots.set(index, measurementSet);
+                    m_sequences.set(index, position + 1);
+                    return true;
+                }
+                position = m_tail.get();
+            } else if (difference < 0) {
+                // the slot still holds a set from the previous lap, so the buffer is full
+                return false;
+            } else {
+                position = m_tail.get();
+            }
+        }
+    }
+
+    private MeasurementSet poll() {
+        long position = m_head.get();
+        while (true) {
+            final int index = (int) (position & m_mask);
+            final long difference = m_sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (m_head.compareAndSet(position, position + 1)) {
+                    final MeasurementSet measurementSet = m_slots.getAndSet(index, null);
+                    m_sequences.set(index, position + m_mask + 1);
+                    return measurementSet;
+                }
+                position = m_head.get();
+            } else if (difference < 0) {
+                // nothing written to the slot yet, so the buffer is empty
+                return null;
+            } else {
+                position = m_head.get();
+            }
+        }
+    }
+}
@@ -28,11 +28,13 @@
 
 package org.opennms.nrtg.nrtbroker.local.internal;
 
-import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opennms.nrtg.api.NrtBroker;
 import org.opennms.nrtg.api.ProtocolCollector;
@@ -48,19 +50,23 @@ import org.slf4j.LoggerFactory;
 
 public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
 
+    /**
+     * Keeps a bounded {@link MeasurementSetRingBuffer} for each destination
+     * and drops the buffers nobody received from for longer than the idle
+     * timeout.
+     */
     private class TimedOutMap {
-        private Map<String, List<MeasurementSet>> m_measurementSets = new HashMap<String, List<MeasurementSet>>();
-        private Map<String, Date> m_lastAccess = new HashMap<String, Date>();
+        private final ConcurrentMap<String, MeasurementSetRingBuffer> m_measurementSets = new ConcurrentHashMap<String, MeasurementSetRingBuffer>();
+        private final AtomicLong m_nextHousekeeping = new AtomicLong();
 
-        public synchronized List<MeasurementSet> getAndRemove(final String key) {
-            m_lastAccess.put(key, new Date());
-            final List<MeasurementSet> measurementSetList = m_measurementSets.get(key);
-            m_measurementSets.put(key, new ArrayList<MeasurementSet>());
+        public List<MeasurementSet> getAndRemove(final String key) {
+            final List<MeasurementSet> measurementSetList = getRingBuffer(key).drain();
+            m_delivered.addAndGet(measurementSetList.size());
 
             return measurementSetList;
         }
 
-        public synchronized void addMeasurementSets(final Map<String, MeasurementSet> measurementSets) {
+        public void addMeasurementSets(final Map<String, MeasurementSet> measurementSets) {
             for (final Map.Entry<String, MeasurementSet> entry : measurementSets.entrySet()) {
                 String[] arr = entry.getKey().split(",");
 
@@ -72,29 +78,50 @@ public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
             doHousekeeping();
         }
 
-        public synchronized void addMeasurementSet(String key, MeasurementSet measurementSet) {
-            if (!m_measurementSets.containsKey(key)) {
-                m_measurementSets.put(key, new ArrayList<MeasurementSet>());
+        public void addMeasurementSet(String key, MeasurementSet measurementSet) {
+            final int dropped = getRingBuffer(key).add(measurementSet);
+            m_published.incrementAndGet();
+
+            if (dropped > 0) {
+                m_dropped.addAndGet(dropped);
+                logger.debug("Dropped {} measurement sets for '{}', nobody received them", dropped, key);
             }
+        }
 
-            List<MeasurementSet> measurementSetList = m_measurementSets.get(key);
-            measurementSetList.add(measurementSet);
+        private MeasurementSetRingBuffer getRingBuffer(final String key) {
+            MeasurementSetRingBuffer ringBuffer = m_measurementSets.get(key);
+            if (ringBuffer == null) {
+                final MeasurementSetRingBuffer newRingBuffer = new MeasurementSetRingBuffer(m_capacity);
+                ringBuffer = m_measurementSets.putIfAbsent(key, newRingBuffer);
+                if (ringBuffer == null) {
+                    ringBuffer = newRingBuffer;
+                }
+            }
+            return ringBuffer;
         }
 
-        private synchronized void doHousekeeping() {
-            for (final String key : m_lastAccess.keySet()) {
-                final Date lastAccess = m_lastAccess.get(key);
-                final Date now = new Date();
-                if (now.getTime() - lastAccess.getTime() > 120000) {
-                    m_lastAccess.remove(key);
-                    m_measurementSets.remove(key);
+        /**
+         * Runs at most once a second, on the thread that wins the race for it.
+         */
+        private void doHousekeeping() {
+            final long now = System.currentTimeMillis();
+            final long nextHousekeeping = m_nextHousekeeping.get();
+            if (now < nextHousekeeping || !m_nextHousekeeping.compareAndSet(nextHousekeeping, now + 1000)) {
+                return;
+            }
+
+            for (final Iterator<Map.Entry<String, MeasurementSetRingBuffer>> it = m_measurementSets.entrySet().iterator(); it.hasNext(); ) {
+                final Map.Entry<String, MeasurementSetRingBuffer> entry = it.next();
+                if (now - entry.getValue().getLastAccess() > m_idleTimeout) {
+                    it.remove();
+                    m_dropped.addAndGet(entry.getValue().size());
 
-                    logger.warn("Timed out object removed '{}'", key);
+                    logger.warn("Timed out object removed '{}'", entry.getKey());
                 }
             }
         }
 
-        private synchronized Integer getAmountOfMeasurementSets() {
+        private Integer getAmountOfMeasurementSets() {
             return m_measurementSets.size();
         }
     }
@@ -104,6 +131,15 @@ public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
     private List<ProtocolCollector> m_protocolCollectors;
     private TimedOutMap m_measurementSets = new TimedOutMap();
 
+    // measurement sets kept for each destination
+    private int m_capacity = 256;
+    // milliseconds after which a destination nobody received from is removed
+    private long m_idleTimeout = 120000;
+
+    private final AtomicLong m_published = new AtomicLong();
+    private final AtomicLong m_delivered = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+
     @Override
     public void publishCollectionJob(CollectionJob collectionJob) {
         ProtocolCollector protocolCollector = getProtocolCollector(collectionJob.getService());
@@ -144,4 +180,43 @@ public class NrtBrokerLocal implements NrtBroker, NrtBrokerLocalMBean {
     public Integer getMeasurementSetSize() {
         return m_measurementSets.getAmountOfMeasurementSets();
     }
+
+    @Override
+    public Long getPublishedMeasurementSets() {
+        return m_published.get();
+    }
+
+    @Override
+    public Long getDeliveredMeasurementSets() {
+        return m_delivered.get();
+    }
+
+    @Override
+    public Long getDroppedMeasurementSets() {
+        return m_dropped.get();
+    }
+
+    public int getCapacity() {
+        return m_capacity;
+    }
+
+    /**
+     * Sets the number of measurement sets kept for each destination before
+     * the oldest ones are dropped.
+     */
+    public void setCapacity(int capacity) {
+        this.m_capacity = capacity;
+    }
+
+    public long getIdleTimeout() {
+        return m_idleTimeout;
+    }
+
+    /**
+     * Sets the milliseconds after which the measurement sets of a
+     * destination nobody received from are removed.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.m_idleTimeout = idleTimeout;
+    }
 }
@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.nrtg.nrtbroker.local.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.opennms.nrtg.api.model.LightweightMeasurementSet;
+import org.opennms.nrtg.api.model.MeasurementSet;
+
+public class MeasurementSetRingBufferTest {
+
+    @Test
+    public void testCapacityRoundedUp() {
+        assertEquals(1, new MeasurementSetRingBuffer(1).getCapacity());
+        assertEquals(8, new MeasurementSetRingBuffer(5).getCapacity());
+        assertEquals(256, new MeasurementSetRingBuffer(256).getCapacity());
+    }
+
+    @Test
+    public void testDropOldest() {
+        final MeasurementSetRingBuffer ringBuffer = new MeasurementSetRingBuffer(4);
+        final MeasurementSet[] measurementSets = new MeasurementSet[6];
+        int dropped = 0;
+        for (int i = 0; i < measurementSets.length; i++) {
+            measurementSets[i] = new LightweightMeasurementSet(i, "SNMP", "127.0.0.1", new Date());
+            dropped += ringBuffer.add(measurementSets[i]);
+        }
+
+        assertEquals(2, dropped);
+        assertEquals(4, ringBuffer.size());
+
+        final List<MeasurementSet> drained = ringBuffer.drain();
+        assertEquals(4, drained.size());
+        for (int i = 0; i < drained.size(); i++) {
+            assertSame(measurementSets[i + 2], drained.get(i));
+        }
+
+        assertEquals(0, ringBuffer.size());
+        assertTrue(ringBuffer.drain().isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+        final MeasurementSetRingBuffer ringBuffer = new MeasurementSetRingBuffer(64);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(producers);
+        final long[] dropped = new long[producers];
+
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perProducer; i++) {
+                            dropped[producer] += ringBuffer.add(new LightweightMeasurementSet(producer * perProducer + i, "SNMP", "127.0.0.1", new Date()));
+                        }
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        final Set<MeasurementSet> received = new HashSet<MeasurementSet>();
+        start.countDown();
+        while (done.getCount() > 0) {
+            received.addAll(ringBuffer.drain());
+        }
+        received.addAll(ringBuffer.drain());
+
+        long totalDropped = 0;
+        for (final long d : dropped) {
+            totalDropped += d;
+        }
+
+        // every set is either received exactly once or dropped
+        assertEquals(producers * perProducer, received.size() + totalDropped);
+    }
+}
@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.Map;
+
+/**
+ * A {@link ServiceMonitor} that can poll a service without holding the
+ * calling thread for the duration of the poll.
+ */
+public interface AsyncServiceMonitor extends ServiceMonitor {
+
+    /**
+     * Starts a poll of the service and returns at once. The returned future
+     * is completed with the status of the service once the poll is finished.
+     * Listeners on the future may be notified on an I/O thread, so they must
+     * not block.
+     *
+     * @param svc a {@link org.opennms.netmgt.poller.MonitoredService} object.
+     * @param parameters the parameters of the service in the poller package
+     * @return a {@link org.opennms.netmgt.poller.PollFuture} object.
+     */
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters);
+}
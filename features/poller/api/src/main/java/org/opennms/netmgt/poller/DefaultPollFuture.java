@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opennms.netmgt.model.PollStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>DefaultPollFuture class.</p>
+ */
+public class DefaultPollFuture implements PollFuture {
+    private static final Logger LOG = LoggerFactory.getLogger(DefaultPollFuture.class);
+
+    private final List<PollFutureListener> m_listeners = new ArrayList<PollFutureListener>();
+
+    private PollStatus m_status;
+
+    /**
+     * <p>Constructor for DefaultPollFuture.</p>
+     */
+    public DefaultPollFuture() {
+    }
+
+    /**
+     * Creates a future that is done already, for polls that complete
+     * without any I/O.
+     *
+     * @param status a {@link org.opennms.netmgt.model.PollStatus} object.
+     */
+    public DefaultPollFuture(final PollStatus status) {
+        setStatus(status);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized PollStatus getStatus() {
+        return m_status;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setStatus(final PollStatus status) {
+        if (status == null) {
+            throw new IllegalArgumentException("status may not be null");
+        }
+
+        final List<PollFutureListener> listeners;
+        synchronized (this) {
+            if (m_status != null) {
+                LOG.debug("setStatus: poll is done already, ignoring {}", status);
+                return;
+            }
+            m_status = status;
+            notifyAll();
+
+            listeners = new ArrayList<PollFutureListener>(m_listeners);
+            m_listeners.clear();
+        }
+
+        for (final PollFutureListener listener : listeners) {
+            notifyListener(listener);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized boolean isDone() {
+        return m_status != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void awaitFor() throws InterruptedException {
+        while (m_status == null) {
+            wait();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void awaitForUninterruptibly() {
+        boolean interrupted = false;
+        synchronized (this) {
+            while (m_status == null) {
+                try {
+                    wait();
+                } catch (final InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollFuture addListener(final PollFutureListener listener) {
+        synchronized (this) {
+            if (m_status == null) {
+                m_listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    private void notifyListener(final PollFutureListener listener) {
+        try {
+            listener.operationComplete(this);
+        } catch (final Throwable e) {
+            LOG.warn("notifyListener: listener {} failed", listener, e);
+        }
+    }
+
+    /**
+     * <p>toString</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public synchronized String toString() {
+        return "DefaultPollFuture[status=" + m_status + "]";
+    }
+}
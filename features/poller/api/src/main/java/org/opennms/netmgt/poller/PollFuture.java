@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import org.opennms.netmgt.model.PollStatus;
+
+/**
+ * The result of a poll started by an {@link AsyncServiceMonitor}.
+ */
+public interface PollFuture {
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return the status of the service, or null if the poll is not done yet
+     */
+    PollStatus getStatus();
+
+    /**
+     * Completes the poll. Only the first status set is kept.
+     *
+     * @param status a {@link org.opennms.netmgt.model.PollStatus} object.
+     */
+    void setStatus(PollStatus status);
+
+    /**
+     * <p>isDone</p>
+     *
+     * @return true once the status is set
+     */
+    boolean isDone();
+
+    /**
+     * <p>awaitFor</p>
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void awaitFor() throws InterruptedException;
+
+    /**
+     * <p>awaitForUninterruptibly</p>
+     */
+    void awaitForUninterruptibly();
+
+    /**
+     * Adds a listener that is notified when the poll is done, or at once if
+     * it is done already.
+     *
+     * @param listener a {@link org.opennms.netmgt.poller.PollFutureListener} object.
+     * @return this future
+     */
+    PollFuture addListener(PollFutureListener listener);
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.util.Map;
+
+import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
+
+/**
+ * Base class for monitors that poll asynchronously. Callers that still use
+ * the blocking {@link #poll(MonitoredService, Map)}, like the remote poller,
+ * wait for the result of {@link #pollAsync(MonitoredService, Map)}.
+ */
+abstract public class AbstractAsyncServiceMonitor extends AbstractServiceMonitor implements AsyncServiceMonitor {
+
+    /** {@inheritDoc} */
+    @Override
+    public PollStatus poll(final MonitoredService svc, final Map<String, Object> parameters) {
+        final PollFuture future = pollAsync(svc, parameters);
+        future.awaitForUninterruptibly();
+        return future.getStatus();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    abstract public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters);
+}
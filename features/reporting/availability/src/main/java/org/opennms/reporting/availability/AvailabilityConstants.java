@@ -48,20 +48,9 @@ public class AvailabilityConstants {
 
     /**
      * The sql statement for getting outage entries for a nodeid/ip/serviceid
+     * that overlap the report period, given as end and start time
      */
-    public final static String DB_GET_OUTAGE_ENTRIES = "SELECT ifLostService, ifRegainedService from outages " + "where  (outages.nodeid = ?) AND (outages.ipaddr = ?) AND (outages.serviceid = ?)"; // and
-                                                                                                                                                                                                        // ((ifRegainedService
-                                                                                                                                                                                                        // IS
-                                                                                                                                                                                                        // null)
-                                                                                                                                                                                                        // OR
-                                                                                                                                                                                                        // (ifRegainedService
-                                                                                                                                                                                                        // IS
-                                                                                                                                                                                                        // NOT
-                                                                                                                                                                                                        // NULL
-                                                                                                                                                                                                        // AND
-                                                                                                                                                                                                        // ifRegainedService
-                                                                                                                                                                                                        // > ?)
-                                                                                                                                                                                                        // )";
+    public final static String DB_GET_OUTAGE_ENTRIES = "SELECT ifLostService, ifRegainedService from outages " + "where  (outages.nodeid = ?) AND (outages.ipaddr = ?) AND (outages.serviceid = ?) " + "AND (ifLostService < ?) AND ((ifRegainedService IS NULL) OR (ifRegainedService > ?))";
 
     /**
      * The list of Availability Report Constants that are needed to display
@@ -210,6 +210,8 @@ public class LegacyAvailabilityDataService implements AvailabilityDataService {
             outagesGetStmt.setInt(1, nodeid);
             outagesGetStmt.setString(2, ipaddr);
             outagesGetStmt.setInt(3, serviceid);
+            outagesGetStmt.setTimestamp(4, new Timestamp(endTime));
+            outagesGetStmt.setTimestamp(5, new Timestamp(startTime));
 
             ResultSet rs = outagesGetStmt.executeQuery();
 
@@ -29,8 +29,12 @@
 package org.opennms.reporting.datablock;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * <pre>
  * This contains a list of service lost/regained set/pair.
@@ -39,13 +43,30 @@ import java.util.List;
  *  from which this was calculated - this is done so when the view outage time for
  *  a window is calculated, the same calculations are not done on the node multiple
  *  times
+ *
+ *  The down time for a window is answered from a roll-up of the outages: the
+ *  sorted lost and regained times with their running sums.  The down time up
+ *  to a point in time is the time since each earlier lost time minus the time
+ *  since each earlier regained time, so the down time for a window is the
+ *  difference of two binary searches instead of a walk over every outage of
+ *  the service for every day and month of the report.  The roll-up is built
+ *  the first time the list is queried after it was changed.
+ * </pre>
  */
 public class OutageSvcTimesList extends ArrayList<Outage> {
+    private static final Logger LOG = LoggerFactory.getLogger(OutageSvcTimesList.class);
+
     /**
      * 
      */
     private static final long serialVersionUID = -4701288568774571119L;
 
+    /**
+     * If set to true, every down time answered from the roll-up is checked
+     * against the calculation over all outages, and the latter is used.
+     */
+    public static final String VERIFY_PROPERTY = "org.opennms.reporting.availability.verifyRollup";
+
     /**
      * The time from which the current outtime 'm_outTime' is calculated
      */
@@ -63,6 +84,31 @@ public class OutageSvcTimesList extends ArrayList<Outage> {
     @SuppressWarnings("unused")
     private long m_busOutTime;
 
+    /**
+     * The sorted lost times of all outages and their running sums.
+     */
+    private transient long[] m_lostTimes;
+
+    private transient long[] m_lostTimeSums;
+
+    /**
+     * The sorted regained times of the closed outages and their running sums.
+     */
+    private transient long[] m_regainedTimes;
+
+    private transient long[] m_regainedTimeSums;
+
+    /**
+     * The modification count of the list when the roll-up was last built.
+     */
+    private transient int m_rollupModCount = -1;
+
+    /**
+     * False if an outage was regained before it was lost, which the roll-up
+     * can't represent.
+     */
+    private transient boolean m_rollupValid;
+
     /**
      * Default constructor
      *
@@ -130,15 +176,104 @@ public class OutageSvcTimesList extends ArrayList<Outage> {
         long startTime = curTime - rollingWindow;
         m_outTimeSince = startTime;
 
-        m_outTime = 0;
+        if (rollingWindow < 0 || !buildRollup()) {
+            m_outTime = getFullDownTime(curTime, rollingWindow);
+            return m_outTime;
+        }
+
+        m_outTime = getRollupDownTime(curTime) - getRollupDownTime(startTime);
+
+        if (Boolean.getBoolean(VERIFY_PROPERTY)) {
+            long fullOutTime = getFullDownTime(curTime, rollingWindow);
+            if (fullOutTime != m_outTime) {
+                LOG.warn("getDownTime: roll-up down time {} does not match the down time {} of the outages for the {}ms up to {}", m_outTime, fullOutTime, rollingWindow, curTime);
+                m_outTime = fullOutTime;
+            }
+        }
+
+        return m_outTime;
+    }
+
+    private long getFullDownTime(long curTime, long rollingWindow) {
+        long outTime = 0;
 
         for(Outage svcTime : this) {
             long outtime = svcTime.getDownTime(curTime, rollingWindow);
             if (outtime > 0)
-                m_outTime += outtime;
+                outTime += outtime;
         }
 
-        return m_outTime;
+        return outTime;
+    }
+
+    /**
+     * Build the roll-up if the list has changed since it was last built.
+     *
+     * @return false if an outage was regained before it was lost, which
+     *         the roll-up can't represent
+     */
+    private boolean buildRollup() {
+        if (m_rollupModCount == modCount) {
+            return m_rollupValid;
+        }
+
+        m_rollupModCount = modCount;
+        m_rollupValid = false;
+
+        int closed = 0;
+        for (Outage outage : this) {
+            if (outage.getRegainedTime() != -1) {
+                if (outage.getRegainedTime() < outage.getLostTime()) {
+                    return false;
+                }
+                closed++;
+            }
+        }
+
+        m_lostTimes = new long[size()];
+        m_regainedTimes = new long[closed];
+        int i = 0, j = 0;
+        for (Outage outage : this) {
+            m_lostTimes[i++] = outage.getLostTime();
+            if (outage.getRegainedTime() != -1) {
+                m_regainedTimes[j++] = outage.getRegainedTime();
+            }
+        }
+
+        m_lostTimeSums = sortAndSum(m_lostTimes);
+        m_regainedTimeSums = sortAndSum(m_regainedTimes);
+        m_rollupValid = true;
+        return true;
+    }
+
+    private static long[] sortAndSum(long[] times) {
+        Arrays.sort(times);
+        long[] sums = new long[times.length + 1];
+        for (int i = 0; i < times.length; i++) {
+            sums[i + 1] = sums[i] + times[i];
+        }
+        return sums;
+    }
+
+    /**
+     * The total down time of all outages up to 'time'.
+     */
+    private long getRollupDownTime(long time) {
+        return getTimeSince(m_lostTimes, m_lostTimeSums, time) - getTimeSince(m_regainedTimes, m_regainedTimeSums, time);
+    }
+
+    /**
+     * The sum of the time from each of the sorted 'times' before 'time' up to
+     * 'time'.
+     */
+    private static long getTimeSince(long[] times, long[] sums, long time) {
+        // times equal to 'time' add nothing, so it doesn't matter which of
+        // them the search finds
+        int count = Arrays.binarySearch(times, time);
+        if (count < 0) {
+            count = -count - 1;
+        }
+        return count * time - sums[count];
     }
 
     /**
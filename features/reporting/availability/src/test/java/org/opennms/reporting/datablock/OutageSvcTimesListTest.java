@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.reporting.datablock;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class OutageSvcTimesListTest extends TestCase {
+
+    private static final long DAY = 86400000L;
+
+    private static final long START = 1388534400000L;
+
+    private OutageSvcTimesList m_outages;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        m_outages = new OutageSvcTimesList();
+    }
+
+    public void testClosedOutages() {
+        m_outages.addSvcTime(START + 1000, START + 3000);
+        m_outages.addSvcTime(START + 5000, START + 6000);
+
+        assertEquals(3000, m_outages.getDownTime(START + 10000, 10000));
+        // clipped by the start and the end of the window
+        assertEquals(1000, m_outages.getDownTime(START + 5500, 3000));
+        assertEquals(0, m_outages.getDownTime(START + 900, 900));
+        assertEquals(0, m_outages.getDownTime(START + 4500, 1000));
+    }
+
+    public void testOpenOutage() {
+        m_outages.addSvcTime(START + 1000, START + 2000);
+        m_outages.addSvcTime(START + 5000);
+
+        assertEquals(6000, m_outages.getDownTime(START + 10000, 10000));
+        assertEquals(DAY, m_outages.getDownTime(START + 2 * DAY, DAY));
+        assertEquals(0, m_outages.getDownTime(START + 4000, 1000));
+    }
+
+    public void testChangedAfterQuery() {
+        m_outages.addSvcTime(START + 1000, START + 2000);
+        assertEquals(1000, m_outages.getDownTime(START + 10000, 10000));
+
+        m_outages.addSvcTime(START + 3000, START + 5000);
+        assertEquals(3000, m_outages.getDownTime(START + 10000, 10000));
+
+        m_outages.remove(0);
+        assertEquals(2000, m_outages.getDownTime(START + 10000, 10000));
+    }
+
+    public void testRegainedBeforeLost() {
+        // not accepted by addSvcTime, but the list can be filled directly
+        m_outages.add(new Outage(START + 2000, START + 1000));
+        m_outages.add(new Outage(START + 3000, START + 4000));
+
+        assertEquals(1000, m_outages.getDownTime(START + 10000, 10000));
+    }
+
+    /**
+     * Compare the roll-up to the down time of each outage on a year of
+     * random, partly overlapping outages and daily and monthly windows.
+     */
+    public void testMatchesFullCalculation() {
+        final Random random = new Random(0);
+        for (int i = 0; i < 2000; i++) {
+            final long lost = START + (long) (random.nextDouble() * 365 * DAY);
+            if (random.nextInt(50) == 0) {
+                m_outages.addSvcTime(lost);
+            } else {
+                m_outages.addSvcTime(lost, lost + random.nextInt((int) DAY));
+            }
+        }
+
+        for (long end = START - DAY; end < START + 400 * DAY; end += DAY - 1) {
+            assertDownTime(end, DAY);
+            assertDownTime(end, 30 * DAY);
+        }
+    }
+
+    private void assertDownTime(final long curTime, final long rollingWindow) {
+        long expected = 0;
+        for (final Outage outage : m_outages) {
+            final long downTime = outage.getDownTime(curTime, rollingWindow);
+            if (downTime > 0) {
+                expected += downTime;
+            }
+        }
+        assertEquals("down time for the " + rollingWindow + "ms up to " + curTime, expected, m_outages.getDownTime(curTime, rollingWindow));
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.dao.api.EntityCallback;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.model.OnmsCategory;
 import org.opennms.netmgt.model.OnmsCriteria;
@@ -70,6 +71,12 @@ public class MockNodeDao implements NodeDao {
         return null;
     }
 
+    @Override
+    public int forEachMatching(Criteria criteria, EntityCallback<OnmsNode> callback) {
+        // TODO Auto-generated method stub
+        return 0;
+    }
+
     @Override
     public int countMatching(Criteria onmsCrit) {
         // TODO Auto-generated method stub
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.dao.api.EntityCallback;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.model.OnmsCategory;
 import org.opennms.netmgt.model.OnmsCriteria;
@@ -94,6 +95,11 @@ public class TestNodeDao implements NodeDao {
 		return null;
 	}
 
+	@Override
+	public int forEachMatching(Criteria criteria, EntityCallback<OnmsNode> callback) {
+		return 0;
+	}
+
 	@Override
 	public int countMatching(Criteria onmsCrit) {
 		return 0;
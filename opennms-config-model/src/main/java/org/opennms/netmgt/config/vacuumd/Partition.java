@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.config.vacuumd;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A table that is split into one child table per day, week or month. The
+ * installer creates the partitions, vacuumd creates partitions ahead of time
+ * and drops the ones that are older than the retention.
+ */
+@XmlRootElement(name = "partition")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Partition implements Serializable {
+    private static final long serialVersionUID = -2186283412930582719L;
+
+    private static final String DEFAULT_INTERVAL = "month";
+
+    private static final int DEFAULT_PREMAKE = 2;
+
+    /**
+     * The table to partition
+     */
+    @XmlAttribute(name = "table")
+    private String _table;
+
+    /**
+     * The timestamp column the rows are partitioned by
+     */
+    @XmlAttribute(name = "column")
+    private String _column;
+
+    /**
+     * The time covered by one partition: day, week or month
+     */
+    @XmlAttribute(name = "interval")
+    private String _interval;
+
+    /**
+     * The number of whole intervals before the current one to keep
+     */
+    @XmlAttribute(name = "keep")
+    private Integer _keep;
+
+    /**
+     * The number of partitions to create ahead of the current one
+     */
+    @XmlAttribute(name = "premake")
+    private Integer _premake;
+
+    /**
+     * A condition on the rows of a partition that is dropped, the rows
+     * matching it are kept
+     */
+    @XmlAttribute(name = "retain")
+    private String _retain;
+
+    /**
+     * Comma separated list of the referencing tables whose rows are deleted
+     * with the rows they reference
+     */
+    @XmlAttribute(name = "cascade")
+    private String _cascade;
+
+    public Partition() {
+        super();
+    }
+
+    public Partition(final String table, final String column,
+            final String interval, final int keep) {
+        super();
+        setTable(table);
+        setColumn(column);
+        setInterval(interval);
+        setKeep(keep);
+    }
+
+    /**
+     * Overrides the Object.equals method.
+     *
+     * @param obj
+     * @return true if the objects are equal.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        Partition other = (Partition) obj;
+        if (_cascade == null) {
+            if (other._cascade != null)
+                return false;
+        } else if (!_cascade.equals(other._cascade))
+            return false;
+        if (_column == null) {
+            if (other._column != null)
+                return false;
+        } else if (!_column.equals(other._column))
+            return false;
+        if (_interval == null) {
+            if (other._interval != null)
+                return false;
+        } else if (!_interval.equals(other._interval))
+            return false;
+        if (_keep == null) {
+            if (other._keep != null)
+                return false;
+        } else if (!_keep.equals(other._keep))
+            return false;
+        if (_premake == null) {
+            if (other._premake != null)
+                return false;
+        } else if (!_premake.equals(other._premake))
+            return false;
+        if (_retain == null) {
+            if (other._retain != null)
+                return false;
+        } else if (!_retain.equals(other._retain))
+            return false;
+        if (_table == null) {
+            if (other._table != null)
+                return false;
+        } else if (!_table.equals(other._table))
+            return false;
+        return true;
+    }
+
+    /**
+     * Overrides the Object.hashCode method.
+     *
+     * @return a hash code value for the object.
+     */
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result
+                + ((_cascade == null) ? 0 : _cascade.hashCode());
+        result = prime * result + ((_column == null) ? 0 : _column.hashCode());
+        result = prime * result
+                + ((_interval == null) ? 0 : _interval.hashCode());
+        result = prime * result + ((_keep == null) ? 0 : _keep.hashCode());
+        result = prime * result
+                + ((_premake == null) ? 0 : _premake.hashCode());
+        result = prime * result + ((_retain == null) ? 0 : _retain.hashCode());
+        result = prime * result + ((_table == null) ? 0 : _table.hashCode());
+        return result;
+    }
+
+    /**
+     * Returns the value of field 'table'.
+     *
+     * @return the value of field 'Table'.
+     */
+    public String getTable() {
+        return this._table;
+    }
+
+    /**
+     * Sets the value of field 'table'.
+     *
+     * @param table
+     *            the value of field 'table'.
+     */
+    public void setTable(final String table) {
+        this._table = table;
+    }
+
+    /**
+     * Returns the value of field 'column'.
+     *
+     * @return the value of field 'Column'.
+     */
+    public String getColumn() {
+        return this._column;
+    }
+
+    /**
+     * Sets the value of field 'column'.
+     *
+     * @param column
+     *            the value of field 'column'.
+     */
+    public void setColumn(final String column) {
+        this._column = column;
+    }
+
+    /**
+     * Returns the value of field 'interval': day, week or month.
+     *
+     * @return the value of field 'Interval'.
+     */
+    public String getInterval() {
+        return _interval == null ? DEFAULT_INTERVAL : _interval;
+    }
+
+    /**
+     * Sets the value of field 'interval'.
+     *
+     * @param interval
+     *            the value of field 'interval'.
+     */
+    public void setInterval(final String interval) {
+        this._interval = interval;
+    }
+
+    /**
+     * Returns the value of field 'keep'.
+     *
+     * @return the value of field 'Keep'.
+     */
+    public int getKeep() {
+        return this._keep;
+    }
+
+    /**
+     * Sets the value of field 'keep'.
+     *
+     * @param keep
+     *            the value of field 'keep'.
+     */
+    public void setKeep(final int keep) {
+        this._keep = keep;
+    }
+
+    /**
+     * Returns the value of field 'premake'.
+     *
+     * @return the value of field 'Premake'.
+     */
+    public int getPremake() {
+        return _premake == null ? DEFAULT_PREMAKE : _premake;
+    }
+
+    /**
+     * Sets the value of field 'premake'.
+     *
+     * @param premake
+     *            the value of field 'premake'.
+     */
+    public void setPremake(final int premake) {
+        this._premake = premake;
+    }
+
+    /**
+     * Returns the value of field 'retain'.
+     *
+     * @return the value of field 'Retain'.
+     */
+    public String getRetain() {
+        return this._retain;
+    }
+
+    /**
+     * Sets the value of field 'retain'.
+     *
+     * @param retain
+     *            the value of field 'retain'.
+     */
+    public void setRetain(final String retain) {
+        this._retain = retain;
+    }
+
+    /**
+     * Returns the value of field 'cascade'.
+     *
+     * @return the value of field 'Cascade'.
+     */
+    public String getCascade() {
+        return this._cascade;
+    }
+
+    /**
+     * Sets the value of field 'cascade'.
+     *
+     * @param cascade
+     *            the value of field 'cascade'.
+     */
+    public void setCascade(final String cascade) {
+        this._cascade = cascade;
+    }
+}
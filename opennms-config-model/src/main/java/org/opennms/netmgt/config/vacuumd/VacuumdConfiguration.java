@@ -74,6 +74,12 @@ public class VacuumdConfiguration implements Serializable {
     @XmlElement(name = "statement")
     private List<Statement> _statementList = new ArrayList<Statement>(0);
 
+    /**
+     * Tables that are partitioned by time
+     */
+    @XmlElement(name = "partition")
+    private List<Partition> _partitionList = new ArrayList<Partition>(0);
+
     /**
      * Field _automations.
      */
@@ -209,6 +215,11 @@ public class VacuumdConfiguration implements Serializable {
                 return false;
         } else if (!_statementList.equals(other._statementList))
             return false;
+        if (_partitionList == null) {
+            if (other._partitionList != null)
+                return false;
+        } else if (!_partitionList.equals(other._partitionList))
+            return false;
         if (_triggers == null) {
             if (other._triggers != null)
                 return false;
@@ -318,6 +329,34 @@ public class VacuumdConfiguration implements Serializable {
         return this._statementList.size();
     }
 
+    /**
+     * Method addPartition.
+     *
+     * @param vPartition
+     */
+    public void addPartition(final Partition vPartition) {
+        this._partitionList.add(vPartition);
+    }
+
+    /**
+     * Method getPartitionCollection.Returns a reference to '_partitionList'.
+     *
+     * @return a reference to the list backing this class
+     */
+    public List<Partition> getPartitionCollection() {
+        return this._partitionList;
+    }
+
+    /**
+     * Sets the value of '_partitionList' by copying the given list.
+     *
+     * @param partitions
+     */
+    public void setPartition(final List<Partition> partitions) {
+        this._partitionList.clear();
+        this._partitionList.addAll(partitions);
+    }
+
     /**
      * Returns the value of field 'triggers'. The field 'triggers' has the
      * following description: A collection of triggers
@@ -352,6 +391,8 @@ public class VacuumdConfiguration implements Serializable {
                 + ((_period == null) ? 0 : _period.hashCode());
         result = prime * result
                 + ((_statementList == null) ? 0 : _statementList.hashCode());
+        result = prime * result
+                + ((_partitionList == null) ? 0 : _partitionList.hashCode());
         result = prime * result
                 + ((_triggers == null) ? 0 : _triggers.hashCode());
         return result;
@@ -32,7 +32,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,12 +45,14 @@ import org.slf4j.LoggerFactory;
  *  for OpenNMS internal events when different masks are configured for the
  *  same UEI.
  *
- *  When a lookup is to be done for an 'Event',
- *  - its 'key' is used to get a lookup,
- *  - if no match is found for the key, UEI is used to lookup the keys that got added for that UEI
- *    and the first best fit in the event map for any of the UEI keys are used
- *  - if there is still no match at this point, all keys in the eventconf are iterated through to
- *    find a match
+ *  Lookups do not scan the map; they go through an {@link EventConfMatchIndex}
+ *  compiled from it, which narrows the keys to check by UEI, enterprise id
+ *  (exact and '%' prefix), and generic/specific before running the full mask
+ *  check, while still returning the first match in eventconf order.
+ *
+ *  The compiled index is immutable and published through a volatile field,
+ *  so lookups take no lock. It is rebuilt lazily by the first lookup after
+ *  'put' or 'clear'.
  *
  * </pre>
  *
@@ -75,12 +76,18 @@ public class EventConfData extends Object {
      */
     private LinkedHashMap<String, List<EventKey>> m_ueiToKeyListMap;
 
+    /**
+     * The compiled index used by lookups, or null if the maps have been
+     * changed since it was last built
+     */
+    private volatile EventConfMatchIndex m_index;
+
     /**
      * Check whether the event matches the passed key
      * 
      * @return true if the event matches the passed key
      */
-    private boolean eventMatchesKey(EventKey eventKey, org.opennms.netmgt.xml.event.Event event) {
+    static boolean eventMatchesKey(EventKey eventKey, org.opennms.netmgt.xml.event.Event event) {
         // go through the key elements and see if this event will match
         boolean maskMatch = true;
 
@@ -163,6 +170,8 @@ public class EventConfData extends Object {
         m_eventMap = new LinkedHashMap<EventKey, org.opennms.netmgt.xml.eventconf.Event>();
 
         m_ueiToKeyListMap = new LinkedHashMap<String, List<EventKey>>();
+
+        m_index = new EventConfMatchIndex();
     }
 
     /**
@@ -197,6 +206,8 @@ public class EventConfData extends Object {
                 updateUeiToKeyListMap(snmpKey, event);
             }
         }
+
+        m_index = null;
     }
 
     /**
@@ -212,14 +223,35 @@ public class EventConfData extends Object {
 
         // add to the uei to key list map
         updateUeiToKeyListMap(key, event);
+
+        m_index = null;
+    }
+
+    /**
+     * Return the compiled index, building it first if the maps have been
+     * changed since it was last built
+     */
+    private EventConfMatchIndex getIndex() {
+        EventConfMatchIndex index = m_index;
+        if (index == null) {
+            synchronized (this) {
+                index = m_index;
+                if (index == null) {
+                    index = new EventConfMatchIndex(m_eventMap);
+                    m_index = index;
+                    LOG.debug("Compiled the event configuration index with {} keys", index.size());
+                }
+            }
+        }
+        return index;
     }
 
     /**
      * <pre>
-     * Get the right configuration for the event - the eventkey is used first.
-     *  If no match is found, the event's uei to keylist is iterated through, and these keys
-     *  used to lookup the event map. if still no match is found, all eventconf
-     *  keys are iterated through to find a match. The first successful match is returned.
+     * Get the right configuration for the event - only the keys the compiled
+     *  index lists as candidates for the event's UEI, enterprise id and
+     *  generic/specific (plus the keys it could not index) are checked, in
+     *  eventconf order. The first successful match is returned.
      *
      *
      * <EM>
@@ -233,59 +265,11 @@ public class EventConfData extends Object {
      *            the event which is to be looked up
      * @return a {@link org.opennms.netmgt.xml.eventconf.Event} object.
      */
-    public synchronized org.opennms.netmgt.xml.eventconf.Event getEvent(org.opennms.netmgt.xml.event.Event event) {
-        org.opennms.netmgt.xml.eventconf.Event matchedEvent = null;
-
-        //
-        // use the eventkey and see if there is a match
-        //
-	/*
-        EventKey key = new EventKey(event);
-        matchedEvent = m_eventMap.get(key);
-        if (matchedEvent != null) {
-            LOG.debug("Match found using key: {}", key);
-
-            return matchedEvent;
-        }
-        */
-
-        //
-        // get the UEI and see if the UEI keys get a match - this step is here
-        // to make the matching process faster in case of usual internal events
-        // of OpenNMS, using the UEI shortens the search as against going
-        // through
-        // the entire eventconf for each event
-        //
-	/*
-        String uei = event.getUei();
-        if (uei != null) {
-            // Go through the uei to keylist map
-            List<EventKey> keylist = m_ueiToKeyListMap.get(uei);
-            if (keylist != null) {
-                // check the event keys known for this uei
-                matchedEvent = getMatchInKeyList(keylist, event);
-            }
-        }
-        */
-
-        //
-        // if still no match, no option but to go through all known keys
-        //
-        if (matchedEvent == null) {
-            Iterator<Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event>> entryIterator = m_eventMap.entrySet().iterator();
-            while (entryIterator.hasNext() && (matchedEvent == null)) {
-                Entry<EventKey, org.opennms.netmgt.xml.eventconf.Event> entry = entryIterator.next();
-                EventKey iterKey = entry.getKey();
+    public org.opennms.netmgt.xml.eventconf.Event getEvent(org.opennms.netmgt.xml.event.Event event) {
+        org.opennms.netmgt.xml.eventconf.Event matchedEvent = getIndex().getEvent(event);
 
-                boolean keyMatchFound = eventMatchesKey(iterKey, event);
-
-                // if a match was found, return the config
-                if (keyMatchFound) {
-                    LOG.debug("Match found using key: {}", iterKey);
-
-                    matchedEvent = entry.getValue();
-                }
-            }
+        if (matchedEvent != null) {
+            LOG.debug("Match found for event {}: {}", event.getUei(), matchedEvent.getUei());
         }
 
         return matchedEvent;
@@ -311,5 +295,7 @@ public class EventConfData extends Object {
     public synchronized void clear() {
         m_eventMap.clear();
         m_ueiToKeyListMap.clear();
+
+        m_index = null;
     }
 }
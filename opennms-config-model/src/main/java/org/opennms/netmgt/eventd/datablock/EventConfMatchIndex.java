@@ -0,0 +1,436 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2012 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2012 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.datablock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+
+import org.opennms.netmgt.xml.eventconf.Events;
+import org.opennms.netmgt.xml.eventconf.Events.EventCallback;
+import org.opennms.netmgt.xml.eventconf.Partition;
+
+/**
+ * <pre>
+ * An immutable, compiled view of the 'EventKey' to config event map held by
+ *  {@link EventConfData}.
+ *
+ *  Every key is given its ordinal in the eventconf (file order) and is filed
+ *  under the single most selective mask element it constrains exactly:
+ *  - the UEI,
+ *  - the SNMP enterprise id (exact values in a map, '%' values in a prefix trie),
+ *  - the SNMP generic/specific pair,
+ *  - or, failing all of those, the residual list that is checked for every event.
+ *
+ *  A lookup collects the candidate ordinals for the event from each of these
+ *  structures, walks them in ascending ordinal order and runs the full mask
+ *  check on each, so the first key that matches is the same one a linear scan
+ *  of the eventconf would have found.
+ *
+ *  An index built by {@link #forEvents(Events, Partition)} serves the
+ *  'EventConfDao' instead. It follows {@link Events#findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)}:
+ *  the events in a partition are only candidates for events whose partition
+ *  key equals one of their partition values, the others are filed as above,
+ *  the match order is {@link Events#forEachEventInMatchOrder(Object, EventCallback)}
+ *  and the final check is the event's own matcher.
+ *
+ *  Instances are never modified once built, so any number of threads may call
+ *  {@link #getEvent(org.opennms.netmgt.xml.event.Event)} concurrently.
+ * </pre>
+ */
+public final class EventConfMatchIndex {
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * The keys matched against, null if the events' own matchers are used
+     */
+    private final EventKey[] m_keys;
+    private final org.opennms.netmgt.xml.eventconf.Event[] m_events;
+
+    /**
+     * The partition of the events, null for an index of 'EventKey's
+     */
+    private final Partition m_partition;
+
+    private final Map<String, int[]> m_byUei;
+    private final Map<String, int[]> m_byEid;
+    private final PrefixNode m_eidPrefixes;
+    private final Map<String, int[]> m_byGenericSpecific;
+    private final int[] m_residual;
+
+    /**
+     * Compile the index for the given keys; iteration order of the map is the
+     * match order.
+     */
+    EventConfMatchIndex(final LinkedHashMap<EventKey, org.opennms.netmgt.xml.eventconf.Event> eventMap) {
+        this(eventMap.keySet().toArray(new EventKey[eventMap.size()]), eventMap.values().toArray(new org.opennms.netmgt.xml.eventconf.Event[eventMap.size()]), null);
+    }
+
+    private EventConfMatchIndex(final EventKey[] keys, final org.opennms.netmgt.xml.eventconf.Event[] events, final Partition partition) {
+        m_keys = keys;
+        m_events = events;
+        m_partition = partition;
+
+        final Map<String, List<Integer>> byUei = new HashMap<String, List<Integer>>();
+        final Map<String, List<Integer>> byEid = new HashMap<String, List<Integer>>();
+        final Map<String, List<Integer>> byGenericSpecific = new HashMap<String, List<Integer>>();
+        final MutablePrefixNode eidPrefixes = new MutablePrefixNode();
+        final List<Integer> residual = new ArrayList<Integer>();
+
+        for (int ordinal = 0; ordinal < events.length; ordinal++) {
+            final EventKey key;
+            if (partition == null) {
+                key = keys[ordinal];
+            } else {
+                final List<String> groups = partition.group(events[ordinal]);
+                if (groups != null) {
+                    // never tried for an event outside its partitions
+                    for (final String group : groups) {
+                        addOrdinal(byEid, group, ordinal);
+                    }
+                    continue;
+                }
+                key = new EventKey(events[ordinal]);
+            }
+
+            final List<String> ueis = maskValues(key, EventKey.TAG_UEI);
+            final List<String> eids = (partition == null ? maskValues(key, EventKey.TAG_SNMP_EID) : null);
+            final List<String> generics = maskValues(key, EventKey.TAG_SNMP_GENERIC);
+            final List<String> specifics = maskValues(key, EventKey.TAG_SNMP_SPECIFIC);
+
+            if (allExact(ueis)) {
+                for (final String uei : ueis) {
+                    addOrdinal(byUei, uei, ordinal);
+                }
+            } else if (allExactOrPrefix(eids)) {
+                for (final String eid : eids) {
+                    if (isPrefix(eid)) {
+                        eidPrefixes.add(eid.substring(0, eid.length() - 1), ordinal);
+                    } else {
+                        addOrdinal(byEid, eid, ordinal);
+                    }
+                }
+            } else if (allExact(generics) && allExact(specifics)) {
+                for (final String generic : generics) {
+                    for (final String specific : specifics) {
+                        addOrdinal(byGenericSpecific, genericSpecificKey(generic, specific), ordinal);
+                    }
+                }
+            } else {
+                residual.add(ordinal);
+            }
+        }
+
+        m_byUei = compile(byUei);
+        m_byEid = compile(byEid);
+        m_byGenericSpecific = compile(byGenericSpecific);
+        m_eidPrefixes = eidPrefixes.compile();
+        m_residual = toArray(residual);
+    }
+
+    /**
+     * Compile the index of an event configuration that has been initialized
+     * with the partition.
+     *
+     * @param events the root of the event configuration
+     * @param partition the partition the configuration was initialized with
+     * @return the index
+     */
+    public static EventConfMatchIndex forEvents(final Events events, final Partition partition) {
+        final List<org.opennms.netmgt.xml.eventconf.Event> ordered = events.forEachEventInMatchOrder(new ArrayList<org.opennms.netmgt.xml.eventconf.Event>(), new EventCallback<List<org.opennms.netmgt.xml.eventconf.Event>>() {
+            @Override
+            public List<org.opennms.netmgt.xml.eventconf.Event> process(final List<org.opennms.netmgt.xml.eventconf.Event> accum, final org.opennms.netmgt.xml.eventconf.Event event) {
+                accum.add(event);
+                return accum;
+            }
+        });
+        return new EventConfMatchIndex(null, ordered.toArray(new org.opennms.netmgt.xml.eventconf.Event[ordered.size()]), partition);
+    }
+
+    /**
+     * An empty index
+     */
+    EventConfMatchIndex() {
+        this(new LinkedHashMap<EventKey, org.opennms.netmgt.xml.eventconf.Event>());
+    }
+
+    /**
+     * The number of keys or events in this index
+     *
+     * @return the number of keys or events
+     */
+    public int size() {
+        return m_events.length;
+    }
+
+    /**
+     * Find the first config event, in match order, that matches the event.
+     *
+     * @param event the event to look up
+     * @return the config event or null if none matches
+     */
+    public org.opennms.netmgt.xml.eventconf.Event getEvent(final org.opennms.netmgt.xml.event.Event event) {
+        final List<int[]> candidates = new ArrayList<int[]>(4);
+
+        final String uei = event.getUei();
+        if (uei != null) {
+            addCandidates(candidates, m_byUei.get(uei));
+        }
+
+        if (m_partition != null) {
+            final String group = m_partition.group(event);
+            if (group != null) {
+                addCandidates(candidates, m_byEid.get(group));
+            }
+        } else {
+            final String eid = EventKey.getMaskElementValue(event, EventKey.TAG_SNMP_EID);
+            if (eid != null) {
+                addCandidates(candidates, m_byEid.get(eid));
+                m_eidPrefixes.collect(eid, candidates);
+            }
+        }
+
+        final String generic = EventKey.getMaskElementValue(event, EventKey.TAG_SNMP_GENERIC);
+        final String specific = EventKey.getMaskElementValue(event, EventKey.TAG_SNMP_SPECIFIC);
+        if (generic != null && specific != null) {
+            addCandidates(candidates, m_byGenericSpecific.get(genericSpecificKey(generic, specific)));
+        }
+
+        addCandidates(candidates, m_residual);
+
+        return firstMatch(candidates, event);
+    }
+
+    /**
+     * Walk the sorted candidate lists as one merged, de-duplicated sequence of
+     * ordinals and return the first config event whose key matches.
+     */
+    private org.opennms.netmgt.xml.eventconf.Event firstMatch(final List<int[]> candidates, final org.opennms.netmgt.xml.event.Event event) {
+        final int lists = candidates.size();
+        if (lists == 0) {
+            return null;
+        }
+
+        final int[] positions = new int[lists];
+        int last = -1;
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int i = 0; i < lists; i++) {
+                final int[] list = candidates.get(i);
+                // skip anything already checked by way of another list
+                while (positions[i] < list.length && list[positions[i]] <= last) {
+                    positions[i]++;
+                }
+                if (positions[i] < list.length && list[positions[i]] < next) {
+                    next = list[positions[i]];
+                }
+            }
+
+            if (next == Integer.MAX_VALUE) {
+                return null;
+            }
+
+            if (m_keys == null ? m_events[next].matches(event) : EventConfData.eventMatchesKey(m_keys[next], event)) {
+                return m_events[next];
+            }
+            last = next;
+        }
+    }
+
+    private static void addCandidates(final List<int[]> candidates, final int[] ordinals) {
+        if (ordinals != null && ordinals.length > 0) {
+            candidates.add(ordinals);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> maskValues(final EventKey key, final String name) {
+        return (List<String>) key.get(name);
+    }
+
+    private static boolean isExact(final String value) {
+        return value != null && value.length() > 0 && value.charAt(0) != '~' && value.charAt(value.length() - 1) != '%';
+    }
+
+    private static boolean isPrefix(final String value) {
+        return value != null && value.length() > 0 && value.charAt(0) != '~' && value.charAt(value.length() - 1) == '%';
+    }
+
+    private static boolean allExact(final List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return false;
+        }
+        for (final String value : values) {
+            if (!isExact(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean allExactOrPrefix(final List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return false;
+        }
+        for (final String value : values) {
+            if (!isExact(value) && !isPrefix(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String genericSpecificKey(final String generic, final String specific) {
+        return generic + "/" + specific;
+    }
+
+    private static void addOrdinal(final Map<String, List<Integer>> map, final String key, final int ordinal) {
+        List<Integer> ordinals = map.get(key);
+        if (ordinals == null) {
+            ordinals = new ArrayList<Integer>(1);
+            map.put(key, ordinals);
+        }
+        // a key listing the same value twice is still only one candidate
+        if (ordinals.isEmpty() || ordinals.get(ordinals.size() - 1) != ordinal) {
+            ordinals.add(ordinal);
+        }
+    }
+
+    private static Map<String, int[]> compile(final Map<String, List<Integer>> map) {
+        if (map.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        final Map<String, int[]> compiled = new HashMap<String, int[]>(map.size() * 2);
+        for (final Entry<String, List<Integer>> entry : map.entrySet()) {
+            compiled.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        return compiled;
+    }
+
+    private static int[] toArray(final List<Integer> ordinals) {
+        if (ordinals.isEmpty()) {
+            return EMPTY;
+        }
+        final int[] array = new int[ordinals.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ordinals.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * Character trie of enterprise id prefixes used while building the index.
+     */
+    private static final class MutablePrefixNode {
+        private final Map<Character, MutablePrefixNode> m_children = new HashMap<Character, MutablePrefixNode>();
+        private final List<Integer> m_ordinals = new ArrayList<Integer>(0);
+
+        void add(final String prefix, final int ordinal) {
+            MutablePrefixNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                final Character c = Character.valueOf(prefix.charAt(i));
+                MutablePrefixNode child = node.m_children.get(c);
+                if (child == null) {
+                    child = new MutablePrefixNode();
+                    node.m_children.put(c, child);
+                }
+                node = child;
+            }
+            if (node.m_ordinals.isEmpty() || node.m_ordinals.get(node.m_ordinals.size() - 1) != ordinal) {
+                node.m_ordinals.add(ordinal);
+            }
+        }
+
+        PrefixNode compile() {
+            final char[] labels = new char[m_children.size()];
+            final PrefixNode[] children = new PrefixNode[m_children.size()];
+
+            int i = 0;
+            for (final Character c : new TreeSet<Character>(m_children.keySet())) {
+                labels[i] = c.charValue();
+                children[i] = m_children.get(c).compile();
+                i++;
+            }
+            return new PrefixNode(labels, children, toArray(m_ordinals));
+        }
+    }
+
+    /**
+     * Compiled, read-only trie node; children are kept sorted by label so
+     * lookups are a binary search without boxing.
+     */
+    private static final class PrefixNode {
+        private final char[] m_labels;
+        private final PrefixNode[] m_children;
+        private final int[] m_ordinals;
+
+        PrefixNode(final char[] labels, final PrefixNode[] children, final int[] ordinals) {
+            m_labels = labels;
+            m_children = children;
+            m_ordinals = ordinals;
+        }
+
+        /**
+         * Add the ordinals of every prefix of <code>value</code> (including
+         * the empty prefix) to the candidates.
+         */
+        void collect(final String value, final List<int[]> candidates) {
+            PrefixNode node = this;
+            int i = 0;
+            while (node != null) {
+                addCandidates(candidates, node.m_ordinals);
+                if (i == value.length()) {
+                    break;
+                }
+                node = node.child(value.charAt(i++));
+            }
+        }
+
+        private PrefixNode child(final char c) {
+            int low = 0;
+            int high = m_labels.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (m_labels[mid] < c) {
+                    low = mid + 1;
+                } else if (m_labels[mid] > c) {
+                    high = mid - 1;
+                } else {
+                    return m_children[mid];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -421,6 +421,32 @@ public class Events implements Serializable {
 		
 	}
 
+	/**
+	 * Visits the events in the order {@link #findFirstMatchingEvent(org.opennms.netmgt.xml.event.Event)}
+	 * tries them: the events of this file that are in a partition, then the
+	 * ones that are in none, then the events of each loaded file in turn.
+	 * Only valid after {@link #initialize(Partition)}.
+	 */
+	public <T> T forEachEventInMatchOrder(T initial, EventCallback<T> callback) {
+		T result = initial;
+		for(Event event : m_events) {
+			if (m_partition.group(event) != null) {
+				result = callback.process(result, event);
+			}
+		}
+
+		for(Event event : m_nullPartitionedEvents) {
+			result = callback.process(result, event);
+		}
+
+		for(Entry<String, Events> loadedEvents : m_loadedEventFiles.entrySet()) {
+			Events events = loadedEvents.getValue();
+			result = events.forEachEventInMatchOrder(result, callback);
+		}
+
+		return result;
+	}
+
 	public <T> T forEachEvent(T initial, EventCallback<T> callback) {
 		T result = initial;
 		for(Event event : m_events) {
@@ -64,6 +64,7 @@ public class VacuumdConfigurationTest extends
         vacuumdConfig = new VacuumdConfiguration(1, statements, automations,
                                                  triggers, actions,
                                                  autoEvents, actionEvents);
+        vacuumdConfig.addPartition(new Partition("events", "eventtime", "week", 6));
 
         return Arrays.asList(new Object[][] {
                 {
@@ -78,6 +79,7 @@ public class VacuumdConfigurationTest extends
                         vacuumdConfig,
                         "<VacuumdConfiguration period=\"1\">"
                                 + "<statement transactional=\"false\">INSERT 1000000 INTO bankaccount;</statement>"
+                                + "<partition table=\"events\" column=\"eventtime\" interval=\"week\" keep=\"6\"/>"
                                 + "<automations>"
                                 + "    <automation name=\"testAutomation\" interval=\"3000\""
                                 + " trigger-name=\"testTrigger\" action-name=\"testAction\""
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2012 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2012 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.datablock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.xml.eventconf.Event;
+import org.opennms.netmgt.xml.eventconf.Mask;
+import org.opennms.netmgt.xml.eventconf.Maskelement;
+
+public class EventConfMatchIndexTest {
+
+    private EventConfData m_data;
+
+    private Event m_bgpEstablished;
+    private Event m_bgpAny;
+    private Event m_coldStart;
+    private Event m_regexEnterprise;
+    private Event m_internal;
+
+    @Before
+    public void setUp() {
+        m_bgpEstablished = createTrapEvent("uei.opennms.org/IETF/BGP/traps/bgpEstablished", ".1.3.6.1.2.1.15.7", "6", "1");
+        m_bgpAny = createTrapEvent("uei.opennms.org/IETF/BGP/traps/bgpAny", ".1.3.6.1.2.1.15%", null, null);
+        m_coldStart = createTrapEvent("uei.opennms.org/generic/traps/SNMP_Cold_Start", null, "0", "0");
+        m_regexEnterprise = createTrapEvent("uei.opennms.org/vendor/regex", "~^\\.1\\.3\\.6\\.1\\.4\\.1\\.9\\..*", null, null);
+        m_internal = new Event();
+        m_internal.setUei("uei.opennms.org/nodes/nodeDown");
+
+        List<Event> events = new ArrayList<Event>();
+        events.add(m_bgpEstablished);
+        events.add(m_bgpAny);
+        events.add(m_coldStart);
+        events.add(m_regexEnterprise);
+        events.add(m_internal);
+
+        m_data = new EventConfData();
+        for (Event event : events) {
+            m_data.put(event);
+        }
+    }
+
+    @Test
+    public void testUeiMatch() {
+        assertEquals(m_internal, m_data.getEvent(new EventBuilder("uei.opennms.org/nodes/nodeDown", "test").getEvent()));
+    }
+
+    @Test
+    public void testExactEnterpriseMatchWinsByFileOrder() {
+        assertEquals(m_bgpEstablished, m_data.getEvent(createTrap(".1.3.6.1.2.1.15.7", 6, 1)));
+    }
+
+    @Test
+    public void testPrefixEnterpriseMatch() {
+        assertEquals(m_bgpAny, m_data.getEvent(createTrap(".1.3.6.1.2.1.15.7", 6, 2)));
+        assertEquals(m_bgpAny, m_data.getEvent(createTrap(".1.3.6.1.2.1.15", 6, 1)));
+    }
+
+    @Test
+    public void testGenericSpecificMatch() {
+        assertEquals(m_coldStart, m_data.getEvent(createTrap(".1.3.6.1.4.1.5813", 0, 0)));
+    }
+
+    @Test
+    public void testResidualRegexMatch() {
+        assertEquals(m_regexEnterprise, m_data.getEvent(createTrap(".1.3.6.1.4.1.9.9.41", 6, 1)));
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertNull(m_data.getEvent(createTrap(".1.3.6.1.4.1.5813", 6, 1)));
+    }
+
+    @Test
+    public void testPutInvalidatesIndex() {
+        assertNull(m_data.getEvent(new EventBuilder("uei.opennms.org/test/added", "test").getEvent()));
+
+        Event added = new Event();
+        added.setUei("uei.opennms.org/test/added");
+        m_data.put(added);
+
+        assertEquals(added, m_data.getEvent(new EventBuilder("uei.opennms.org/test/added", "test").getEvent()));
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        // the index must agree with checking every key in order
+        List<org.opennms.netmgt.xml.event.Event> traps = new ArrayList<org.opennms.netmgt.xml.event.Event>();
+        traps.add(createTrap(".1.3.6.1.2.1.15.7", 6, 1));
+        traps.add(createTrap(".1.3.6.1.2.1.15.7", 6, 2));
+        traps.add(createTrap(".1.3.6.1.2.1.1", 0, 0));
+        traps.add(createTrap(".1.3.6.1.4.1.9.1", 6, 5));
+        traps.add(createTrap(".1.3.6.1.4.1.99", 6, 5));
+
+        for (org.opennms.netmgt.xml.event.Event trap : traps) {
+            assertEquals(linearScan(trap), m_data.getEvent(trap));
+        }
+    }
+
+    private Event linearScan(org.opennms.netmgt.xml.event.Event trap) {
+        for (Event event : new Event[] { m_bgpEstablished, m_bgpAny, m_coldStart, m_regexEnterprise, m_internal }) {
+            if (EventConfData.eventMatchesKey(new EventKey(event), trap)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
+    private static org.opennms.netmgt.xml.event.Event createTrap(String enterprise, int generic, int specific) {
+        EventBuilder bldr = new EventBuilder(null, "EventConfMatchIndexTest");
+        bldr.setEnterpriseId(enterprise);
+        bldr.setGeneric(generic);
+        bldr.setSpecific(specific);
+        return bldr.getEvent();
+    }
+
+    private static Event createTrapEvent(String uei, String enterprise, String generic, String specific) {
+        Mask mask = new Mask();
+        if (enterprise != null) {
+            mask.addMaskelement(createMaskelement(EventKey.TAG_SNMP_EID, enterprise));
+        }
+        if (generic != null) {
+            mask.addMaskelement(createMaskelement(EventKey.TAG_SNMP_GENERIC, generic));
+        }
+        if (specific != null) {
+            mask.addMaskelement(createMaskelement(EventKey.TAG_SNMP_SPECIFIC, specific));
+        }
+
+        Event event = new Event();
+        event.setUei(uei);
+        event.setMask(mask);
+        return event;
+    }
+
+    private static Maskelement createMaskelement(String name, String value) {
+        Maskelement maskelement = new Maskelement();
+        maskelement.setMename(name);
+        maskelement.addMevalue(value);
+        return maskelement;
+    }
+}
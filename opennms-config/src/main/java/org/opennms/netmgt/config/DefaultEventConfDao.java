@@ -37,6 +37,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.opennms.core.xml.JaxbUtils;
+import org.opennms.netmgt.eventd.datablock.EventConfMatchIndex;
 import org.opennms.netmgt.xml.eventconf.Event;
 import org.opennms.netmgt.xml.eventconf.Events;
 import org.opennms.netmgt.xml.eventconf.Events.EventCallback;
@@ -62,6 +63,13 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 
 	private Partition m_partition;
 
+	/**
+	 * The index {@link #findByEvent(org.opennms.netmgt.xml.event.Event)} looks
+	 * events up in, replaced as a whole whenever the events change so lookups
+	 * never see a half loaded configuration
+	 */
+	private volatile EventConfMatchIndex m_index;
+
     public String getProgrammaticStoreRelativeUrl() {
 		return m_programmaticStoreRelativePath;
 	}
@@ -160,13 +168,14 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 	}
 
 	@Override
-	public void addEvent(Event event) {
+	public synchronized void addEvent(Event event) {
 		m_events.addEvent(event);
 		m_events.initialize(m_partition);
+		m_index = EventConfMatchIndex.forEvents(m_events, m_partition);
 	}
 
 	@Override
-	public void addEventToProgrammaticStore(Event event) {
+	public synchronized void addEventToProgrammaticStore(Event event) {
 		Events programmaticEvents = m_events.getLoadEventsByFile(m_programmaticStoreRelativePath);
 		if (programmaticEvents == null) {
 			programmaticEvents = new Events();
@@ -175,11 +184,12 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 
 		programmaticEvents.addEvent(event);
 		programmaticEvents.initialize(m_partition);
+		m_index = EventConfMatchIndex.forEvents(m_events, m_partition);
 
 	}
 
 	@Override
-	public boolean removeEventFromProgrammaticStore(Event event) {
+	public synchronized boolean removeEventFromProgrammaticStore(Event event) {
 		Events programmaticEvents = m_events.getLoadEventsByFile(m_programmaticStoreRelativePath);
 		if (programmaticEvents == null) return false;
 
@@ -189,6 +199,7 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 		} else {
 			programmaticEvents.initialize(m_partition);
 		}
+		m_index = EventConfMatchIndex.forEvents(m_events, m_partition);
 		return true;
 
 	}
@@ -211,7 +222,7 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 
 	@Override
 	public Event findByEvent(final org.opennms.netmgt.xml.event.Event matchingEvent) {
-		return m_events.findFirstMatchingEvent(matchingEvent);
+		return m_index.getEvent(matchingEvent);
 	}
 
 	@Override
@@ -233,10 +244,16 @@ public class DefaultEventConfDao implements EventConfDao, InitializingBean {
 			Events events = JaxbUtils.unmarshal(Events.class, m_configResource);
 			events.loadEventFiles(m_configResource);
 			
-			m_partition = new EnterpriseIdPartition();
-			events.initialize(m_partition);
+			Partition partition = new EnterpriseIdPartition();
+			events.initialize(partition);
+
+			// build the index before anything is swapped, lookups keep
+			// using the old configuration until then
+			EventConfMatchIndex index = EventConfMatchIndex.forEvents(events, partition);
 
+			m_partition = partition;
 			m_events = events;
+			m_index = index;
 
 		} catch (Exception e) {
 			throw new DataRetrievalFailureException("Unabled to load " + m_configResource, e);
@@ -601,6 +601,34 @@ public class DiscoveryConfigFactory {
         }
     }
 
+    /**
+     * <p>getPacketsPerSecond</p>
+     *
+     * @return the number of ping packets discovery sends per second
+     */
+    public int getPacketsPerSecond() {
+        getReadLock().lock();
+        try {
+            return getConfiguration().getPacketsPerSecond();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
+    /**
+     * <p>getThreads</p>
+     *
+     * @return the number of threads sending the ping packets
+     */
+    public int getThreads() {
+        getReadLock().lock();
+        try {
+            return getConfiguration().getThreads();
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * <p>getExcludingInterator</p>
      *
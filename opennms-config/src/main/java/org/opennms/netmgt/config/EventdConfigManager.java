@@ -32,6 +32,8 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -41,6 +43,7 @@ import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.xml.CastorUtils;
 import org.opennms.netmgt.config.eventd.EventdConfiguration;
+import org.opennms.netmgt.config.eventd.ListenerQueue;
 
 /**
  * <p>EventdConfigManager class.</p>
@@ -182,6 +185,20 @@ public class EventdConfigManager {
         }
     }
 
+    /**
+     * Return the queues configured for individual event listeners.
+     *
+     * @return the listener queues, possibly empty
+     */
+    public List<ListenerQueue> getListenerQueues() {
+        try {
+            getReadLock().lock();
+            return new ArrayList<ListenerQueue>(m_config.getListenerQueueCollection());
+        } finally {
+            getReadLock().unlock();
+        }
+    }
+
     /**
      * Return string indicating if timeout is to be set on the socket.
      *
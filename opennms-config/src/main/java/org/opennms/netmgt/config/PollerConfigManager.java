@@ -41,10 +41,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -150,10 +152,11 @@ abstract public class PollerConfigManager implements PollerConfig {
      */
     private Map<String, List<String>> m_urlIPMap;
     /**
-     * A mapping of the configured package to a list of IPs selected via filter
-     * rules, so as to avoid repetitive database access.
+     * A mapping of the configured package to the set of IPs selected via filter
+     * rules, so as to avoid repetitive database access. Sets rather than lists
+     * since pollerd looks up every service against every package at startup.
      */
-    private AtomicReference<Map<Package, List<InetAddress>>> m_pkgIpMap = new AtomicReference<Map<Package, List<InetAddress>>>();;
+    private AtomicReference<Map<Package, Set<InetAddress>>> m_pkgIpMap = new AtomicReference<Map<Package, Set<InetAddress>>>();
     /**
      * A mapp of service names to service monitors. Constructed based on data in
      * the configuration file.
@@ -440,7 +443,7 @@ abstract public class PollerConfigManager implements PollerConfig {
         getReadLock().lock();
         
         try {
-            Map<Package, List<InetAddress>> pkgIpMap = new HashMap<Package, List<InetAddress>>();
+            Map<Package, Set<InetAddress>> pkgIpMap = new HashMap<Package, Set<InetAddress>>();
             
             for(final Package pkg : packages()) {
         
@@ -452,7 +455,7 @@ abstract public class PollerConfigManager implements PollerConfig {
                     LOG.debug("createPackageIpMap: package {}: ipList size = {}", pkg.getName(), ipList.size());
         
                     if (ipList.size() > 0) {
-                        pkgIpMap.put(pkg, ipList);
+                        pkgIpMap.put(pkg, new HashSet<InetAddress>(ipList));
                     }
                     
                 } catch (final Throwable t) {
@@ -517,7 +520,7 @@ abstract public class PollerConfigManager implements PollerConfig {
         final InetAddress ifaceAddr = addr(iface);
     
         // get list of IPs in this package
-        final List<InetAddress> ipList = m_pkgIpMap.get().get(pkg);
+        final Set<InetAddress> ipList = m_pkgIpMap.get().get(pkg);
         if (ipList != null && ipList.size() > 0) {
 			filterPassed = ipList.contains(ifaceAddr);
         }
@@ -42,6 +42,7 @@ import org.opennms.netmgt.config.vacuumd.Action;
 import org.opennms.netmgt.config.vacuumd.ActionEvent;
 import org.opennms.netmgt.config.vacuumd.AutoEvent;
 import org.opennms.netmgt.config.vacuumd.Automation;
+import org.opennms.netmgt.config.vacuumd.Partition;
 import org.opennms.netmgt.config.vacuumd.Statement;
 import org.opennms.netmgt.config.vacuumd.Trigger;
 import org.opennms.netmgt.config.vacuumd.VacuumdConfiguration;
@@ -310,6 +311,15 @@ public final class VacuumdConfigFactory {
     	return m_config.getStatementCollection();
     }
 
+    /**
+     * <p>getPartitions</p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public synchronized List<Partition> getPartitions() {
+        return m_config.getPartitionCollection();
+    }
+
     /**
      * <p>getActionEvent</p>
      *
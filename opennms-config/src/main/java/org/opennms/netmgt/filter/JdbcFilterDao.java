@@ -37,13 +37,20 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -61,6 +68,17 @@ import org.springframework.util.Assert;
 /**
  * <p>JdbcFilterDao class.</p>
  *
+ * <p>If a cache size is set and something keeps the cache up to date by
+ * calling {@link #invalidateNode(int)} and {@link #invalidateAll()} when
+ * nodes, interfaces, services, categories or assets change, the active
+ * addresses matching a rule are kept in memory, and
+ * {@link #isValid(String, String)}, {@link #isRuleMatching(String)} and
+ * {@link #getActiveIPAddressList(String)} are answered without querying the
+ * database. A change to a node only re-evaluates the rules for that node.
+ * Every rule is evaluated again from scratch once the cache TTL has
+ * passed, which bounds how long a change that was not reported can go
+ * unnoticed.</p>
+ *
  * @author <a href="mailto:dj@opennms.org">DJ Gregor</a>
  * @version $Id: $
  */
@@ -75,6 +93,31 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
 	private DataSource m_dataSource;
     private DatabaseSchemaConfigFactory m_databaseSchemaConfigFactory;
 
+    /**
+     * The active addresses matching a rule, by node
+     */
+    private static class CachedRule {
+        private final Map<Integer, Set<InetAddress>> m_addressesByNode = new HashMap<Integer, Set<InetAddress>>();
+        // written by invalidateNode() without waiting for a running evaluation
+        private final Set<Integer> m_dirtyNodes = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        private Set<InetAddress> m_addresses = null;
+        private long m_buildTime = 0;
+    }
+
+    private int m_cacheSize = 0;
+    private long m_cacheTtl = 300000;
+    private volatile boolean m_cacheInvalidationEnabled = false;
+
+    /**
+     * Cached rules in access order, least recently used first
+     */
+    private final LinkedHashMap<String, CachedRule> m_ruleCache = new LinkedHashMap<String, CachedRule>(16, 0.75f, true);
+
+    private final AtomicLong m_cacheHits = new AtomicLong(0);
+    private final AtomicLong m_cacheMisses = new AtomicLong(0);
+    private final AtomicLong m_cacheRefreshes = new AtomicLong(0);
+    private final AtomicLong m_cacheRebuildTime = new AtomicLong(0);
+
     /**
      * <p>setDataSource</p>
      *
@@ -111,6 +154,65 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
         return m_databaseSchemaConfigFactory;
     }
 
+    /**
+     * <p>setCacheSize</p>
+     *
+     * @param cacheSize the number of rules to keep in memory, 0 to disable the cache
+     */
+    public void setCacheSize(final int cacheSize) {
+        m_cacheSize = cacheSize;
+    }
+
+    /**
+     * <p>getCacheSize</p>
+     *
+     * @return a int.
+     */
+    public int getCacheSize() {
+        return m_cacheSize;
+    }
+
+    /**
+     * <p>setCacheTtl</p>
+     *
+     * @param cacheTtl milliseconds after which a cached rule is evaluated again from scratch
+     */
+    public void setCacheTtl(final long cacheTtl) {
+        m_cacheTtl = cacheTtl;
+    }
+
+    /**
+     * <p>getCacheTtl</p>
+     *
+     * @return a long.
+     */
+    public long getCacheTtl() {
+        return m_cacheTtl;
+    }
+
+    /**
+     * Rules are only answered from memory while something is reporting
+     * changes through {@link #invalidateNode(int)} and
+     * {@link #invalidateAll()}, so this must be set by whatever does that.
+     *
+     * @param enabled a boolean.
+     */
+    public void setCacheInvalidationEnabled(final boolean enabled) {
+        m_cacheInvalidationEnabled = enabled;
+        if (!enabled) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * <p>isCacheInvalidationEnabled</p>
+     *
+     * @return a boolean.
+     */
+    public boolean isCacheInvalidationEnabled() {
+        return m_cacheInvalidationEnabled;
+    }
+
     /**
      * <p>afterPropertiesSet</p>
      */
@@ -240,6 +342,11 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
      */
     @Override
     public List<InetAddress> getActiveIPAddressList(final String rule) throws FilterParseException {
+        if (isCaching(rule)) {
+            final List<InetAddress> resultList = new ArrayList<InetAddress>(getCachedAddresses(rule));
+            Collections.sort(resultList, new InetAddressComparator());
+            return resultList;
+        }
     	return getIPAddressList(rule, true);
     }
 
@@ -318,6 +425,8 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
     public boolean isValid(final String addr, final String rule) throws FilterParseException {
         if (rule.length() == 0) {
             return true;
+        } else if (isCaching(rule)) {
+            return getCachedAddresses(rule).contains(addr(addr));
         } else {
             /*
              * see if the ip address is contained in the list that the
@@ -335,6 +444,11 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
 
         LOG.debug("Filter.isRuleMatching({})", rule);
 
+        // the cache only holds active interfaces, so only a match is conclusive
+        if (isCaching(rule) && !getCachedAddresses(rule).isEmpty()) {
+            return true;
+        }
+
         final DBUtils d = new DBUtils(getClass());
 
         // get the database connection
@@ -381,6 +495,224 @@ public class JdbcFilterDao implements FilterDao, InitializingBean {
         isRuleMatching(rule);
     }
 
+    /**
+     * Re-evaluate every cached rule for the node the next time it is used.
+     *
+     * @param nodeId the node that was added, changed or deleted
+     */
+    public void invalidateNode(final int nodeId) {
+        synchronized (m_ruleCache) {
+            for (final CachedRule cachedRule : m_ruleCache.values()) {
+                cachedRule.m_dirtyNodes.add(nodeId);
+            }
+        }
+    }
+
+    /**
+     * Drop every cached rule.
+     */
+    public void invalidateAll() {
+        synchronized (m_ruleCache) {
+            m_ruleCache.clear();
+        }
+    }
+
+    /**
+     * <p>getCacheHits</p>
+     *
+     * @return the number of rule lookups answered from memory
+     */
+    public long getCacheHits() {
+        return m_cacheHits.get();
+    }
+
+    /**
+     * <p>getCacheMisses</p>
+     *
+     * @return the number of rule lookups that had to evaluate the rule from scratch
+     */
+    public long getCacheMisses() {
+        return m_cacheMisses.get();
+    }
+
+    /**
+     * <p>getCacheRefreshes</p>
+     *
+     * @return the number of rule lookups that re-evaluated the rule for changed nodes only
+     */
+    public long getCacheRefreshes() {
+        return m_cacheRefreshes.get();
+    }
+
+    /**
+     * <p>getCacheRebuildTime</p>
+     *
+     * @return the total number of milliseconds spent evaluating cached rules
+     */
+    public long getCacheRebuildTime() {
+        return m_cacheRebuildTime.get();
+    }
+
+    /**
+     * <p>getCachedRuleCount</p>
+     *
+     * @return a int.
+     */
+    public int getCachedRuleCount() {
+        synchronized (m_ruleCache) {
+            return m_ruleCache.size();
+        }
+    }
+
+    private boolean isCaching(final String rule) {
+        return m_cacheSize > 0 && m_cacheInvalidationEnabled && rule != null && rule.length() > 0;
+    }
+
+    /**
+     * Return the active addresses matching the rule, evaluating it for
+     * every node or just the changed nodes if necessary.
+     */
+    private Set<InetAddress> getCachedAddresses(final String rule) throws FilterParseException {
+        CachedRule cachedRule;
+        synchronized (m_ruleCache) {
+            cachedRule = m_ruleCache.get(rule);
+            if (cachedRule == null) {
+                cachedRule = new CachedRule();
+                m_ruleCache.put(rule, cachedRule);
+                for (final Iterator<CachedRule> it = m_ruleCache.values().iterator(); it.hasNext() && m_ruleCache.size() > m_cacheSize; ) {
+                    it.next();
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized (cachedRule) {
+            final long now = System.currentTimeMillis();
+            if (cachedRule.m_addresses == null || (m_cacheTtl > 0 && now - cachedRule.m_buildTime > m_cacheTtl)) {
+                m_cacheMisses.incrementAndGet();
+                cachedRule.m_addressesByNode.clear();
+                cachedRule.m_dirtyNodes.clear();
+                loadActiveAddresses(rule, null, cachedRule.m_addressesByNode);
+                cachedRule.m_addresses = union(cachedRule.m_addressesByNode);
+                cachedRule.m_buildTime = now;
+                m_cacheRebuildTime.addAndGet(System.currentTimeMillis() - now);
+                LOG.debug("Filter.getCachedAddresses({}): evaluated rule in {}ms", rule, System.currentTimeMillis() - now);
+            } else if (!cachedRule.m_dirtyNodes.isEmpty()) {
+                m_cacheRefreshes.incrementAndGet();
+                // nodes that change again while the rule is evaluated are
+                // marked dirty again and picked up by the next lookup
+                final List<Integer> dirtyNodes = new ArrayList<Integer>(cachedRule.m_dirtyNodes);
+                cachedRule.m_dirtyNodes.removeAll(dirtyNodes);
+                final Map<Integer, Set<InetAddress>> changed = new HashMap<Integer, Set<InetAddress>>();
+                try {
+                    loadActiveAddresses(rule, dirtyNodes, changed);
+                } catch (final RuntimeException e) {
+                    cachedRule.m_dirtyNodes.addAll(dirtyNodes);
+                    throw e;
+                }
+                for (final Integer nodeId : dirtyNodes) {
+                    final Set<InetAddress> addresses = changed.get(nodeId);
+                    if (addresses == null) {
+                        cachedRule.m_addressesByNode.remove(nodeId);
+                    } else {
+                        cachedRule.m_addressesByNode.put(nodeId, addresses);
+                    }
+                }
+                cachedRule.m_addresses = union(cachedRule.m_addressesByNode);
+                m_cacheRebuildTime.addAndGet(System.currentTimeMillis() - now);
+                LOG.debug("Filter.getCachedAddresses({}): re-evaluated rule for changed nodes in {}ms", rule, System.currentTimeMillis() - now);
+            } else {
+                m_cacheHits.incrementAndGet();
+            }
+            return cachedRule.m_addresses;
+        }
+    }
+
+    private static Set<InetAddress> union(final Map<Integer, Set<InetAddress>> addressesByNode) {
+        final Set<InetAddress> addresses = new HashSet<InetAddress>();
+        for (final Set<InetAddress> nodeAddresses : addressesByNode.values()) {
+            addresses.addAll(nodeAddresses);
+        }
+        return Collections.unmodifiableSet(addresses);
+    }
+
+    /**
+     * Run the rule, restricted to the given nodes if they are not null, and
+     * add the active addresses it returns to the map by node.
+     */
+    private void loadActiveAddresses(final String rule, final Collection<Integer> nodeIds, final Map<Integer, Set<InetAddress>> addressesByNode) throws FilterParseException {
+        final DBUtils d = new DBUtils(getClass());
+        try {
+            final String sqlString = getActiveInterfaceWithNodeStatement(rule, nodeIds);
+            LOG.debug("Filter.loadActiveAddresses({}): SQL statement: {}", rule, sqlString);
+
+            final Connection conn = getDataSource().getConnection();
+            d.watch(conn);
+            final Statement stmt = conn.createStatement();
+            d.watch(stmt);
+            final ResultSet rset = stmt.executeQuery(sqlString);
+            d.watch(rset);
+
+            while (rset.next()) {
+                final InetAddress ipaddr = addr(rset.getString(1));
+                if (ipaddr != null) {
+                    final Integer nodeId = Integer.valueOf(rset.getInt(2));
+                    Set<InetAddress> addresses = addressesByNode.get(nodeId);
+                    if (addresses == null) {
+                        addresses = new HashSet<InetAddress>();
+                        addressesByNode.put(nodeId, addresses);
+                    }
+                    addresses.add(ipaddr);
+                }
+            }
+        } catch (final FilterParseException e) {
+            LOG.warn("Filter Parse Exception occurred getting IP List.", e);
+            throw new FilterParseException("Filter Parse Exception occurred getting IP List: " + e.getLocalizedMessage(), e);
+        } catch (final SQLException e) {
+            LOG.warn("SQL Exception occurred getting IP List.", e);
+            throw new FilterParseException("SQL Exception occurred getting IP List: " + e.getLocalizedMessage(), e);
+        } finally {
+            d.cleanUp();
+        }
+    }
+
+    /**
+     * Return a statement that selects the address and node ID of every
+     * active (not deleted) interface matching a non-empty rule, optionally
+     * restricted to the given nodes.
+     */
+    private String getActiveInterfaceWithNodeStatement(final String rule, final Collection<Integer> nodeIds) throws FilterParseException {
+        final List<Table> tables = new ArrayList<Table>();
+
+        final StringBuffer columns = new StringBuffer();
+        columns.append(addColumn(tables, "ipAddr"));
+        final String nodeIdColumn = addColumn(tables, "nodeID");
+        columns.append(", " + nodeIdColumn);
+
+        // parseRule() returns "WHERE ..." for a non-empty rule
+        final String ruleWhere = parseRule(tables, rule);
+        final StringBuffer where = new StringBuffer("WHERE (" + ruleWhere.substring("WHERE ".length()) + ")");
+        if (!ruleWhere.contains("isManaged")) {
+            where.append(" AND (ipInterface.isManaged != 'D' or ipInterface.isManaged IS NULL)");
+        }
+        if (nodeIds != null) {
+            where.append(" AND " + nodeIdColumn + " IN (");
+            boolean first = true;
+            for (final Integer nodeId : nodeIds) {
+                if (!first) {
+                    where.append(", ");
+                }
+                where.append(nodeId);
+                first = false;
+            }
+            where.append(")");
+        }
+
+        final String from = m_databaseSchemaConfigFactory.constructJoinExprForTables(tables);
+
+        return "SELECT DISTINCT " + columns.toString() + " " + from + " " + where;
+    }
+
     /**
      * <p>getNodeMappingStatement</p>
      *
@@ -311,6 +311,51 @@ public class EventconfFactoryTest {
         assertEquals("uei.opennms.org/traps/eventTrap", eventConf.getUei());
     }
 
+    @Test
+    public void testFindByEventMatchesEventsLookup() throws Exception {
+        final Events rootEvents = m_eventConfDao.getRootEvents();
+        int checked = 0;
+        for (Event eventConf : m_eventConfDao.getAllEvents()) {
+            final List<String> ids = eventConf.getMaskElementValues("id");
+            final List<String> generics = eventConf.getMaskElementValues("generic");
+            final List<String> specifics = eventConf.getMaskElementValues("specific");
+
+            final EventBuilder bldr;
+            if (ids == null) {
+                bldr = new EventBuilder(eventConf.getUei(), "testFindByEventMatchesEventsLookup");
+            } else if (generics != null && specifics != null && generics.get(0).matches("\\d+") && specifics.get(0).matches("\\d+")) {
+                bldr = new EventBuilder(null, "trapd");
+                bldr.setEnterpriseId(ids.get(0));
+                bldr.setGeneric(Integer.parseInt(generics.get(0)));
+                bldr.setSpecific(Integer.parseInt(specifics.get(0)));
+            } else {
+                continue;
+            }
+
+            final org.opennms.netmgt.xml.event.Event event = bldr.getEvent();
+            assertTrue("index lookup differs for " + eventConf.getUei(), rootEvents.findFirstMatchingEvent(event) == m_eventConfDao.findByEvent(event));
+            checked++;
+        }
+        assertTrue("no events checked", checked > 100);
+    }
+
+    @Test
+    public void testFindByEventAfterAddEvent() {
+        final String newUEI = "uei.opennms.org/custom/newTestUEI";
+        assertNull(m_eventConfDao.findByEvent(new EventBuilder(newUEI, "testFindByEventAfterAddEvent").getEvent()));
+
+        Event eventConf = new Event();
+        eventConf.setUei(newUEI);
+        eventConf.setEventLabel("A new test event");
+        m_eventConfDao.addEvent(eventConf);
+
+        assertEquals(eventConf, m_eventConfDao.findByEvent(new EventBuilder(newUEI, "testFindByEventAfterAddEvent").getEvent()));
+
+        // the reload drops the event that was never saved
+        m_eventConfDao.reload();
+        assertNull(m_eventConfDao.findByEvent(new EventBuilder(newUEI, "testFindByEventAfterAddEvent").getEvent()));
+    }
+
     @Test
     public void testFindByEventUnknown() {
         EventBuilder bldr = new EventBuilder(unknownUEI1, "testFindByEventUnknown");
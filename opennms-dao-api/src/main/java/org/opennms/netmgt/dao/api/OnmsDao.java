@@ -67,6 +67,14 @@ public interface OnmsDao<T, K extends Serializable> {
      */
     List<T> findMatching(OnmsCriteria criteria);
 
+    /**
+     * Hands the entities matching the criteria to the callback as they are
+     * read, without holding the whole result in memory.
+     *
+     * @return the number of entities processed
+     */
+    int forEachMatching(Criteria criteria, EntityCallback<T> callback);
+
     int countMatching(final Criteria onmsCrit);
 
     /**
@@ -14,6 +14,7 @@ import org.opennms.netmgt.dao.api.AlarmDao;
 import org.opennms.netmgt.dao.api.AssetRecordDao;
 import org.opennms.netmgt.dao.api.CategoryDao;
 import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.EntityCallback;
 import org.opennms.netmgt.dao.api.EventDao;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.dao.api.MonitoredServiceDao;
@@ -115,6 +116,16 @@ public abstract class AbstractMockDao<T, K extends Serializable> implements Onms
         throw new UnsupportedOperationException("Not yet implemented!");
     }
 
+    @Override
+    public int forEachMatching(final Criteria criteria, final EntityCallback<T> callback) {
+        LOG.debug("forEachMatching({})", criteria);
+        final List<T> matched = findMatching(criteria);
+        for (final T entity : matched) {
+            callback.process(entity);
+        }
+        return matched.size();
+    }
+
     @Override
     public int countMatching(final Criteria onmsCrit) {
         LOG.debug("countMatching({})", onmsCrit);
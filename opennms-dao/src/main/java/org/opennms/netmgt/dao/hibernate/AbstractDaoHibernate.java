@@ -33,9 +33,12 @@ import org.hibernate.EntityMode;
 import org.hibernate.HibernateException;
 import org.hibernate.LockMode;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.criterion.Projections;
 import org.hibernate.metadata.ClassMetadata;
+import org.opennms.netmgt.dao.api.EntityCallback;
 import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.model.OnmsCriteria;
 import org.slf4j.Logger;
@@ -62,6 +65,12 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
     Class<T> m_entityClass;
     private String m_lockName;
     private final HibernateCriteriaConverter m_criteriaConverter = new HibernateCriteriaConverter();
+
+    /**
+     * Number of rows the JDBC driver reads at a time when scrolling through
+     * the result of {@link #forEachMatching(org.opennms.core.criteria.Criteria, EntityCallback)}
+     */
+    private static final int SCROLL_FETCH_SIZE = 500;
     
     public AbstractDaoHibernate(final Class<T> entityClass) {
         super();
@@ -290,6 +299,36 @@ public abstract class AbstractDaoHibernate<T, K extends Serializable> extends Hi
         return getHibernateTemplate().executeFind(callback);
     }
     
+    /** {@inheritDoc} */
+    @Override
+    public int forEachMatching(final org.opennms.core.criteria.Criteria criteria, final EntityCallback<T> entityCallback) throws DataAccessException {
+        final HibernateCallback<Integer> callback = new HibernateCallback<Integer>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            public Integer doInHibernate(final Session session) throws HibernateException, SQLException {
+                LOG.debug("criteria = {}", criteria);
+                final Criteria hibernateCriteria = m_criteriaConverter.convert(criteria, session);
+                hibernateCriteria.setFetchSize(SCROLL_FETCH_SIZE);
+                final ScrollableResults results = hibernateCriteria.scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    int count = 0;
+                    while (results.next()) {
+                        final T entity = (T)results.get(0);
+                        entityCallback.process(entity);
+                        // keep the session from growing with the result
+                        session.evict(entity);
+                        count++;
+                    }
+                    return count;
+                } finally {
+                    results.close();
+                }
+            }
+        };
+        final Integer retval = getHibernateTemplate().execute(callback);
+        return retval == null ? 0 : retval.intValue();
+    }
+
     /** {@inheritDoc} */
     @Override
     public int countMatching(final org.opennms.core.criteria.Criteria criteria) throws DataAccessException {
@@ -68,6 +68,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 
@@ -272,6 +273,46 @@ public class JdbcFilterDaoTest implements InitializingBean {
         });
     }
 
+    @Test
+    @JUnitTemporaryDatabase // This test manages its own transactions so use a fresh database
+    public void testCachedIsValid() throws Exception {
+        final String rule = "ipaddr == '192.168.1.1'";
+        m_dao.setCacheSize(10);
+        m_dao.setCacheTtl(0);
+        m_dao.setCacheInvalidationEnabled(true);
+
+        assertTrue(m_dao.isValid("192.168.1.1", rule));
+        assertTrue(m_dao.isRuleMatching(rule));
+        assertEquals(1, m_dao.getActiveIPAddressList(rule).size());
+        assertEquals(1, m_dao.getCacheMisses());
+        assertEquals(2, m_dao.getCacheHits());
+
+        final int nodeId = m_transTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                final OnmsIpInterface iface = m_interfaceDao.findByIpAddress("192.168.1.1").get(0);
+                iface.setIsManaged("D");
+                m_interfaceDao.save(iface);
+                m_interfaceDao.flush();
+                return iface.getNode().getId();
+            }
+        });
+
+        // the change has not been reported yet
+        assertTrue(m_dao.isValid("192.168.1.1", rule));
+
+        m_dao.invalidateNode(nodeId);
+        assertFalse(m_dao.isValid("192.168.1.1", rule));
+        assertEquals(0, m_dao.getActiveIPAddressList(rule).size());
+        assertEquals(1, m_dao.getCacheMisses());
+        assertEquals(1, m_dao.getCacheRefreshes());
+
+        m_dao.invalidateAll();
+        assertFalse(m_dao.isValid("192.168.1.1", rule));
+        assertEquals(2, m_dao.getCacheMisses());
+        assertEquals(1, m_dao.getCachedRuleCount());
+    }
+
     @Test
     @Transactional
     public void testIsValid() throws Exception {
@@ -64,7 +64,10 @@ import org.opennms.core.schema.Migration;
 import org.opennms.core.schema.Migrator;
 import org.opennms.core.utils.ConfigFileConstants;
 import org.opennms.core.utils.ProcessExec;
+import org.opennms.core.xml.JaxbUtils;
 import org.opennms.netmgt.config.opennmsDataSources.JdbcDataSource;
+import org.opennms.netmgt.config.vacuumd.Partition;
+import org.opennms.netmgt.config.vacuumd.VacuumdConfiguration;
 import org.opennms.netmgt.icmp.Pinger;
 import org.opennms.netmgt.icmp.PingerFactory;
 import org.springframework.context.support.GenericApplicationContext;
@@ -105,6 +108,7 @@ public class Installer {
     boolean m_do_not_revert = false;
     boolean m_remove_database = false;
     boolean m_skip_upgrade_tools = false;
+    boolean m_partition_tables = false;
 
     String m_etc_dir = "";
     String m_tomcat_conf = null;
@@ -122,7 +126,7 @@ public class Installer {
 
     Properties m_properties = null;
 
-    String m_required_options = "At least one of -d, -i, -s, -y, -C, or -T is required.";
+    String m_required_options = "At least one of -d, -i, -s, -t, -y, -C, or -T is required.";
 
     private InstallerDb m_installerDb = new InstallerDb();
 
@@ -147,7 +151,7 @@ public class Installer {
         loadProperties();
         parseArguments(argv);
 
-        final boolean doDatabase = (m_update_database || m_do_inserts || m_update_iplike || m_update_unicode || m_fix_constraint);
+        final boolean doDatabase = (m_update_database || m_do_inserts || m_update_iplike || m_update_unicode || m_fix_constraint || m_partition_tables);
 
         if (!doDatabase && m_tomcat_conf == null && !m_install_webapp && m_library_search_path == null) {
             usage(options, m_commandLine, "Nothing to do.  Use -h for help.", null);
@@ -253,12 +257,19 @@ public class Installer {
                 m_migration.setAccessor(new ExistingResourceAccessor(resource));
                 m_migrator.migrate(m_migration);
             }
+
+            m_installerDb.checkPartitionedTables();
+            m_installerDb.disconnect();
         }
 
         if (m_update_unicode) {
             System.out.println("WARNING: the -U option is deprecated, it does nothing now");
         }
 
+        if (m_partition_tables) {
+            partitionTables();
+        }
+
         if (m_do_vacuum) {
             m_installerDb.vacuumDatabase(m_do_full_vacuum);
         }
@@ -297,6 +308,21 @@ public class Installer {
         }
     }
 
+    private void partitionTables() throws Exception {
+        final File cfgFile = ConfigFileConstants.getFile(ConfigFileConstants.VACUUMD_CONFIG_FILE_NAME);
+        final VacuumdConfiguration config = JaxbUtils.unmarshal(VacuumdConfiguration.class, cfgFile);
+
+        if (config.getPartitionCollection().isEmpty()) {
+            System.out.println("- no partitioned tables configured in " + cfgFile.getName());
+            return;
+        }
+
+        for (final Partition partition : config.getPartitionCollection()) {
+            m_installerDb.partitionTable(partition.getTable(), partition.getColumn(), partition.getInterval(), partition.getPremake());
+        }
+        m_installerDb.disconnect();
+    }
+
 	private void checkIPv6() {
 		final IPv6Validator v6Validator = new IPv6Validator();
         if (!v6Validator.isPlatformIPv6Ready()) {
@@ -496,6 +522,8 @@ public class Installer {
                           "drop rows that match the constraint specified in -C, instead of fixing them");
         options.addOption("e", "extended-repairs", false,
                           "enable extended repairs of old schemas");
+        options.addOption("t", "partition-tables", false,
+                          "partition the tables listed in vacuumd-configuration.xml by time");
         // tomcat-related options
         options.addOption("y", "do-webapp", false,
                           "install web application (see '-w')");
@@ -580,6 +608,7 @@ public class Installer {
         m_fix_constraint_remove_rows = m_commandLine.hasOption("X");
         m_install_webapp = m_commandLine.hasOption("y");
         m_skip_upgrade_tools = m_commandLine.hasOption("S");
+        m_partition_tables = m_commandLine.hasOption("t");
 
         if (m_commandLine.getArgList().size() > 0) {
             usage(options, m_commandLine, "Unknown command-line arguments: "
@@ -258,6 +258,21 @@ public class EventConstants {
      */
     public static final String SERVICE_UNMANAGED_EVENT_UEI = "uei.opennms.org/nodes/serviceUnmanaged";
 
+    /**
+     * The service managed event UEI.
+     */
+    public static final String SERVICE_MANAGED_EVENT_UEI = "uei.opennms.org/internal/serviceManaged";
+
+    /**
+     * The interface managed event UEI.
+     */
+    public static final String INTERFACE_MANAGED_EVENT_UEI = "uei.opennms.org/internal/interfaceManaged";
+
+    /**
+     * The interface unmanaged event UEI.
+     */
+    public static final String INTERFACE_UNMANAGED_EVENT_UEI = "uei.opennms.org/internal/interfaceUnmanaged";
+
     /**
      * The interface down event UEI.
      */
@@ -55,6 +55,7 @@ import javax.xml.bind.annotation.XmlTransient;
 import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.Persister;
 import org.hibernate.annotations.Type;
 import org.opennms.core.xml.bind.InetAddressXmlAdapter;
 import org.springframework.core.style.ToStringCreator;
@@ -65,6 +66,7 @@ import org.springframework.core.style.ToStringCreator;
 @XmlRootElement(name="event")
 @Entity
 @Table(name="events")
+@Persister(impl=PartitionedEntityPersister.class)
 @Filter(name=FilterManager.AUTH_FILTER_NAME, condition="exists (select distinct x.nodeid from node x join category_node cn on x.nodeid = cn.nodeid join category_group cg on cn.categoryId = cg.categoryId where x.nodeid = nodeid and cg.groupId in (:userGroups))")
 public class OnmsEvent extends OnmsEntity implements Serializable {
 
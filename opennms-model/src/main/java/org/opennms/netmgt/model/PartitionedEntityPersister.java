@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.model;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.access.EntityRegionAccessStrategy;
+import org.hibernate.connection.ConnectionProvider;
+import org.hibernate.engine.ExecuteUpdateResultCheckStyle;
+import org.hibernate.engine.Mapping;
+import org.hibernate.engine.SessionFactoryImplementor;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.persister.entity.SingleTableEntityPersister;
+import org.opennms.core.db.TablePartitioner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persister for the entities whose tables can be partitioned by time, see
+ * {@link TablePartitioner}. The insert trigger of a partitioned table stores
+ * the row in a partition instead of the table itself, so the insert reports
+ * 0 rows. If the table is partitioned when the session factory is built,
+ * this persister does not check the row count of inserts. Updates and
+ * deletes are checked as usual, they see the rows of the partitions.
+ */
+public class PartitionedEntityPersister extends SingleTableEntityPersister {
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedEntityPersister.class);
+
+    public PartitionedEntityPersister(final PersistentClass persistentClass, final EntityRegionAccessStrategy cacheAccessStrategy, final SessionFactoryImplementor factory, final Mapping mapping) throws HibernateException {
+        super(persistentClass, cacheAccessStrategy, factory, mapping);
+        if (isPartitioned(factory.getConnectionProvider(), getTableName())) {
+            LOG.info("Table {} is partitioned, not checking the row count of inserts of {}", getTableName(), getEntityName());
+            Arrays.fill(insertResultCheckStyles, ExecuteUpdateResultCheckStyle.NONE);
+        }
+    }
+
+    private static boolean isPartitioned(final ConnectionProvider connectionProvider, final String tableName) {
+        final String table = tableName.substring(tableName.lastIndexOf('.') + 1);
+        Connection connection = null;
+        try {
+            connection = connectionProvider.getConnection();
+            return new TablePartitioner(connection).isPartitioned(table);
+        } catch (final SQLException e) {
+            // an insert that fails its row count check is worse than one that isn't checked
+            LOG.warn("Could not check whether table {} is partitioned, not checking the row count of its inserts", table, e);
+            return true;
+        } finally {
+            if (connection != null) {
+                try {
+                    connectionProvider.closeConnection(connection);
+                } catch (final SQLException e) {
+                    LOG.debug("Failed to close the connection", e);
+                }
+            }
+        }
+    }
+}
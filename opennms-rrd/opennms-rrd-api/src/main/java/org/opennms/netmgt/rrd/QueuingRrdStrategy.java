@@ -31,16 +31,16 @@ package org.opennms.netmgt.rrd;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,7 +54,9 @@ import org.slf4j.LoggerFactory;
  *
  * This RrdStrategy implementation enqueues the create and update operations on
  * a per file basis and maintains a set of threads that process enqueued work
- * file by file.
+ * file by file. Files are hashed to independent shards (see
+ * RrdOperationQueue) so that enqueuing and dequeuing for different files does
+ * not contend on a single lock.
  *
  * If the I/O system can keep up with the collection threads while performing
  * only a single update per file then eventually all the data is processed and
@@ -82,6 +84,10 @@ import org.slf4j.LoggerFactory;
  * org.opennms.rrd.queuing.writethreads: (default 2) The number of rrd write
  * threads that process the queue
  *
+ * org.opennms.rrd.queuing.shards: (default 0) The number of independent
+ * queues that files are hashed to. Each shard has its own lock and its own
+ * write threads. 0 means one shard per write thread.
+ *
  * org.opennms.rrd.queuing.queueCreates: (default false) indicates whether rrd
  * file creates should be queued or processed synchronously
  *
@@ -109,7 +115,7 @@ import org.slf4j.LoggerFactory;
  * @author ranger
  * @version $Id: $
  */
-public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.CreateOperation,String>, Runnable {
+public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.CreateOperation,String> {
 
     private Logger m_log = LoggerFactory.getLogger(QueuingRrdStrategy.class);
 
@@ -158,6 +164,8 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
     private long m_writeThreadExitDelay;
 
+    private int m_shardCount;
+
     /**
      * <p>getWriteThreads</p>
      *
@@ -341,6 +349,28 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         m_writeThreadSleepTime = writeThreadSleepTime;
     }
 
+    /**
+     * <p>getShardCount</p>
+     *
+     * @return a int.
+     */
+    public int getShardCount() {
+        return m_shardCount;
+    }
+
+    /**
+     * Set the number of independent queues the files are spread over. Each
+     * shard has its own lock and its own write threads, so writers for
+     * different shards never contend with each other. 0 (the default) uses
+     * one shard per write thread. The count is capped at the number of write
+     * threads and cannot be changed once the first operation is queued.
+     *
+     * @param shardCount a int.
+     */
+    public void setShardCount(int shardCount) {
+        m_shardCount = shardCount;
+    }
+
     /**
      * <p>getWriteThreadExitDelay</p>
      *
@@ -359,41 +389,31 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         m_writeThreadExitDelay = writeThreadExitDelay;
     }
 
-    LinkedList<String> filesWithSignificantWork = new LinkedList<String>();
-
-    LinkedList<String> filesWithInsignificantWork = new LinkedList<String>();
-
-    Map<String, LinkedList<Operation>> pendingFileOperations = new HashMap<String, LinkedList<Operation>>();
-
-    Map<Thread, String> fileAssignments = new HashMap<Thread, String>();
-
-    Set<String> reservedFiles = new HashSet<String>();
-
-    private long m_totalOperationsPending = 0;
+    private volatile RrdOperationQueue[] m_shards;
 
-    private long m_enqueuedOperations = 0;
+    private final AtomicInteger m_threadNumber = new AtomicInteger();
 
-    private long m_dequeuedOperations = 0;
+    private final AtomicLong m_totalOperationsPending = new AtomicLong();
 
-    private long m_significantOpsEnqueued = 0;
+    private final AtomicLong m_enqueuedOperations = new AtomicLong();
 
-    private long m_significantOpsDequeued = 0;
+    private final AtomicLong m_dequeuedOperations = new AtomicLong();
 
-    private long m_significantOpsCompleted = 0;
+    private final AtomicLong m_significantOpsEnqueued = new AtomicLong();
 
-    private long m_dequeuedItems = 0;
+    private final AtomicLong m_significantOpsDequeued = new AtomicLong();
 
-    private long m_createsCompleted = 0;
+    private final AtomicLong m_significantOpsCompleted = new AtomicLong();
 
-    private long m_updatesCompleted = 0;
+    private final AtomicLong m_dequeuedItems = new AtomicLong();
 
-    private long m_errors = 0;
+    private final AtomicLong m_createsCompleted = new AtomicLong();
 
-    int threadsRunning = 0;
+    private final AtomicLong m_updatesCompleted = new AtomicLong();
 
-    private long m_startTime = 0;
+    private final AtomicLong m_errors = new AtomicLong();
 
-    private long m_promotionCount = 0;
+    private final AtomicLong m_startTime = new AtomicLong();
 
     long lastLap = System.currentTimeMillis();
 
@@ -488,7 +508,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             m_delegate.createFile(getData(), attributeMappings);
 
             // keep stats
-            setCreatesCompleted(getCreatesCompleted() + 1);
+            m_createsCompleted.incrementAndGet();
 
             // return the file
             return rrd;
@@ -527,8 +547,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
             }
 
             // keep stats
-            setUpdatesCompleted(getUpdatesCompleted() + 1);
-            if (getUpdatesCompleted() % m_modulus == 0) {
+            if (m_updatesCompleted.incrementAndGet() % m_modulus == 0) {
                 logStats();
             }
             // return the open rrd for further processing
@@ -538,6 +557,45 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
     }
 
+    /**
+     * Represents an update to a rrd file that carries its values as doubles
+     * rather than as a colon separated string.
+     */
+    public class ValuesUpdateOperation extends Operation {
+
+        long timeStamp;
+
+        ValuesUpdateOperation(String fileName, long timeStamp, double[] values) {
+            super(fileName, UPDATE, values, true);
+            this.timeStamp = timeStamp;
+        }
+
+        @Override
+        Object process(Object rrd) throws Exception {
+            // open the file if we need to
+            if (rrd == null) rrd = m_delegate.openFile(getFileName());
+
+            final double[] values = (double[]) getData();
+
+            try {
+                // process the update
+                m_delegate.updateFile(rrd, "", timeStamp, values);
+            } catch (final Throwable e) {
+                final String error = String.format("Error processing update for file %s: %s", getFileName(), RrdUtils.formatUpdate(timeStamp, values));
+                m_log.debug(error, e);
+                throw new Exception(error, e);
+            }
+
+            // keep stats
+            if (m_updatesCompleted.incrementAndGet() % m_modulus == 0) {
+                logStats();
+            }
+            // return the open rrd for further processing
+            return rrd;
+        }
+
+    }
+
     /**
      * Represents an update whose value is 0. These operations can be merged
      * together and take up less memory
@@ -564,18 +622,16 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
                 if (rrd == null)
                     rrd = m_delegate.openFile(getFileName());
 
-                String update = ts + ":0";
                 try {
                     // process the update
-                    m_delegate.updateFile(rrd, "", update);
+                    m_delegate.updateFile(rrd, "", ts, new double[] { 0.0 });
                 } catch (Throwable e) {
-                    throw new Exception("Error processing update " + i + " for file " + getFileName() + ": " + update, e);
+                    throw new Exception("Error processing update " + i + " for file " + getFileName() + ": " + ts + ":0", e);
                 }
                 ts += getInterval();
 
                 // keep stats
-                setUpdatesCompleted(getUpdatesCompleted() + 1);
-                if (getUpdatesCompleted() % m_modulus == 0) {
+                if (m_updatesCompleted.incrementAndGet() % m_modulus == 0) {
                     logStats();
                 }
             }
@@ -681,46 +737,111 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         return new UpdateOperation(fileName, update);
     }
 
-    // 
-    // Queue management functions.
+    /**
+     * <p>makeUpdateOperation</p>
+     *
+     * @param fileName a {@link java.lang.String} object.
+     * @param owner a {@link java.lang.String} object.
+     * @param timestamp a long.
+     * @param values an array of double.
+     * @return a {@link org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation} object.
+     */
+    public Operation makeUpdateOperation(String fileName, String owner, long timestamp, double[] values) {
+        if (values.length == 1 && values[0] == 0.0) {
+            if (timestamp == 0)
+                m_log.debug("ZERO ERROR: created a zero update with ts=0 for file: {}", fileName);
+
+            return new ZeroUpdateOperation(fileName, timestamp);
+        }
+        return new ValuesUpdateOperation(fileName, timestamp, values);
+    }
+
     //
-    // TODO: Put this all in a class of its own. This is really ugly.
+    // Queue management functions. The queue itself is split into shards,
+    // see RrdOperationQueue.
     //
 
+    /**
+     * Return the shards, creating them on first use once all the properties
+     * have been set.
+     */
+    private RrdOperationQueue[] getShards() {
+        RrdOperationQueue[] shards = m_shards;
+        if (shards == null) {
+            synchronized (this) {
+                shards = m_shards;
+                if (shards == null) {
+                    final int count = getEffectiveShardCount();
+                    shards = new RrdOperationQueue[count];
+                    for (int i = 0; i < count; i++) {
+                        shards[i] = new RrdOperationQueue(i, m_prioritizeSignificantUpdates, m_maxInsigUpdateSeconds);
+                    }
+                    m_log.debug("Using {} queue shard(s) with {} write thread(s) each", count, getWriteThreadsPerShard(count));
+                    m_shards = shards;
+                }
+            }
+        }
+        return shards;
+    }
+
+    private int getEffectiveShardCount() {
+        final int writeThreads = Math.max(m_writeThreads, 1);
+        if (m_shardCount <= 0) {
+            return writeThreads;
+        }
+        return Math.min(m_shardCount, writeThreads);
+    }
+
+    private int getWriteThreadsPerShard(final int shardCount) {
+        final int writeThreads = Math.max(m_writeThreads, 1);
+        return (writeThreads + shardCount - 1) / shardCount;
+    }
+
+    /**
+     * Return the shard that holds the operations for the file.
+     */
+    RrdOperationQueue getShard(final String fileName) {
+        final RrdOperationQueue[] shards = getShards();
+        // spread the hash bits so that files in the same directory don't all land together
+        int h = fileName.hashCode();
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+        return shards[(h & Integer.MAX_VALUE) % shards.length];
+    }
+
     /**
      * Add an operation to the queue.
      *
      * @param op a {@link org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation} object.
      */
     public void addOperation(Operation op) {
-        synchronized (this) {
-            if (queueIsFull()) {
-                m_log.error("RRD Data Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
-            }
-            
-            if (op.isSignificant() && sigQueueIsFull()) {
-                m_log.error("RRD Data Significant Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
-            }
-            
-            if (!op.isSignificant() && inSigQueueIsFull()) {
-                m_log.error("RRD Insignificant Data Queue is Full!! Discarding operation for file {}", op.getFileName());
-                return;
-            }
-            
-            storeAssignment(op);
-
-            setTotalOperationsPending(getTotalOperationsPending() + 1);
-            setEnqueuedOperations(getEnqueuedOperations() + 1);
-            if (op.isSignificant())
-                setSignificantOpsEnqueued(getSignificantOpsEnqueued() + 1);
-            notifyAll();
-            ensureThreadsStarted();
+        if (queueIsFull()) {
+            m_log.error("RRD Data Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
+        }
+
+        if (op.isSignificant() && sigQueueIsFull()) {
+            m_log.error("RRD Data Significant Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
         }
+
+        if (!op.isSignificant() && inSigQueueIsFull()) {
+            m_log.error("RRD Insignificant Data Queue is Full!! Discarding operation for file {}", op.getFileName());
+            return;
+        }
+
+        final RrdOperationQueue shard = getShard(op.getFileName());
+
+        // count before adding so that a writer can never see the count go negative
+        m_totalOperationsPending.incrementAndGet();
+        m_enqueuedOperations.incrementAndGet();
+        if (op.isSignificant())
+            m_significantOpsEnqueued.incrementAndGet();
+
+        shard.add(op);
+        ensureThreadsStarted(shard);
     }
 
-    
     private boolean queueIsFull() {
         if (m_queueHighWaterMark <= 0)
             return false;
@@ -743,199 +864,69 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
     }
 
     /**
-     * Ensure that we have threads started to process the queue.
+     * Ensure that we have threads started to process the shard.
      */
-    public synchronized void ensureThreadsStarted() {
-        if (threadsRunning < m_writeThreads) {
-            threadsRunning++;
-            new Thread(this, this.getClass().getSimpleName() + "-" + threadsRunning).start();
+    private void ensureThreadsStarted(final RrdOperationQueue shard) {
+        if (shard.reserveThread(getWriteThreadsPerShard(getShards().length))) {
+            final Thread thread = new Thread(new WriteThread(shard), getClass().getSimpleName() + "-" + shard.getIndex() + "-" + m_threadNumber.incrementAndGet());
+            thread.start();
         }
     }
 
     /**
-     * Get the operations for the next file that should be worked on.
+     * Get the operations for the next file of the shard that should be
+     * worked on.
      *
-     * @return a linkedList of operations to be processed all for the same file.
+     * @return a linkedList of operations to be processed all for the same
+     *         file, or null if there is nothing to do.
      */
-    public LinkedList<Operation> getNext() {
-        LinkedList<Operation> ops = null;
-        synchronized (this) {
-
-            // turn in our previous assignment
-            completeAssignment();
-
-            String newAssignment;
-            // wait until there is work to do
-            while ((newAssignment = selectNewAssignment()) == null) {
-                try {
-                    wait();
-                } catch (InterruptedException e) {
-                }
-            }
-
-            // initialize start time for stats
-            if (getStartTime() == 0)
-                setStartTime(System.currentTimeMillis());
+    private LinkedList<Operation> getNext(final RrdOperationQueue shard) {
+        final LinkedList<Operation> ops = shard.take(m_writeThreadSleepTime);
+        if (ops == null) {
+            return null;
+        }
 
-            // reserve the assignment and take work items
-            ops = takeAssignment(newAssignment);
+        // initialize start time for stats
+        if (getStartTime() == 0)
+            m_startTime.compareAndSet(0, System.currentTimeMillis());
 
-            // keep stats
-            if (ops != null) {
-                for(Operation op : ops) {
-                    setTotalOperationsPending(getTotalOperationsPending()-op.getCount());
-                    setDequeuedOperations(getDequeuedOperations() + op.getCount());
-                    if (op.isSignificant()) {
-                    	setSignificantOpsDequeued(getSignificantOpsDequeued() + op.getCount());
-                    }
-                }
-                setDequeuedItems(getDequeuedItems() + 1);
+        // keep stats
+        for(Operation op : ops) {
+            m_totalOperationsPending.addAndGet(-op.getCount());
+            m_dequeuedOperations.addAndGet(op.getCount());
+            if (op.isSignificant()) {
+                m_significantOpsDequeued.addAndGet(op.getCount());
             }
         }
+        m_dequeuedItems.incrementAndGet();
 
         return ops;
-
-    }
-
-    /**
-     * We need to track which files are being processed by which threads so that
-     * we don't try to process updates for the same file on more than one
-     * thread.
-     */
-    private synchronized void storeAssignment(Operation op) {
-        // look and see if there a pending ops list for this file
-        LinkedList<Operation> pendingOperations = pendingFileOperations.get(op.getFileName());
-
-        // if not then we create an ops list for the file and add the file to
-        // the work items list
-        if (pendingOperations == null) {
-            pendingOperations = new LinkedList<Operation>();
-            pendingFileOperations.put(op.getFileName(), pendingOperations);
-
-            // add the file to the correct list based on what type of work we
-            // are adding.  (if we aren't prioritizing then every file is counted as
-            // signficant
-            if (!m_prioritizeSignificantUpdates || op.isSignificant())
-                filesWithSignificantWork.addLast(op.getFileName());
-            else
-                filesWithInsignificantWork.addLast(op.getFileName());
-        } else if (m_prioritizeSignificantUpdates && op.isSignificant() && hasOnlyInsignificant(pendingOperations)) {
-            // only do this when we are prioritizing as this bumps files from inSig
-            // up to insig
-            // promote the file to the significant list if this is the first
-            // significant
-            filesWithSignificantWork.addLast(op.getFileName());
-        }
-
-        promoteAgedFiles();
-
-        op.addToPendingList(pendingOperations);
     }
 
-    /**
-     * Ensure that files with insignificant changes are getting promoted if
-     * necessary
-     * 
-     */
-    private synchronized void promoteAgedFiles() {
-        
-        // no need to do this is we aren't prioritizing
-        if (!m_prioritizeSignificantUpdates) return;
-
-        // the num seconds to update files is 0 then use unfair prioritization
-        if (m_maxInsigUpdateSeconds == 0 || filesWithInsignificantWork.isEmpty())
-            return;
-
-        // calculate the elapsed time we first queued updates
-        long now = System.currentTimeMillis();
-        long elapsedMillis = Math.max(now - getStartTime(), 1);
-
-        // calculate the milliseconds between promotions necessary to age
-        // insignificant files into
-        // the significant queue
-        double millisPerPromotion = ((m_maxInsigUpdateSeconds * 1000.0) / filesWithInsignificantWork.size());
-
-        // calculate the number of millis since start until the next file needs
-        // to be promotoed
-        long nextPromotionMillis = (long) (millisPerPromotion * getPromotionCount());
-
-        // if more time has elapsed than the next promotion time then promote a
-        // file
-        if (elapsedMillis > nextPromotionMillis) {
-            String file = filesWithInsignificantWork.removeFirst();
-            filesWithSignificantWork.addFirst(file);
-            setPromotionCount(getPromotionCount() + 1);
-        }
-
-    }
-    
     /** {@inheritDoc} */
     @Override
-    public synchronized void promoteEnqueuedFiles(Collection<String> rrdFiles) {
-        filesWithSignificantWork.addAll(0, rrdFiles);
-        m_delegate.promoteEnqueuedFiles(rrdFiles);
-    }
-
-    /**
-     * Return true if and only if all the operations in the list are
-     * insignificant
-     */
-    private boolean hasOnlyInsignificant(LinkedList<Operation> pendingOps) {
-        for(Operation op : pendingOps) {
-            if (op.isSignificant()) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    /**
-     * register the file that the currentThread is be working on. This enables
-     * us to ensure that another thread doesn't try to work on operations for
-     * that file.  Note: this is not synchronized as it is called from getNext which
-     * is thread safe
-     */
-    private LinkedList<Operation> takeAssignment(String newAssignment) {
-
-        // make the file as reserved by the current thread
-        fileAssignments.put(Thread.currentThread(), newAssignment);
-        reservedFiles.add(newAssignment);
-
-        // get the assignments work list and return it
-        return pendingFileOperations.remove(newAssignment);
-    }
-
-    /**
-     * Return the name of the next file with available work
-     */
-    private String selectNewAssignment() {
-        for (Iterator<String> it = filesWithSignificantWork.iterator(); it.hasNext();) {
-            String fn = it.next();
-            if (!reservedFiles.contains(fn)) {
-                it.remove();
-                return fn;
+    public void promoteEnqueuedFiles(Collection<String> rrdFiles) {
+        final RrdOperationQueue[] shards = getShards();
+        if (shards.length == 1) {
+            shards[0].promote(rrdFiles);
+        } else {
+            final Map<RrdOperationQueue, List<String>> filesByShard = new HashMap<RrdOperationQueue, List<String>>();
+            for (final String rrdFile : rrdFiles) {
+                final RrdOperationQueue shard = getShard(rrdFile);
+                List<String> files = filesByShard.get(shard);
+                if (files == null) {
+                    files = new ArrayList<String>();
+                    filesByShard.put(shard, files);
+                }
+                files.add(rrdFile);
             }
-        }
-        for (Iterator<String> it = filesWithInsignificantWork.iterator(); it.hasNext();) {
-            String fn = it.next();
-            if (!reservedFiles.contains(fn)) {
-                it.remove();
-                return fn;
+            for (final Map.Entry<RrdOperationQueue, List<String>> entry : filesByShard.entrySet()) {
+                entry.getKey().promote(entry.getValue());
             }
         }
-        return null;
+        m_delegate.promoteEnqueuedFiles(rrdFiles);
     }
 
-    /**
-     * Record that fact that the current thread has finished process operations
-     * for its current assignment
-     */
-    private synchronized void completeAssignment() {
-        // remove any existing reservation of the current thread
-        String previousAssignment = fileAssignments.remove(Thread.currentThread());
-        if (previousAssignment != null)
-            reservedFiles.remove(previousAssignment);
-    }
 
     /**
      * <p>Constructor for QueuingRrdStrategy.</p>
@@ -1052,6 +1043,12 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
         addOperation(makeUpdateOperation((String) rrdFile, owner, data));
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(String rrdFile, String owner, long timestamp, double[] values) throws Exception {
+        addOperation(makeUpdateOperation(rrdFile, owner, timestamp, values));
+    }
+
     /** {@inheritDoc} */
     @Override
     public Double fetchLastValue(String rrdFile, String ds, int interval) throws NumberFormatException, RrdException {
@@ -1090,36 +1087,38 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
     //
 
     /**
-     * <p>run</p>
+     * Processes the operations of a single shard until it has been idle for
+     * the write thread exit delay.
      */
-    @Override
-    public void run() {
-        try {
+    private class WriteThread implements Runnable {
+        private final RrdOperationQueue m_shard;
 
-            long waitStart = -1L;
-            long delayed = 0;
-            while (delayed < m_writeThreadExitDelay) {
-                if (getTotalOperationsPending() > 0) {
-                    delayed = 0;
-                    waitStart = -1L;
-                    processPendingOperations();
-                } else {
-                    if (waitStart < 0) {
-                        waitStart = System.currentTimeMillis();
-                    }
-                    try {
-                        Thread.sleep(m_writeThreadSleepTime);
-                    } catch (InterruptedException e) {
+        WriteThread(final RrdOperationQueue shard) {
+            m_shard = shard;
+        }
+
+        @Override
+        public void run() {
+            try {
+
+                long waitStart = -1L;
+                long delayed = 0;
+                while (delayed < m_writeThreadExitDelay) {
+                    if (processPendingOperations(m_shard)) {
+                        delayed = 0;
+                        waitStart = -1L;
+                    } else {
+                        // take() has already waited for up to the sleep time
+                        final long now = System.currentTimeMillis();
+                        if (waitStart < 0) {
+                            waitStart = now;
+                        }
+                        delayed = now - waitStart;
                     }
-                    long now = System.currentTimeMillis();
-                    delayed = now - waitStart;
-                }
 
-            }
-        } finally {
-            synchronized (this) {
-                threadsRunning--;
-                completeAssignment();
+                }
+            } finally {
+                m_shard.threadExited();
             }
         }
     }
@@ -1127,20 +1126,22 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
     /**
      * Actually process the operations be calling the underlying delegate
      * strategy
+     *
+     * @return true if there was work to do
      */
-    private void processPendingOperations() {
+    private boolean processPendingOperations(final RrdOperationQueue shard) {
         Object rrd = null;
         String fileName = null;
 
         try {
-            LinkedList<Operation> ops = getNext();
+            LinkedList<Operation> ops = getNext(shard);
             if (ops == null)
-                return;
+                return false;
             // update stats correctly we update them even if an exception occurs
             // while we are processing
             for(Operation op : ops) {
                 if (op.isSignificant()) {
-                	setSignificantOpsCompleted(getSignificantOpsCompleted() + 1);
+                    m_significantOpsCompleted.incrementAndGet();
                 }
 
             }
@@ -1150,12 +1151,13 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
                 rrd = op.process(rrd);
             }
         } catch (Throwable e) {
-            setErrors(getErrors() + 1);
+            m_errors.incrementAndGet();
             logLapTime("Error updating file " + fileName + ": " + e.getMessage());
             m_log.debug("Error updating file {}: {}", fileName, e.getMessage(), e);
         } finally {
             processClose(rrd);
         }
+        return true;
     }
 
     /**
@@ -1210,8 +1212,9 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 
         String stats = "\nQS:\t" + "totalOperationsPending=" + getTotalOperationsPending() + 
         ", significantOpsPending=" + (getSignificantOpsEnqueued() - getSignificantOpsCompleted()) + 
-        ", filesWithSignificantWork=" + filesWithSignificantWork.size() + 
-        ", filesWithInsignificantWork=" + filesWithInsignificantWork.size()
+        ", filesWithSignificantWork=" + getFilesWithSignificantWork() + 
+        ", filesWithInsignificantWork=" + getFilesWithInsignificantWork() + 
+        ", shards=" + getShards().length
 
         + "\nQS:\t" + ", createsCompleted=" + getCreatesCompleted() + 
         ", updatesCompleted=" + getUpdatesCompleted() + 
@@ -1325,7 +1328,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getTotalOperationsPending() {
-		return m_totalOperationsPending;
+		return m_totalOperationsPending.get();
 	}
 
 	/**
@@ -1334,7 +1337,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param totalOperationsPending a long.
 	 */
 	public void setTotalOperationsPending(long totalOperationsPending) {
-		m_totalOperationsPending = totalOperationsPending;
+		m_totalOperationsPending.set(totalOperationsPending);
 	}
 
 	/**
@@ -1343,7 +1346,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getCreatesCompleted() {
-		return m_createsCompleted;
+		return m_createsCompleted.get();
 	}
 
 	/**
@@ -1352,7 +1355,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param createsCompleted a long.
 	 */
 	public void setCreatesCompleted(long createsCompleted) {
-		m_createsCompleted = createsCompleted;
+		m_createsCompleted.set(createsCompleted);
 	}
 
 	/**
@@ -1361,7 +1364,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getUpdatesCompleted() {
-		return m_updatesCompleted;
+		return m_updatesCompleted.get();
 	}
 
 	/**
@@ -1370,7 +1373,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param updatesCompleted a long.
 	 */
 	public void setUpdatesCompleted(long updatesCompleted) {
-		m_updatesCompleted = updatesCompleted;
+		m_updatesCompleted.set(updatesCompleted);
 	}
 
 	/**
@@ -1379,7 +1382,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getErrors() {
-		return m_errors;
+		return m_errors.get();
 	}
 
 	/**
@@ -1388,7 +1391,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param errors a long.
 	 */
 	public void setErrors(long errors) {
-		m_errors = errors;
+		m_errors.set(errors);
 	}
 
 	/**
@@ -1397,16 +1400,65 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getPromotionCount() {
-		return m_promotionCount;
+		long promotionCount = 0;
+		for (final RrdOperationQueue shard : getShards()) {
+			promotionCount += shard.getPromotionCount();
+		}
+		return promotionCount;
+	}
+
+	/**
+	 * <p>getFilesWithSignificantWork</p>
+	 *
+	 * @return a int.
+	 */
+	public int getFilesWithSignificantWork() {
+		int files = 0;
+		for (final RrdOperationQueue shard : getShards()) {
+			files += shard.getFilesWithSignificantWork();
+		}
+		return files;
 	}
 
 	/**
-	 * <p>setPromotionCount</p>
+	 * <p>getFilesWithInsignificantWork</p>
 	 *
-	 * @param promotionCount a long.
+	 * @return a int.
 	 */
-	public void setPromotionCount(long promotionCount) {
-		m_promotionCount = promotionCount;
+	public int getFilesWithInsignificantWork() {
+		int files = 0;
+		for (final RrdOperationQueue shard : getShards()) {
+			files += shard.getFilesWithInsignificantWork();
+		}
+		return files;
+	}
+
+	/**
+	 * Returns the number of operations waiting to be written in each shard.
+	 *
+	 * @return an array of long, one entry per shard.
+	 */
+	public long[] getShardOperationsPending() {
+		final RrdOperationQueue[] shards = getShards();
+		final long[] pending = new long[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			pending[i] = shards[i].getOperationsPending();
+		}
+		return pending;
+	}
+
+	/**
+	 * Returns the number of files with pending operations in each shard.
+	 *
+	 * @return an array of int, one entry per shard.
+	 */
+	public int[] getShardFilesPending() {
+		final RrdOperationQueue[] shards = getShards();
+		final int[] files = new int[shards.length];
+		for (int i = 0; i < shards.length; i++) {
+			files[i] = shards[i].getFilesWithSignificantWork() + shards[i].getFilesWithInsignificantWork();
+		}
+		return files;
 	}
 
 	/**
@@ -1415,7 +1467,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getSignificantOpsEnqueued() {
-		return m_significantOpsEnqueued;
+		return m_significantOpsEnqueued.get();
 	}
 
 	/**
@@ -1424,7 +1476,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param significantOpsEnqueued a long.
 	 */
 	public void setSignificantOpsEnqueued(long significantOpsEnqueued) {
-		m_significantOpsEnqueued = significantOpsEnqueued;
+		m_significantOpsEnqueued.set(significantOpsEnqueued);
 	}
 
 	/**
@@ -1433,7 +1485,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getSignificantOpsDequeued() {
-		return m_significantOpsDequeued;
+		return m_significantOpsDequeued.get();
 	}
 
 	/**
@@ -1442,7 +1494,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param significantOpsDequeued a long.
 	 */
 	public void setSignificantOpsDequeued(long significantOpsDequeued) {
-		m_significantOpsDequeued = significantOpsDequeued;
+		m_significantOpsDequeued.set(significantOpsDequeued);
 	}
 
 	/**
@@ -1451,7 +1503,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getEnqueuedOperations() {
-		return m_enqueuedOperations;
+		return m_enqueuedOperations.get();
 	}
 
 	/**
@@ -1460,7 +1512,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param enqueuedOperations a long.
 	 */
 	public void setEnqueuedOperations(long enqueuedOperations) {
-		m_enqueuedOperations = enqueuedOperations;
+		m_enqueuedOperations.set(enqueuedOperations);
 	}
 
 	/**
@@ -1469,7 +1521,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getDequeuedOperations() {
-		return m_dequeuedOperations;
+		return m_dequeuedOperations.get();
 	}
 
 	/**
@@ -1478,7 +1530,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param dequeuedOperations a long.
 	 */
 	public void setDequeuedOperations(long dequeuedOperations) {
-		m_dequeuedOperations = dequeuedOperations;
+		m_dequeuedOperations.set(dequeuedOperations);
 	}
 
 	/**
@@ -1487,7 +1539,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getDequeuedItems() {
-		return m_dequeuedItems;
+		return m_dequeuedItems.get();
 	}
 
 	/**
@@ -1496,7 +1548,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param dequeuedItems a long.
 	 */
 	public void setDequeuedItems(long dequeuedItems) {
-		m_dequeuedItems = dequeuedItems;
+		m_dequeuedItems.set(dequeuedItems);
 	}
 
 	/**
@@ -1505,7 +1557,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getSignificantOpsCompleted() {
-		return m_significantOpsCompleted;
+		return m_significantOpsCompleted.get();
 	}
 
 	/**
@@ -1514,7 +1566,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param significantOpsCompleted a long.
 	 */
 	public void setSignificantOpsCompleted(long significantOpsCompleted) {
-		m_significantOpsCompleted = significantOpsCompleted;
+		m_significantOpsCompleted.set(significantOpsCompleted);
 	}
 
 	/**
@@ -1523,7 +1575,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @return a long.
 	 */
 	public long getStartTime() {
-		return m_startTime;
+		return m_startTime.get();
 	}
 
 	/**
@@ -1532,7 +1584,7 @@ public class QueuingRrdStrategy implements RrdStrategy<QueuingRrdStrategy.Create
 	 * @param updateStart a long.
 	 */
 	public void setStartTime(long updateStart) {
-		m_startTime = updateStart;
+		m_startTime.set(updateStart);
 	}
 
 
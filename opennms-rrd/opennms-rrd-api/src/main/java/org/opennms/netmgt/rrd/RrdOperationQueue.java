@@ -0,0 +1,303 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation;
+
+/**
+ * One shard of the {@link QueuingRrdStrategy} write queue. Each file is
+ * hashed to exactly one shard, so a shard holds every pending operation for
+ * its files and the shards never need to coordinate with each other. All
+ * state is guarded by the shard's own monitor.
+ *
+ * Within a shard the pending operations for a file are coalesced into a
+ * single work item, files with significant work are handed out before files
+ * with only insignificant work, and a file is only ever worked on by one
+ * writer thread at a time.
+ */
+class RrdOperationQueue {
+
+    private final int m_index;
+
+    private final boolean m_prioritizeSignificantUpdates;
+
+    private final long m_maxInsigUpdateSeconds;
+
+    private final LinkedList<String> m_filesWithSignificantWork = new LinkedList<String>();
+
+    private final LinkedList<String> m_filesWithInsignificantWork = new LinkedList<String>();
+
+    private final Map<String, LinkedList<Operation>> m_pendingFileOperations = new HashMap<String, LinkedList<Operation>>();
+
+    private final Map<Thread, String> m_fileAssignments = new HashMap<Thread, String>();
+
+    private final Set<String> m_reservedFiles = new HashSet<String>();
+
+    private long m_operationsPending = 0;
+
+    private long m_startTime = 0;
+
+    private long m_promotionCount = 0;
+
+    private int m_threadsRunning = 0;
+
+    /**
+     * <p>Constructor for RrdOperationQueue.</p>
+     *
+     * @param index the number of this shard, used in thread names and stats
+     * @param prioritizeSignificantUpdates whether files with significant work are written first
+     * @param maxInsigUpdateSeconds the number of seconds over which files with only insignificant work are promoted, 0 for never
+     */
+    RrdOperationQueue(final int index, final boolean prioritizeSignificantUpdates, final long maxInsigUpdateSeconds) {
+        m_index = index;
+        m_prioritizeSignificantUpdates = prioritizeSignificantUpdates;
+        m_maxInsigUpdateSeconds = maxInsigUpdateSeconds;
+    }
+
+    int getIndex() {
+        return m_index;
+    }
+
+    /**
+     * Add an operation to the pending work for its file.
+     */
+    synchronized void add(final Operation op) {
+        // look and see if there a pending ops list for this file
+        LinkedList<Operation> pendingOperations = m_pendingFileOperations.get(op.getFileName());
+
+        // if not then we create an ops list for the file and add the file to
+        // the work items list
+        if (pendingOperations == null) {
+            pendingOperations = new LinkedList<Operation>();
+            m_pendingFileOperations.put(op.getFileName(), pendingOperations);
+
+            // add the file to the correct list based on what type of work we
+            // are adding.  (if we aren't prioritizing then every file is counted as
+            // signficant
+            if (!m_prioritizeSignificantUpdates || op.isSignificant())
+                m_filesWithSignificantWork.addLast(op.getFileName());
+            else
+                m_filesWithInsignificantWork.addLast(op.getFileName());
+        } else if (m_prioritizeSignificantUpdates && op.isSignificant() && hasOnlyInsignificant(pendingOperations)) {
+            // only do this when we are prioritizing as this bumps files from inSig
+            // up to insig
+            // promote the file to the significant list if this is the first
+            // significant
+            m_filesWithSignificantWork.addLast(op.getFileName());
+        }
+
+        promoteAgedFiles();
+
+        op.addToPendingList(pendingOperations);
+        m_operationsPending++;
+
+        notifyAll();
+    }
+
+    /**
+     * Turn in the current thread's previous assignment and take the pending
+     * operations for the next file that should be worked on, waiting up to
+     * <code>timeout</code> milliseconds for one to become available.
+     *
+     * @return the operations for a single file, or null if there was nothing
+     *         to do
+     */
+    synchronized LinkedList<Operation> take(final long timeout) {
+        // turn in our previous assignment
+        completeAssignment();
+
+        String newAssignment = selectNewAssignment();
+        if (newAssignment == null && timeout > 0) {
+            try {
+                wait(timeout);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            newAssignment = selectNewAssignment();
+        }
+        if (newAssignment == null) {
+            return null;
+        }
+
+        // initialize start time for promotions
+        if (m_startTime == 0)
+            m_startTime = System.currentTimeMillis();
+
+        // reserve the assignment and take work items
+        m_fileAssignments.put(Thread.currentThread(), newAssignment);
+        m_reservedFiles.add(newAssignment);
+        final LinkedList<Operation> ops = m_pendingFileOperations.remove(newAssignment);
+
+        if (ops != null) {
+            for (final Operation op : ops) {
+                m_operationsPending -= op.getCount();
+            }
+        }
+        return ops;
+    }
+
+    /**
+     * Record that fact that the current thread has finished process operations
+     * for its current assignment
+     */
+    synchronized void completeAssignment() {
+        // remove any existing reservation of the current thread
+        final String previousAssignment = m_fileAssignments.remove(Thread.currentThread());
+        if (previousAssignment != null) {
+            m_reservedFiles.remove(previousAssignment);
+            // another writer may be waiting for this file
+            if (m_pendingFileOperations.containsKey(previousAssignment)) {
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Move the files to the front of the significant work list.
+     */
+    synchronized void promote(final Collection<String> rrdFiles) {
+        m_filesWithSignificantWork.addAll(0, rrdFiles);
+        notifyAll();
+    }
+
+    /**
+     * Reserve a slot for a new writer thread if fewer than
+     * <code>maxThreads</code> are running.
+     *
+     * @return true if the caller should start a writer thread
+     */
+    synchronized boolean reserveThread(final int maxThreads) {
+        if (m_threadsRunning < maxThreads) {
+            m_threadsRunning++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Give back the slot of a writer thread that is exiting.
+     */
+    synchronized void threadExited() {
+        m_threadsRunning--;
+        completeAssignment();
+    }
+
+    synchronized long getOperationsPending() {
+        return m_operationsPending;
+    }
+
+    synchronized int getFilesWithSignificantWork() {
+        return m_filesWithSignificantWork.size();
+    }
+
+    synchronized int getFilesWithInsignificantWork() {
+        return m_filesWithInsignificantWork.size();
+    }
+
+    synchronized long getPromotionCount() {
+        return m_promotionCount;
+    }
+
+    /**
+     * Ensure that files with insignificant changes are getting promoted if
+     * necessary
+     */
+    private void promoteAgedFiles() {
+
+        // no need to do this is we aren't prioritizing
+        if (!m_prioritizeSignificantUpdates) return;
+
+        // the num seconds to update files is 0 then use unfair prioritization
+        if (m_maxInsigUpdateSeconds == 0 || m_filesWithInsignificantWork.isEmpty())
+            return;
+
+        // calculate the elapsed time we first queued updates
+        final long now = System.currentTimeMillis();
+        final long elapsedMillis = Math.max(now - m_startTime, 1);
+
+        // calculate the milliseconds between promotions necessary to age
+        // insignificant files into
+        // the significant queue
+        final double millisPerPromotion = ((m_maxInsigUpdateSeconds * 1000.0) / m_filesWithInsignificantWork.size());
+
+        // calculate the number of millis since start until the next file needs
+        // to be promotoed
+        final long nextPromotionMillis = (long) (millisPerPromotion * m_promotionCount);
+
+        // if more time has elapsed than the next promotion time then promote a
+        // file
+        if (elapsedMillis > nextPromotionMillis) {
+            final String file = m_filesWithInsignificantWork.removeFirst();
+            m_filesWithSignificantWork.addFirst(file);
+            m_promotionCount++;
+        }
+    }
+
+    /**
+     * Return true if and only if all the operations in the list are
+     * insignificant
+     */
+    private static boolean hasOnlyInsignificant(final LinkedList<Operation> pendingOps) {
+        for (final Operation op : pendingOps) {
+            if (op.isSignificant()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the name of the next file with available work
+     */
+    private String selectNewAssignment() {
+        for (final Iterator<String> it = m_filesWithSignificantWork.iterator(); it.hasNext();) {
+            final String fn = it.next();
+            if (!m_reservedFiles.contains(fn)) {
+                it.remove();
+                return fn;
+            }
+        }
+        for (final Iterator<String> it = m_filesWithInsignificantWork.iterator(); it.hasNext();) {
+            final String fn = it.next();
+            if (!m_reservedFiles.contains(fn)) {
+                it.remove();
+                return fn;
+            }
+        }
+        return null;
+    }
+}
@@ -130,6 +130,28 @@ public interface RrdStrategy<D extends Object,F extends Object> {
      */
     public void updateFile(F rrd, String owner, String data) throws Exception;
 
+    /**
+     * Updates the supplied round robin database with one value per data
+     * source. This is equivalent to calling
+     * {@link #updateFile(Object, String, String)} with
+     * <code>timestamp:values[0]:values[1]:...</code> but does not require the
+     * values to be formatted and parsed again. Queuing implementations may
+     * hold on to the array, so callers must not modify it afterwards.
+     *
+     * @param rrd
+     *            an rrd object created using openFile
+     * @param owner
+     *            the owner of the rrd
+     * @param timestamp
+     *            the time of the update in seconds since the epoch
+     * @param values
+     *            the values in the order of the data sources in the file,
+     *            {@link Double#NaN} for unknown values
+     * @throws java.lang.Exception
+     *             if an error occurs updating the file
+     */
+    public void updateFile(F rrd, String owner, long timestamp, double[] values) throws Exception;
+
     /**
      * This closes the supplied round robin database
      *
@@ -31,6 +31,7 @@ package org.opennms.netmgt.rrd;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -334,6 +335,79 @@ public abstract class RrdUtils {
         LOG.debug("updateRRD: RRD update command completed.");
     }
 
+    /**
+     * Add datapoints to a round robin database without formatting them as a
+     * colon separated string first.
+     *
+     * @param owner the owner of the file. This is used in log messages
+     * @param repositoryDir the directory the file resides in
+     * @param rrdName the name for the rrd file.
+     * @param timestamp the timestamp in millis to use for the rrd update (this
+     * gets rounded to the nearest second)
+     * @param values one value per datasource in the order of the datasources
+     * in the file, {@link Double#NaN} for unknown values
+     * @throws org.opennms.netmgt.rrd.RrdException if any.
+     */
+    public static void updateRRD(String owner, String repositoryDir, String rrdName, long timestamp, double[] values) throws RrdException {
+        // Issue the RRD update
+        String rrdFile = repositoryDir + File.separator + rrdName + getExtension();
+        long time = (timestamp + 500L) / 1000L;
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("updateRRD: updating RRD file {} with values '{}'", rrdFile, formatUpdate(time, values));
+        }
+
+        Object rrd = null;
+        try {
+            rrd = getStrategy().openFile(rrdFile);
+            getStrategy().updateFile(rrd, owner, time, values);
+        } catch (Throwable e) {
+            final String updateVal = formatUpdate(time, values);
+            LOG.error("updateRRD: Error updating RRD file {} with values '{}'", rrdFile, updateVal, e);
+            throw new org.opennms.netmgt.rrd.RrdException("Error updating RRD file " + rrdFile + " with values '" + updateVal + "': " + e, e);
+        } finally {
+            try {
+                if (rrd != null) {
+                    getStrategy().closeFile(rrd);
+                }
+            } catch (Throwable e) {
+                LOG.error("updateRRD: Exception closing RRD file {}", rrdFile, e);
+                throw new org.opennms.netmgt.rrd.RrdException("Exception closing RRD file " + rrdFile + ": " + e, e);
+            }
+        }
+
+        LOG.debug("updateRRD: RRD update command completed.");
+    }
+
+    /**
+     * Format an update as the <code>timestamp:value:value...</code> string
+     * accepted by {@link RrdStrategy#updateFile(Object, String, String)}.
+     * Unknown values are written as <code>U</code>, and integral values are
+     * written without a fraction since rrdtool only accepts integers for
+     * COUNTER and DERIVE datasources.
+     *
+     * @param timestamp the time of the update in seconds since the epoch
+     * @param values the values in the order of the datasources
+     * @return a {@link java.lang.String} object.
+     */
+    public static String formatUpdate(long timestamp, double[] values) {
+        final StringBuilder sb = new StringBuilder(16 + values.length * 12);
+        sb.append(timestamp);
+        for (final double value : values) {
+            sb.append(':');
+            if (Double.isNaN(value)) {
+                sb.append('U');
+            } else if (Double.isInfinite(value) || value != Math.rint(value)) {
+                sb.append(value);
+            } else if (Math.abs(value) < Long.MAX_VALUE) {
+                sb.append((long) value);
+            } else {
+                sb.append(new BigDecimal(value).toPlainString());
+            }
+        }
+        return sb.toString();
+    }
+
     /**
      * This method issues an round robin fetch command to retrieve the last
      * value of the datasource stored in the specified RRD file. The retrieved
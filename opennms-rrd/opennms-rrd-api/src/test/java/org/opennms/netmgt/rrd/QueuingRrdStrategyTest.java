@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class QueuingRrdStrategyTest {
+
+    @Test
+    public void testShardRouting() {
+        final QueuingRrdStrategy strategy = createStrategy(new RecordingRrdStrategy(), 8, 4);
+
+        final Set<RrdOperationQueue> used = new HashSet<RrdOperationQueue>();
+        for (int i = 0; i < 1000; i++) {
+            final String fileName = "/opt/opennms/share/rrd/snmp/" + i + "/ifInOctets.jrb";
+            final RrdOperationQueue shard = strategy.getShard(fileName);
+            assertSame(shard, strategy.getShard(fileName));
+            used.add(shard);
+        }
+        assertEquals(4, strategy.getShardOperationsPending().length);
+        assertEquals(4, used.size());
+    }
+
+    @Test
+    public void testShardCount() {
+        // one shard per write thread by default
+        assertEquals(3, createStrategy(new RecordingRrdStrategy(), 3, 0).getShardOperationsPending().length);
+        // never more shards than write threads
+        assertEquals(2, createStrategy(new RecordingRrdStrategy(), 2, 4).getShardOperationsPending().length);
+        assertEquals(1, createStrategy(new RecordingRrdStrategy(), 4, 1).getShardOperationsPending().length);
+    }
+
+    @Test(timeout=30000)
+    public void testUpdatesAreWrittenInOrderByOneWriterPerFile() throws Exception {
+        final RecordingRrdStrategy delegate = new RecordingRrdStrategy();
+        final QueuingRrdStrategy strategy = createStrategy(delegate, 4, 2);
+
+        final int files = 20;
+        final int updates = 25;
+        for (int i = 0; i < updates; i++) {
+            for (int j = 0; j < files; j++) {
+                strategy.updateFile("file" + j, "test", 1000 + 300 * i, new double[] { i + 1 });
+            }
+        }
+
+        while (strategy.getUpdatesCompleted() < files * updates) {
+            Thread.sleep(10);
+        }
+
+        assertFalse("a file was written by more than one thread at a time", delegate.hasOverlapped());
+        for (int j = 0; j < files; j++) {
+            final List<Long> timestamps = delegate.getTimestamps("file" + j);
+            assertEquals(updates, timestamps.size());
+            for (int i = 0; i < updates; i++) {
+                assertEquals(Long.valueOf(1000 + 300 * i), timestamps.get(i));
+            }
+        }
+        assertEquals(0, strategy.getTotalOperationsPending());
+        assertEquals(files * updates, strategy.getUpdatesCompleted());
+        for (final long pending : strategy.getShardOperationsPending()) {
+            assertEquals(0, pending);
+        }
+    }
+
+    private static QueuingRrdStrategy createStrategy(final RecordingRrdStrategy delegate, final int writeThreads, final int shardCount) {
+        final QueuingRrdStrategy strategy = new QueuingRrdStrategy(delegate);
+        strategy.setWriteThreads(writeThreads);
+        strategy.setShardCount(shardCount);
+        strategy.setModulus(10000);
+        strategy.setWriteThreadSleepTime(50);
+        strategy.setWriteThreadExitDelay(500);
+        return strategy;
+    }
+
+    /**
+     * Records the updates written to each file and whether a file was ever
+     * open in two writer threads at once.
+     */
+    private static class RecordingRrdStrategy implements RrdStrategy<Object, Object> {
+        private final ConcurrentMap<String, List<Long>> m_timestamps = new ConcurrentHashMap<String, List<Long>>();
+        private final ConcurrentMap<String, AtomicInteger> m_open = new ConcurrentHashMap<String, AtomicInteger>();
+        private volatile boolean m_overlapped = false;
+
+        boolean hasOverlapped() {
+            return m_overlapped;
+        }
+
+        synchronized List<Long> getTimestamps(final String fileName) {
+            return new ArrayList<Long>(m_timestamps.get(fileName));
+        }
+
+        private AtomicInteger getOpenCount(final String fileName) {
+            m_open.putIfAbsent(fileName, new AtomicInteger());
+            return m_open.get(fileName);
+        }
+
+        @Override
+        public Object openFile(final String fileName) throws Exception {
+            if (getOpenCount(fileName).incrementAndGet() > 1) {
+                m_overlapped = true;
+            }
+            return fileName;
+        }
+
+        @Override
+        public void closeFile(final Object rrd) throws Exception {
+            getOpenCount((String) rrd).decrementAndGet();
+        }
+
+        @Override
+        public void updateFile(final Object rrd, final String owner, final long timestamp, final double[] values) throws Exception {
+            synchronized (this) {
+                m_timestamps.putIfAbsent((String) rrd, new ArrayList<Long>());
+                m_timestamps.get(rrd).add(timestamp);
+            }
+            // give another writer the chance to pick up the same file
+            Thread.sleep(1);
+        }
+
+        @Override
+        public void updateFile(final Object rrd, final String owner, final String data) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setConfigurationProperties(final Properties props) {
+        }
+
+        @Override
+        public String getDefaultFileExtension() {
+            return ".jrb";
+        }
+
+        @Override
+        public Object createDefinition(final String creator, final String directory, final String rrdName, final int step, final List<RrdDataSource> dataSources, final List<String> rraList) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void createFile(final Object rrdDef, final Map<String, String> attributeMappings) throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Double fetchLastValue(final String rrdFile, final String ds, final int interval) throws NumberFormatException, RrdException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Double fetchLastValue(final String rrdFile, final String ds, final String consolidationFunction, final int interval) throws NumberFormatException, RrdException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Double fetchLastValueInRange(final String rrdFile, final String ds, final int interval, final int range) throws NumberFormatException, RrdException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream createGraph(final String command, final File workDir) throws IOException, RrdException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public RrdGraphDetails createGraphReturnDetails(final String command, final File workDir) throws IOException, RrdException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getGraphLeftOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getGraphRightOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getGraphTopOffsetWithText() {
+            return 0;
+        }
+
+        @Override
+        public String getStats() {
+            return "";
+        }
+
+        @Override
+        public void promoteEnqueuedFiles(final Collection<String> rrdFiles) {
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.opennms.netmgt.rrd.QueuingRrdStrategy.Operation;
+
+public class RrdOperationQueueTest {
+
+    @Test
+    public void testOperationsForAFileAreCoalesced() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, false, 0);
+        final Operation a1 = op("a", true);
+        final Operation a2 = op("a", true);
+        final Operation b1 = op("b", true);
+        final Operation a3 = op("a", true);
+        queue.add(a1);
+        queue.add(a2);
+        queue.add(b1);
+        queue.add(a3);
+
+        assertEquals(2, queue.getFilesWithSignificantWork());
+        assertEquals(Arrays.asList(a1, a2, a3), queue.take(0));
+        assertEquals(Arrays.asList(b1), queue.take(0));
+        assertNull(queue.take(0));
+    }
+
+    @Test
+    public void testSignificantFilesAreTakenFirst() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, true, 0);
+        queue.add(op("a", false));
+        queue.add(op("b", true));
+
+        assertEquals(1, queue.getFilesWithSignificantWork());
+        assertEquals(1, queue.getFilesWithInsignificantWork());
+        assertEquals("b", queue.take(0).getFirst().getFileName());
+        assertEquals("a", queue.take(0).getFirst().getFileName());
+        assertNull(queue.take(0));
+    }
+
+    @Test
+    public void testWithoutPrioritizingEveryFileIsSignificant() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, false, 0);
+        queue.add(op("a", false));
+        queue.add(op("b", true));
+
+        assertEquals(2, queue.getFilesWithSignificantWork());
+        assertEquals(0, queue.getFilesWithInsignificantWork());
+        assertEquals("a", queue.take(0).getFirst().getFileName());
+        assertEquals("b", queue.take(0).getFirst().getFileName());
+    }
+
+    @Test
+    public void testSignificantUpdatePromotesInsignificantFile() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, true, 0);
+        final Operation a = op("a", false);
+        final Operation b1 = op("b", false);
+        final Operation b2 = op("b", true);
+        queue.add(a);
+        queue.add(b1);
+        queue.add(b2);
+
+        // b has significant work now and is written, with its earlier update, before a
+        assertEquals(Arrays.asList(b1, b2), queue.take(0));
+        assertEquals(Arrays.asList(a), queue.take(0));
+        // b's stale entry in the insignificant list has no work left
+        assertNull(queue.take(0));
+        assertNull(queue.take(0));
+        assertEquals(0, queue.getOperationsPending());
+    }
+
+    @Test
+    public void testPromotedFilesAreTakenFirst() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, true, 0);
+        queue.add(op("a", true));
+        queue.add(op("b", false));
+        queue.add(op("c", false));
+
+        queue.promote(Arrays.asList("c"));
+
+        assertEquals("c", queue.take(0).getFirst().getFileName());
+        assertEquals("a", queue.take(0).getFirst().getFileName());
+        assertEquals("b", queue.take(0).getFirst().getFileName());
+    }
+
+    @Test
+    public void testAgedInsignificantFilesArePromoted() {
+        final RrdOperationQueue unfair = new RrdOperationQueue(0, true, 0);
+        unfair.add(op("a", false));
+        assertEquals(0, unfair.getPromotionCount());
+        assertEquals(1, unfair.getFilesWithInsignificantWork());
+
+        final RrdOperationQueue aging = new RrdOperationQueue(0, true, 1);
+        aging.add(op("a", false));
+        assertEquals(1, aging.getPromotionCount());
+        assertEquals(1, aging.getFilesWithSignificantWork());
+        assertEquals(0, aging.getFilesWithInsignificantWork());
+    }
+
+    @Test
+    public void testOperationsPendingCount() {
+        final QueuingRrdStrategy strategy = new QueuingRrdStrategy(null);
+        final RrdOperationQueue queue = new RrdOperationQueue(0, false, 0);
+
+        // consecutive zero updates are merged into one operation that counts twice
+        queue.add(strategy.makeUpdateOperation("a", "", 1000, new double[] { 0.0 }));
+        queue.add(strategy.makeUpdateOperation("a", "", 1300, new double[] { 0.0 }));
+        queue.add(strategy.makeUpdateOperation("b", "", 1000, new double[] { 1.0 }));
+        queue.add(strategy.makeUpdateOperation("b", "", 1300, new double[] { 2.0 }));
+        queue.add(strategy.makeUpdateOperation("b", "", 1600, new double[] { 3.0 }));
+        assertEquals(5, queue.getOperationsPending());
+
+        final LinkedList<Operation> a = queue.take(0);
+        assertEquals(1, a.size());
+        assertEquals(2, a.getFirst().getCount());
+        assertEquals(3, queue.getOperationsPending());
+
+        assertEquals(3, queue.take(0).size());
+        assertEquals(0, queue.getOperationsPending());
+    }
+
+    @Test(timeout=10000)
+    public void testOneWriterPerFile() throws Exception {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, false, 0);
+        queue.add(op("a", true));
+
+        final CountDownLatch taken = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Thread writer = new Thread("writer") {
+            @Override
+            public void run() {
+                queue.take(0);
+                taken.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                queue.completeAssignment();
+            }
+        };
+        writer.start();
+        taken.await();
+
+        // more work for the file while the other thread is still writing it
+        queue.add(op("a", true));
+        queue.add(op("b", true));
+        assertEquals("b", queue.take(0).getFirst().getFileName());
+        assertNull(queue.take(0));
+
+        // the file is handed out once the other thread has turned it in
+        release.countDown();
+        final LinkedList<Operation> ops = queue.take(5000);
+        assertNotNull(ops);
+        assertEquals("a", ops.getFirst().getFileName());
+        writer.join();
+    }
+
+    @Test
+    public void testReserveThread() {
+        final RrdOperationQueue queue = new RrdOperationQueue(0, false, 0);
+        assertEquals(true, queue.reserveThread(2));
+        assertEquals(true, queue.reserveThread(2));
+        assertEquals(false, queue.reserveThread(2));
+        queue.threadExited();
+        assertEquals(true, queue.reserveThread(2));
+    }
+
+    private static Operation op(final String fileName, final boolean significant) {
+        return new Operation(fileName, QueuingRrdStrategy.UPDATE, null, significant) {
+            @Override
+            Object process(final Object rrd) throws Exception {
+                return rrd;
+            }
+        };
+    }
+}
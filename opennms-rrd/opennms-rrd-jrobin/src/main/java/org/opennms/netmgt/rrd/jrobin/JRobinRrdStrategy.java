@@ -40,6 +40,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.jrobin.core.FetchData;
 import org.jrobin.core.RrdDb;
@@ -70,6 +71,9 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     private static final Logger LOG = LoggerFactory.getLogger(JRobinRrdStrategy.class);
     private static final String BACKEND_FACTORY_PROPERTY = "org.jrobin.core.RrdBackendFactory";
     private static final String DEFAULT_BACKEND_FACTORY = "FILE";
+    private static final String CACHE_SIZE_PROPERTY = "org.opennms.rrd.jrobin.cacheSize";
+    private static final String CACHE_IDLE_TIMEOUT_PROPERTY = "org.opennms.rrd.jrobin.cacheIdleTimeout";
+    private static final long DEFAULT_CACHE_IDLE_TIMEOUT = 300;
 
     /*
      * Ensure that we only initialize certain things *once* per
@@ -79,6 +83,16 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
 
     private Properties m_configurationProperties;
 
+    /**
+     * Cache of open RrdDb handles, or null if every open creates a new handle
+     */
+    private volatile RrdDbCache m_cache;
+
+    /**
+     * Caches replaced by a reconfiguration whose handles are still held
+     */
+    private final List<RrdDbCache> m_closedCaches = new CopyOnWriteArrayList<RrdDbCache>();
+
     /**
      * An extremely simple Plottable for holding static datasources that
      * can't be represented with an SDEF -- currently used only for PERCENT
@@ -135,6 +149,53 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
                 LOG.error("Could not set default JRobin RRD factory", e);
             }
         }
+
+        // handles from the old cache may still be in use, they are
+        // released to it and closed once the last holder is done
+        final RrdDbCache oldCache = m_cache;
+        if (oldCache != null) {
+            m_closedCaches.add(oldCache);
+        }
+
+        RrdDbCache cache = null;
+        if (m_configurationProperties != null) {
+            final int cacheSize = Integer.parseInt(m_configurationProperties.getProperty(CACHE_SIZE_PROPERTY, "0").trim());
+            final long idleTimeout = Long.parseLong(m_configurationProperties.getProperty(CACHE_IDLE_TIMEOUT_PROPERTY, String.valueOf(DEFAULT_CACHE_IDLE_TIMEOUT)).trim());
+            if (cacheSize > 0) {
+                LOG.info("Caching up to {} open RRD files, closing them after {} idle seconds", cacheSize, idleTimeout);
+                cache = new RrdDbCache(cacheSize, idleTimeout * 1000L);
+            }
+        }
+        m_cache = cache;
+
+        if (oldCache != null) {
+            oldCache.close();
+            if (oldCache.getHeldFileCount() == 0) {
+                m_closedCaches.remove(oldCache);
+            }
+        }
+    }
+
+    /**
+     * Give a handle back to the cache it came from, or close it if it was
+     * not opened through a cache.
+     */
+    private void releaseFile(final RrdDb rrdFile) throws IOException {
+        final RrdDbCache cache = m_cache;
+        if (cache != null && cache.isCached(rrdFile)) {
+            cache.release(rrdFile);
+            return;
+        }
+        for (final RrdDbCache closedCache : m_closedCaches) {
+            if (closedCache.isCached(rrdFile)) {
+                closedCache.release(rrdFile);
+                if (closedCache.getHeldFileCount() == 0) {
+                    m_closedCaches.remove(closedCache);
+                }
+                return;
+            }
+        }
+        rrdFile.close();
     }
 
     /**
@@ -145,7 +206,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
      */
     @Override
     public void closeFile(final RrdDb rrdFile) throws Exception {
-        rrdFile.close();
+        releaseFile(rrdFile);
     }
 
     /** {@inheritDoc} */
@@ -200,6 +261,11 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         }
         LOG.info("createRRD: creating RRD file {}", rrdDef.getPath());
 
+        final RrdDbCache cache = m_cache;
+        if (cache != null) {
+            cache.invalidate(rrdDef.getPath());
+        }
+
         RrdDb rrd = new RrdDb(rrdDef);
         rrd.close();
 
@@ -220,9 +286,33 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
      */
     @Override
     public RrdDb openFile(final String fileName) throws Exception {
+        final RrdDbCache cache = m_cache;
+        if (cache != null) {
+            return cache.acquire(fileName);
+        }
         return new RrdDb(fileName);
     }
 
+    /**
+     * Open the file for a fetch: from the handle cache if there is one,
+     * otherwise read-only.
+     */
+    private RrdDb openFileForFetch(final String fileName) throws IOException, RrdException {
+        final RrdDbCache cache = m_cache;
+        if (cache != null) {
+            return cache.acquire(fileName);
+        }
+        return new RrdDb(fileName, true);
+    }
+
+    private void closeFileAfterFetch(final RrdDb rrd, final String fileName) {
+        try {
+            releaseFile(rrd);
+        } catch (IOException e) {
+            LOG.error("Failed to close rrd file: {}", fileName, e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -234,6 +324,19 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         sample.setAndUpdate(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Creates a sample at the given time and sets the values directly,
+     * without going through JRobin's string parsing.
+     */
+    @Override
+    public void updateFile(final RrdDb rrdFile, final String owner, final long timestamp, final double[] values) throws Exception {
+        Sample sample = rrdFile.createSample(timestamp);
+        sample.setValues(values);
+        sample.update();
+    }
+
     /**
      * Initialized the RrdDb to use the FILE factory because the NIO factory
      * uses too much memory for our implementation.
@@ -263,7 +366,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
         try {
             long now = System.currentTimeMillis();
             long collectTime = (now - (now % interval)) / 1000L;
-            rrd = new RrdDb(fileName, true);
+            rrd = openFileForFetch(fileName);
             FetchData data = rrd.createFetchRequest(consolidationFunction, collectTime, collectTime).fetchData();
             LOG.debug(data.toString());
             double[] vals = data.getValues(ds);
@@ -277,11 +380,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    LOG.error("Failed to close rrd file: {}", fileName, e);
-                }
+                closeFileAfterFetch(rrd, fileName);
             }
         }
     }
@@ -291,7 +390,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     public Double fetchLastValueInRange(final String fileName, final String ds, final int interval, final int range) throws NumberFormatException, org.opennms.netmgt.rrd.RrdException {
         RrdDb rrd = null;
         try {
-        	rrd = new RrdDb(fileName, true);
+        	rrd = openFileForFetch(fileName);
          	long now = System.currentTimeMillis();
             long latestUpdateTime = (now - (now % interval)) / 1000L;
             long earliestUpdateTime = ((now - (now % interval)) - range) / 1000L;
@@ -319,11 +418,7 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
             throw new org.opennms.netmgt.rrd.RrdException("Exception occurred fetching data from " + fileName, e);
         } finally {
             if (rrd != null) {
-                try {
-                    rrd.close();
-                } catch (IOException e) {
-                    LOG.error("Failed to close rrd file: {}", fileName, e);
-                }
+                closeFileAfterFetch(rrd, fileName);
             }
         }
     }
@@ -820,13 +915,14 @@ public class JRobinRrdStrategy implements RrdStrategy<RrdDef,RrdDb> {
     }
 
     /**
-     * This implementation does not track any stats.
+     * Returns the open file cache statistics, if the cache is enabled.
      *
      * @return a {@link java.lang.String} object.
      */
     @Override
     public String getStats() {
-        return "";
+        final RrdDbCache cache = m_cache;
+        return cache == null ? "" : cache.getStats();
     }
 
     /*
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2013 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2013 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.rrd.jrobin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded, least-recently-used cache of open JRobin {@link RrdDb} handles
+ * keyed by file name, so that repeated updates and fetches against the same
+ * file do not re-open it and re-read its header every time.
+ *
+ * Handles are reference counted: {@link #acquire(String)} hands out the
+ * cached handle (opening it on a miss) and {@link #release(RrdDb)} gives it
+ * back. Only handles that nobody holds are closed, either because the cache
+ * is over capacity (least recently used first) or because they have been
+ * idle for longer than the idle timeout. RrdDb synchronizes its own reads
+ * and writes, so one handle can safely be shared by writer and fetch threads.
+ *
+ * A handle that is invalidated, or still held when the cache is closed, is
+ * retired: it is no longer handed out, but it is only closed once the last
+ * holder has released it.
+ */
+public class RrdDbCache {
+    private static final Logger LOG = LoggerFactory.getLogger(RrdDbCache.class);
+
+    private static class Entry {
+        private final String m_fileName;
+        private final RrdDb m_rrdDb;
+        private int m_references = 0;
+        private long m_lastAccess;
+        private boolean m_retired = false;
+
+        Entry(final String fileName, final RrdDb rrdDb) {
+            m_fileName = fileName;
+            m_rrdDb = rrdDb;
+        }
+    }
+
+    private final int m_capacity;
+    private final long m_idleTimeout;
+
+    /**
+     * Entries in access order, least recently used first
+     */
+    private final LinkedHashMap<String, Entry> m_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /**
+     * Entries by handle, for release(), including retired entries that are
+     * still held
+     */
+    private final Map<RrdDb, Entry> m_entriesByHandle = new IdentityHashMap<RrdDb, Entry>();
+
+    private final Timer m_idleTimer;
+
+    private long m_hits = 0;
+    private long m_misses = 0;
+    private long m_evictions = 0;
+
+    private boolean m_closed = false;
+
+    /**
+     * <p>Constructor for RrdDbCache.</p>
+     *
+     * @param capacity the number of idle handles to keep open
+     * @param idleTimeout milliseconds after which an unused handle is closed, 0 to never close idle handles
+     */
+    public RrdDbCache(final int capacity, final long idleTimeout) {
+        m_capacity = capacity;
+        m_idleTimeout = idleTimeout;
+
+        if (m_idleTimeout > 0) {
+            m_idleTimer = new Timer(getClass().getSimpleName() + "-IdleEviction", true);
+            final long period = Math.max(1000L, m_idleTimeout / 2);
+            m_idleTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, period, period);
+        } else {
+            m_idleTimer = null;
+        }
+    }
+
+    /**
+     * Return an open handle for the file, opening it if it is not cached.
+     * Every call must be balanced by a call to {@link #release(RrdDb)}.
+     *
+     * @param fileName a {@link java.lang.String} object.
+     * @return a {@link org.jrobin.core.RrdDb} object.
+     * @throws java.io.IOException if any.
+     * @throws org.jrobin.core.RrdException if any.
+     */
+    public RrdDb acquire(final String fileName) throws IOException, RrdException {
+        synchronized (this) {
+            if (m_closed) {
+                // not cached, release() closes it
+                return new RrdDb(fileName);
+            }
+            final Entry entry = m_entries.get(fileName);
+            if (entry != null) {
+                m_hits++;
+                entry.m_references++;
+                entry.m_lastAccess = System.currentTimeMillis();
+                return entry.m_rrdDb;
+            }
+            m_misses++;
+        }
+
+        // open outside the lock so a slow disk does not stall every other file
+        final RrdDb rrdDb = new RrdDb(fileName);
+
+        final List<Entry> evicted;
+        final RrdDb result;
+        synchronized (this) {
+            if (m_closed) {
+                return rrdDb;
+            }
+            Entry entry = m_entries.get(fileName);
+            if (entry == null) {
+                entry = new Entry(fileName, rrdDb);
+                m_entries.put(fileName, entry);
+                m_entriesByHandle.put(rrdDb, entry);
+            }
+            entry.m_references++;
+            entry.m_lastAccess = System.currentTimeMillis();
+            result = entry.m_rrdDb;
+
+            evicted = removeOverCapacity();
+        }
+
+        // another thread opened the same file while we were opening it
+        if (result != rrdDb) {
+            close(rrdDb, fileName);
+        }
+        closeAll(evicted);
+
+        return result;
+    }
+
+    /**
+     * Give back a handle returned by {@link #acquire(String)}. Handles that
+     * this cache does not know about are closed, and so are retired handles
+     * once the last holder has released them.
+     *
+     * @param rrdDb a {@link org.jrobin.core.RrdDb} object.
+     */
+    public void release(final RrdDb rrdDb) {
+        final List<Entry> evicted;
+        synchronized (this) {
+            final Entry entry = m_entriesByHandle.get(rrdDb);
+            if (entry == null) {
+                evicted = null;
+            } else if (entry.m_retired) {
+                if (--entry.m_references > 0) {
+                    return;
+                }
+                m_entriesByHandle.remove(rrdDb);
+                evicted = null;
+            } else {
+                entry.m_references--;
+                entry.m_lastAccess = System.currentTimeMillis();
+                evicted = removeOverCapacity();
+            }
+        }
+
+        if (evicted == null) {
+            close(rrdDb, rrdDb.getPath());
+        } else {
+            closeAll(evicted);
+        }
+    }
+
+    /**
+     * Whether the handle was handed out by this cache and has not been
+     * closed yet.
+     *
+     * @param rrdDb a {@link org.jrobin.core.RrdDb} object.
+     * @return a boolean.
+     */
+    public synchronized boolean isCached(final RrdDb rrdDb) {
+        return m_entriesByHandle.containsKey(rrdDb);
+    }
+
+    /**
+     * Drop the file from the cache, for example because it is being
+     * re-created. A handle that is still in use is retired and closed when
+     * the last holder releases it.
+     *
+     * @param fileName a {@link java.lang.String} object.
+     */
+    public void invalidate(final String fileName) {
+        final Entry entry;
+        synchronized (this) {
+            entry = m_entries.remove(fileName);
+            if (entry == null) {
+                return;
+            }
+            if (entry.m_references > 0) {
+                entry.m_retired = true;
+                return;
+            }
+            m_entriesByHandle.remove(entry.m_rrdDb);
+        }
+        close(entry.m_rrdDb, fileName);
+    }
+
+    /**
+     * Close every handle that is not in use and stop the idle eviction timer.
+     * Handles still in use are retired and closed when the last holder
+     * releases them, later acquires are not cached.
+     */
+    public void close() {
+        if (m_idleTimer != null) {
+            m_idleTimer.cancel();
+        }
+
+        final List<Entry> evicted = new ArrayList<Entry>();
+        synchronized (this) {
+            m_closed = true;
+            for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext(); ) {
+                final Entry entry = it.next();
+                it.remove();
+                if (entry.m_references == 0) {
+                    m_entriesByHandle.remove(entry.m_rrdDb);
+                    evicted.add(entry);
+                } else {
+                    entry.m_retired = true;
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * <p>getHeldFileCount</p>
+     *
+     * @return the number of handles, retired or not, that have not been released yet
+     */
+    public synchronized int getHeldFileCount() {
+        int held = 0;
+        for (final Entry entry : m_entriesByHandle.values()) {
+            if (entry.m_references > 0) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    void evictIdle() {
+        final long cutoff = System.currentTimeMillis() - m_idleTimeout;
+        final List<Entry> evicted = new ArrayList<Entry>();
+        synchronized (this) {
+            for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext(); ) {
+                final Entry entry = it.next();
+                if (entry.m_references == 0 && entry.m_lastAccess < cutoff) {
+                    it.remove();
+                    m_entriesByHandle.remove(entry.m_rrdDb);
+                    evicted.add(entry);
+                    m_evictions++;
+                }
+            }
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * Remove least recently used entries that are not in use until the cache
+     * is back within capacity. Must be called holding the lock.
+     */
+    private List<Entry> removeOverCapacity() {
+        List<Entry> evicted = null;
+        if (m_entries.size() <= m_capacity) {
+            return evicted;
+        }
+
+        for (final Iterator<Entry> it = m_entries.values().iterator(); it.hasNext() && m_entries.size() > m_capacity; ) {
+            final Entry entry = it.next();
+            if (entry.m_references == 0) {
+                it.remove();
+                m_entriesByHandle.remove(entry.m_rrdDb);
+                if (evicted == null) {
+                    evicted = new ArrayList<Entry>();
+                }
+                evicted.add(entry);
+                m_evictions++;
+            }
+        }
+        return evicted;
+    }
+
+    private static void closeAll(final List<Entry> entries) {
+        if (entries == null) {
+            return;
+        }
+        for (final Entry entry : entries) {
+            close(entry.m_rrdDb, entry.m_fileName);
+        }
+    }
+
+    private static void close(final RrdDb rrdDb, final String fileName) {
+        try {
+            rrdDb.close();
+        } catch (final IOException e) {
+            LOG.error("Failed to close rrd file: {}", fileName, e);
+        }
+    }
+
+    /**
+     * <p>getOpenFileCount</p>
+     *
+     * @return a int.
+     */
+    public synchronized int getOpenFileCount() {
+        return m_entries.size();
+    }
+
+    /**
+     * <p>getHits</p>
+     *
+     * @return a long.
+     */
+    public synchronized long getHits() {
+        return m_hits;
+    }
+
+    /**
+     * <p>getMisses</p>
+     *
+     * @return a long.
+     */
+    public synchronized long getMisses() {
+        return m_misses;
+    }
+
+    /**
+     * <p>getEvictions</p>
+     *
+     * @return a long.
+     */
+    public synchronized long getEvictions() {
+        return m_evictions;
+    }
+
+    /**
+     * <p>getStats</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    public synchronized String getStats() {
+        return "RrdDb cache: open=" + m_entries.size() + " capacity=" + m_capacity + " hits=" + m_hits + " misses=" + m_misses + " evictions=" + m_evictions;
+    }
+}
@@ -31,12 +31,15 @@ package org.opennms.netmgt.rrd.jrobin;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 
 import org.jrobin.core.RrdDb;
 import org.jrobin.core.RrdDef;
@@ -173,6 +176,94 @@ public class JRobinRrdStrategyTest {
         m_strategy.closeFile(openedFile);
     }
 
+    @Test
+    public void testUpdateWithValues() throws Exception {
+        File rrdFile = createRrdFile();
+        long timestamp = System.currentTimeMillis() / 1000L;
+
+        RrdDb openedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        m_strategy.updateFile(openedFile, "huh?", timestamp, new double[] { 1.234234 });
+        assertEquals(timestamp, openedFile.getLastUpdateTime());
+        assertEquals(1.234234, openedFile.getDatasource("bar").getLastValue(), 0.0);
+        m_strategy.closeFile(openedFile);
+    }
+
+    @Test
+    public void testUpdateWithFileCache() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("org.jrobin.core.RrdBackendFactory", "FILE");
+        properties.setProperty("org.opennms.rrd.jrobin.cacheSize", "1");
+        m_strategy.setConfigurationProperties(properties);
+
+        File rrdFile = createRrdFile();
+
+        RrdDb openedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        m_strategy.updateFile(openedFile, "huh?", "N:1.234234");
+        m_strategy.closeFile(openedFile);
+
+        // the second update must reuse the handle rather than re-opening the file
+        RrdDb reopenedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        assertSame(openedFile, reopenedFile);
+        m_strategy.closeFile(reopenedFile);
+
+        assertEquals("RrdDb cache: open=1 capacity=1 hits=1 misses=1 evictions=0", m_strategy.getStats());
+
+        // re-creating the file must not hand out the stale handle
+        List<RrdDataSource> dataSources = new ArrayList<RrdDataSource>();
+        dataSources.add(new RrdDataSource("bar", "GAUGE", 3000, "U", "U"));
+        List<String> rraList = new ArrayList<String>();
+        rraList.add("RRA:AVERAGE:0.5:1:2016");
+        rrdFile.delete();
+        m_strategy.createFile(m_strategy.createDefinition("hello!", rrdFile.getParentFile().getAbsolutePath(), "foo", 300, dataSources, rraList), null);
+        RrdDb recreatedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+        assertNotSame(openedFile, recreatedFile);
+        m_strategy.closeFile(recreatedFile);
+
+        m_strategy.setConfigurationProperties(null);
+    }
+
+    @Test
+    public void testCacheInvalidateWhileHeld() throws Exception {
+        File rrdFile = createRrdFile();
+        RrdDbCache cache = new RrdDbCache(1, 0);
+
+        RrdDb first = cache.acquire(rrdFile.getAbsolutePath());
+        RrdDb second = cache.acquire(rrdFile.getAbsolutePath());
+        assertSame(first, second);
+
+        cache.invalidate(rrdFile.getAbsolutePath());
+        assertFalse("an invalidated handle must be closed by its last holder only", first.isClosed());
+
+        cache.release(first);
+        assertFalse("the handle was closed while still held", second.isClosed());
+        second.getLastUpdateTime();
+
+        cache.release(second);
+        assertTrue("the handle was not closed by its last holder", second.isClosed());
+        assertEquals(0, cache.getHeldFileCount());
+
+        cache.close();
+    }
+
+    @Test
+    public void testReconfigureWhileHeld() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty("org.jrobin.core.RrdBackendFactory", "FILE");
+        properties.setProperty("org.opennms.rrd.jrobin.cacheSize", "1");
+        m_strategy.setConfigurationProperties(properties);
+
+        File rrdFile = createRrdFile();
+        RrdDb openedFile = m_strategy.openFile(rrdFile.getAbsolutePath());
+
+        // dropping the cache must leave the handle open for its holder
+        m_strategy.setConfigurationProperties(null);
+        assertFalse(openedFile.isClosed());
+        m_strategy.updateFile(openedFile, "huh?", "N:1.234234");
+
+        m_strategy.closeFile(openedFile);
+        assertTrue(openedFile.isClosed());
+    }
+
     @Test
     public void testSampleSetFloatingPointValueGood() throws Exception {
         File rrdFile = createRrdFile();
@@ -215,6 +215,17 @@ public class JniRrdStrategy implements RrdStrategy<JniRrdStrategy.CreateCommand
         rrd.append(data);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * rrdtool only accepts updates as strings, so this formats the values
+     * and appends them like {@link #updateFile(StringBuffer, String, String)}.
+     */
+    @Override
+    public void updateFile(StringBuffer rrd, String owner, long timestamp, double[] values) throws Exception {
+        updateFile(rrd, owner, RrdUtils.formatUpdate(timestamp, values));
+    }
+
     /**
      * Initialized the JNI Interface
      *
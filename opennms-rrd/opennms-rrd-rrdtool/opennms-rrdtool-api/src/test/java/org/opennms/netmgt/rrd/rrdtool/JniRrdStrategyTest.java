@@ -28,13 +28,20 @@
 
 package org.opennms.netmgt.rrd.rrdtool;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.opennms.core.test.MockLogAppender;
+import org.opennms.netmgt.rrd.RrdDataSource;
+import org.opennms.netmgt.rrd.RrdUtils;
+import org.opennms.netmgt.rrd.rrdtool.JniRrdStrategy.CreateCommand;
 import org.springframework.test.context.TestExecutionListeners;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.util.StringUtils;
@@ -71,6 +78,29 @@ public class JniRrdStrategyTest {
     public void testInitialize() {
     }
 
+    @Test
+    public void testCounterUpdate() throws Exception {
+        // rrdtool rejects "12345.0" for a COUNTER with "not a simple integer"
+        assertEquals("1000:12345:U:0.5:18446744073709551616", RrdUtils.formatUpdate(1000, new double[] { 12345.0, Double.NaN, 0.5, 18446744073709551616.0 }));
+
+        if (m_strategy != null) {
+            final File directory = new File("target/rrd/" + getClass().getSimpleName());
+            directory.mkdirs();
+
+            final long start = System.currentTimeMillis() / 1000 - 600;
+            final List<RrdDataSource> dataSources = Collections.singletonList(new RrdDataSource("counter", "COUNTER", 600, "U", "U"));
+            final CreateCommand def = m_strategy.createDefinition("test", directory.getAbsolutePath(), "counter", 300, dataSources, Collections.singletonList("RRA:AVERAGE:0.5:1:100"));
+            m_strategy.createFile(def, Collections.<String, String>emptyMap());
+
+            final String fileName = new File(directory, "counter" + m_strategy.getDefaultFileExtension()).getAbsolutePath();
+            for (int i = 1; i <= 2; i++) {
+                final StringBuffer rrd = m_strategy.openFile(fileName);
+                m_strategy.updateFile(rrd, "test", start + i * 300, new double[] { 12345.0 * i });
+                m_strategy.closeFile(rrd);
+            }
+        }
+    }
+
     @Test
     public void testGraph() throws Exception {
         if (m_strategy != null) {
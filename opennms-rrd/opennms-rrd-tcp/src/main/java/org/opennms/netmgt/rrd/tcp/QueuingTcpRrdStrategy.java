@@ -69,11 +69,19 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
         private String m_filename;
         private String m_owner;
         private String m_data;
+        private long m_timestamp;
+        private double[] m_values;
         public PerformanceDataReading(String filename, String owner, String data) {
             m_filename = filename;
             m_owner = owner;
             m_data = data;
         }
+        public PerformanceDataReading(String filename, String owner, long timestamp, double[] values) {
+            m_filename = filename;
+            m_owner = owner;
+            m_timestamp = timestamp;
+            m_values = values;
+        }
         public String getFilename() {
             return m_filename;
         }
@@ -83,6 +91,12 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
         public String getData() {
             return m_data;
         }
+        public long getTimestamp() {
+            return m_timestamp;
+        }
+        public double[] getValues() {
+            return m_values;
+        }
     }
 
     private static class ConsumerThread extends Thread {
@@ -102,7 +116,11 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
                     if (m_myQueue.drainTo(sendMe) > 0) {
                         RrdOutputSocket socket = new RrdOutputSocket(m_strategy.getHost(), m_strategy.getPort());
                         for (PerformanceDataReading reading : sendMe) {
-                            socket.addData(reading.getFilename(), reading.getOwner(), reading.getData());
+                            if (reading.getValues() == null) {
+                                socket.addData(reading.getFilename(), reading.getOwner(), reading.getData());
+                            } else {
+                                socket.addData(reading.getFilename(), reading.getOwner(), reading.getTimestamp(), reading.getValues());
+                            }
                         }
                         socket.writeData();
                     } else {
@@ -171,7 +189,17 @@ public class QueuingTcpRrdStrategy implements RrdStrategy<TcpRrdStrategy.RrdDefi
     /** {@inheritDoc} */
     @Override
     public void updateFile(String fileName, String owner, String data) throws Exception {
-        if (m_queue.offer(new PerformanceDataReading(fileName, owner, data), 500, TimeUnit.MILLISECONDS)) {
+        enqueue(new PerformanceDataReading(fileName, owner, data));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void updateFile(String fileName, String owner, long timestamp, double[] values) throws Exception {
+        enqueue(new PerformanceDataReading(fileName, owner, timestamp, values));
+    }
+
+    private void enqueue(PerformanceDataReading reading) throws InterruptedException {
+        if (m_queue.offer(reading, 500, TimeUnit.MILLISECONDS)) {
             if (m_skippedReadings > 0) {
                 LOG.warn("Skipped {} performance data message(s) because of queue overflow", m_skippedReadings);
                 m_skippedReadings = 0;
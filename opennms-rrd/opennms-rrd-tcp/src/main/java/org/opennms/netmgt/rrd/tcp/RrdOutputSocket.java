@@ -86,6 +86,27 @@ public class RrdOutputSocket {
         m_messageCount++;
     }
 
+    /**
+     * <p>addData</p>
+     *
+     * @param filename a {@link java.lang.String} object.
+     * @param owner a {@link java.lang.String} object.
+     * @param timestamp the time of the update in seconds since the epoch
+     * @param values an array of double.
+     */
+    public void addData(String filename, String owner, long timestamp, double[] values) {
+        PerformanceDataReading.Builder reading = PerformanceDataReading.newBuilder()
+                .setPath(filename)
+                .setOwner(owner)
+                // RRD timestamps are in seconds, we want to send milliseconds
+                .setTimestamp(timestamp * 1000);
+        for (double value : values) {
+            reading.addValue(value);
+        }
+        m_messages.addMessage(reading);
+        m_messageCount++;
+    }
+
     /**
      * <p>writeData</p>
      */
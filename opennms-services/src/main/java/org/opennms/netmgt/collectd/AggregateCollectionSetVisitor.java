@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.opennms.netmgt.config.collector.AttributeGroup;
+import org.opennms.netmgt.config.collector.CollectionAttribute;
+import org.opennms.netmgt.config.collector.CollectionResource;
+import org.opennms.netmgt.config.collector.CollectionSet;
+import org.opennms.netmgt.config.collector.CollectionSetVisitor;
+
+/**
+ * Passes each step of a visit on to several visitors, in the order they
+ * were added, so that a collection set can be persisted and thresholded in
+ * a single pass.
+ */
+public class AggregateCollectionSetVisitor implements CollectionSetVisitor {
+
+    private final List<CollectionSetVisitor> m_visitors = new ArrayList<CollectionSetVisitor>();
+
+    /**
+     * <p>Constructor for AggregateCollectionSetVisitor.</p>
+     *
+     * @param visitors the visitors to pass the visit on to
+     */
+    public AggregateCollectionSetVisitor(final CollectionSetVisitor... visitors) {
+        Collections.addAll(m_visitors, visitors);
+    }
+
+    /**
+     * <p>addVisitor</p>
+     *
+     * @param visitor a {@link org.opennms.netmgt.config.collector.CollectionSetVisitor} object.
+     */
+    public void addVisitor(final CollectionSetVisitor visitor) {
+        m_visitors.add(visitor);
+    }
+
+    /**
+     * <p>getVisitors</p>
+     *
+     * @return a {@link java.util.List} object.
+     */
+    public List<CollectionSetVisitor> getVisitors() {
+        return Collections.unmodifiableList(m_visitors);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitCollectionSet(final CollectionSet set) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.visitCollectionSet(set);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitResource(final CollectionResource resource) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.visitResource(resource);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitGroup(final AttributeGroup group) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.visitGroup(group);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void visitAttribute(final CollectionAttribute attribute) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.visitAttribute(attribute);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void completeAttribute(final CollectionAttribute attribute) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.completeAttribute(attribute);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void completeGroup(final AttributeGroup group) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.completeGroup(group);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void completeResource(final CollectionResource resource) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.completeResource(resource);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void completeCollectionSet(final CollectionSet set) {
+        for (final CollectionSetVisitor visitor : m_visitors) {
+            visitor.completeCollectionSet(set);
+        }
+    }
+}
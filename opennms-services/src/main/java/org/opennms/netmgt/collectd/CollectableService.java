@@ -377,8 +377,9 @@ final class CollectableService implements ReadyRunnable {
 		LOG.info("run: starting new collection for {}/{}/{}", getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
 		CollectionSet result = null;
 		try {
-		    result = m_spec.collect(m_agent);
-		    if (result != null) {
+		    final boolean streaming = m_spec.isStreaming();
+		    result = streaming ? doStreamingCollection() : m_spec.collect(m_agent);
+		    if (result != null && !streaming) {
                         Collectd.instrumentation().beginPersistingServiceData(m_nodeId, getHostAddress(), m_spec.getServiceName());
                         try {
                             BasePersister persister = createPersister(m_params, m_repository);
@@ -414,6 +415,27 @@ final class CollectableService implements ReadyRunnable {
 		LOG.info("run: finished collection for {}/{}/{}", getHostAddress(), m_spec.getServiceName(), m_spec.getPackageName());
 	}
 
+	/**
+	 * Collect with a collector that persists and thresholds the data while
+	 * it is collected, handing it a single visitor for both.
+	 */
+	private CollectionSet doStreamingCollection() throws CollectionException {
+	    final AggregateCollectionSetVisitor visitor = new AggregateCollectionSetVisitor(createPersister(m_params, m_repository));
+	    if (m_thresholdVisitor != null) {
+	        if (m_thresholdVisitor.isNodeInOutage()) {
+	            LOG.info("run: the threshold processing will be skipped because the node {} is on a scheduled outage.", m_nodeId);
+	        } else if (m_thresholdVisitor.hasThresholds()) {
+	            visitor.addVisitor(m_thresholdVisitor);
+	        }
+	    }
+
+	    final CollectionSet result = m_spec.collect(m_agent, visitor);
+	    if (result != null && result.getStatus() != ServiceCollector.COLLECTION_SUCCEEDED) {
+	        throw new CollectionFailed(result.getStatus());
+	    }
+	    return result;
+	}
+
 	/**
      * Process any outstanding updates.
      * 
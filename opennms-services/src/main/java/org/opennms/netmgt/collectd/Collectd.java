@@ -68,9 +68,9 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.model.events.EventIpcManager;
 import org.opennms.netmgt.model.events.EventListener;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xml.event.Parm;
 import org.opennms.netmgt.xml.event.Value;
@@ -302,7 +302,7 @@ public class Collectd extends AbstractServiceDaemon implements
                 // Create a scheduler
                 try {
                     LOG.debug("init: Creating collectd scheduler");
-                    setScheduler(new LegacyScheduler("Collectd", m_collectorConfigDao.getSchedulerThreads()));
+                    setScheduler(SchedulerFactory.createScheduler("Collectd", m_collectorConfigDao.getSchedulerThreads()));
                 } catch (final RuntimeException e) {
                     LOG.error("init: Failed to create collectd scheduler", e);
                     throw e;
@@ -1381,6 +1381,16 @@ public class Collectd extends AbstractServiceDaemon implements
         return m_scheduler;
     }
 
+    /**
+     * Returns the scheduler without creating it.
+     *
+     * @return a {@link org.opennms.netmgt.scheduler.Scheduler} object, null
+     *         before the daemon is initialized.
+     */
+    public Scheduler getSchedulerInstance() {
+        return m_scheduler;
+    }
+
     /**
      * <p>setCollectorConfigDao</p>
      *
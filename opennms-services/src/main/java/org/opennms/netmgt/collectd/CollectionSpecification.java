@@ -38,6 +38,7 @@ import org.opennms.netmgt.config.PollOutagesConfigFactory;
 import org.opennms.netmgt.config.collectd.Parameter;
 import org.opennms.netmgt.config.collectd.Service;
 import org.opennms.netmgt.config.collector.CollectionSet;
+import org.opennms.netmgt.config.collector.CollectionSetVisitor;
 import org.opennms.netmgt.dao.api.CollectorConfigDao;
 import org.opennms.netmgt.eventd.EventIpcManagerFactory;
 import org.opennms.netmgt.model.RrdRepository;
@@ -268,6 +269,35 @@ public class CollectionSpecification {
         }
     }
 
+    /**
+     * Returns true if the collector hands the data to the visitors while it
+     * is collecting it.
+     *
+     * @return a boolean.
+     * @see StreamingServiceCollector
+     */
+    public boolean isStreaming() {
+        return getCollector() instanceof StreamingServiceCollector && ((StreamingServiceCollector) getCollector()).isStreaming();
+    }
+
+    /**
+     * Collects the data and hands it to the visitor while it is collected.
+     * Only valid if {@link #isStreaming()} is true.
+     *
+     * @param agent a {@link org.opennms.netmgt.collectd.CollectionAgent} object.
+     * @param visitor a {@link org.opennms.netmgt.config.collector.CollectionSetVisitor} object.
+     * @return the {@link org.opennms.netmgt.config.collector.CollectionSet} that has been visited
+     * @throws org.opennms.netmgt.collectd.CollectionException if any.
+     */
+    public CollectionSet collect(CollectionAgent agent, CollectionSetVisitor visitor) throws CollectionException {
+        Collectd.instrumentation().beginCollectorCollect(agent.getNodeId(), agent.getHostAddress(), m_svcName);
+        try {
+            return ((StreamingServiceCollector) getCollector()).collect(agent, EventIpcManagerFactory.getIpcManager(), getPropertyMap(), visitor);
+        } finally {
+            Collectd.instrumentation().endCollectorCollect(agent.getNodeId(), agent.getHostAddress(), m_svcName);
+        }
+    }
+
     /**
      * <p>scheduledOutage</p>
      *
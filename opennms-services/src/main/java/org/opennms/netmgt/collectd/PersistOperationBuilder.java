@@ -32,7 +32,6 @@ package org.opennms.netmgt.collectd;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -48,6 +47,7 @@ import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
 import org.opennms.netmgt.rrd.RrdUtils;
+import org.opennms.netmgt.threshd.CollectedValueCache;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -156,31 +156,78 @@ public class PersistOperationBuilder {
         try {
             final String ownerName = m_resource.getOwnerName();
             final String absolutePath = getResourceDir(m_resource).getAbsolutePath();
-            RrdUtils.createRRD(ownerName, absolutePath, m_rrdName, getRepository().getStep(), getDataSources(), getRepository().getRraList(), getAttributeMappings());
-            RrdUtils.updateRRD(ownerName, absolutePath, m_rrdName, m_timeKeeper.getCurrentTime(), getValues());
+            final List<RrdDataSource> dataSources = getDataSources();
+            final long timestamp = m_timeKeeper.getCurrentTime();
+            final double[] values = getValues();
+            RrdUtils.createRRD(ownerName, absolutePath, m_rrdName, getRepository().getStep(), dataSources, getRepository().getRraList(), getAttributeMappings());
+            if (isExact(values)) {
+                RrdUtils.updateRRD(ownerName, absolutePath, m_rrdName, timestamp, values);
+            } else {
+                // keep large counters exact by handing the collected strings to the strategy
+                RrdUtils.updateRRD(ownerName, absolutePath, m_rrdName, timestamp, getValuesString());
+            }
             RrdUtils.createMetaDataFile(absolutePath, m_rrdName, m_metaData);
+            // hand the values to threshd, so it doesn't have to read them back from the file
+            CollectedValueCache.getInstance().publish(absolutePath, m_rrdName, dataSources, timestamp, values);
         } catch (FileNotFoundException e) {
             LoggerFactory.getLogger(getClass()).warn("Could not get resource directory: " + e.getMessage(), e);
             return;
         }
     }
 
-    private String getValues() {
-        boolean first = true;
-        StringBuffer values = new StringBuffer();
-        for (Iterator<AttributeDefinition> iter = m_declarations.keySet().iterator(); iter.hasNext();) {
-            AttributeDefinition attrDef = iter.next();
-            String value = m_declarations.get(attrDef);
-            if (!first) {
+    private double[] getValues() {
+        final double[] values = new double[m_declarations.size()];
+        int i = 0;
+        for (final String value : m_declarations.values()) {
+            values[i++] = parseValue(value);
+        }
+        return values;
+    }
+
+    private String getValuesString() {
+        final StringBuilder values = new StringBuilder();
+        for (final String value : m_declarations.values()) {
+            if (values.length() > 0) {
                 values.append(':');
-            } else {
-                first = false;
             }
             values.append(value);
         }
         return values.toString();
     }
 
+    /**
+     * Whether the parsed values hold the integers that were collected
+     * exactly. Counters of 2^53 and above do not fit in a double.
+     */
+    private static boolean isExact(final double[] values) {
+        for (final double value : values) {
+            if (!isExact(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isExact(final double parsed) {
+        // 2^53 + 1 parses to 2^53, so only values below it are known to be exact
+        return Double.isNaN(parsed) || Math.abs(parsed) < 1L << 53;
+    }
+
+    /**
+     * Parse a value the way rrdtool and JRobin parse the values in an update
+     * string: "U" and anything that is not a number is unknown.
+     */
+    static double parseValue(final String value) {
+        if (value == null || "U".equals(value)) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (final NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
     private Map<String, String> getAttributeMappings() {
         return null;
     }
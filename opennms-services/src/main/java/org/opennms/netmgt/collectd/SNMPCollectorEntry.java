@@ -29,8 +29,10 @@
 package org.opennms.netmgt.collectd;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.opennms.netmgt.config.MibObject;
 import org.opennms.netmgt.snmp.AbstractSnmpStore;
@@ -69,6 +71,11 @@ public final class SNMPCollectorEntry extends AbstractSnmpStore {
     private Collection<SnmpAttributeType> m_attrList;
     private SnmpCollectionSet m_collectionSet;
 
+    /**
+     * The resources the values of this entry were stored in
+     */
+    private Set<SnmpCollectionResource> m_resources = new LinkedHashSet<SnmpCollectionResource>();
+
     /**
      * <p>Constructor for SNMPCollectorEntry.</p>
      *
@@ -110,12 +117,24 @@ public final class SNMPCollectorEntry extends AbstractSnmpStore {
             if (attrType.getInstance().equals(MibObject.INSTANCE_IFINDEX)) {
                 putIfIndex(res.getInstance().toInt());
             }
-            attrType.storeResult(m_collectionSet, this, res);
+            final SnmpCollectionResource resource = attrType.storeResult(m_collectionSet, this, res);
+            if (resource != null) {
+                m_resources.add(resource);
+            }
             LOG.debug("storeResult: added value for {}: {}", attrType.getAlias(), res.toString());
         }
     }
 
 
+    /**
+     * <p>getResources</p>
+     *
+     * @return the resources the values of this entry were stored in
+     */
+    Set<SnmpCollectionResource> getResources() {
+        return m_resources;
+    }
+
     String getValueForBase(String baseOid) {
     
         String instance = String.valueOf(getIfIndex()); 
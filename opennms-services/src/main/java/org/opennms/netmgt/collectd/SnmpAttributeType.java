@@ -244,8 +244,9 @@ public abstract class SnmpAttributeType implements AttributeDefinition, Collecti
      * @param collectionSet a {@link org.opennms.netmgt.collectd.SnmpCollectionSet} object.
      * @param entry a {@link org.opennms.netmgt.collectd.SNMPCollectorEntry} object.
      * @param res a {@link org.opennms.netmgt.snmp.SnmpResult} object.
+     * @return the resource the value was stored in, or null if there is none
      */
-    public void storeResult(SnmpCollectionSet collectionSet, SNMPCollectorEntry entry, SnmpResult res) {
+    public SnmpCollectionResource storeResult(SnmpCollectionSet collectionSet, SNMPCollectorEntry entry, SnmpResult res) {
         LOG.debug("Setting attribute: {}.[{}] = '{}'", this, res.getInstance(), res.getValue());
         SnmpCollectionResource resource = null;
         if(this.getAlias().equals("ifAlias")) {
@@ -258,6 +259,7 @@ public abstract class SnmpAttributeType implements AttributeDefinition, Collecti
         } else {
             resource.setAttributeValue(this, res.getValue());
         }
+        return resource;
     }
 
     /**
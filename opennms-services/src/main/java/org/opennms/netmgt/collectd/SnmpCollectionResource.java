@@ -161,6 +161,15 @@ public abstract class SnmpCollectionResource implements CollectionResource {
         visitor.completeResource(this);
     }
 
+    /**
+     * Drops the values collected for this resource once they have been
+     * visited, so that they do not stay around until the whole collection
+     * set is done.
+     */
+    void clearAttributes() {
+        m_groups.clear();
+    }
+
     /**
      * <p>getGroups</p>
      *
@@ -30,10 +30,16 @@ package org.opennms.netmgt.collectd;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.netmgt.config.collector.AttributeDefinition;
@@ -77,6 +83,17 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
 
     }
 
+    /**
+     * How long to wait for a completed row before checking whether the walk
+     * has failed
+     */
+    private static final long ROW_POLL_INTERVAL = 100;
+
+    /**
+     * Marks the end of the rows on the queue of completed rows
+     */
+    private static final SNMPCollectorEntry NO_MORE_ROWS = new SNMPCollectorEntry(Collections.<SnmpAttributeType>emptyList(), null);
+
     private final CollectionAgent m_agent;
     private final OnmsSnmpCollection m_snmpCollection;
     private SnmpIfCollector m_ifCollector;
@@ -86,6 +103,7 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
     private int m_status=ServiceCollector.COLLECTION_FAILED;
     private boolean m_ignorePersist;
     private Date m_timestamp;
+    private final BlockingQueue<SNMPCollectorEntry> m_completedRows = new LinkedBlockingQueue<SNMPCollectorEntry>();
 
     /**
      * <p>toString</p>
@@ -397,6 +415,112 @@ public class SnmpCollectionSet implements Collectable, CollectionSet {
         }
     }
 
+    /**
+     * Collects the data like {@link #collect()}, but hands the resources of
+     * each table row to the visitor as soon as the walk has passed it, so
+     * that they are persisted while the agent is still answering and do not
+     * all have to be held until the walk is done. The visitor is called on
+     * the calling thread, and the values of a row are dropped once it has
+     * been visited. The other resources, like the node level one, are
+     * visited when the walk is done.
+     *
+     * <p>If the walk fails, the rows that were completed before have been
+     * visited already and the collection set is not completed. If the rows
+     * cannot be streamed because the collection is limited to a list of
+     * instances, the data is collected first and visited after.</p>
+     *
+     * @param visitor a {@link org.opennms.netmgt.config.collector.CollectionSetVisitor} object.
+     * @throws org.opennms.netmgt.collectd.CollectionException if any.
+     */
+    void collect(final CollectionSetVisitor visitor) throws CollectionException {
+        final SnmpIfCollector ifCollector = getIfCollector();
+        if (ifCollector == null || !ifCollector.isStreamable()) {
+            collect();
+            visit(visitor);
+            return;
+        }
+
+        ifCollector.setStreaming(true);
+        final Set<CollectionResource> visited = Collections.newSetFromMap(new IdentityHashMap<CollectionResource, Boolean>());
+
+        visitor.visitCollectionSet(this);
+        try {
+            SnmpWalker walker = createWalker();
+            walker.start();
+
+            logStartedWalker();
+
+            // visit the rows as they complete until the walk is done
+            SNMPCollectorEntry row;
+            while ((row = m_completedRows.poll(ROW_POLL_INTERVAL, TimeUnit.MILLISECONDS)) != NO_MORE_ROWS) {
+                if (row != null) {
+                    visitRow(row, visitor, visited);
+                } else if (walker.isFinished()) {
+                    break;
+                }
+            }
+
+            walker.waitFor();
+
+            logFinishedWalker();
+
+            // Was the collection successful?
+            verifySuccessfulWalk(walker);
+
+            m_status = ServiceCollector.COLLECTION_SUCCEEDED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CollectionWarning("collect: Collection of node SNMP "
+                    + "data for interface " + getCollectionAgent().getHostAddress()
+                    + " interrupted: " + e, e);
+        }
+
+        SNMPCollectorEntry row;
+        while ((row = m_completedRows.poll()) != null) {
+            if (row != NO_MORE_ROWS) {
+                visitRow(row, visitor, visited);
+            }
+        }
+        for (CollectionResource resource : getResources()) {
+            if (!visited.contains(resource)) {
+                resource.visit(visitor);
+            }
+        }
+
+        visitor.completeCollectionSet(this);
+    }
+
+    private static void visitRow(final SNMPCollectorEntry row, final CollectionSetVisitor visitor, final Set<CollectionResource> visited) {
+        for (SnmpCollectionResource resource : row.getResources()) {
+            if (visited.add(resource)) {
+                resource.visit(visitor);
+            }
+        }
+        // an aliased resource shares the values of its interface, so only
+        // drop them once both have been visited
+        for (SnmpCollectionResource resource : row.getResources()) {
+            resource.clearAttributes();
+        }
+    }
+
+    /**
+     * Called by the {@link SnmpIfCollector} from the walker thread when the
+     * walk has passed a row.
+     *
+     * @param row the values of the row
+     */
+    void rowCompleted(final SNMPCollectorEntry row) {
+        m_completedRows.add(row);
+    }
+
+    /**
+     * Called by the {@link SnmpIfCollector} from the walker thread when all
+     * of the rows have been completed.
+     */
+    void rowsCompleted() {
+        m_completedRows.add(NO_MORE_ROWS);
+    }
+
     boolean checkDisableForceRescan(final String disabledString) {
         final Map<String, Object> parameters = m_snmpCollection.getServiceParameters().getParameters();
         final String src = ParameterMap.getKeyedString(parameters, "disableForceRescan", null);
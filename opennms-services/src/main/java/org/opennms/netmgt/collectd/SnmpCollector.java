@@ -42,6 +42,7 @@ import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.config.DataCollectionConfigFactory;
 import org.opennms.netmgt.config.SnmpPeerFactory;
 import org.opennms.netmgt.config.collector.CollectionSet;
+import org.opennms.netmgt.config.collector.CollectionSetVisitor;
 import org.opennms.netmgt.config.collector.ServiceParameters;
 import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.model.events.EventProxy;
@@ -55,7 +56,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author <A HREF="mailto:brozow@opennms.org">Matt Brozowski</A>
  */
-public class SnmpCollector implements ServiceCollector {
+public class SnmpCollector implements StreamingServiceCollector {
     
     private static final Logger LOG = LoggerFactory.getLogger(SnmpCollector.class);
     
@@ -81,6 +82,12 @@ public class SnmpCollector implements ServiceCollector {
      */
     static final String IFALIAS_OID = ".1.3.6.1.2.1.31.1.1.1.18";
 
+    /**
+     * Set this system property to true to persist and threshold the rows of
+     * the tables while they are collected.
+     */
+    static final String STREAMING_PROPERTY = "org.opennms.netmgt.collectd.SnmpCollector.streaming";
+
     /**
      * SQL statement to retrieve snmpifaliases and snmpifindexes for a given
      * node.
@@ -304,6 +311,32 @@ public class SnmpCollector implements ServiceCollector {
      */
     @Override
     public CollectionSet collect(CollectionAgent agent, EventProxy eventProxy, Map<String, Object> parameters) throws CollectionException {
+        return collect(agent, eventProxy, parameters, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The rows cannot be streamed when a force rescan may be sent, as it
+     * depends on the sysUpTime and the resources of the whole collection.
+     */
+    @Override
+    public boolean isStreaming() {
+        return Boolean.getBoolean(STREAMING_PROPERTY) && !isForceRescanEnabled();
+    }
+
+    private static boolean isForceRescanEnabled() {
+        return System.getProperty("org.opennms.netmgt.collectd.SnmpCollector.forceRescan", "false").equalsIgnoreCase("true");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Perform data collection, handing the rows of the tables to the visitor
+     * as they are walked, if a visitor is given.
+     */
+    @Override
+    public CollectionSet collect(CollectionAgent agent, EventProxy eventProxy, Map<String, Object> parameters, CollectionSetVisitor visitor) throws CollectionException {
         try {
             // XXX: Experimental code that reuses the OnmsSnmpCollection
             // OnmsSnmpCollection snmpCollection = (OnmsSnmpCollection)agent.getAttribute("SNMP_COLLECTION");
@@ -325,14 +358,17 @@ public class SnmpCollector implements ServiceCollector {
             
             Collectd.instrumentation().beginCollectingServiceData(collectionSet.getCollectionAgent().getNodeId(), collectionSet.getCollectionAgent().getHostAddress(), serviceName());
             try {
-                collectionSet.collect();
+                if (visitor == null) {
+                    collectionSet.collect();
+                } else {
+                    collectionSet.collect(visitor);
+                }
                 
                 /*
                  * FIXME: Should we even be doing this? I say we get rid of this force rescan thingie
                  * {@see http://issues.opennms.org/browse/NMS-1057}
                  */
-                if (System.getProperty("org.opennms.netmgt.collectd.SnmpCollector.forceRescan", "false").equalsIgnoreCase("true")
-                        && collectionSet.rescanNeeded()) {
+                if (isForceRescanEnabled() && collectionSet.rescanNeeded()) {
                     /*
                      * TODO: the behavior of this object may have been re-factored away.
                      * Verify that this is correct and remove this unused object if it
@@ -30,6 +30,9 @@ package org.opennms.netmgt.collectd;
 
 import java.net.InetAddress;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -37,6 +40,8 @@ import java.util.TreeMap;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.collector.CollectionSet;
 import org.opennms.netmgt.snmp.AggregateTracker;
+import org.opennms.netmgt.snmp.CollectionTracker;
+import org.opennms.netmgt.snmp.ColumnTracker;
 import org.opennms.netmgt.snmp.SnmpInstId;
 import org.opennms.netmgt.snmp.SnmpResult;
 import org.slf4j.Logger;
@@ -58,8 +63,33 @@ public class SnmpIfCollector extends AggregateTracker {
     
     private static final Logger LOG = LoggerFactory.getLogger(SnmpIfCollector.class);
     
+    /**
+     * Orders the columns by how far they have been walked, the one furthest
+     * behind first, like the {@link org.opennms.netmgt.snmp.TableTracker}
+     * does.
+     */
+    private static final Comparator<CollectionTracker> LAGGING_FIRST = new Comparator<CollectionTracker>() {
+        @Override
+        public int compare(final CollectionTracker o1, final CollectionTracker o2) {
+            final SnmpInstId lhs = ((ColumnTracker) o1).getLastInstance();
+            final SnmpInstId rhs = ((ColumnTracker) o2).getLastInstance();
+            if (lhs == rhs) return 0;
+            if (lhs == null) return -1;
+            if (rhs == null) return 1;
+            return lhs.compareTo(rhs);
+        }
+    };
+
     private Map<SnmpInstId, SNMPCollectorEntry> m_results = new TreeMap<SnmpInstId, SNMPCollectorEntry>();
     
+    /**
+     * Whether the completed rows are handed to the collection set while the
+     * walk is going on
+     */
+    private boolean m_streaming = false;
+
+    private boolean m_rowsCompleted = false;
+    
     /**
      * Holds the IP Address of the primary SNMP iterface.
      */
@@ -161,6 +191,91 @@ public class SnmpIfCollector extends AggregateTracker {
         }
         entry.storeResult(res);
 
+        if (m_streaming) {
+            handleCompletedRows();
+        }
+    }
+
+    /**
+     * Returns true if the rows can be handed on while the walk is going on,
+     * that is if every column is walked in full rather than for a list of
+     * instances.
+     *
+     * @return a boolean.
+     */
+    public boolean isStreamable() {
+        for (final CollectionTracker child : getChildTrackers()) {
+            if (!(child instanceof ColumnTracker)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Walks the columns side by side and hands each row to
+     * {@link SnmpCollectionSet#rowCompleted(SNMPCollectorEntry)} as soon as
+     * every column has been walked past its instance, instead of keeping all
+     * of the rows until the walk is done.
+     *
+     * @param streaming a boolean.
+     * @throws java.lang.IllegalStateException if the columns are not walked in full
+     */
+    public void setStreaming(final boolean streaming) {
+        if (streaming && !isStreamable()) {
+            throw new IllegalStateException("the rows of " + m_primaryIf + " can not be streamed when collecting a list of instances");
+        }
+        m_streaming = streaming;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected List<CollectionTracker> getNextChildTrackers() {
+        if (!m_streaming) {
+            return super.getNextChildTrackers();
+        }
+        final List<CollectionTracker> trackers = new ArrayList<CollectionTracker>(getChildTrackers());
+        Collections.sort(trackers, LAGGING_FIRST);
+        return trackers;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isFinished() {
+        final boolean finished = super.isFinished();
+        if (finished && m_streaming && !m_rowsCompleted) {
+            m_rowsCompleted = true;
+            handleCompletedRows();
+            m_collectionSet.rowsCompleted();
+        }
+        return finished;
+    }
+
+    private void handleCompletedRows() {
+        // the columns are walked in order, so every column has passed the
+        // lowest instance any of the unfinished ones is at
+        SnmpInstId walked = null;
+        for (final CollectionTracker child : getChildTrackers()) {
+            if (child.isFinished()) {
+                continue;
+            }
+            final SnmpInstId last = ((ColumnTracker) child).getLastInstance();
+            if (last == null) {
+                return;
+            }
+            if (walked == null || last.compareTo(walked) < 0) {
+                walked = last;
+            }
+        }
+
+        for (final Iterator<Map.Entry<SnmpInstId, SNMPCollectorEntry>> it = m_results.entrySet().iterator(); it.hasNext(); ) {
+            final Map.Entry<SnmpInstId, SNMPCollectorEntry> row = it.next();
+            if (walked != null && row.getKey().compareTo(walked) > 0) {
+                break;
+            }
+            it.remove();
+            m_collectionSet.rowCompleted(row.getValue());
+        }
     }
     
     /**
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.collectd;
+
+import java.util.Map;
+
+import org.opennms.netmgt.config.collector.CollectionSet;
+import org.opennms.netmgt.config.collector.CollectionSetVisitor;
+import org.opennms.netmgt.model.events.EventProxy;
+
+/**
+ * A {@link ServiceCollector} that can hand the data to the persisting and
+ * thresholding visitors while it is still collecting it, instead of
+ * returning the complete collection set to be visited after.
+ */
+public interface StreamingServiceCollector extends ServiceCollector {
+    /**
+     * Returns true if {@link #collect(CollectionAgent, EventProxy, Map, CollectionSetVisitor)}
+     * should be used instead of
+     * {@link ServiceCollector#collect(CollectionAgent, EventProxy, Map)}.
+     *
+     * @return a boolean.
+     */
+    boolean isStreaming();
+
+    /**
+     * Collects the data and visits it with the given visitor while it is
+     * collected. The collection set returned has been visited already, and
+     * the values of the resources that were visited early may have been
+     * dropped from it.
+     *
+     * @param agent a {@link org.opennms.netmgt.collectd.CollectionAgent} object.
+     * @param eproxy a {@link org.opennms.netmgt.model.events.EventProxy} object.
+     * @param parameters a {@link java.util.Map} object.
+     * @param visitor the visitor to hand the data to
+     * @return a {@link org.opennms.netmgt.config.collector.CollectionSet} object.
+     * @throws org.opennms.netmgt.collectd.CollectionException if any.
+     */
+    CollectionSet collect(CollectionAgent agent, EventProxy eproxy, Map<String, Object> parameters, CollectionSetVisitor visitor) throws CollectionException;
+}
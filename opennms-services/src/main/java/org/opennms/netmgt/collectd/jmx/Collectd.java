@@ -29,6 +29,8 @@
 package org.opennms.netmgt.collectd.jmx;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
+import org.opennms.netmgt.threshd.CollectionResourceWrapper;
 
 /**
  * <p>Collectd class.</p>
@@ -51,4 +53,33 @@ public class Collectd extends AbstractSpringContextJmxServiceDaemon<org.opennms.
         return "collectdContext";
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getCounterRateCacheSize() {
+        return CollectionResourceWrapper.getCounterRateCache().size();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getCounterRateCacheEvictions() {
+        return CollectionResourceWrapper.getCounterRateCache().getEvictions();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogramBounds() {
+        return SchedulerFactory.getLagHistogramBounds(getDaemon().getSchedulerInstance());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogram() {
+        return SchedulerFactory.getLagHistogram(getDaemon().getSchedulerInstance());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSchedulerMaxLag() {
+        return SchedulerFactory.getMaxLag(getDaemon().getSchedulerInstance());
+    }
 }
@@ -37,4 +37,40 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface CollectdMBean extends BaseOnmsMBean {
+
+    /**
+     * @return the number of counter values kept to calculate counter rates for thresholding
+     */
+    int getCounterRateCacheSize();
+
+    /**
+     * @return the number of expired counter values removed from the cache
+     */
+    long getCounterRateCacheEvictions();
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets of
+     * {@link #getSchedulerLagHistogram()}. The last bucket counts everything
+     * above the last bound.
+     *
+     * @return the bucket bounds, empty unless the timing wheel scheduler is in use
+     */
+    long[] getSchedulerLagHistogramBounds();
+
+    /**
+     * Returns the number of collections started per lag bucket, where the lag is the
+     * time between the time they were due and the time they were handed to
+     * the thread pool.
+     *
+     * @return the bucket counts, empty unless the timing wheel scheduler is in use
+     */
+    long[] getSchedulerLagHistogram();
+
+    /**
+     * Returns the largest scheduler lag seen.
+     *
+     * @return the largest lag in milliseconds, 0 unless the timing wheel
+     *         scheduler is in use
+     */
+    long getSchedulerMaxLag();
 }
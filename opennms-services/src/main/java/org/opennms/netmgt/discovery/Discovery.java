@@ -34,19 +34,22 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.utils.DBUtils;
-import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.config.DiscoveryConfigFactory;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
@@ -88,6 +91,11 @@ public class Discovery extends AbstractServiceDaemon {
     private static final int PING_IDLE = 0;
     private static final int PING_RUNNING = 1;
     private static final int PING_FINISHING = 2;
+
+    /**
+     * The interval at which the progress of a running sweep is logged
+     */
+    private static final long PROGRESS_INTERVAL = 60000;
     
     /**
      * The SQL query used to get the list of managed IP addresses from the database
@@ -97,13 +105,21 @@ public class Discovery extends AbstractServiceDaemon {
     /**
      * a set of devices to skip discovery on
      */
-    private Set<String> m_alreadyDiscovered = Collections.synchronizedSet(new HashSet<String>());
+    private final ManagedAddressSet m_alreadyDiscovered = new ManagedAddressSet();
 
     private DiscoveryConfigFactory m_discoveryFactory;
 
     private Timer m_timer;
 
-    private int m_xstatus = PING_IDLE;
+    private volatile int m_xstatus = PING_IDLE;
+
+    private volatile long m_sweepStart = -1;
+
+    private volatile long m_sweepEnd = -1;
+
+    private final AtomicLong m_sweepPinged = new AtomicLong();
+
+    private final AtomicLong m_sweepSkipped = new AtomicLong();
     
     private volatile EventForwarder m_eventForwarder;
 
@@ -174,6 +190,7 @@ public class Discovery extends AbstractServiceDaemon {
         //Wiring doesn't seem to be working.
         Assert.state(m_discoveryFactory != null, "must set the Discovery Factory propertly");
         cb.setDiscoveryFactory(m_discoveryFactory);
+        cb.setManagedAddresses(m_alreadyDiscovered);
         
         try {
         	LOG.debug("Initializing configuration...");
@@ -201,53 +218,169 @@ public class Discovery extends AbstractServiceDaemon {
             LOG.error("doPings: could not re-init configuration, continuing with in memory configuration.", e);
         }
 
+        // pick up the interfaces that came and went without an event
+        // reaching discovery, such as those of deleted nodes
+        syncAlreadyDiscovered();
 
         m_xstatus = PING_RUNNING;
 
-        getDiscoveryFactory().getReadLock().lock();
+        // the addresses are worked out from the configuration at this point,
+        // so the configuration is not locked while the sweep runs
+        final Iterator<IPPollAddress> addresses = getDiscoveryFactory().getConfiguredAddresses().iterator();
+        final TokenBucket tokenBucket = new TokenBucket(getDiscoveryFactory().getPacketsPerSecond());
+        final int threads = getDiscoveryFactory().getThreads();
+
+        m_sweepPinged.set(0);
+        m_sweepSkipped.set(0);
+        m_sweepEnd = -1;
+        m_sweepStart = System.currentTimeMillis();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new LogPreservingThreadFactory("Discovery.Sweep", threads, false));
         try {
-            for (IPPollAddress pollAddress : getDiscoveryFactory().getConfiguredAddresses()) {
-                if (m_xstatus == PING_FINISHING || m_timer == null) {
-                    m_xstatus = PING_IDLE;
-                    return;
-                }
-                LOG.debug("Pinging: {} of foreign source {}", pollAddress.getAddress().toString(), m_discoveryFactory.getForeignSource(pollAddress.getAddress()));
-                ping(pollAddress);
-                try {
-                    Thread.sleep(getDiscoveryFactory().getIntraPacketDelay());
-                } catch (InterruptedException e) {
-                    LOG.info("interrupting discovery sweep");
-                    break;
-                }
+            for (int i = 0; i < threads; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        sweep(addresses, tokenBucket);
+                    }
+                });
             }
-        } finally {
-            getDiscoveryFactory().getReadLock().unlock();
+            executor.shutdown();
+            while (!executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+                LOG.info("discovery sweep in progress: pinged {} addresses, skipped {} managed addresses, {} packets per second", m_sweepPinged.get(), m_sweepSkipped.get(), getSweepRate());
+            }
+        } catch (InterruptedException e) {
+            LOG.info("interrupting discovery sweep");
+            executor.shutdownNow();
         }
 
-        LOG.info("finished discovery sweep");
+        m_sweepEnd = System.currentTimeMillis();
+        LOG.info("finished discovery sweep: pinged {} addresses, skipped {} managed addresses in {}ms", m_sweepPinged.get(), m_sweepSkipped.get(), m_sweepEnd - m_sweepStart);
         m_xstatus = PING_IDLE;
     }
 
-    private void ping(IPPollAddress pollAddress) {
-        InetAddress address = pollAddress.getAddress();
-        if (address != null) {
-            if (!isAlreadyDiscovered(address)) {
-                try {
-                    m_pinger.ping(address, pollAddress.getTimeout(), pollAddress.getRetries(), (short) 1, cb);
-                } catch (Throwable e) {
-                    LOG.debug("error pinging {}", address.getAddress(), e);
+    /**
+     * Pings the addresses until there are none left or the sweep is
+     * stopped. The sweep threads share the iterator and the token bucket
+     * limiting the total rate of packets.
+     */
+    private void sweep(final Iterator<IPPollAddress> addresses, final TokenBucket tokenBucket) {
+        while (m_xstatus == PING_RUNNING && m_timer != null) {
+            final IPPollAddress pollAddress;
+            synchronized (addresses) {
+                if (!addresses.hasNext()) {
+                    return;
                 }
-            } else {
-            	LOG.debug("{} already discovered.", address.toString());
+                pollAddress = addresses.next();
+            }
+
+            final InetAddress address = pollAddress.getAddress();
+            if (address == null) {
+                continue;
             }
+            if (isAlreadyDiscovered(address)) {
+                LOG.debug("{} already discovered.", address.toString());
+                m_sweepSkipped.incrementAndGet();
+                continue;
+            }
+
+            try {
+                tokenBucket.acquire();
+            } catch (InterruptedException e) {
+                LOG.info("interrupting discovery sweep");
+                return;
+            }
+            LOG.debug("Pinging: {}", address.toString());
+            ping(pollAddress);
+            m_sweepPinged.incrementAndGet();
+        }
+    }
+
+    private void ping(IPPollAddress pollAddress) {
+        InetAddress address = pollAddress.getAddress();
+        try {
+            m_pinger.ping(address, pollAddress.getTimeout(), pollAddress.getRetries(), (short) 1, cb);
+        } catch (Throwable e) {
+            LOG.debug("error pinging {}", address.getAddress(), e);
         }
     }
 
     private boolean isAlreadyDiscovered(InetAddress address) {
-        if (m_alreadyDiscovered.contains(InetAddressUtils.str(address))) {
-            return true;
+        return m_alreadyDiscovered.contains(address);
+    }
+
+    /**
+     * Returns the number of addresses pinged by the running sweep, or by the
+     * last one if none is running.
+     *
+     * @return a long.
+     */
+    public long getSweepPingedCount() {
+        return m_sweepPinged.get();
+    }
+
+    /**
+     * Returns the number of addresses the running or last sweep did not ping
+     * because they belong to interfaces already in the database.
+     *
+     * @return a long.
+     */
+    public long getSweepSkippedCount() {
+        return m_sweepSkipped.get();
+    }
+
+    /**
+     * Returns how long the running sweep has been running, or how long the
+     * last one took.
+     *
+     * @return the duration in milliseconds, -1 before the first sweep
+     */
+    public long getSweepDuration() {
+        final long start = m_sweepStart;
+        if (start < 0) {
+            return -1;
         }
-        return false;
+        final long end = m_sweepEnd;
+        return (end < start ? System.currentTimeMillis() : end) - start;
+    }
+
+    /**
+     * Returns the rate at which the running or last sweep sent pings.
+     *
+     * @return the number of addresses pinged per second
+     */
+    public double getSweepRate() {
+        final long duration = getSweepDuration();
+        return duration <= 0 ? 0.0 : m_sweepPinged.get() * 1000.0 / duration;
+    }
+
+    /**
+     * Returns the number of addresses of interfaces in the database, which
+     * are not pinged.
+     *
+     * @return an int.
+     */
+    public int getManagedAddressCount() {
+        return m_alreadyDiscovered.size();
+    }
+
+    /**
+     * Returns the number of ping responses received since discovery
+     * started.
+     *
+     * @return a long.
+     */
+    public long getResponseCount() {
+        return cb.getResponseCount();
+    }
+
+    /**
+     * Returns the number of newSuspect events sent since discovery started.
+     *
+     * @return a long.
+     */
+    public long getNewSuspectCount() {
+        return cb.getNewSuspectCount();
     }
 
     private void startTimer() {
@@ -330,7 +463,7 @@ public class Discovery extends AbstractServiceDaemon {
     	 * if something goes wrong with the DB we won't lose whatever was already
     	 * in there
     	 */
-    	Set<String> newAlreadyDiscovered = Collections.synchronizedSet(new HashSet<String>());
+    	List<String> newAlreadyDiscovered = new ArrayList<String>();
     	Connection conn = null;
         final DBUtils d = new DBUtils(getClass());
 
@@ -348,7 +481,7 @@ public class Discovery extends AbstractServiceDaemon {
     		} else {
     			LOG.warn("Got null ResultSet from query for all IP addresses");
     		}
-    		m_alreadyDiscovered = newAlreadyDiscovered;
+    		m_alreadyDiscovered.replaceAll(newAlreadyDiscovered);
     	} catch (SQLException sqle) {
 		LOG.warn("Caught SQLException while trying to query for all IP addresses: {}", sqle.getMessage());
     	} finally {
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.discovery;
 
 import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.EventConstants;
@@ -54,9 +55,21 @@ public class DiscoveryPingResponseCallback implements PingResponseCallback {
     
     private DiscoveryConfigFactory m_discoveryFactory;
 
+    private ManagedAddressSet m_managedAddresses;
+
+    private final AtomicLong m_responses = new AtomicLong();
+
+    private final AtomicLong m_newSuspects = new AtomicLong();
+
     /** {@inheritDoc} */
     @Override
     public void handleResponse(InetAddress address, EchoPacket response) {
+        m_responses.incrementAndGet();
+        if (m_managedAddresses != null && m_managedAddresses.contains(address)) {
+            LOG.debug("{} was added to the database while it was pinged, not sending {}", address, EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI);
+            return;
+        }
+
         EventBuilder eb = new EventBuilder(EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI, EVENT_SOURCE_VALUE);
         eb.setInterface(address);
         eb.setHost(InetAddressUtils.getLocalHostName());
@@ -70,6 +83,7 @@ public class DiscoveryPingResponseCallback implements PingResponseCallback {
 
         try {
             EventIpcManagerFactory.getIpcManager().sendNow(eb.getEvent());
+            m_newSuspects.incrementAndGet();
 
             LOG.debug("Sent event: {}", EventConstants.NEW_SUSPECT_INTERFACE_EVENT_UEI);
         } catch (Throwable t) {
@@ -98,4 +112,20 @@ public class DiscoveryPingResponseCallback implements PingResponseCallback {
 		m_discoveryFactory = discoveryFactory;
 	}
 
+	/**
+	 * Sets the addresses already in the database, responses from them do
+	 * not send a newSuspect event.
+	 */
+	void setManagedAddresses(ManagedAddressSet managedAddresses) {
+		m_managedAddresses = managedAddresses;
+	}
+
+	public long getResponseCount() {
+		return m_responses.get();
+	}
+
+	public long getNewSuspectCount() {
+		return m_newSuspects.get();
+	}
+
 }
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.discovery;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.opennms.core.utils.InetAddressUtils;
+
+/**
+ * The IP addresses of the interfaces already in the database, which
+ * discovery does not ping. IPv4 addresses are kept in a bitmap with a block
+ * of 65536 bits for every /16 network holding managed addresses, other
+ * addresses in a set of strings. The set is safe to read and update from
+ * several threads.
+ */
+final class ManagedAddressSet {
+
+    private static final int WORDS_PER_BLOCK = (1 << 16) / 64;
+
+    private static final class Addresses {
+        private final ConcurrentMap<Integer, AtomicLongArray> m_ipv4Blocks = new ConcurrentHashMap<Integer, AtomicLongArray>();
+        private final Set<String> m_otherAddresses = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final AtomicInteger m_ipv4Count = new AtomicInteger();
+    }
+
+    private volatile Addresses m_addresses = new Addresses();
+
+    /**
+     * Replaces the addresses in the set.
+     *
+     * @param addresses the IP addresses as strings
+     */
+    void replaceAll(final Collection<String> addresses) {
+        final Addresses newAddresses = new Addresses();
+        for (final String address : addresses) {
+            add(newAddresses, address);
+        }
+        m_addresses = newAddresses;
+    }
+
+    boolean add(final String address) {
+        return add(m_addresses, address);
+    }
+
+    boolean remove(final String address) {
+        final InetAddress addr = parse(address);
+        if (addr == null) {
+            return false;
+        }
+        final Addresses addresses = m_addresses;
+        if (!(addr instanceof Inet4Address)) {
+            return addresses.m_otherAddresses.remove(InetAddressUtils.str(addr));
+        }
+        final int ip = toInt(addr);
+        final AtomicLongArray block = addresses.m_ipv4Blocks.get(ip >>> 16);
+        if (block == null) {
+            return false;
+        }
+        final int word = (ip & 0xffff) >>> 6;
+        final long bit = 1L << (ip & 63);
+        while (true) {
+            final long bits = block.get(word);
+            if ((bits & bit) == 0) {
+                return false;
+            }
+            if (block.compareAndSet(word, bits, bits & ~bit)) {
+                addresses.m_ipv4Count.decrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    boolean contains(final InetAddress addr) {
+        final Addresses addresses = m_addresses;
+        if (!(addr instanceof Inet4Address)) {
+            return addresses.m_otherAddresses.contains(InetAddressUtils.str(addr));
+        }
+        final int ip = toInt(addr);
+        final AtomicLongArray block = addresses.m_ipv4Blocks.get(ip >>> 16);
+        return block != null && (block.get((ip & 0xffff) >>> 6) & (1L << (ip & 63))) != 0;
+    }
+
+    int size() {
+        final Addresses addresses = m_addresses;
+        return addresses.m_ipv4Count.get() + addresses.m_otherAddresses.size();
+    }
+
+    private static boolean add(final Addresses addresses, final String address) {
+        final InetAddress addr = parse(address);
+        if (addr == null) {
+            return false;
+        }
+        if (!(addr instanceof Inet4Address)) {
+            return addresses.m_otherAddresses.add(InetAddressUtils.str(addr));
+        }
+        final int ip = toInt(addr);
+        AtomicLongArray block = addresses.m_ipv4Blocks.get(ip >>> 16);
+        if (block == null) {
+            final AtomicLongArray newBlock = new AtomicLongArray(WORDS_PER_BLOCK);
+            block = addresses.m_ipv4Blocks.putIfAbsent(ip >>> 16, newBlock);
+            if (block == null) {
+                block = newBlock;
+            }
+        }
+        final int word = (ip & 0xffff) >>> 6;
+        final long bit = 1L << (ip & 63);
+        while (true) {
+            final long bits = block.get(word);
+            if ((bits & bit) != 0) {
+                return false;
+            }
+            if (block.compareAndSet(word, bits, bits | bit)) {
+                addresses.m_ipv4Count.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    private static InetAddress parse(final String address) {
+        if (address == null) {
+            return null;
+        }
+        try {
+            return InetAddressUtils.addr(address);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static int toInt(final InetAddress addr) {
+        final byte[] bytes = addr.getAddress();
+        return ((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff);
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.discovery;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate at which the discovery threads send ping packets. Each
+ * packet takes a token, tokens are added at the configured rate and up to a
+ * tenth of a second worth of them may be saved up, so the threads can send
+ * a few packets at once after sleeping rather than one per sleep.
+ */
+final class TokenBucket {
+
+    private final double m_tokensPerNano;
+
+    private final double m_capacity;
+
+    private double m_tokens;
+
+    private long m_lastRefill;
+
+    /**
+     * <p>Constructor for TokenBucket.</p>
+     *
+     * @param tokensPerSecond the number of tokens added per second
+     */
+    TokenBucket(final int tokensPerSecond) {
+        if (tokensPerSecond < 1) {
+            throw new IllegalArgumentException("The token rate must be positive, got " + tokensPerSecond);
+        }
+        m_tokensPerNano = tokensPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+        m_capacity = Math.max(1.0, tokensPerSecond / 10.0);
+        m_tokens = 1.0;
+        m_lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a token, possibly before it is available.
+     *
+     * @return the time in nanoseconds the caller has to wait until the
+     *         token it took is available
+     */
+    synchronized long reserve() {
+        final long now = System.nanoTime();
+        m_tokens = Math.min(m_capacity, m_tokens + (now - m_lastRefill) * m_tokensPerNano);
+        m_lastRefill = now;
+        m_tokens -= 1.0;
+        return m_tokens >= 0 ? 0 : (long) Math.ceil(-m_tokens / m_tokensPerNano);
+    }
+
+    /**
+     * Takes a token, waiting until it is available.
+     *
+     * @throws java.lang.InterruptedException if interrupted while waiting
+     */
+    void acquire() throws InterruptedException {
+        final long wait = reserve();
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
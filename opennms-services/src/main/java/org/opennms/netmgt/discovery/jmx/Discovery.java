@@ -49,5 +49,46 @@ public class Discovery extends AbstractSpringContextJmxServiceDaemon<org.opennms
     protected String getSpringContext() {
         return "discoveryContext";
     }
-    
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSweepPingedCount() {
+        return getDaemon().getSweepPingedCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSweepSkippedCount() {
+        return getDaemon().getSweepSkippedCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSweepDuration() {
+        return getDaemon().getSweepDuration();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getSweepRate() {
+        return getDaemon().getSweepRate();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getManagedAddressCount() {
+        return getDaemon().getManagedAddressCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getResponseCount() {
+        return getDaemon().getResponseCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNewSuspectCount() {
+        return getDaemon().getNewSuspectCount();
+    }
 }
@@ -38,4 +38,41 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  */
 public interface DiscoveryMBean extends BaseOnmsMBean {
 
+    /**
+     * @return the number of addresses pinged by the running or last sweep
+     */
+    public long getSweepPingedCount();
+
+    /**
+     * @return the number of managed addresses the running or last sweep
+     *         skipped
+     */
+    public long getSweepSkippedCount();
+
+    /**
+     * @return the time in milliseconds the running sweep has been running
+     *         or the last one took, -1 before the first sweep
+     */
+    public long getSweepDuration();
+
+    /**
+     * @return the number of addresses the running or last sweep pinged per
+     *         second
+     */
+    public double getSweepRate();
+
+    /**
+     * @return the number of managed addresses discovery does not ping
+     */
+    public int getManagedAddressCount();
+
+    /**
+     * @return the number of ping responses received
+     */
+    public long getResponseCount();
+
+    /**
+     * @return the number of newSuspect events sent
+     */
+    public long getNewSuspectCount();
 }
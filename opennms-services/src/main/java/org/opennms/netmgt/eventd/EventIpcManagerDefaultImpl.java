@@ -28,23 +28,31 @@
 
 package org.opennms.netmgt.eventd;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.opennms.core.logging.Logging;
 import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.ConfigFileConstants;
+import org.opennms.netmgt.config.eventd.ListenerQueue;
 import org.opennms.netmgt.model.events.EventIpcBroadcaster;
 import org.opennms.netmgt.model.events.EventIpcManager;
 import org.opennms.netmgt.model.events.EventIpcManagerProxy;
@@ -109,6 +117,12 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
      */
     private Map<String, EventListenerExecutor> m_listenerThreads = new HashMap<String, EventListenerExecutor>();
 
+    /**
+     * Immutable snapshot of the three maps above that broadcastNow() reads
+     * without locking; replaced whenever a listener registration changes.
+     */
+    private volatile ListenerDispatchTable m_dispatchTable = new ListenerDispatchTable();
+
     /**
      * The thread pool handling the events
      */
@@ -120,13 +134,21 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     
     private Integer m_handlerQueueLength;
 
+    /**
+     * The queue configuration of individual listeners keyed by the listener's name
+     */
+    private Map<String, ListenerQueue> m_listenerQueues = Collections.emptyMap();
+
+    private File m_spoolDirectory = new File(ConfigFileConstants.getHome(), "share" + File.separator + "eventd");
+
     private EventIpcManagerProxy m_eventIpcManagerProxy;
 
     /**
      * A thread dedicated to each listener. The events meant for each listener
      * is added to an execution queue when the 'sendNow()' is called. The
      * ListenerThread reads events off of this queue and sends them to the
-     * appropriate listener.
+     * appropriate listener. What happens to an event when the queue is full
+     * is up to the {@link ListenerQueuePolicy} of the listener.
      */
     private static class EventListenerExecutor {
         /**
@@ -137,20 +159,97 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         /**
          * The thread that is running this runnable.
          */
-        private final ExecutorService m_delegateThread;
+        private final ThreadPoolExecutor m_delegateThread;
+
+        private final ListenerQueuePolicy m_policy;
+
+        /**
+         * UEIs and UEI prefixes of the events the DROP_BY_PRIORITY policy keeps
+         */
+        private final List<String> m_priorityUeis;
+
+        /**
+         * Events that did not fit in the queue with the SPILL policy, guarded
+         * by itself
+         */
+        private final EventSpool m_spool;
+
+        /**
+         * Number of events broadcast to the listener
+         */
+        private final AtomicLong m_eventsEnqueued = new AtomicLong();
+
+        /**
+         * Number of events handed to the listener
+         */
+        private final AtomicLong m_eventsDelivered = new AtomicLong();
+
+        /**
+         * Number of events discarded because the listener's queue was full
+         */
+        private final AtomicLong m_eventsDropped = new AtomicLong();
+
+        /**
+         * Number of events written to disk because the listener's queue was full
+         */
+        private final AtomicLong m_eventsSpilled = new AtomicLong();
+
+        /**
+         * Nanoseconds spent in the listener's onEvent
+         */
+        private final AtomicLong m_processingTime = new AtomicLong();
+
+        /**
+         * A queued event
+         */
+        private class EventTask implements Runnable {
+            private final Event m_event;
+
+            public EventTask(final Event event) {
+                m_event = event;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    LOG.info("run: calling onEvent on {} for event {} dbid {} with time {}", m_listener.getName(), m_event.getUei(), m_event.getDbid(), m_event.getTime());
+
+                    // Make sure we restore our log4j logging prefix after onEvent is called
+                    Map mdc = Logging.getCopyOfContextMap();
+                    m_eventsDelivered.incrementAndGet();
+                    final long start = System.nanoTime();
+                    try {
+                        m_listener.onEvent(m_event);
+                    } finally {
+                        Logging.setContextMap(mdc);
+                        m_processingTime.addAndGet(System.nanoTime() - start);
+                    }
+                } catch (Throwable t) {
+                    LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
+                }
+
+                if (m_spool != null) {
+                    unspool();
+                }
+            }
+        }
 
         /**
          * Constructor
          */
-        EventListenerExecutor(EventListener listener, Integer handlerQueueLength) {
+        EventListenerExecutor(EventListener listener, Integer queueLength, ListenerQueuePolicy policy, List<String> priorityUeis, File spoolDirectory) {
             m_listener = listener;
+            m_policy = policy;
+            m_priorityUeis = priorityUeis;
+            m_spool = policy == ListenerQueuePolicy.SPILL ? new EventSpool(new File(spoolDirectory, m_listener.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".spool")) : null;
+
             // You could also do Executors.newSingleThreadExecutor() here
             m_delegateThread = new ThreadPoolExecutor(
                     1,
                     1,
                     0L,
                     TimeUnit.MILLISECONDS,
-                    handlerQueueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(handlerQueueLength),
+                    queueLength == null ? new LinkedBlockingQueue<Runnable>() : new LinkedBlockingQueue<Runnable>(queueLength),
                     // This ThreadFactory will ensure that the log prefix of the calling thread
                     // is used for all events that this listener handles. Therefore, if Notifd
                     // registers for an event then all logs for handling that event will end up
@@ -159,31 +258,145 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
                     new RejectedExecutionHandler() {
                         @Override
                         public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-                            LOG.warn("Listener {}'s event queue is full, discarding event", m_listener.getName());
+                            queueFull((EventTask) r);
                         }
                     }
             );
         }
 
         public void addEvent(final Event event) {
-            m_delegateThread.execute(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        LOG.info("run: calling onEvent on {} for event {} dbid {} with time {}", m_listener.getName(), event.getUei(), event.getDbid(), event.getTime());
-
-                        // Make sure we restore our log4j logging prefix after onEvent is called
-                        Map mdc = Logging.getCopyOfContextMap();
-                        try {
-                            m_listener.onEvent(event);
-                        } finally {
-                            Logging.setContextMap(mdc);
+            m_eventsEnqueued.incrementAndGet();
+
+            if (m_spool == null) {
+                m_delegateThread.execute(new EventTask(event));
+                return;
+            }
+
+            synchronized (m_spool) {
+                // once events are spooled, later events have to queue up
+                // behind them on disk
+                if (m_spool.size() > 0) {
+                    spool(event);
+                } else {
+                    m_delegateThread.execute(new EventTask(event));
+                }
+            }
+        }
+
+        /**
+         * Called when the queue is full.
+         */
+        private void queueFull(final EventTask task) {
+            final BlockingQueue<Runnable> queue = m_delegateThread.getQueue();
+
+            if (m_delegateThread.isShutdown()) {
+                drop(task);
+                return;
+            }
+
+            switch (m_policy) {
+            case DROP_OLDEST:
+                if (queue.poll() != null) {
+                    m_eventsDropped.incrementAndGet();
+                }
+                if (!queue.offer(task)) {
+                    drop(task);
+                }
+                break;
+
+            case DROP_BY_PRIORITY:
+                Runnable victim = null;
+                for (final Runnable queued : queue) {
+                    if (!isPriority(((EventTask) queued).m_event)) {
+                        victim = queued;
+                        break;
+                    }
+                }
+                if (victim == null && isPriority(task.m_event)) {
+                    victim = queue.peek();
+                }
+                if (victim != null && queue.remove(victim)) {
+                    m_eventsDropped.incrementAndGet();
+                    if (!queue.offer(task)) {
+                        drop(task);
+                    }
+                } else {
+                    drop(task);
+                }
+                break;
+
+            case BLOCK:
+                try {
+                    while (!queue.offer(task, 1, TimeUnit.SECONDS)) {
+                        if (m_delegateThread.isShutdown()) {
+                            drop(task);
+                            return;
                         }
-                    } catch (Throwable t) {
-                        LOG.warn("run: an unexpected error occured during ListenerThread {}", m_listener.getName(), t);
+                        LOG.debug("Listener {}'s event queue is full, waiting", m_listener.getName());
                     }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    drop(task);
+                }
+                break;
+
+            case SPILL:
+                // called from addEvent with the spool lock held
+                spool(task.m_event);
+                break;
+
+            default:
+                drop(task);
+                break;
+            }
+        }
+
+        private void drop(final EventTask task) {
+            m_eventsDropped.incrementAndGet();
+            LOG.warn("Listener {}'s event queue is full, discarding event {}", m_listener.getName(), task.m_event.getUei());
+        }
+
+        private boolean isPriority(final Event event) {
+            final String uei = event.getUei();
+            if (uei == null) {
+                return false;
+            }
+            for (final String priorityUei : m_priorityUeis) {
+                if (priorityUei.endsWith("/") ? uei.startsWith(priorityUei) : uei.equals(priorityUei)) {
+                    return true;
                 }
-            });
+            }
+            return false;
+        }
+
+        /**
+         * Writes an event to the spool, with the spool lock held.
+         */
+        private void spool(final Event event) {
+            try {
+                m_spool.append(event);
+                m_eventsSpilled.incrementAndGet();
+            } catch (final IOException e) {
+                m_eventsDropped.incrementAndGet();
+                LOG.warn("Listener {}'s event queue is full and the event could not be written to {}, discarding event {}", m_listener.getName(), m_spool.getFile(), event.getUei(), e);
+            }
+        }
+
+        /**
+         * Moves spooled events back to the queue while it has room.
+         */
+        private void unspool() {
+            synchronized (m_spool) {
+                final BlockingQueue<Runnable> queue = m_delegateThread.getQueue();
+                while (m_spool.size() > 0 && queue.remainingCapacity() > 0) {
+                    try {
+                        queue.offer(new EventTask(m_spool.poll()));
+                    } catch (final IOException e) {
+                        LOG.warn("Unable to read the spooled events of listener {} from {}, discarding them", m_listener.getName(), m_spool.getFile(), e);
+                        m_spool.clear();
+                    }
+                }
+            }
         }
 
         /**
@@ -191,6 +404,151 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
          */
         public void stop() {
             m_delegateThread.shutdown();
+
+            if (m_spool != null) {
+                synchronized (m_spool) {
+                    if (m_spool.size() > 0) {
+                        LOG.warn("Discarding {} spooled events of listener {}", m_spool.size(), m_listener.getName());
+                        m_eventsDropped.addAndGet(m_spool.size());
+                    }
+                    m_spool.clear();
+                }
+            }
+        }
+
+        public String getName() {
+            return m_listener.getName();
+        }
+
+        public int getQueueDepth() {
+            if (m_spool != null) {
+                synchronized (m_spool) {
+                    return m_delegateThread.getQueue().size() + m_spool.size();
+                }
+            }
+            return m_delegateThread.getQueue().size();
+        }
+
+        public long getEventsEnqueued() {
+            return m_eventsEnqueued.get();
+        }
+
+        public long getEventsDelivered() {
+            return m_eventsDelivered.get();
+        }
+
+        public long getEventsDropped() {
+            return m_eventsDropped.get();
+        }
+
+        public long getEventsSpilled() {
+            return m_eventsSpilled.get();
+        }
+
+        public long getProcessingTime() {
+            return TimeUnit.NANOSECONDS.toMillis(m_processingTime.get());
+        }
+    }
+
+    /**
+     * Immutable view of the listener registrations used by broadcastNow().
+     * The executors that should receive an event with a given concrete UEI,
+     * including the match-all listeners and any "directory" wildcard matches,
+     * are computed once and cached per UEI so each broadcast is a single map
+     * lookup and an array walk. A new table (with an empty cache) is built
+     * every time a listener is added or removed.
+     */
+    private static final class ListenerDispatchTable {
+        /**
+         * Upper bound on the number of concrete UEIs cached; events with more
+         * distinct UEIs than this are still dispatched, just resolved each time.
+         */
+        private static final int MAX_CACHED_UEIS = 10000;
+
+        private static final EventListenerExecutor[] NONE = new EventListenerExecutor[0];
+
+        private final EventListenerExecutor[] m_matchAll;
+        private final Map<String, EventListenerExecutor[]> m_ueiExecutors;
+        private final ConcurrentMap<String, EventListenerExecutor[]> m_resolved = new ConcurrentHashMap<String, EventListenerExecutor[]>();
+
+        ListenerDispatchTable() {
+            m_matchAll = NONE;
+            m_ueiExecutors = Collections.emptyMap();
+        }
+
+        ListenerDispatchTable(List<EventListener> matchAll, Map<String, List<EventListener>> ueiListeners, Map<String, EventListenerExecutor> executors) {
+            m_matchAll = toExecutors(matchAll, executors);
+
+            Map<String, EventListenerExecutor[]> ueiExecutors = new HashMap<String, EventListenerExecutor[]>();
+            for (Map.Entry<String, List<EventListener>> entry : ueiListeners.entrySet()) {
+                EventListenerExecutor[] listeners = toExecutors(entry.getValue(), executors);
+                if (listeners.length > 0) {
+                    ueiExecutors.put(entry.getKey(), listeners);
+                }
+            }
+            m_ueiExecutors = ueiExecutors;
+        }
+
+        private static EventListenerExecutor[] toExecutors(Collection<EventListener> listeners, Map<String, EventListenerExecutor> executors) {
+            List<EventListenerExecutor> result = new ArrayList<EventListenerExecutor>(listeners.size());
+            for (EventListener listener : listeners) {
+                EventListenerExecutor executor = executors.get(listener.getName());
+                if (executor != null) {
+                    result.add(executor);
+                }
+            }
+            return result.toArray(new EventListenerExecutor[result.size()]);
+        }
+
+        EventListenerExecutor[] getMatchAll() {
+            return m_matchAll;
+        }
+
+        /**
+         * Return the executors interested in an event with this UEI.
+         */
+        EventListenerExecutor[] getExecutors(String uei) {
+            if (uei == null) {
+                return m_matchAll;
+            }
+
+            EventListenerExecutor[] executors = m_resolved.get(uei);
+            if (executors == null) {
+                executors = resolve(uei);
+                if (m_resolved.size() < MAX_CACHED_UEIS) {
+                    m_resolved.putIfAbsent(uei, executors);
+                }
+            }
+            return executors;
+        }
+
+        /**
+         * Send to listeners interested in all events, then to listeners who
+         * are interested in this event UEI, walking up partial wild card
+         * "directory" matches.
+         */
+        private EventListenerExecutor[] resolve(String event) {
+            Set<EventListenerExecutor> matched = new LinkedHashSet<EventListenerExecutor>();
+            Collections.addAll(matched, m_matchAll);
+
+            for (String uei = event; uei.length() > 0; ) {
+                EventListenerExecutor[] listeners = m_ueiExecutors.get(uei);
+                if (listeners != null) {
+                    Collections.addAll(matched, listeners);
+                }
+
+                // Try wild cards: Find / before last character
+                int i = uei.lastIndexOf("/", uei.length() - 2);
+                if (i > 0) {
+                    // Split at "/", including the /
+                    uei = uei.substring (0, i + 1);
+                } else {
+                    // No more wild cards to match
+                    break;
+                }
+            }
+
+            return matched.toArray(new EventListenerExecutor[matched.size()]);
         }
     }
 
@@ -264,55 +622,26 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
     public void broadcastNow(Event event) {
         LOG.debug("Event ID {} to be broadcasted: {}", event.getDbid(), event.getUei());
 
-        if (m_listeners.isEmpty()) {
-            LOG.debug("No listeners interested in all events");
-        }
+        ListenerDispatchTable dispatchTable = m_dispatchTable;
 
-        // Send to listeners interested in receiving all events
-        for (EventListener listener : m_listeners) {
-            queueEventToListener(event, listener);
+        if (dispatchTable.getMatchAll().length == 0) {
+            LOG.debug("No listeners interested in all events");
         }
 
         if (event.getUei() == null) {
             LOG.debug("Event ID {} does not have a UEI, so skipping UEI matching", event.getDbid());
-            return;
         }
 
-        /*
-         * Send to listeners who are interested in this event UEI.
-         * Loop to attempt partial wild card "directory" matches.
-         */
-        Set<EventListener> sentToListeners = new HashSet<EventListener>();
-        for (String uei = event.getUei(); uei.length() > 0; ) {
-            if (m_ueiListeners.containsKey(uei)) {
-                for (EventListener listener : m_ueiListeners.get(uei)) {
-                    if (!sentToListeners.contains(listener)) {
-                        queueEventToListener(event, listener);
-                        sentToListeners.add(listener);
-                    }
-                }
-            }
-            
-            // Try wild cards: Find / before last character
-            int i = uei.lastIndexOf("/", uei.length() - 2);
-            if (i > 0) {
-                // Split at "/", including the /
-                uei = uei.substring (0, i + 1);
-            } else {
-                // No more wild cards to match
-                break;
-            }
+        EventListenerExecutor[] executors = dispatchTable.getExecutors(event.getUei());
+        for (EventListenerExecutor executor : executors) {
+            executor.addEvent(event);
         }
-        
-        if (sentToListeners.isEmpty()) {
+
+        if (executors.length == 0) {
             LOG.debug("No listener interested in event ID {}: {}", event.getDbid(), event.getUei());
         }
     }
 
-    private void queueEventToListener(Event event, EventListener listener) {
-        m_listenerThreads.get(listener.getName()).addEvent(event);
-    }
-
     /**
      * {@inheritDoc}
      *
@@ -331,6 +660,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : m_ueiListeners.keySet()) {
             removeUeiForListener(uei, listener);
         }
+
+        rebuildDispatchTable();
     }
 
     /**
@@ -358,6 +689,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
         // Since we have a UEI-specific listener, remove the match-all listener
         removeMatchAllForListener(listener);
+
+        rebuildDispatchTable();
     }
 
     /**
@@ -392,6 +725,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         for (String uei : ueis) {
             removeUeiForListener(uei, listener);
         }
+
+        rebuildDispatchTable();
     }
 
     /**
@@ -411,6 +746,8 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         Assert.notNull(uei, "uei argument cannot be null");
 
         removeUeiForListener(uei, listener);
+
+        rebuildDispatchTable();
     }
 
     /**
@@ -437,6 +774,16 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
 
             m_listenerThreads.remove(listener.getName());
         }
+
+        rebuildDispatchTable();
+    }
+
+    /**
+     * Publish a new dispatch table reflecting the current registrations.
+     * Must be called with the lock on this object held.
+     */
+    private void rebuildDispatchTable() {
+        m_dispatchTable = new ListenerDispatchTable(m_listeners, m_ueiListeners, m_listenerThreads);
     }
 
     /**
@@ -448,7 +795,16 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
             return;
         }
         
-        EventListenerExecutor listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength);
+        EventListenerExecutor listenerThread;
+        ListenerQueue queue = m_listenerQueues.get(listener.getName());
+        if (queue == null) {
+            listenerThread = new EventListenerExecutor(listener, m_handlerQueueLength, ListenerQueuePolicy.DROP_NEWEST, Collections.<String>emptyList(), m_spoolDirectory);
+        } else {
+            ListenerQueuePolicy policy = ListenerQueuePolicy.fromName(queue.getPolicy());
+            Integer capacity = queue.hasCapacity() ? Integer.valueOf(queue.getCapacity()) : m_handlerQueueLength;
+            LOG.debug("Creating a queue of {} events with policy {} for listener {}", (capacity == null ? "unlimited" : capacity), policy, listener.getName());
+            listenerThread = new EventListenerExecutor(listener, capacity, policy, new ArrayList<String>(queue.getPriorityUeiCollection()), m_spoolDirectory);
+        }
         m_listenerThreads.put(listener.getName(), listenerThread);
     }
 
@@ -490,6 +846,88 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         return m_listeners.remove(listener);
     }
 
+    /**
+     * <p>getListenerQueueDepths</p>
+     *
+     * @return the number of events waiting in each listener's queue, keyed by listener name
+     */
+    public Map<String, Integer> getListenerQueueDepths() {
+        Map<String, Integer> depths = new HashMap<String, Integer>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            depths.put(executor.getName(), executor.getQueueDepth());
+        }
+        return depths;
+    }
+
+    /**
+     * <p>getListenerEventsDelivered</p>
+     *
+     * @return the number of events handed to each listener, keyed by listener name
+     */
+    public Map<String, Long> getListenerEventsDelivered() {
+        Map<String, Long> delivered = new HashMap<String, Long>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            delivered.put(executor.getName(), executor.getEventsDelivered());
+        }
+        return delivered;
+    }
+
+    /**
+     * <p>getListenerEventsDropped</p>
+     *
+     * @return the number of events discarded because each listener's queue was full, keyed by listener name
+     */
+    public Map<String, Long> getListenerEventsDropped() {
+        Map<String, Long> dropped = new HashMap<String, Long>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            dropped.put(executor.getName(), executor.getEventsDropped());
+        }
+        return dropped;
+    }
+
+    /**
+     * <p>getListenerEventsEnqueued</p>
+     *
+     * @return the number of events broadcast to each listener, keyed by listener name
+     */
+    public Map<String, Long> getListenerEventsEnqueued() {
+        Map<String, Long> enqueued = new HashMap<String, Long>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            enqueued.put(executor.getName(), executor.getEventsEnqueued());
+        }
+        return enqueued;
+    }
+
+    /**
+     * <p>getListenerEventsSpilled</p>
+     *
+     * @return the number of events written to disk because each listener's queue was full, keyed by listener name
+     */
+    public Map<String, Long> getListenerEventsSpilled() {
+        Map<String, Long> spilled = new HashMap<String, Long>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            spilled.put(executor.getName(), executor.getEventsSpilled());
+        }
+        return spilled;
+    }
+
+    /**
+     * <p>getListenerProcessingTimes</p>
+     *
+     * @return the total number of milliseconds each listener spent handling events, keyed by listener name
+     */
+    public Map<String, Long> getListenerProcessingTimes() {
+        Map<String, Long> times = new HashMap<String, Long>();
+        for (EventListenerExecutor executor : getListenerExecutors()) {
+            times.put(executor.getName(), executor.getProcessingTime());
+        }
+        return times;
+    }
+
+    private synchronized List<EventListenerExecutor> getListenerExecutors() {
+        return new ArrayList<EventListenerExecutor>(m_listenerThreads.values());
+    }
+
     /**
      * <p>afterPropertiesSet</p>
      */
@@ -584,6 +1022,50 @@ public class EventIpcManagerDefaultImpl implements EventIpcManager, EventIpcBroa
         m_handlerQueueLength = size;
     }
 
+    /**
+     * <p>getListenerQueues</p>
+     *
+     * @return the queue configuration of individual listeners
+     */
+    public synchronized Collection<ListenerQueue> getListenerQueues() {
+        return m_listenerQueues.values();
+    }
+
+    /**
+     * Sets the queue configuration of individual listeners. Only listeners
+     * registered afterwards use it.
+     *
+     * @param listenerQueues a {@link java.util.List} object.
+     */
+    public synchronized void setListenerQueues(List<ListenerQueue> listenerQueues) {
+        Map<String, ListenerQueue> queues = new HashMap<String, ListenerQueue>();
+        for (ListenerQueue queue : listenerQueues) {
+            // fail on startup rather than when the listener registers
+            ListenerQueuePolicy.fromName(queue.getPolicy());
+            queues.put(queue.getName(), queue);
+        }
+        m_listenerQueues = queues;
+    }
+
+    /**
+     * <p>getSpoolDirectory</p>
+     *
+     * @return the directory events are spilled to
+     */
+    public File getSpoolDirectory() {
+        return m_spoolDirectory;
+    }
+
+    /**
+     * Sets the directory events for listeners with the spill policy are
+     * written to, $OPENNMS_HOME/share/eventd by default.
+     *
+     * @param spoolDirectory a {@link java.io.File} object.
+     */
+    public void setSpoolDirectory(File spoolDirectory) {
+        m_spoolDirectory = spoolDirectory;
+    }
+
     /**
      * <p>getEventIpcManagerProxy</p>
      *
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+
+import org.opennms.netmgt.xml.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A first-in, first-out file of the events a listener had no room for. The
+ * file is created on the first {@link #append(Event)} and truncated each
+ * time it has been read completely, so it only takes disk space while the
+ * listener is behind.
+ *
+ * This class is not thread safe, callers synchronize.
+ */
+class EventSpool {
+    private static final Logger LOG = LoggerFactory.getLogger(EventSpool.class);
+
+    private final File m_file;
+
+    private RandomAccessFile m_raf;
+
+    private long m_readPosition = 0;
+
+    private long m_writePosition = 0;
+
+    private int m_size = 0;
+
+    /**
+     * <p>Constructor for EventSpool.</p>
+     *
+     * @param file the file to spool the events to, any existing file is
+     *        removed
+     */
+    public EventSpool(final File file) {
+        m_file = file;
+        if (m_file.exists() && !m_file.delete()) {
+            LOG.warn("Unable to remove stale event spool {}", m_file);
+        }
+    }
+
+    /**
+     * <p>getFile</p>
+     *
+     * @return the file the events are spooled to
+     */
+    public File getFile() {
+        return m_file;
+    }
+
+    /**
+     * <p>size</p>
+     *
+     * @return the number of events in the spool
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Adds an event to the end of the spool.
+     *
+     * @param event the event to spool
+     * @throws java.io.IOException if the event cannot be written
+     */
+    public void append(final Event event) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(event);
+        out.close();
+
+        final RandomAccessFile raf = getFile(true);
+        raf.seek(m_writePosition);
+        raf.writeInt(bytes.size());
+        raf.write(bytes.toByteArray());
+        m_writePosition = raf.getFilePointer();
+        m_size++;
+    }
+
+    /**
+     * Removes the event at the head of the spool.
+     *
+     * @return the event or <code>null</code> if the spool is empty
+     * @throws java.io.IOException if the event cannot be read, the spool is
+     *         emptied in that case since its content can no longer be trusted
+     */
+    public Event poll() throws IOException {
+        if (m_size == 0) {
+            return null;
+        }
+
+        try {
+            final RandomAccessFile raf = getFile(false);
+            raf.seek(m_readPosition);
+            final byte[] bytes = new byte[raf.readInt()];
+            raf.readFully(bytes);
+            m_readPosition = raf.getFilePointer();
+            m_size--;
+
+            final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return (Event) in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (final ClassNotFoundException e) {
+            clear();
+            throw new IOException("Unable to read an event from " + m_file + ": " + e.getMessage());
+        } catch (final IOException e) {
+            clear();
+            throw e;
+        } finally {
+            if (m_size == 0 && m_raf != null) {
+                m_raf.setLength(0);
+                m_readPosition = 0;
+                m_writePosition = 0;
+            }
+        }
+    }
+
+    /**
+     * Discards all events and removes the spool file.
+     */
+    public void clear() {
+        m_size = 0;
+        m_readPosition = 0;
+        m_writePosition = 0;
+        if (m_raf != null) {
+            try {
+                m_raf.close();
+            } catch (final IOException e) {
+                LOG.debug("Unable to close event spool {}", m_file, e);
+            }
+            m_raf = null;
+        }
+        if (m_file.exists() && !m_file.delete()) {
+            LOG.warn("Unable to remove event spool {}", m_file);
+        }
+    }
+
+    private RandomAccessFile getFile(final boolean create) throws IOException {
+        if (m_raf == null) {
+            if (!create) {
+                throw new IOException("Event spool " + m_file + " is not open");
+            }
+            final File dir = m_file.getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Unable to create event spool directory " + dir);
+            }
+            m_raf = new RandomAccessFile(m_file, "rw");
+            m_raf.setLength(0);
+        }
+        return m_raf;
+    }
+}
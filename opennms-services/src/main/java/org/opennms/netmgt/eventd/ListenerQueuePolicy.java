@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd;
+
+/**
+ * What {@link EventIpcManagerDefaultImpl} does with an event for a listener
+ * whose queue is full.
+ */
+public enum ListenerQueuePolicy {
+    /**
+     * Discard the new event
+     */
+    DROP_NEWEST("drop-newest"),
+
+    /**
+     * Discard the oldest queued event to make room for the new one
+     */
+    DROP_OLDEST("drop-oldest"),
+
+    /**
+     * Discard the oldest queued event that does not have a priority UEI,
+     * or the new event if it has none either
+     */
+    DROP_BY_PRIORITY("drop-by-priority"),
+
+    /**
+     * Make the broadcasting thread wait until the queue has room
+     */
+    BLOCK("block"),
+
+    /**
+     * Write the event to disk and queue it again once the queue has room
+     */
+    SPILL("spill");
+
+    private final String m_name;
+
+    private ListenerQueuePolicy(final String name) {
+        m_name = name;
+    }
+
+    /**
+     * <p>getName</p>
+     *
+     * @return the name of the policy in eventd-configuration.xml
+     */
+    public String getName() {
+        return m_name;
+    }
+
+    /**
+     * Returns the policy with a name from eventd-configuration.xml.
+     *
+     * @param name the name of the policy, <code>null</code> for the default
+     * @return the policy
+     * @throws java.lang.IllegalArgumentException if there is no policy with this name
+     */
+    public static ListenerQueuePolicy fromName(final String name) {
+        if (name == null) {
+            return DROP_NEWEST;
+        }
+        for (final ListenerQueuePolicy policy : values()) {
+            if (policy.getName().equalsIgnoreCase(name.trim())) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown listener queue policy '" + name + "', expected one of drop-newest, drop-oldest, drop-by-priority, block or spill");
+    }
+
+    @Override
+    public String toString() {
+        return m_name;
+    }
+}
@@ -28,7 +28,13 @@
 
 package org.opennms.netmgt.eventd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.eventd.EventIpcManagerDefaultImpl;
+import org.opennms.netmgt.eventd.processor.FilterCacheInvalidationProcessor;
+import org.opennms.netmgt.filter.FilterDao;
+import org.opennms.netmgt.filter.JdbcFilterDao;
 
 /**
  * <p>Eventd class.</p>
@@ -48,4 +54,84 @@ public class Eventd extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
     protected String getSpringContext() {
         return "eventDaemonContext";       
     }
+
+    private EventIpcManagerDefaultImpl getEventIpcManager() {
+        return getContext().getBean("eventIpcManagerImpl", EventIpcManagerDefaultImpl.class);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Integer> getListenerQueueDepths() {
+        return getEventIpcManager().getListenerQueueDepths();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Long> getListenerEventsDelivered() {
+        return getEventIpcManager().getListenerEventsDelivered();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Long> getListenerEventsDropped() {
+        return getEventIpcManager().getListenerEventsDropped();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Long> getListenerEventsEnqueued() {
+        return getEventIpcManager().getListenerEventsEnqueued();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Long> getListenerEventsSpilled() {
+        return getEventIpcManager().getListenerEventsSpilled();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Map<String, Long> getListenerProcessingTimes() {
+        return getEventIpcManager().getListenerProcessingTimes();
+    }
+
+    private JdbcFilterDao getJdbcFilterDao() {
+        final FilterDao filterDao = getContext().getBean("filterCacheInvalidationProcessor", FilterCacheInvalidationProcessor.class).getFilterDao();
+        return filterDao instanceof JdbcFilterDao ? (JdbcFilterDao) filterDao : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheHits() {
+        final JdbcFilterDao filterDao = getJdbcFilterDao();
+        return filterDao == null ? 0 : filterDao.getCacheHits();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheMisses() {
+        final JdbcFilterDao filterDao = getJdbcFilterDao();
+        return filterDao == null ? 0 : filterDao.getCacheMisses();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheRefreshes() {
+        final JdbcFilterDao filterDao = getJdbcFilterDao();
+        return filterDao == null ? 0 : filterDao.getCacheRefreshes();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getFilterCacheRebuildTime() {
+        final JdbcFilterDao filterDao = getJdbcFilterDao();
+        return filterDao == null ? 0 : filterDao.getCacheRebuildTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getFilterCachedRules() {
+        final JdbcFilterDao filterDao = getJdbcFilterDao();
+        return filterDao == null ? 0 : filterDao.getCachedRuleCount();
+    }
 }
@@ -28,6 +28,8 @@
 
 package org.opennms.netmgt.eventd.jmx;
 
+import java.util.Map;
+
 import org.opennms.netmgt.daemon.BaseOnmsMBean;
 
 /**
@@ -37,4 +39,80 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface EventdMBean extends BaseOnmsMBean {
+    /**
+     * <p>getListenerQueueDepths</p>
+     *
+     * @return the number of events waiting to be handled by each listener
+     */
+    public Map<String, Integer> getListenerQueueDepths();
+
+    /**
+     * <p>getListenerEventsDelivered</p>
+     *
+     * @return the number of events handled by each listener
+     */
+    public Map<String, Long> getListenerEventsDelivered();
+
+    /**
+     * <p>getListenerEventsDropped</p>
+     *
+     * @return the number of events discarded for each listener
+     */
+    public Map<String, Long> getListenerEventsDropped();
+
+    /**
+     * <p>getListenerEventsEnqueued</p>
+     *
+     * @return the number of events broadcast to each listener
+     */
+    public Map<String, Long> getListenerEventsEnqueued();
+
+    /**
+     * <p>getListenerEventsSpilled</p>
+     *
+     * @return the number of events written to disk for each listener
+     */
+    public Map<String, Long> getListenerEventsSpilled();
+
+    /**
+     * <p>getListenerProcessingTimes</p>
+     *
+     * @return the total number of milliseconds each listener spent handling events
+     */
+    public Map<String, Long> getListenerProcessingTimes();
+
+    /**
+     * <p>getFilterCacheHits</p>
+     *
+     * @return the number of filter rule lookups answered from memory
+     */
+    public long getFilterCacheHits();
+
+    /**
+     * <p>getFilterCacheMisses</p>
+     *
+     * @return the number of filter rule lookups that evaluated the rule from scratch
+     */
+    public long getFilterCacheMisses();
+
+    /**
+     * <p>getFilterCacheRefreshes</p>
+     *
+     * @return the number of filter rule lookups that re-evaluated the rule for changed nodes
+     */
+    public long getFilterCacheRefreshes();
+
+    /**
+     * <p>getFilterCacheRebuildTime</p>
+     *
+     * @return the total number of milliseconds spent evaluating cached filter rules
+     */
+    public long getFilterCacheRebuildTime();
+
+    /**
+     * <p>getFilterCachedRules</p>
+     *
+     * @return the number of filter rules in the cache
+     */
+    public int getFilterCachedRules();
 }
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.eventd.processor;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.opennms.netmgt.EventConstants;
+import org.opennms.netmgt.filter.FilterDao;
+import org.opennms.netmgt.filter.JdbcFilterDao;
+import org.opennms.netmgt.model.events.EventProcessor;
+import org.opennms.netmgt.model.events.EventUtils;
+import org.opennms.netmgt.xml.event.Event;
+import org.opennms.netmgt.xml.event.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+
+/**
+ * EventProcessor that keeps the filter rule cache of the
+ * {@link JdbcFilterDao} up to date. It has to run before the events are
+ * broadcast, so that daemons evaluating rules in response to an event
+ * already see the change the event reports.
+ */
+public class FilterCacheInvalidationProcessor implements EventProcessor, InitializingBean {
+    private static final Logger LOG = LoggerFactory.getLogger(FilterCacheInvalidationProcessor.class);
+
+    /**
+     * Events reporting a change to the nodes, IP and SNMP interfaces,
+     * services, categories or assets a filter rule can match on
+     */
+    private static final Set<String> NODE_CHANGE_UEIS = new HashSet<String>(Arrays.asList(
+        EventConstants.NODE_ADDED_EVENT_UEI,
+        EventConstants.NODE_UPDATED_EVENT_UEI,
+        EventConstants.NODE_DELETED_EVENT_UEI,
+        EventConstants.DUP_NODE_DELETED_EVENT_UEI,
+        EventConstants.NODE_GAINED_INTERFACE_EVENT_UEI,
+        EventConstants.INTERFACE_DELETED_EVENT_UEI,
+        EventConstants.INTERFACE_REPARENTED_EVENT_UEI,
+        EventConstants.INTERFACE_INDEX_CHANGED_EVENT_UEI,
+        EventConstants.INTERFACE_IP_HOSTNAME_CHANGED_EVENT_UEI,
+        EventConstants.INTERFACE_SUPPORTS_SNMP_EVENT_UEI,
+        EventConstants.INTERFACE_MANAGED_EVENT_UEI,
+        EventConstants.INTERFACE_UNMANAGED_EVENT_UEI,
+        EventConstants.SNMP_INTERFACE_ADMIN_DOWN_EVENT_UEI,
+        EventConstants.SNMP_INTERFACE_ADMIN_UP_EVENT_UEI,
+        EventConstants.SNMP_INTERFACE_OPER_DOWN_EVENT_UEI,
+        EventConstants.SNMP_INTERFACE_OPER_UP_EVENT_UEI,
+        EventConstants.REINITIALIZE_PRIMARY_SNMP_INTERFACE_EVENT_UEI,
+        EventConstants.NODE_GAINED_SERVICE_EVENT_UEI,
+        EventConstants.SERVICE_DELETED_EVENT_UEI,
+        EventConstants.SERVICE_MANAGED_EVENT_UEI,
+        EventConstants.SERVICE_UNMANAGED_EVENT_UEI,
+        EventConstants.SUSPEND_POLLING_SERVICE_EVENT_UEI,
+        EventConstants.RESUME_POLLING_SERVICE_EVENT_UEI,
+        EventConstants.NODE_LABEL_CHANGED_EVENT_UEI,
+        EventConstants.NODE_INFO_CHANGED_EVENT_UEI,
+        EventConstants.PRIMARY_SNMP_INTERFACE_CHANGED_EVENT_UEI,
+        EventConstants.NODE_CATEGORY_MEMBERSHIP_CHANGED_EVENT_UEI,
+        EventConstants.ASSET_INFO_CHANGED_EVENT_UEI
+    ));
+
+    private FilterDao m_filterDao;
+
+    private JdbcFilterDao m_jdbcFilterDao;
+
+    /**
+     * <p>afterPropertiesSet</p>
+     *
+     * @throws java.lang.IllegalStateException if any.
+     */
+    @Override
+    public void afterPropertiesSet() throws IllegalStateException {
+        Assert.state(m_filterDao != null, "property filterDao must be set");
+
+        if (m_filterDao instanceof JdbcFilterDao) {
+            m_jdbcFilterDao = (JdbcFilterDao) m_filterDao;
+            m_jdbcFilterDao.setCacheInvalidationEnabled(true);
+        } else {
+            LOG.debug("afterPropertiesSet: filter DAO {} has no rule cache, nothing to invalidate", m_filterDao);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void process(final Header eventHeader, final Event event) {
+        if (m_jdbcFilterDao == null || !NODE_CHANGE_UEIS.contains(event.getUei())) {
+            return;
+        }
+
+        if (!event.hasNodeid()) {
+            LOG.debug("process: {} event without a node ID, dropping the filter rule cache", event.getUei());
+            m_jdbcFilterDao.invalidateAll();
+            return;
+        }
+
+        m_jdbcFilterDao.invalidateNode(event.getNodeid().intValue());
+
+        if (EventConstants.INTERFACE_REPARENTED_EVENT_UEI.equals(event.getUei())) {
+            final String oldNodeId = EventUtils.getParm(event, EventConstants.PARM_OLD_NODEID);
+            try {
+                if (oldNodeId != null) {
+                    m_jdbcFilterDao.invalidateNode(Integer.parseInt(oldNodeId));
+                }
+            } catch (final NumberFormatException e) {
+                LOG.debug("process: invalid {} parameter {}, dropping the filter rule cache", EventConstants.PARM_OLD_NODEID, oldNodeId);
+                m_jdbcFilterDao.invalidateAll();
+            }
+        }
+    }
+
+    /**
+     * <p>getFilterDao</p>
+     *
+     * @return a {@link org.opennms.netmgt.filter.FilterDao} object.
+     */
+    public FilterDao getFilterDao() {
+        return m_filterDao;
+    }
+
+    /**
+     * <p>setFilterDao</p>
+     *
+     * @param filterDao a {@link org.opennms.netmgt.filter.FilterDao} object.
+     */
+    public void setFilterDao(final FilterDao filterDao) {
+        m_filterDao = filterDao;
+    }
+}
@@ -34,8 +34,18 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
-
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.core.utils.DBUtils;
 import org.opennms.netmgt.dao.util.AutoAction;
 import org.opennms.netmgt.dao.util.OperatorAction;
@@ -51,10 +61,12 @@ import org.opennms.netmgt.xml.event.Header;
 import org.opennms.netmgt.xml.event.Operaction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.Assert;
 
 /**
  * EventWriter loads the information in each 'Event' into the database.
@@ -70,6 +82,17 @@ import org.springframework.jdbc.core.JdbcTemplate;
  *
  * Values for the ' <parms>' block are loaded with each parm name and parm value
  * delimited with the NAME_VAL_DELIM.
+ *
+ * When the batchSize property is greater than one, event ids are allocated
+ * from the sequence in blocks and the inserts from all event handler threads
+ * are grouped into JDBC batches by a single writer thread. A batch is written
+ * once it is full or batchDelay milliseconds after its first event arrived.
+ * process() still assigns the dbid up front and does not return until the
+ * batch holding its event has been committed, so the event row exists before
+ * the event is broadcast to listeners. The block of ids is fetched with the
+ * getNextIdString statement run once per row of
+ * <code>generate_series(1, batchSize)</code>, or one id at a time if the
+ * statement is not a plain <code>SELECT</code> of an expression.
  * 
  * @deprecated Replace with a Hibernate implementation. See bug NMS-3033. Actually
  * it doesn't have any details. :P
@@ -87,8 +110,154 @@ import org.springframework.jdbc.core.JdbcTemplate;
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
-public final class JdbcEventWriter extends AbstractJdbcPersister implements EventProcessor, InitializingBean {
+public final class JdbcEventWriter extends AbstractJdbcPersister implements EventProcessor, InitializingBean, DisposableBean {
     private static final Logger LOG = LoggerFactory.getLogger(JdbcEventWriter.class);
+
+    /**
+     * A statement selecting a single expression, without a FROM clause.
+     */
+    private static final Pattern SELECT_EXPRESSION = Pattern.compile("^\\s*select\\s+(.+?)\\s*;?\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern FROM = Pattern.compile("\\bfrom\\b", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Queued by destroy() behind the pending events to stop the batch writer.
+     */
+    private static final PendingEvent STOP = new PendingEvent(null, null, 0);
+
+    /**
+     * Maximum number of events written in one JDBC batch; 1 writes each
+     * event in its own transaction on the calling thread.
+     */
+    private int m_batchSize = 1;
+
+    /**
+     * Maximum time in milliseconds the first event of a batch waits for
+     * more events to arrive.
+     */
+    private long m_batchDelay = 20;
+
+    /**
+     * Maximum time in milliseconds process() waits for the batch writer to
+     * store an event.
+     */
+    private long m_writeTimeout = 60000;
+
+    /**
+     * Event ids allocated from the sequence but not yet used.
+     */
+    private final LinkedList<Integer> m_allocatedIds = new LinkedList<Integer>();
+
+    private BlockingQueue<PendingEvent> m_pendingEvents;
+
+    private String m_getNextIdBlockString;
+
+    private Thread m_writer;
+
+    private volatile boolean m_stopped = false;
+
+    /**
+     * Events handed to the writer thread that it has not finished with yet.
+     */
+    private final AtomicInteger m_pendingCount = new AtomicInteger();
+
+    /**
+     * An event waiting for the batch writer thread to store it.
+     */
+    private static class PendingEvent {
+        private final Header m_header;
+        private final Event m_event;
+        private final int m_eventID;
+        private final CountDownLatch m_written = new CountDownLatch(1);
+        private volatile Exception m_error;
+
+        PendingEvent(final Header header, final Event event, final int eventID) {
+            m_header = header;
+            m_event = event;
+            m_eventID = eventID;
+        }
+
+        void complete(final Exception error) {
+            m_error = error;
+            m_written.countDown();
+        }
+    }
+
+    /**
+     * Derive the statement fetching a block of ids from the statement
+     * fetching a single id.
+     *
+     * @return the statement with the block size as its only parameter, or
+     * null if the ids have to be fetched one at a time
+     */
+    static String getNextIdBlockString(final String getNextIdString) {
+        if (getNextIdString == null) {
+            return null;
+        }
+        final Matcher m = SELECT_EXPRESSION.matcher(getNextIdString);
+        if (!m.matches() || FROM.matcher(m.group(1)).find()) {
+            return null;
+        }
+        return "SELECT " + m.group(1) + " FROM generate_series(1, ?)";
+    }
+
+    /**
+     * <p>afterPropertiesSet</p>
+     *
+     * @throws java.sql.SQLException if any.
+     */
+    @Override
+    public void afterPropertiesSet() throws SQLException {
+        super.afterPropertiesSet();
+        Assert.state(m_batchSize > 0, "property batchSize must be greater than zero");
+
+        if (m_batchSize > 1) {
+            m_getNextIdBlockString = getNextIdBlockString(getGetNextIdString());
+            if (m_getNextIdBlockString == null) {
+                LOG.info("Cannot fetch event ids in blocks with '{}'; fetching them one at a time.", getGetNextIdString());
+            }
+
+            m_pendingEvents = new LinkedBlockingQueue<PendingEvent>();
+            m_writer = new LogPreservingThreadFactory(getClass().getSimpleName(), 1, true).newThread(new Runnable() {
+                @Override
+                public void run() {
+                    writeBatches();
+                }
+            });
+            m_writer.setDaemon(true);
+            m_writer.start();
+        }
+    }
+
+    /**
+     * Write the events that are already waiting and stop the batch writer
+     * thread.
+     *
+     * @throws java.lang.InterruptedException if any.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (m_writer == null) {
+            return;
+        }
+
+        m_stopped = true;
+        m_pendingEvents.add(STOP);
+        m_writer.join(m_writeTimeout);
+        if (m_writer.isAlive()) {
+            LOG.warn("Event batch writer did not finish within {}ms; interrupting it.", m_writeTimeout);
+            m_writer.interrupt();
+            m_writer.join(m_writeTimeout);
+        }
+    }
+
+    /**
+     * @return the number of events handed to the batch writer that it has
+     * not stored yet
+     */
+    int getPendingCount() {
+        return m_pendingCount.get();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -102,6 +271,16 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
 
         LOG.debug("JdbcEventWriter: processing {} nodeid: {} ipaddr: {} serviceid: {} time: {}", event.getUei(), event.getNodeid(), event.getInterface(), event.getService(), event.getTime());
 
+        if (m_pendingEvents != null) {
+            processBatched(eventHeader, event);
+        } else {
+            processSingle(eventHeader, event);
+        }
+
+        LOG.debug("EventWriter finished for : {}", event.getUei());
+    }
+
+    private void processSingle(final Header eventHeader, final Event event) throws EventProcessorException {
         Connection connection;
         try {
             connection = getDataSource().getConnection();
@@ -146,8 +325,256 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
                 LOG.warn("SQLException while closing database connection.", e);
             }
         }
+    }
 
-        LOG.debug("EventWriter finished for : {}", event.getUei());
+    /**
+     * Assign the event its id, hand it to the batch writer thread and wait
+     * until the batch holding it has been committed.
+     */
+    private void processBatched(final Header eventHeader, final Event event) throws EventProcessorException {
+        final PendingEvent pending;
+        try {
+            final int eventID = allocateId();
+
+            LOG.debug("DBID: {}", eventID);
+
+            synchronized (event) {
+                event.setDbid(eventID);
+            }
+            pending = new PendingEvent(eventHeader, event, eventID);
+        } catch (final SQLException e) {
+            throw new EventProcessorException(e);
+        } catch (final DataAccessException e) {
+            throw new EventProcessorException(e);
+        }
+
+        checkWriterRunning();
+        m_pendingCount.incrementAndGet();
+        m_pendingEvents.add(pending);
+
+        try {
+            // check on the writer while waiting, so events do not wait for a thread that has died
+            final long deadline = System.currentTimeMillis() + m_writeTimeout;
+            while (!pending.m_written.await(Math.max(m_batchDelay, 1000), TimeUnit.MILLISECONDS)) {
+                if (!m_writer.isAlive()) {
+                    throw new EventProcessorException("The event batch writer has stopped; event " + pending.m_eventID + " may not have been stored.");
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    throw new EventProcessorException("Event " + pending.m_eventID + " was not stored within " + m_writeTimeout + "ms.");
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new EventProcessorException(e);
+        }
+
+        if (pending.m_error != null) {
+            throw new EventProcessorException(pending.m_error);
+        }
+    }
+
+    private void checkWriterRunning() throws EventProcessorException {
+        if (m_stopped) {
+            throw new EventProcessorException("The event batch writer has been stopped.");
+        }
+        if (!m_writer.isAlive()) {
+            throw new EventProcessorException("The event batch writer has died.");
+        }
+    }
+
+    /**
+     * Return the next event id, fetching a block of batchSize ids from the
+     * sequence when the previous block is used up.
+     */
+    private int allocateId() throws SQLException {
+        if (m_getNextIdBlockString == null) {
+            return getNextId();
+        }
+        synchronized (m_allocatedIds) {
+            if (m_allocatedIds.isEmpty()) {
+                m_allocatedIds.addAll(new JdbcTemplate(getDataSource()).queryForList(m_getNextIdBlockString, Integer.class, m_batchSize));
+                if (m_allocatedIds.isEmpty()) {
+                    throw new SQLException("No event ids returned by: " + m_getNextIdBlockString);
+                }
+            }
+            return m_allocatedIds.removeFirst();
+        }
+    }
+
+    /**
+     * Body of the batch writer thread: collect up to batchSize pending events,
+     * waiting at most batchDelay after the first one, and write them. Stops
+     * after writing the events queued before {@link #STOP}.
+     */
+    private void writeBatches() {
+        final List<PendingEvent> batch = new ArrayList<PendingEvent>(m_batchSize);
+        boolean stop = false;
+        try {
+            while (!stop) {
+                try {
+                    final PendingEvent first = m_pendingEvents.take();
+                    if (first == STOP) {
+                        return;
+                    }
+                    batch.add(first);
+
+                    final long deadline = System.currentTimeMillis() + m_batchDelay;
+                    while (batch.size() < m_batchSize) {
+                        final long wait = deadline - System.currentTimeMillis();
+                        final PendingEvent next = wait > 0 ? m_pendingEvents.poll(wait, TimeUnit.MILLISECONDS) : m_pendingEvents.poll();
+                        if (next == null) {
+                            break;
+                        } else if (next == STOP) {
+                            stop = true;
+                            break;
+                        }
+                        batch.add(next);
+                    }
+
+                    writeBatch(batch);
+                } catch (final InterruptedException e) {
+                    LOG.warn("Event batch writer interrupted; exiting.", e);
+                    complete(batch, e);
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (final Throwable t) {
+                    LOG.warn("Unexpected error writing event batch.", t);
+                    complete(batch, t instanceof Exception ? (Exception)t : new RuntimeException(t));
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            // fail the events still queued, so no caller waits for them
+            final List<PendingEvent> remaining = new ArrayList<PendingEvent>();
+            m_pendingEvents.drainTo(remaining);
+            remaining.remove(STOP);
+            if (!remaining.isEmpty()) {
+                LOG.warn("Event batch writer stopped with {} events not stored.", remaining.size());
+                complete(remaining, new IllegalStateException("The event batch writer has stopped."));
+            }
+        }
+    }
+
+    private void complete(final List<PendingEvent> events, final Exception error) {
+        for (final PendingEvent pending : events) {
+            pending.complete(error);
+            m_pendingCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Write the events in one transaction. If the batch fails, each event is
+     * retried in its own transaction so only the offending events are lost.
+     */
+    private void writeBatch(final List<PendingEvent> batch) {
+        LOG.debug("Writing batch of {} events", batch.size());
+
+        final DBUtils d = new DBUtils(getClass());
+        try {
+            final Connection connection = getDataSource().getConnection();
+            d.watch(connection);
+            connection.setAutoCommit(false);
+
+            try {
+                final PreparedStatement insStmt = connection.prepareStatement(EventdConstants.SQL_DB_INS_EVENT);
+                d.watch(insStmt);
+
+                for (final PendingEvent pending : batch) {
+                    bindEvent(insStmt, pending.m_header, pending.m_event, pending.m_eventID);
+                    insStmt.addBatch();
+                }
+                insStmt.executeBatch();
+                connection.commit();
+
+                complete(batch, null);
+                return;
+            } catch (final Exception e) {
+                LOG.warn("Error inserting batch of {} events into the datastore; retrying them one at a time.", batch.size(), e);
+                try {
+                    connection.rollback();
+                } catch (final Throwable e2) {
+                    LOG.warn("Rollback of transaction failed.", e2);
+                }
+            }
+
+            for (final PendingEvent pending : batch) {
+                Exception error = null;
+                try {
+                    insertEvent(pending.m_header, pending.m_event, pending.m_eventID, connection);
+                    connection.commit();
+                } catch (final Exception e) {
+                    LOG.warn("Error inserting event into the datastore.", e);
+                    try {
+                        connection.rollback();
+                    } catch (final Throwable e2) {
+                        LOG.warn("Rollback of transaction failed.", e2);
+                    }
+                    error = e;
+                }
+                complete(Collections.singletonList(pending), error);
+            }
+        } catch (final SQLException e) {
+            LOG.warn("Unable to get a database connection to write events.", e);
+            complete(batch, e);
+        } finally {
+            d.cleanUp();
+        }
+    }
+
+    /**
+     * <p>getBatchSize</p>
+     *
+     * @return a int.
+     */
+    public int getBatchSize() {
+        return m_batchSize;
+    }
+
+    /**
+     * <p>setBatchSize</p>
+     *
+     * @param batchSize a int.
+     */
+    public void setBatchSize(final int batchSize) {
+        Assert.state(m_pendingEvents == null, "batchSize property cannot be set after afterPropertiesSet() is called");
+        m_batchSize = batchSize;
+    }
+
+    /**
+     * <p>getBatchDelay</p>
+     *
+     * @return a long.
+     */
+    public long getBatchDelay() {
+        return m_batchDelay;
+    }
+
+    /**
+     * <p>setBatchDelay</p>
+     *
+     * @param batchDelay a long.
+     */
+    public void setBatchDelay(final long batchDelay) {
+        m_batchDelay = batchDelay;
+    }
+
+    /**
+     * <p>getWriteTimeout</p>
+     *
+     * @return a long.
+     */
+    public long getWriteTimeout() {
+        return m_writeTimeout;
+    }
+
+    /**
+     * <p>setWriteTimeout</p>
+     *
+     * @param writeTimeout a long.
+     */
+    public void setWriteTimeout(final long writeTimeout) {
+        m_writeTimeout = writeTimeout;
     }
 
     /**
@@ -169,190 +596,207 @@ public final class JdbcEventWriter extends AbstractJdbcPersister implements Even
         synchronized (event) {
             event.setDbid(eventID);
         }
+
+        insertEvent(eventHeader, event, eventID, connection);
+    }
+
+    private void insertEvent(final Header eventHeader, final Event event, final int eventID, final Connection connection) throws SQLException {
         final DBUtils d = new DBUtils(getClass());
 
         try {
             final PreparedStatement insStmt = connection.prepareStatement(EventdConstants.SQL_DB_INS_EVENT);
             d.watch(insStmt);
 
-            // eventID
-            insStmt.setInt(1, eventID);
+            bindEvent(insStmt, eventHeader, event, eventID);
 
-            // eventUEI
-            insStmt.setString(2, Constants.format(event.getUei(), EVENT_UEI_FIELD_SIZE));
-
-            // nodeID
-            final Long nodeid = event.getNodeid();
-            set(insStmt, 3, event.hasNodeid() ? nodeid.intValue() : -1);
+            // execute
+            insStmt.executeUpdate();
+        } finally {
+            d.cleanUp();
+        }
 
-            // eventTime
-            insStmt.setTimestamp(4, getEventTime(event));
+        LOG.debug("SUCCESSFULLY added {} related  data into the EVENTS table.", event.getUei());
+    }
 
-            // Resolve the event host to a hostname using the ipInterface table
-            String hostname = getEventHost(event);
+    /**
+     * Set the parameters of the EVENTS insert statement from the event.
+     */
+    private void bindEvent(final PreparedStatement insStmt, final Header eventHeader, final Event event, final int eventID) throws SQLException {
+        // eventID
+        insStmt.setInt(1, eventID);
 
-            // eventHost
-            set(insStmt, 5, Constants.format(hostname, EVENT_HOST_FIELD_SIZE));
+        // eventUEI
+        insStmt.setString(2, Constants.format(event.getUei(), EVENT_UEI_FIELD_SIZE));
 
-            // ipAddr
-            set(insStmt, 6, Constants.format(event.getInterface(), EVENT_INTERFACE_FIELD_SIZE));
+        // nodeID
+        final Long nodeid = event.getNodeid();
+        set(insStmt, 3, event.hasNodeid() ? nodeid.intValue() : -1);
 
-            // eventDpName
-            String dpName = "localhost";
-            if (eventHeader != null && eventHeader.getDpName() != null) {
-                dpName = Constants.format(eventHeader.getDpName(), EVENT_DPNAME_FIELD_SIZE);
-            } else if (event.getDistPoller() != null) {
-                dpName = Constants.format(event.getDistPoller(), EVENT_DPNAME_FIELD_SIZE);
-            }
-            insStmt.setString(7, dpName);
+        // eventTime
+        insStmt.setTimestamp(4, getEventTime(event));
 
-            // eventSnmpHost
-            set(insStmt, 8, Constants.format(event.getSnmphost(), EVENT_SNMPHOST_FIELD_SIZE));
+        // Resolve the event host to a hostname using the ipInterface table
+        String hostname = getEventHost(event);
 
-            // service identifier - convert the service name to a service id
-            set(insStmt, 9, getEventServiceId(event));
+        // eventHost
+        set(insStmt, 5, Constants.format(hostname, EVENT_HOST_FIELD_SIZE));
 
-            // eventSnmp
-            if (event.getSnmp() != null) {
-                insStmt.setString(10, SnmpInfo.format(event.getSnmp(), EVENT_SNMP_FIELD_SIZE));
-            } else {
-                insStmt.setNull(10, Types.VARCHAR);
-            }
+        // ipAddr
+        set(insStmt, 6, Constants.format(event.getInterface(), EVENT_INTERFACE_FIELD_SIZE));
 
-            // eventParms
-
-            // Replace any null bytes with a space, otherwise postgres will complain about encoding in UNICODE 
-            final String parametersString=Parameter.format(event);
-            set(insStmt, 11, Constants.format(parametersString, 0));
-
-            // eventCreateTime
-            final Timestamp eventCreateTime = new Timestamp(System.currentTimeMillis());
-            insStmt.setTimestamp(12, eventCreateTime);
-
-            // eventDescr
-            set(insStmt, 13, Constants.format(event.getDescr(), 0));
-
-            // eventLoggroup
-            set(insStmt, 14, (event.getLoggroupCount() > 0) ? Constants.format(event.getLoggroup(), EVENT_LOGGRP_FIELD_SIZE) : null);
-
-            // eventLogMsg
-            // eventLog
-            // eventDisplay
-            if (event.getLogmsg() != null) {
-                // set log message
-                set(insStmt, 15, Constants.format(event.getLogmsg().getContent(), 0));
-                String logdest = event.getLogmsg().getDest();
-                if (logdest.equals("logndisplay")) {
-                    // if 'logndisplay' set both log and display column to yes
-                    set(insStmt, 16, MSG_YES);
-                    set(insStmt, 17, MSG_YES);
-                } else if (logdest.equals("logonly")) {
-                    // if 'logonly' set log column to true
-                    set(insStmt, 16, MSG_YES);
-                    set(insStmt, 17, MSG_NO);
-                } else if (logdest.equals("displayonly")) {
-                    // if 'displayonly' set display column to true
-                    set(insStmt, 16, MSG_NO);
-                    set(insStmt, 17, MSG_YES);
-                } else if (logdest.equals("suppress")) {
-                    // if 'suppress' set both log and display to false
-                    set(insStmt, 16, MSG_NO);
-                    set(insStmt, 17, MSG_NO);
-                }
-            } else {
-                insStmt.setNull(15, Types.VARCHAR);
-
-                /*
-                 * If this is an event that had no match in the event conf
-                 * mark it as to be logged and displayed so that there
-                 * are no events that slip through the system
-                 * without the user knowing about them
-                 */
-                set(insStmt, 17, MSG_YES);
-            }
+        // eventDpName
+        String dpName = "localhost";
+        if (eventHeader != null && eventHeader.getDpName() != null) {
+            dpName = Constants.format(eventHeader.getDpName(), EVENT_DPNAME_FIELD_SIZE);
+        } else if (event.getDistPoller() != null) {
+            dpName = Constants.format(event.getDistPoller(), EVENT_DPNAME_FIELD_SIZE);
+        }
+        insStmt.setString(7, dpName);
 
-            // eventSeverity
-            set(insStmt, 18, OnmsSeverity.get(event.getSeverity()).getId());
+        // eventSnmpHost
+        set(insStmt, 8, Constants.format(event.getSnmphost(), EVENT_SNMPHOST_FIELD_SIZE));
 
-            // eventPathOutage
-            set(insStmt, 19, (event.getPathoutage() != null) ? Constants.format(event.getPathoutage(), EVENT_PATHOUTAGE_FIELD_SIZE) : null);
+        // service identifier - convert the service name to a service id
+        set(insStmt, 9, getEventServiceId(event));
 
-            // eventCorrelation
-            set(insStmt, 20, (event.getCorrelation() != null) ? org.opennms.netmgt.dao.util.Correlation.format(event.getCorrelation(), EVENT_CORRELATION_FIELD_SIZE) : null);
+        // eventSnmp
+        if (event.getSnmp() != null) {
+            insStmt.setString(10, SnmpInfo.format(event.getSnmp(), EVENT_SNMP_FIELD_SIZE));
+        } else {
+            insStmt.setNull(10, Types.VARCHAR);
+        }
 
-            // eventSuppressedCount
-            insStmt.setNull(21, Types.INTEGER);
+        // eventParms
 
-            // eventOperInstruct
-            set(insStmt, 22, Constants.format(event.getOperinstruct(), EVENT_OPERINSTRUCT_FIELD_SIZE));
+        // Replace any null bytes with a space, otherwise postgres will complain about encoding in UNICODE 
+        final String parametersString=Parameter.format(event);
+        set(insStmt, 11, Constants.format(parametersString, 0));
 
-            // eventAutoAction
-            set(insStmt, 23, (event.getAutoactionCount() > 0) ? AutoAction.format(event.getAutoaction(), EVENT_AUTOACTION_FIELD_SIZE) : null);
+        // eventCreateTime
+        final Timestamp eventCreateTime = new Timestamp(System.currentTimeMillis());
+        insStmt.setTimestamp(12, eventCreateTime);
 
-            // eventOperAction / eventOperActionMenuText
-            if (event.getOperactionCount() > 0) {
-                final List<Operaction> a = new ArrayList<Operaction>();
-                final List<String> b = new ArrayList<String>();
+        // eventDescr
+        set(insStmt, 13, Constants.format(event.getDescr(), 0));
 
-                for (final Operaction eoa : event.getOperactionCollection()) {
-                    a.add(eoa);
-                    b.add(eoa.getMenutext());
-                }
+        // eventLoggroup
+        set(insStmt, 14, (event.getLoggroupCount() > 0) ? Constants.format(event.getLoggroup(), EVENT_LOGGRP_FIELD_SIZE) : null);
 
-                set(insStmt, 24, OperatorAction.format(a, EVENT_OPERACTION_FIELD_SIZE));
-                set(insStmt, 25, Constants.format(b, EVENT_OPERACTION_MENU_FIELD_SIZE));
+        // eventLogMsg
+        // eventLog
+        // eventDisplay
+        if (event.getLogmsg() != null) {
+            // set log message
+            set(insStmt, 15, Constants.format(event.getLogmsg().getContent(), 0));
+            String logdest = event.getLogmsg().getDest();
+            if (logdest.equals("logndisplay")) {
+                // if 'logndisplay' set both log and display column to yes
+                set(insStmt, 16, MSG_YES);
+                set(insStmt, 17, MSG_YES);
+            } else if (logdest.equals("logonly")) {
+                // if 'logonly' set log column to true
+                set(insStmt, 16, MSG_YES);
+                set(insStmt, 17, MSG_NO);
+            } else if (logdest.equals("displayonly")) {
+                // if 'displayonly' set display column to true
+                set(insStmt, 16, MSG_NO);
+                set(insStmt, 17, MSG_YES);
+            } else if (logdest.equals("suppress")) {
+                // if 'suppress' set both log and display to false
+                set(insStmt, 16, MSG_NO);
+                set(insStmt, 17, MSG_NO);
             } else {
-                insStmt.setNull(24, Types.VARCHAR);
-                insStmt.setNull(25, Types.VARCHAR);
+                // bind both columns, a batched statement keeps the values of the previous row
+                set(insStmt, 16, MSG_YES);
+                set(insStmt, 17, MSG_YES);
             }
+        } else {
+            insStmt.setNull(15, Types.VARCHAR);
+
+            /*
+             * If this is an event that had no match in the event conf
+             * mark it as to be logged and displayed so that there
+             * are no events that slip through the system
+             * without the user knowing about them
+             */
+            set(insStmt, 16, MSG_YES);
+            set(insStmt, 17, MSG_YES);
+        }
 
-            // eventNotification, this column no longer needed
-            insStmt.setNull(26, Types.VARCHAR);
+        // eventSeverity
+        set(insStmt, 18, OnmsSeverity.get(event.getSeverity()).getId());
 
-            // eventTroubleTicket / eventTroubleTicket state
-            if (event.getTticket() != null) {
-                set(insStmt, 27, Constants.format(event.getTticket().getContent(), EVENT_TTICKET_FIELD_SIZE));
-                set(insStmt, 28, event.getTticket().getState().equals("on") ? 1 : 0);
-            } else {
-                insStmt.setNull(27, Types.VARCHAR);
-                insStmt.setNull(28, Types.INTEGER);
-            }
+        // eventPathOutage
+        set(insStmt, 19, (event.getPathoutage() != null) ? Constants.format(event.getPathoutage(), EVENT_PATHOUTAGE_FIELD_SIZE) : null);
 
-            // eventForward
-            set(insStmt, 29, (event.getForwardCount() > 0) ? org.opennms.netmgt.dao.util.Forward.format(event.getForward(), EVENT_FORWARD_FIELD_SIZE) : null);
+        // eventCorrelation
+        set(insStmt, 20, (event.getCorrelation() != null) ? org.opennms.netmgt.dao.util.Correlation.format(event.getCorrelation(), EVENT_CORRELATION_FIELD_SIZE) : null);
 
-            // event mouseOverText
-            set(insStmt, 30, Constants.format(event.getMouseovertext(), EVENT_MOUSEOVERTEXT_FIELD_SIZE));
+        // eventSuppressedCount
+        insStmt.setNull(21, Types.INTEGER);
 
-            // eventAckUser
-            if (event.getAutoacknowledge() != null && event.getAutoacknowledge().getState().equals("on")) {
-                set(insStmt, 31, Constants.format(event.getAutoacknowledge().getContent(), EVENT_ACKUSER_FIELD_SIZE));
+        // eventOperInstruct
+        set(insStmt, 22, Constants.format(event.getOperinstruct(), EVENT_OPERINSTRUCT_FIELD_SIZE));
 
-                // eventAckTime - if autoacknowledge is present,
-                // set time to event create time
-                set(insStmt, 32, eventCreateTime);
-            } else {
-                insStmt.setNull(31, Types.INTEGER);
-                insStmt.setNull(32, Types.TIMESTAMP);
-            }
+        // eventAutoAction
+        set(insStmt, 23, (event.getAutoactionCount() > 0) ? AutoAction.format(event.getAutoaction(), EVENT_AUTOACTION_FIELD_SIZE) : null);
 
-            // eventSource
-            set(insStmt, 33, Constants.format(event.getSource(), EVENT_SOURCE_FIELD_SIZE));
+        // eventOperAction / eventOperActionMenuText
+        if (event.getOperactionCount() > 0) {
+            final List<Operaction> a = new ArrayList<Operaction>();
+            final List<String> b = new ArrayList<String>();
 
-            // ifindex
-            if (event.hasIfIndex()) {
-                set(insStmt, 34, event.getIfIndex());
-            } else {
-                insStmt.setNull(34, Types.INTEGER);
+            for (final Operaction eoa : event.getOperactionCollection()) {
+                a.add(eoa);
+                b.add(eoa.getMenutext());
             }
-            
-            // execute
-            insStmt.executeUpdate();
-        } finally {
-            d.cleanUp();
+
+            set(insStmt, 24, OperatorAction.format(a, EVENT_OPERACTION_FIELD_SIZE));
+            set(insStmt, 25, Constants.format(b, EVENT_OPERACTION_MENU_FIELD_SIZE));
+        } else {
+            insStmt.setNull(24, Types.VARCHAR);
+            insStmt.setNull(25, Types.VARCHAR);
         }
 
-        LOG.debug("SUCCESSFULLY added {} related  data into the EVENTS table.", event.getUei());
+        // eventNotification, this column no longer needed
+        insStmt.setNull(26, Types.VARCHAR);
+
+        // eventTroubleTicket / eventTroubleTicket state
+        if (event.getTticket() != null) {
+            set(insStmt, 27, Constants.format(event.getTticket().getContent(), EVENT_TTICKET_FIELD_SIZE));
+            set(insStmt, 28, event.getTticket().getState().equals("on") ? 1 : 0);
+        } else {
+            insStmt.setNull(27, Types.VARCHAR);
+            insStmt.setNull(28, Types.INTEGER);
+        }
+
+        // eventForward
+        set(insStmt, 29, (event.getForwardCount() > 0) ? org.opennms.netmgt.dao.util.Forward.format(event.getForward(), EVENT_FORWARD_FIELD_SIZE) : null);
+
+        // event mouseOverText
+        set(insStmt, 30, Constants.format(event.getMouseovertext(), EVENT_MOUSEOVERTEXT_FIELD_SIZE));
+
+        // eventAckUser
+        if (event.getAutoacknowledge() != null && event.getAutoacknowledge().getState().equals("on")) {
+            set(insStmt, 31, Constants.format(event.getAutoacknowledge().getContent(), EVENT_ACKUSER_FIELD_SIZE));
+
+            // eventAckTime - if autoacknowledge is present,
+            // set time to event create time
+            set(insStmt, 32, eventCreateTime);
+        } else {
+            insStmt.setNull(31, Types.INTEGER);
+            insStmt.setNull(32, Types.TIMESTAMP);
+        }
+
+        // eventSource
+        set(insStmt, 33, Constants.format(event.getSource(), EVENT_SOURCE_FIELD_SIZE));
+
+        // ifindex
+        if (event.hasIfIndex()) {
+            set(insStmt, 34, event.getIfIndex());
+        } else {
+            insStmt.setNull(34, Types.INTEGER);
+        }
     }
 
 
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>
+ * Index of the bridge forwarding tables (as collected from the
+ * dot1dTpFdbTable and the Q-BRIDGE-MIB dot1qTpFdbTable) of the bridge nodes
+ * of a package, built by {@link DiscoveryLink} at the start of each run.
+ * </p>
+ * <p>
+ * MAC addresses are encoded as longs and the addresses learned on each
+ * bridge port are kept in sorted arrays, so that the addresses two ports
+ * have in common are found by merging the arrays. An inverted index maps
+ * each address to the bridge ports it was learned on and to the bridges it
+ * identifies.
+ * </p>
+ * <p>
+ * The index is read only once built and may be shared by several threads.
+ * </p>
+ */
+final class BridgeForwardingIndex {
+
+    private static final long[] NO_MACS = new long[0];
+
+    /**
+     * Encoded addresses at or above this value are not 12 lower case hex
+     * digits, they are numbered in the order they are seen.
+     */
+    private static final long OTHER_MAC = 1L << 48;
+
+    private final List<LinkableNode> m_bridges;
+
+    private final Map<Integer, Integer> m_positions = new HashMap<Integer, Integer>();
+
+    private final List<Map<Integer, long[]>> m_portMacs;
+
+    private final long[][] m_identifiers;
+
+    private final Map<Long, int[]> m_identifierBridges = new HashMap<Long, int[]>();
+
+    private final Map<Long, long[]> m_macLocations = new HashMap<Long, long[]>();
+
+    private final Map<String, Long> m_otherMacs = new HashMap<String, Long>();
+
+    private final List<String> m_otherMacNames = new ArrayList<String>();
+
+    private int m_entries = 0;
+
+    /**
+     * <p>Constructor for BridgeForwardingIndex.</p>
+     *
+     * @param bridges the bridge nodes, in the order they are parsed
+     */
+    BridgeForwardingIndex(final Collection<LinkableNode> bridges) {
+        m_bridges = new ArrayList<LinkableNode>(bridges);
+        m_portMacs = new ArrayList<Map<Integer, long[]>>(m_bridges.size());
+        m_identifiers = new long[m_bridges.size()][];
+
+        for (int position = 0; position < m_bridges.size(); position++) {
+            final LinkableNode bridge = m_bridges.get(position);
+            m_positions.put(bridge.getNodeId(), position);
+
+            m_identifiers[position] = encodeAll(bridge.getBridgeIdentifiers());
+            for (final long identifier : m_identifiers[position]) {
+                final int[] positions = m_identifierBridges.get(identifier);
+                if (positions == null) {
+                    m_identifierBridges.put(identifier, new int[] { position });
+                } else {
+                    final int[] grown = Arrays.copyOf(positions, positions.length + 1);
+                    grown[positions.length] = position;
+                    m_identifierBridges.put(identifier, grown);
+                }
+            }
+
+            final Map<Integer, long[]> portMacs = new HashMap<Integer, long[]>();
+            for (final Map.Entry<Integer, Set<String>> entry : bridge.getPortMacs().entrySet()) {
+                final long[] macs = encodeAll(entry.getValue());
+                portMacs.put(entry.getKey(), macs);
+                for (final long mac : macs) {
+                    addLocation(mac, ((long) position << 32) | (entry.getKey() & 0xffffffffL));
+                }
+                m_entries += macs.length;
+            }
+            m_portMacs.add(portMacs);
+        }
+
+        // the first element of each array is the number of locations in use
+        for (final Map.Entry<Long, long[]> entry : m_macLocations.entrySet()) {
+            final long[] locations = entry.getValue();
+            final long[] trimmed = Arrays.copyOfRange(locations, 1, (int) locations[0] + 1);
+            Arrays.sort(trimmed);
+            entry.setValue(trimmed);
+        }
+    }
+
+    private void addLocation(final long mac, final long location) {
+        long[] locations = m_macLocations.get(mac);
+        if (locations == null) {
+            locations = new long[3];
+            m_macLocations.put(mac, locations);
+        } else if (locations[0] + 1 == locations.length) {
+            locations = Arrays.copyOf(locations, locations.length * 2);
+            m_macLocations.put(mac, locations);
+        }
+        locations[(int) ++locations[0]] = location;
+    }
+
+    private long[] encodeAll(final Collection<String> macAddresses) {
+        if (macAddresses == null || macAddresses.isEmpty()) {
+            return NO_MACS;
+        }
+        final long[] macs = new long[macAddresses.size()];
+        int i = 0;
+        for (final String macAddress : macAddresses) {
+            macs[i++] = encode(macAddress);
+        }
+        Arrays.sort(macs);
+        return macs;
+    }
+
+    /**
+     * Encodes a MAC address. Addresses made of 12 lower case hex digits, as
+     * collected by linkd, are stored as their 48 bit value, any other string
+     * gets a number of its own.
+     *
+     * @param macAddress a MAC address
+     * @return the encoded address
+     */
+    long encode(final String macAddress) {
+        if (macAddress.length() == 12) {
+            long mac = 0;
+            int i = 0;
+            for (; i < 12; i++) {
+                final char c = macAddress.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    mac = (mac << 4) | (c - '0');
+                } else if (c >= 'a' && c <= 'f') {
+                    mac = (mac << 4) | (c - 'a' + 10);
+                } else {
+                    break;
+                }
+            }
+            if (i == 12) {
+                return mac;
+            }
+        }
+        synchronized (m_otherMacs) {
+            Long mac = m_otherMacs.get(macAddress);
+            if (mac == null) {
+                mac = OTHER_MAC + m_otherMacNames.size();
+                m_otherMacs.put(macAddress, mac);
+                m_otherMacNames.add(macAddress);
+            }
+            return mac.longValue();
+        }
+    }
+
+    /**
+     * @param mac an address returned by {@link #encode(String)}
+     * @return the MAC address it encodes
+     */
+    String decode(final long mac) {
+        if (mac >= OTHER_MAC) {
+            synchronized (m_otherMacs) {
+                return m_otherMacNames.get((int) (mac - OTHER_MAC));
+            }
+        }
+        final String hex = Long.toHexString(mac);
+        final StringBuilder sb = new StringBuilder(12);
+        for (int i = hex.length(); i < 12; i++) {
+            sb.append('0');
+        }
+        return sb.append(hex).toString();
+    }
+
+    /**
+     * @return the bridges in the order they were passed to the constructor
+     */
+    List<LinkableNode> getBridges() {
+        return Collections.unmodifiableList(m_bridges);
+    }
+
+    /**
+     * @return the number of forwarding table entries in the index
+     */
+    int getEntryCount() {
+        return m_entries;
+    }
+
+    private int position(final LinkableNode bridge) {
+        final Integer position = m_positions.get(bridge.getNodeId());
+        if (position == null) {
+            throw new IllegalArgumentException("Node " + bridge.getNodeId() + " is not an indexed bridge");
+        }
+        return position.intValue();
+    }
+
+    /**
+     * @return the sorted addresses learned on the bridge port, never null
+     */
+    long[] getMacs(final LinkableNode bridge, final int bridgePort) {
+        final long[] macs = m_portMacs.get(position(bridge)).get(bridgePort);
+        return macs == null ? NO_MACS : macs;
+    }
+
+    boolean isBridgeIdentifier(final LinkableNode bridge, final long mac) {
+        return Arrays.binarySearch(m_identifiers[position(bridge)], mac) >= 0;
+    }
+
+    /**
+     * @return true if the address is an identifier of any indexed bridge
+     */
+    boolean isBridgeIdentifier(final long mac) {
+        return m_identifierBridges.containsKey(mac);
+    }
+
+    /**
+     * @return the first bridge the address is an identifier of, or null
+     */
+    LinkableNode getBridgeByIdentifier(final long mac) {
+        final int[] positions = m_identifierBridges.get(mac);
+        return positions == null ? null : m_bridges.get(positions[0]);
+    }
+
+    /**
+     * Finds the bridges whose identifiers were learned on a bridge port.
+     *
+     * @return the bridges, in index order
+     */
+    List<LinkableNode> getBridgesOnPort(final LinkableNode bridge, final int bridgePort) {
+        final BitSet found = new BitSet(m_bridges.size());
+        for (final long mac : getMacs(bridge, bridgePort)) {
+            final int[] positions = m_identifierBridges.get(mac);
+            if (positions != null) {
+                for (final int position : positions) {
+                    found.set(position);
+                }
+            }
+        }
+        final List<LinkableNode> bridges = new ArrayList<LinkableNode>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            bridges.add(m_bridges.get(i));
+        }
+        return bridges;
+    }
+
+    /**
+     * @return the ports of the bridge the address was learned on, in
+     *         ascending order
+     */
+    int[] getBridgePorts(final LinkableNode bridge, final long mac) {
+        final long[] locations = m_macLocations.get(mac);
+        if (locations == null) {
+            return new int[0];
+        }
+        final long position = position(bridge);
+        // locations of a bridge start at its position shifted left, as
+        // bridge ports are not negative
+        int from = Arrays.binarySearch(locations, position << 32);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = from;
+        while (to < locations.length && (locations[to] >>> 32) == position) {
+            to++;
+        }
+        final int[] ports = new int[to - from];
+        for (int i = from; i < to; i++) {
+            ports[i - from] = (int) locations[i];
+        }
+        return ports;
+    }
+
+    /**
+     * @return the sorted addresses learned on both bridge ports, or null if
+     *         nothing was learned on at least one of them
+     */
+    long[] getCommonMacs(final LinkableNode bridge1, final int bridgePort1,
+            final LinkableNode bridge2, final int bridgePort2) {
+        final long[] macs1 = getMacs(bridge1, bridgePort1);
+        final long[] macs2 = getMacs(bridge2, bridgePort2);
+        if (macs1.length == 0 || macs2.length == 0) {
+            return null;
+        }
+        final long[] common = new long[Math.min(macs1.length, macs2.length)];
+        int n = 0;
+        int i = 0;
+        int j = 0;
+        while (i < macs1.length && j < macs2.length) {
+            if (macs1[i] < macs2[j]) {
+                i++;
+            } else if (macs1[i] > macs2[j]) {
+                j++;
+            } else {
+                common[n++] = macs1[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, n);
+    }
+}
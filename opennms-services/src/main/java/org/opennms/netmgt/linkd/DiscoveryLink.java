@@ -33,13 +33,19 @@ import static org.opennms.core.utils.InetAddressUtils.str;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
 import org.opennms.netmgt.linkd.scheduler.ReadyRunnable;
 import org.opennms.netmgt.linkd.scheduler.Scheduler;
 import org.opennms.netmgt.model.DataLinkInterface.DiscoveryProtocol;
@@ -58,6 +64,13 @@ public final class DiscoveryLink implements ReadyRunnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(DiscoveryLink.class);
 
+    /**
+     * The system property holding the number of threads comparing the
+     * forwarding tables of the bridge nodes, the number of processors by
+     * default
+     */
+    public static final String BRIDGE_THREADS_PROPERTY = "org.opennms.netmgt.linkd.bridgeThreads";
+
     private String packageName;
 
     private List<NodeToNodeLink> m_links = new ArrayList<NodeToNodeLink>();
@@ -76,11 +89,14 @@ public final class DiscoveryLink implements ReadyRunnable {
 
     private Map<String,LinkableNode> m_cdpNodes = new HashMap<String,LinkableNode>();
 
+    // the forwarding tables of the bridge nodes, indexed for the current run
+    private BridgeForwardingIndex m_bridgeIndex;
+
     // this is the list of MAC address just parsed by discovery process
-    private List<String> m_macsParsed = new ArrayList<String>();
+    private final MacAddressSet m_macsParsed = new MacAddressSet();
 
     // this is the list of MAC address excluded by discovery process
-    private List<String> macsExcluded = new ArrayList<String>();
+    private final MacAddressSet macsExcluded = new MacAddressSet();
 
     // this is the list of atinterfaces for which to be discovery link
     // here there aren't the bridge identifier because they should be
@@ -199,6 +215,11 @@ public final class DiscoveryLink implements ReadyRunnable {
             }
         }
 
+        // index the forwarding tables once, they are looked up for
+        // every pair of bridge ports
+        m_bridgeIndex = new BridgeForwardingIndex(m_bridgeNodes.values());
+        LOG.debug("run: indexed {} forwarding table entries of {} bridge nodes", m_bridgeIndex.getEntryCount(), m_bridgeNodes.size());
+
         // This will found all mac address on
         // current package and their association
         // with ip addresses.
@@ -231,6 +252,7 @@ public final class DiscoveryLink implements ReadyRunnable {
         m_cdpNodes.clear();
         m_macsParsed.clear();
         macsExcluded.clear();
+        m_bridgeIndex = null;
         m_lldpNodes.clear();
         m_ospfNodes.clear();
         m_isisNodes.clear();
@@ -259,7 +281,7 @@ public final class DiscoveryLink implements ReadyRunnable {
                 LOG.debug("populateMacToAtInterface: Parsing AtInterface nodeid/ipaddr/macaddr: {}/{}/{}", nodeid, at.getIpAddress(), macAddress);
                 if ((macAddress.indexOf("00000c07ac") == 0) || (macAddress.indexOf("00000c9ff") == 0)) {
                     LOG.debug("populateMacToAtInterface: AtInterface {} is Cisco HSRP address! Not adding to discoverable atinterface.", macAddress);
-                    macsExcluded.add(macAddress);
+                    macsExcluded.add(m_bridgeIndex.encode(macAddress));
                     continue;
                 }
             }
@@ -268,8 +290,15 @@ public final class DiscoveryLink implements ReadyRunnable {
     }
 
     private void getLinksFromBridges() {
-        if (m_bridgeNodes.size() > 0) {
-            LOG.info("getLinksFromBridges: trying to find links using MAC Address Forwarding Table");
+        if (m_bridgeNodes.isEmpty()) {
+            return;
+        }
+        LOG.info("getLinksFromBridges: trying to find links using MAC Address Forwarding Table");
+
+        final Map<Integer, Map<Integer, List<BridgeLinkCandidate>>> candidates = getBridgeLinkCandidates();
+        if (candidates == null) {
+            LOG.warn("getLinksFromBridges: interrupted while comparing the forwarding tables, not finding links");
+            return;
         }
 
         for (final LinkableNode curNode : m_bridgeNodes.values()) {
@@ -291,17 +320,14 @@ public final class DiscoveryLink implements ReadyRunnable {
                     LOG.warn("getLinksFromBridges: got invalid ifIndex on bridge port {}", curBridgePort);
                 //    continue;
                 }
-                // First get the MAC addresses on bridge port
 
-                final Set<String> macs = curNode.getMacAddressesOnBridgePort(curBridgePort);
-
-                // Then find the bridges whose MAC addresses are learned on
-                // bridge port
-                final List<LinkableNode> bridgesOnPort = getBridgesFromMacs(macs);
+                // the bridges whose MAC addresses are learned on bridge
+                // port, compared with this port beforehand
+                final List<BridgeLinkCandidate> bridgesOnPort = candidates.get(curNodeId).get(curBridgePort);
 
                 if (bridgesOnPort.isEmpty()) {
                     LOG.debug("getLinksFromBridges: no bridges macs found on port {}. Saving MACs.", curBridgePort);
-                    addLinks(macs, curNodeId, curIfIndex);
+                    addLinks(m_bridgeIndex.getMacs(curNode, curBridgePort), curNodeId, curIfIndex);
                 } else {
                     // a bridge MAC address was found on port so you should
                     // analyze what happens
@@ -309,27 +335,24 @@ public final class DiscoveryLink implements ReadyRunnable {
 
                     // one among these bridges should be the node more close
                     // to the curnode, curport
-                    for (final LinkableNode endNode : bridgesOnPort) {
+                    for (final BridgeLinkCandidate candidate : bridgesOnPort) {
+                        final LinkableNode endNode = candidate.getEndNode();
                         final int endNodeid = endNode.getNodeId();
                         if (curNodeId == endNodeid) {
                             LOG.debug("getLinksFromBridges: curnode and target node are the same. Skipping.");
                             continue;
                         }
-                        final int endBridgePort = getBridgePortOnEndBridge(curNode,
-                                                                           endNode);
+                        final int candidatePort = candidate.getEndBridgePortIndex();
                         // The bridge port should be valid! This control is
                         // not properly done
-                        if (endBridgePort == -1) {
+                        if (candidatePort == -1) {
                             LOG.warn("getLinksFromBridges: no valid port found on bridge nodeid {} for node bridge identifiers nodeid {}. Skipping.", endNodeid, curNodeId);
                             continue;
                         }
+                        final int endBridgePort = candidate.getEndBridgePort(candidatePort);
 
                         // Try to found a new
-                        final boolean isTargetNode = isNearestBridgeLink(curNode,
-                                                                         curBridgePort,
-                                                                         endNode,
-                                                                         endBridgePort);
-                        if (!isTargetNode)
+                        if (!candidate.isNearestBridgeLink(candidatePort))
                             continue;
 
                         final int endIfindex = endNode.getIfindex(endBridgePort);
@@ -367,10 +390,78 @@ public final class DiscoveryLink implements ReadyRunnable {
             LOG.info("getLinksFromBridges: done parsing bridge node with ID {}", curNodeId);
         }
 
-        if (m_bridgeNodes.size() > 0) {
-            LOG.info("getLinksFromBridges: done finding links using MAC Address Forwarding Table");
+        LOG.info("getLinksFromBridges: done finding links using MAC Address Forwarding Table");
+    }
+
+    /**
+     * Compares the forwarding tables of all the bridge ports with the
+     * bridges learned on them, one bridge per task on a thread pool. The
+     * comparisons only read the forwarding tables, the backbone ports found
+     * while saving the links are checked afterwards by
+     * {@link BridgeLinkCandidate#getEndBridgePortIndex()}.
+     *
+     * @return the candidates by node ID and bridge port, or null if
+     *         interrupted
+     */
+    private Map<Integer, Map<Integer, List<BridgeLinkCandidate>>> getBridgeLinkCandidates() {
+        final long start = System.currentTimeMillis();
+        final List<LinkableNode> bridges = m_bridgeIndex.getBridges();
+        final int threads = Math.max(1, Math.min(bridges.size(), Integer.getInteger(BRIDGE_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors())));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new LogPreservingThreadFactory(getClass().getSimpleName(), threads, false));
+        try {
+            final List<Future<Map<Integer, List<BridgeLinkCandidate>>>> futures = new ArrayList<Future<Map<Integer, List<BridgeLinkCandidate>>>>(bridges.size());
+            for (final LinkableNode curNode : bridges) {
+                futures.add(executor.submit(new Callable<Map<Integer, List<BridgeLinkCandidate>>>() {
+                    @Override
+                    public Map<Integer, List<BridgeLinkCandidate>> call() {
+                        return getBridgeLinkCandidates(curNode);
+                    }
+                }));
+            }
+
+            final Map<Integer, Map<Integer, List<BridgeLinkCandidate>>> candidates = new HashMap<Integer, Map<Integer, List<BridgeLinkCandidate>>>();
+            for (int i = 0; i < bridges.size(); i++) {
+                try {
+                    candidates.put(bridges.get(i).getNodeId(), futures.get(i).get());
+                } catch (final ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException("Failed to compare the forwarding tables of bridge node " + bridges.get(i).getNodeId(), e.getCause());
+                }
+            }
+
+            LOG.info("getBridgeLinkCandidates: compared the forwarding tables of {} bridge nodes on {} threads in {}ms", bridges.size(), threads, System.currentTimeMillis() - start);
+            return candidates;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
+    private Map<Integer, List<BridgeLinkCandidate>> getBridgeLinkCandidates(final LinkableNode curNode) {
+        final Map<Integer, List<BridgeLinkCandidate>> candidates = new HashMap<Integer, List<BridgeLinkCandidate>>();
+        for (final Integer curBridgePort : curNode.getPortMacs().keySet()) {
+            final List<LinkableNode> bridgesOnPort = m_bridgeIndex.getBridgesOnPort(curNode, curBridgePort);
+            final List<BridgeLinkCandidate> portCandidates = new ArrayList<BridgeLinkCandidate>(bridgesOnPort.size());
+            for (final LinkableNode endNode : bridgesOnPort) {
+                if (endNode.getNodeId() == curNode.getNodeId()) {
+                    portCandidates.add(new BridgeLinkCandidate(endNode, new int[0], new boolean[0]));
+                    continue;
+                }
+                final int[] endBridgePorts = getBridgePortsOnEndBridge(curNode, endNode);
+                final boolean[] nearest = new boolean[endBridgePorts.length];
+                for (int i = 0; i < endBridgePorts.length; i++) {
+                    nearest[i] = isNearestBridgeLink(curNode, curBridgePort, endNode, endBridgePorts[i]);
+                }
+                portCandidates.add(new BridgeLinkCandidate(endNode, endBridgePorts, nearest));
+            }
+            candidates.put(curBridgePort, portCandidates);
+        }
+        return candidates;
     }
 
     private void getBackBoneLinksFromBridges() {
@@ -479,7 +570,7 @@ public final class DiscoveryLink implements ReadyRunnable {
 
                     // try to see if designated bridge is linkable SNMP node
 
-                    final LinkableNode designatedNode = getNodeFromMacIdentifierOfBridgeNode(stpPortDesignatedBridge.substring(4));
+                    final LinkableNode designatedNode = m_bridgeIndex.getBridgeByIdentifier(m_bridgeIndex.encode(stpPortDesignatedBridge.substring(4)));
 
                     if (designatedNode == null) {
                         LOG.debug("getBackBoneLinksFromBridges: no nodeid found for stp bridge address {}. Nothing to save.", stpPortDesignatedBridge);
@@ -793,34 +884,24 @@ public final class DiscoveryLink implements ReadyRunnable {
 
         LOG.debug("isNearestBridgeLink: bridge1/port1 {}/{} bridge2/port2 {}/{}", bridge1.getNodeId(), bp1, bridge2.getNodeId(), bp2);
 
-        Set<String> macsOnBridge2 = bridge2.getMacAddressesOnBridgePort(bp2);
-
-        Set<String> macsOnBridge1 = bridge1.getMacAddressesOnBridgePort(bp1);
+        final long[] macsOnBoth = m_bridgeIndex.getCommonMacs(bridge1, bp1, bridge2, bp2);
 
-        if (macsOnBridge2 == null || macsOnBridge1 == null
-                || macsOnBridge2.isEmpty() || macsOnBridge1.isEmpty()) {
+        if (macsOnBoth == null) {
             LOG.debug("isNearestBridgeLink: no macs found on at least one bridge port, nearest bridges found. Return true.");
             return true;
         }
 
-        for (final String curMacOnBridge1 : macsOnBridge1) {
-            LOG.debug("isNearestBridgeLink: parsing mac address {} on bridge1", curMacOnBridge1);
-
-            // if MAC address is bridge identifier of bridge 2 continue
-            if (bridge2.isBridgeIdentifier(curMacOnBridge1)) {
-                LOG.debug("isNearestBridgeLink: mac address {} is bridge identifier on bridge2. Continue", curMacOnBridge1);
-                continue;
-            }
-            // if MAC address is itself identifier of bridge1 continue
-            if (bridge1.isBridgeIdentifier(curMacOnBridge1)) {
-                LOG.debug("isNearestBridgeLink: mac address {} is bridge identifier on bridge1. Continue", curMacOnBridge1);
+        for (final long curMacOnBoth : macsOnBoth) {
+            // if MAC address is bridge identifier of bridge 2 or of
+            // bridge 1 itself continue
+            if (m_bridgeIndex.isBridgeIdentifier(bridge2, curMacOnBoth)
+                    || m_bridgeIndex.isBridgeIdentifier(bridge1, curMacOnBoth)) {
                 continue;
             }
             // then no identifier of bridge one no identifier of bridge 2
             // bridge 2 contains
-            if (macsOnBridge2.contains(curMacOnBridge1)
-                    && isMacIdentifierOfBridgeNode(curMacOnBridge1)) {
-                LOG.debug("isNearestBridgeLink: mac address {} is bridge identifier. Other bridge found. Return false", curMacOnBridge1);
+            if (m_bridgeIndex.isBridgeIdentifier(curMacOnBoth)) {
+                LOG.debug("isNearestBridgeLink: mac address {} is bridge identifier. Other bridge found. Return false", m_bridgeIndex.decode(curMacOnBoth));
                 return false;
             }
         }
@@ -828,85 +909,90 @@ public final class DiscoveryLink implements ReadyRunnable {
         return true;
     }
 
-    private Set<String> getMacsOnBridgeLink(LinkableNode bridge1, int bp1,
-                                            LinkableNode bridge2, int bp2) {
-
-        Set<String> macsOnLink = new HashSet<String>();
+    private long[] getMacsOnBridgeLink(LinkableNode bridge1, int bp1,
+                                       LinkableNode bridge2, int bp2) {
 
-        Set<String> macsOnBridge1 = bridge1.getMacAddressesOnBridgePort(bp1);
+        final long[] macsOnBoth = m_bridgeIndex.getCommonMacs(bridge1, bp1, bridge2, bp2);
 
-        Set<String> macsOnBridge2 = bridge2.getMacAddressesOnBridgePort(bp2);
-
-        if (macsOnBridge2 == null || macsOnBridge1 == null)
+        if (macsOnBoth == null)
             return null;
 
-        if (macsOnBridge2.isEmpty() || macsOnBridge1.isEmpty())
-            return null;
+        final long[] macsOnLink = new long[macsOnBoth.length];
+        int count = 0;
+        for (final long curMacOnBoth : macsOnBoth) {
+            if (!m_bridgeIndex.isBridgeIdentifier(bridge2, curMacOnBoth))
+                macsOnLink[count++] = curMacOnBoth;
+        }
+        return Arrays.copyOf(macsOnLink, count);
+    }
 
-        for (final String curMacOnBridge1 : macsOnBridge1) {
-            if (bridge2.isBridgeIdentifier(curMacOnBridge1))
+    /**
+     * @return the ports of the end bridge the identifiers of the start
+     *         bridge were learned on, in the order they are tried
+     */
+    private int[] getBridgePortsOnEndBridge(final LinkableNode startBridge,
+            final LinkableNode endBridge) {
+
+        int[] ports = new int[0];
+        for (final String curBridgeIdentifier : startBridge.getBridgeIdentifiers()) {
+            final int[] identifierPorts = m_bridgeIndex.getBridgePorts(endBridge, m_bridgeIndex.encode(curBridgeIdentifier));
+            if (identifierPorts.length == 0) {
+                LOG.debug("getBridgePortsOnEndBridge: bridge identifier {} not found on node {}", curBridgeIdentifier, endBridge.getNodeId());
                 continue;
-            if (macsOnBridge2.contains(curMacOnBridge1))
-                macsOnLink.add(curMacOnBridge1);
+            }
+            final int offset = ports.length;
+            ports = Arrays.copyOf(ports, offset + identifierPorts.length);
+            System.arraycopy(identifierPorts, 0, ports, offset, identifierPorts.length);
         }
-        return macsOnLink;
+        return ports;
     }
 
-    private boolean isMacIdentifierOfBridgeNode(String macAddress) {
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            if (curNode.isBridgeIdentifier(macAddress))
-                return true;
+    /**
+     * A bridge whose identifier was learned on a bridge port, with the ports
+     * of that bridge the identifiers of the bridge owning the port were
+     * learned on and whether each of them is the nearest to the port.
+     */
+    private static final class BridgeLinkCandidate {
+        private final LinkableNode m_endNode;
+        private final int[] m_endBridgePorts;
+        private final boolean[] m_nearest;
+
+        BridgeLinkCandidate(final LinkableNode endNode, final int[] endBridgePorts, final boolean[] nearest) {
+            m_endNode = endNode;
+            m_endBridgePorts = endBridgePorts;
+            m_nearest = nearest;
         }
-        return false;
-    }
 
-    private LinkableNode getNodeFromMacIdentifierOfBridgeNode(
-            final String macAddress) {
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            if (curNode.isBridgeIdentifier(macAddress))
-                return curNode;
+        LinkableNode getEndNode() {
+            return m_endNode;
         }
-        return null;
-    }
 
-    private List<LinkableNode> getBridgesFromMacs(final Set<String> macs) {
-        List<LinkableNode> bridges = new ArrayList<LinkableNode>();
-        for (final LinkableNode curNode : m_bridgeNodes.values()) {
-            for (final String curBridgeIdentifier : curNode.getBridgeIdentifiers()) {
-                if (macs.contains((curBridgeIdentifier)))
-                    bridges.add(curNode);
+        /**
+         * @return the index of the first port of the end bridge that is not
+         *         a backbone bridge port yet, or -1 if none
+         */
+        int getEndBridgePortIndex() {
+            for (int i = 0; i < m_endBridgePorts.length; i++) {
+                if (m_endNode.isBackBoneBridgePort(m_endBridgePorts[i])) {
+                    LOG.debug("getEndBridgePortIndex: found backbone bridge port {} .... Skipping.", m_endBridgePorts[i]);
+                    continue;
+                }
+                if (m_endBridgePorts[i] == -1) {
+                    continue;
+                }
+                LOG.debug("getEndBridgePortIndex: using MAC address table found bridge port {} on node {}", m_endBridgePorts[i], m_endNode.getNodeId());
+                return i;
             }
+            return -1;
         }
-        return bridges;
-    }
-
-    private int getBridgePortOnEndBridge(final LinkableNode startBridge,
-            final LinkableNode endBridge) {
 
-        int port = -1;
-        for (final String curBridgeIdentifier : startBridge.getBridgeIdentifiers()) {
-            LOG.debug("getBridgePortOnEndBridge: parsing bridge identifier {}", curBridgeIdentifier);
-
-            if (endBridge.hasMacAddress(curBridgeIdentifier)) {
-                for (final Integer p : endBridge.getBridgePortsFromMac(curBridgeIdentifier)) {
-                    port = p;
-                    if (endBridge.isBackBoneBridgePort(port)) {
-                        LOG.debug("getBridgePortOnEndBridge: found backbone bridge port {} .... Skipping.", port);
-                        continue;
-                    }
-                    if (port == -1) {
-                        LOG.debug("getBridgePortOnEndBridge: no port found on bridge nodeid {} for node bridge identifiers nodeid {} . .....Skipping.", endBridge.getNodeId(), startBridge.getNodeId());
-                        continue;
-                    }
-                    LOG.debug("getBridgePortOnEndBridge: using MAC address table found bridge port {} on node {}", port, endBridge.getNodeId());
-                    return port;
-                }
+        int getEndBridgePort(final int index) {
+            return m_endBridgePorts[index];
+        }
 
-            } else {
-                LOG.debug("getBridgePortOnEndBridge: bridge identifier not found on node {}", endBridge.getNodeId());
-            }
+        boolean isNearestBridgeLink(final int index) {
+            return m_nearest[index];
         }
-        return -1;
     }
 
     /**
@@ -1127,17 +1213,18 @@ public final class DiscoveryLink implements ReadyRunnable {
         m_links.add(nnlink);
     }
 
-    private void addLinks(Set<String> macs, int nodeid, int ifindex) {
-        if (macs == null || macs.isEmpty()) {
+    private void addLinks(long[] macs, int nodeid, int ifindex) {
+        if (macs == null || macs.length == 0) {
             LOG.debug("addLinks: MAC address list on link is empty.");
         } else {
-            for (String curMacAddress : macs) {
-                if (m_macsParsed.contains(curMacAddress)) {
+            for (long curMac : macs) {
+                final String curMacAddress = m_bridgeIndex.decode(curMac);
+                if (m_macsParsed.contains(curMac)) {
                     LOG.warn("addLinks: MAC address {} just found on other bridge port! Skipping...", curMacAddress);
                     continue;
                 }
 
-                if (macsExcluded.contains(curMacAddress)) {
+                if (macsExcluded.contains(curMac)) {
                     LOG.warn("addLinks: MAC address {} is excluded from discovery package! Skipping...", curMacAddress);
                     continue;
                 }
@@ -1158,7 +1245,7 @@ public final class DiscoveryLink implements ReadyRunnable {
                     lMac.setParentifindex(ifindex);
                     m_maclinks.add(lMac);
                 }
-                m_macsParsed.add(curMacAddress);
+                m_macsParsed.add(curMac);
             }
         }
     }
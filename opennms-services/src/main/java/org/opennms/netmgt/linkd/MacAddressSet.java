@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import java.util.Arrays;
+
+/**
+ * A set of MAC addresses encoded by a {@link BridgeForwardingIndex}, kept in
+ * an open addressing table of primitive longs instead of boxed strings.
+ * This class is not thread safe.
+ */
+final class MacAddressSet {
+
+    private static final long FREE = -1L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] m_table = newTable(INITIAL_CAPACITY);
+
+    private int m_size = 0;
+
+    private static long[] newTable(final int capacity) {
+        final long[] table = new long[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+    private static int slot(final long mac, final int mask) {
+        final long h = mac * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * @param mac an encoded MAC address, never negative
+     * @return true if the set did not already contain the address
+     */
+    public boolean add(final long mac) {
+        if (mac < 0) {
+            throw new IllegalArgumentException("Invalid encoded MAC address " + mac);
+        }
+        if ((m_size + 1) * 2 > m_table.length) {
+            rehash(m_table.length * 2);
+        }
+        final int mask = m_table.length - 1;
+        int i = slot(mac, mask);
+        while (m_table[i] != FREE) {
+            if (m_table[i] == mac) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        m_table[i] = mac;
+        m_size++;
+        return true;
+    }
+
+    public boolean contains(final long mac) {
+        final int mask = m_table.length - 1;
+        int i = slot(mac, mask);
+        while (m_table[i] != FREE) {
+            if (m_table[i] == mac) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    public boolean isEmpty() {
+        return m_size == 0;
+    }
+
+    public void clear() {
+        m_table = newTable(INITIAL_CAPACITY);
+        m_size = 0;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] old = m_table;
+        m_table = newTable(capacity);
+        final int mask = capacity - 1;
+        for (final long mac : old) {
+            if (mac == FREE) {
+                continue;
+            }
+            int i = slot(mac, mask);
+            while (m_table[i] != FREE) {
+                i = (i + 1) & mask;
+            }
+            m_table[i] = mac;
+        }
+    }
+}
@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.notifd;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.netmgt.scheduler.LagHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A queue handler that keeps the pending notices of its queue in a
+ * {@link DelayQueue}, so that its thread sleeps until exactly the time the
+ * next notice is due instead of scanning the {@link NoticeQueue} every
+ * interval. Due notices are run on a fixed size thread pool rather than on
+ * a thread of their own; the size of the pool is set with the
+ * <code>org.opennms.netmgt.notifd.threads</code> system property.
+ *
+ * The configured interval is not used by this handler.
+ */
+public class DelayQueueHandler implements NotifdQueueHandler, NoticeQueueListener {
+    private static final Logger LOG = LoggerFactory.getLogger(DelayQueueHandler.class);
+
+    /**
+     * The system property holding the number of threads running notices
+     */
+    public static final String THREADS_PROPERTY = "org.opennms.netmgt.notifd.threads";
+
+    private static final int DEFAULT_THREADS = 20;
+
+    private static class DelayedNotice implements Delayed {
+        private final long m_sendTime;
+        private final long m_sequence;
+        private final NotificationTask m_task;
+
+        DelayedNotice(final long sendTime, final long sequence, final NotificationTask task) {
+            m_sendTime = sendTime;
+            m_sequence = sequence;
+            m_task = task;
+        }
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(m_sendTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(final Delayed o) {
+            final DelayedNotice other = (DelayedNotice) o;
+            if (m_sendTime != other.m_sendTime) {
+                return m_sendTime < other.m_sendTime ? -1 : 1;
+            }
+            // notices due at the same time run in the order they were queued
+            return m_sequence < other.m_sequence ? -1 : (m_sequence == other.m_sequence ? 0 : 1);
+        }
+    }
+
+    private final DelayQueue<DelayedNotice> m_queue = new DelayQueue<DelayedNotice>();
+
+    private final AtomicLong m_sequence = new AtomicLong(0);
+
+    private final AtomicLong m_dispatched = new AtomicLong(0);
+
+    private final LagHistogram m_lagHistogram = new LagHistogram();
+
+    private final int m_threads;
+
+    private String m_queueID;
+
+    private ThreadPoolExecutor m_executor;
+
+    private Thread m_thread;
+
+    private int m_status = START_PENDING;
+
+    /**
+     * <p>Constructor for DelayQueueHandler.</p>
+     */
+    public DelayQueueHandler() {
+        this(Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+    }
+
+    /**
+     * <p>Constructor for DelayQueueHandler.</p>
+     *
+     * @param threads the number of threads running notices
+     */
+    public DelayQueueHandler(final int threads) {
+        m_threads = Math.max(1, threads);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setQueueID(final String queueID) {
+        m_queueID = queueID;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void setNoticeQueue(final NoticeQueue noticeQueue) {
+        noticeQueue.setListener(this);
+
+        // pick up anything queued before the handler was attached
+        synchronized (noticeQueue) {
+            for (final Long sendTime : noticeQueue.keySet()) {
+                for (final NotificationTask task : noticeQueue.get(sendTime)) {
+                    taskQueued(sendTime, task);
+                }
+            }
+            noticeQueue.clear();
+        }
+    }
+
+    /**
+     * The interval is not used, the handler wakes up when the next notice
+     * is due.
+     *
+     * @param interval a {@link java.lang.String} object.
+     */
+    @Override
+    public void setInterval(final String interval) {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void taskQueued(final long sendTime, final NotificationTask task) {
+        m_queue.offer(new DelayedNotice(sendTime, m_sequence.getAndIncrement(), task));
+    }
+
+    /**
+     * The main worker of the fiber. Takes the notices from the delay queue
+     * as they become due and hands them to the thread pool until the status
+     * changes to <code>STOP_PENDING</code>.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (m_status == STARTING) {
+                m_status = RUNNING;
+            }
+        }
+
+        for (;;) {
+            synchronized (this) {
+                while (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                    m_status = PAUSED;
+                    try {
+                        wait();
+                    } catch (final InterruptedException e) {
+                        // interrupted by a status change, check again
+                    }
+                }
+
+                if (m_status == RESUME_PENDING) {
+                    m_status = RUNNING;
+                }
+
+                if (m_status == STOP_PENDING || m_status == STOPPED) {
+                    break;
+                }
+            }
+
+            final DelayedNotice notice;
+            try {
+                notice = m_queue.take();
+            } catch (final InterruptedException e) {
+                // interrupted by a status change, check again
+                continue;
+            }
+            dispatch(notice);
+        }
+
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    /**
+     * Hands all notices that are due to the thread pool. The thread of the
+     * handler does this on its own as soon as a notice is due.
+     */
+    @Override
+    public void processQueue() {
+        synchronized (this) {
+            if (m_executor == null) {
+                return;
+            }
+        }
+        DelayedNotice notice;
+        while ((notice = m_queue.poll()) != null) {
+            dispatch(notice);
+        }
+    }
+
+    private void dispatch(final DelayedNotice notice) {
+        final NotificationTask task = notice.m_task;
+        final ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = m_executor;
+        }
+        if (executor == null) {
+            // not started yet, keep it for later
+            m_queue.offer(notice);
+            return;
+        }
+        if (!task.markStarted()) {
+            // the same task was queued twice
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    recordLag(Math.max(0, System.currentTimeMillis() - notice.m_sendTime));
+                    try {
+                        task.run();
+                    } catch (final Throwable t) {
+                        LOG.error("failed to run notification task", t);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            LOG.debug("dispatch: queue {} is stopping, dropping notice #{}", m_queueID, task.getNotifyId());
+        }
+    }
+
+    private void recordLag(final long lag) {
+        m_dispatched.incrementAndGet();
+        m_lagHistogram.record(lag);
+    }
+
+    /**
+     * Returns the number of notices that are waiting to become due or for
+     * a free thread.
+     *
+     * @return an int.
+     */
+    public int getQueueDepth() {
+        final ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = m_executor;
+        }
+        return m_queue.size() + (executor == null ? 0 : executor.getQueue().size());
+    }
+
+    /**
+     * Returns the number of notices that are running.
+     *
+     * @return an int.
+     */
+    public int getActiveCount() {
+        final ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = m_executor;
+        }
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of notices that have been run.
+     *
+     * @return a long.
+     */
+    public long getDispatched() {
+        return m_dispatched.get();
+    }
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets returned by
+     * {@link #getLagHistogram()}. The last bucket of the histogram counts
+     * everything above the last bound.
+     *
+     * @return an array of long.
+     */
+    public long[] getLagHistogramBounds() {
+        return m_lagHistogram.getBounds();
+    }
+
+    /**
+     * Returns the number of notices run per lag bucket, where the lag is
+     * the time between the time a notice was due and the time it started
+     * running.
+     *
+     * @return an array of long.
+     */
+    public long[] getLagHistogram() {
+        return m_lagHistogram.getCounts();
+    }
+
+    /**
+     * <p>getMaxLag</p>
+     *
+     * @return the largest lag seen in milliseconds.
+     */
+    public long getMaxLag() {
+        return m_lagHistogram.getMax();
+    }
+
+    /**
+     * Starts the fiber and its thread pool.
+     */
+    @Override
+    public synchronized void start() {
+        m_status = STARTING;
+
+        final String name = getClass().getSimpleName() + "-" + m_queueID;
+        final AtomicInteger threadNumber = new AtomicInteger(0);
+        m_executor = new ThreadPoolExecutor(m_threads, m_threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(r, name + "-" + threadNumber.incrementAndGet());
+            }
+        });
+        m_executor.allowCoreThreadTimeOut(true);
+
+        m_thread = new Thread(this, name);
+        m_thread.start();
+    }
+
+    /**
+     * Stops the fiber. Notices that are running are allowed to finish,
+     * notices that are not yet due are dropped.
+     */
+    @Override
+    public synchronized void stop() {
+        if (m_status != STOPPED) {
+            m_status = STOP_PENDING;
+        }
+        if (m_thread != null) {
+            m_thread.interrupt();
+        }
+        if (m_executor != null) {
+            m_executor.shutdown();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Pauses the fiber. Notices that become due while the fiber is paused
+     * are run when it is resumed.
+     */
+    @Override
+    public synchronized void pause() {
+        if (m_status == RUNNING || m_status == RESUME_PENDING) {
+            m_status = PAUSE_PENDING;
+            if (m_thread != null) {
+                m_thread.interrupt();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Resumes the fiber if it is paused.
+     */
+    @Override
+    public synchronized void resume() {
+        if (m_status == PAUSED || m_status == PAUSE_PENDING) {
+            m_status = RESUME_PENDING;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return The name of the fiber.
+     */
+    @Override
+    public String getName() {
+        return m_queueID;
+    }
+
+    /**
+     * Returns the current status of the pausable fiber.
+     *
+     * @return The current status of the fiber.
+     */
+    @Override
+    public synchronized int getStatus() {
+        return m_status;
+    }
+}
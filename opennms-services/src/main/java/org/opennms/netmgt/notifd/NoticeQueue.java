@@ -49,12 +49,31 @@ public class NoticeQueue extends DuplicateTreeMap<Long, NotificationTask> {
      */
     private static final long serialVersionUID = 7463770974135218140L;
 
+    private transient volatile NoticeQueueListener m_listener;
+
+    /**
+     * Hands every task queued from now on to the given listener instead of
+     * keeping it in this map. Used by queue handlers that keep their own
+     * schedule, like the {@link DelayQueueHandler}.
+     *
+     * @param listener a {@link org.opennms.netmgt.notifd.NoticeQueueListener} object, or null to keep the tasks in this map.
+     */
+    public void setListener(final NoticeQueueListener listener) {
+        m_listener = listener;
+    }
+
     /** {@inheritDoc} */
     @Override
     public NotificationTask putItem(Long key, NotificationTask value) {
-        NotificationTask ret = super.putItem(key, value);
+        final NoticeQueueListener listener = m_listener;
+        NotificationTask ret = null;
+        if (listener == null) {
+            ret = super.putItem(key, value);
+        } else {
+            listener.taskQueued(key, value);
+        }
+
 
-        
         if (LOG.isDebugEnabled()) {
             if (value.getNotifyId() == -1) {
                 LOG.debug("autoNotify task queued");
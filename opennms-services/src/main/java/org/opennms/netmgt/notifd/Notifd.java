@@ -29,6 +29,8 @@
 package org.opennms.netmgt.notifd;
 
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -328,6 +330,15 @@ public final class Notifd extends AbstractServiceDaemon {
         }
     }
 
+    /**
+     * Returns the handlers of the configured notice queues.
+     *
+     * @return a {@link java.util.Collection} object.
+     */
+    public Collection<NotifdQueueHandler> getQueueHandlers() {
+        return new ArrayList<NotifdQueueHandler>(m_queueHandlers.values());
+    }
+
     /**
      * Returns the singular instance of the Notifd daemon. There can be only
      * one instance of this service per virtual machine.
@@ -393,6 +393,20 @@ public class NotificationTask extends Thread {
         super.start();
     }
 
+    /**
+     * Marks the task as started without starting its thread, for handlers
+     * that run the task on a thread of their own.
+     *
+     * @return false if the task had already been started.
+     */
+    public synchronized boolean markStarted() {
+        if (m_started) {
+            return false;
+        }
+        m_started = true;
+        return true;
+    }
+
     /**
      * <p>isStarted</p>
      *
@@ -41,6 +41,8 @@ import org.opennms.netmgt.config.UserFactory;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
 import org.opennms.netmgt.dao.hibernate.NodeDaoHibernate;
 import org.opennms.netmgt.eventd.EventIpcManagerFactory;
+import org.opennms.netmgt.notifd.DelayQueueHandler;
+import org.opennms.netmgt.notifd.NotifdQueueHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -157,6 +159,42 @@ public class Notifd extends AbstractServiceDaemon implements NotifdMBean {
         getNotifd().stop();
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getPendingNotices() {
+        int pending = 0;
+        for (final NotifdQueueHandler handler : getNotifd().getQueueHandlers()) {
+            if (handler instanceof DelayQueueHandler) {
+                pending += ((DelayQueueHandler) handler).getQueueDepth();
+            }
+        }
+        return pending;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getDispatchedNotices() {
+        long dispatched = 0;
+        for (final NotifdQueueHandler handler : getNotifd().getQueueHandlers()) {
+            if (handler instanceof DelayQueueHandler) {
+                dispatched += ((DelayQueueHandler) handler).getDispatched();
+            }
+        }
+        return dispatched;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getMaxDispatchLag() {
+        long maxLag = 0;
+        for (final NotifdQueueHandler handler : getNotifd().getQueueHandlers()) {
+            if (handler instanceof DelayQueueHandler) {
+                maxLag = Math.max(maxLag, ((DelayQueueHandler) handler).getMaxLag());
+            }
+        }
+        return maxLag;
+    }
+
     /**
      * Override {@link AbstractServiceDaemon#getStatus()} to use the status of
      * the {@link org.opennms.netmgt.notifd.Notifd} instance.
@@ -37,4 +37,22 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface NotifdMBean extends BaseOnmsMBean {
+    /**
+     * @return the number of notices waiting to become due or for a thread,
+     *         over all queues handled by a
+     *         {@link org.opennms.netmgt.notifd.DelayQueueHandler}
+     */
+    public int getPendingNotices();
+
+    /**
+     * @return the number of notices run by the
+     *         {@link org.opennms.netmgt.notifd.DelayQueueHandler}s
+     */
+    public long getDispatchedNotices();
+
+    /**
+     * @return the largest time in milliseconds between the time a notice
+     *         was due and the time it started running
+     */
+    public long getMaxDispatchLag();
 }
@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.utils.Querier;
+import org.opennms.netmgt.config.poller.Package;
+import org.opennms.netmgt.poller.pollables.PollableNode;
+import org.opennms.netmgt.poller.pollables.PollableService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds the pollable network from the database at startup.
+ *
+ * The services and the open outages are read with one query each instead
+ * of being looked up node by node. The packages of the services are then
+ * resolved and the pollable nodes built by a pool of threads, one package
+ * at a time, and the services of each node are scheduled as soon as the
+ * node is complete, so the first packages are polled while the later ones
+ * are still loading.
+ */
+class PollableNetworkLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(PollableNetworkLoader.class);
+
+    private static final String SERVICES_SQL = "SELECT ifServices.nodeId AS nodeId, node.nodeLabel AS nodeLabel, ifServices.ipAddr AS ipAddr, " +
+            "ifServices.serviceId AS serviceId, service.serviceName AS serviceName, ifServices.status AS status " +
+            "FROM ifServices " +
+            "JOIN node ON ifServices.nodeId = node.nodeId " +
+            "JOIN service ON ifServices.serviceId = service.serviceId " +
+            "WHERE ifServices.status in ('A','N') " +
+            "ORDER BY ifServices.nodeId";
+
+    // ordered by the time the outage began, so the latest of several open
+    // outages of a service wins
+    private static final String OPEN_OUTAGES_SQL = "SELECT outages.nodeId AS nodeId, outages.ipAddr AS ipAddr, outages.serviceId AS serviceId, " +
+            "outages.svcLostEventId AS svcLostEventId, events.eventUei AS svcLostEventUei, outages.ifLostService AS ifLostService " +
+            "FROM outages " +
+            "LEFT OUTER JOIN events ON outages.svcLostEventId = events.eventid " +
+            "WHERE outages.ifRegainedService IS NULL " +
+            "ORDER BY outages.ifLostService";
+
+    /**
+     * The event and time a service was lost at
+     */
+    private static class OpenOutage {
+        private final Number m_svcLostEventId;
+        private final String m_svcLostUei;
+        private final Date m_ifLostService;
+
+        public OpenOutage(final Number svcLostEventId, final String svcLostUei, final Date ifLostService) {
+            m_svcLostEventId = svcLostEventId;
+            m_svcLostUei = svcLostUei;
+            m_ifLostService = ifLostService;
+        }
+    }
+
+    private static final OpenOutage NO_OUTAGE = new OpenOutage(null, null, null);
+
+    /**
+     * A service to poll
+     */
+    private static class ServiceRow {
+        private final int m_nodeId;
+        private final String m_nodeLabel;
+        private final String m_ipAddr;
+        private final String m_serviceName;
+        private final boolean m_active;
+        private OpenOutage m_outage;
+        private Package m_package;
+
+        public ServiceRow(final int nodeId, final String nodeLabel, final String ipAddr, final String serviceName, final boolean active) {
+            m_nodeId = nodeId;
+            m_nodeLabel = nodeLabel;
+            m_ipAddr = ipAddr;
+            m_serviceName = serviceName;
+            m_active = active;
+        }
+    }
+
+    /**
+     * Work done on the services of one node
+     */
+    private static interface NodeCallback {
+        void process(List<ServiceRow> nodeRows) throws Exception;
+    }
+
+    private final Poller m_poller;
+
+    private final DataSource m_dataSource;
+
+    private final int m_threads;
+
+    private final AtomicInteger m_serviceCount = new AtomicInteger(0);
+
+    private long m_loadTime = -1L;
+
+    /**
+     * <p>Constructor for PollableNetworkLoader.</p>
+     *
+     * @param poller the poller to add the services to
+     * @param dataSource the database to load the services from
+     * @param threads the number of threads building the network
+     */
+    public PollableNetworkLoader(final Poller poller, final DataSource dataSource, final int threads) {
+        m_poller = poller;
+        m_dataSource = dataSource;
+        m_threads = Math.max(1, threads);
+    }
+
+    /**
+     * Loads and schedules all services that are polled by a package.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads building the network
+     */
+    public void load() throws InterruptedException {
+        final long start = System.currentTimeMillis();
+
+        final List<List<ServiceRow>> nodes = loadServices(loadOpenOutages());
+        final int nodeCount = nodes.size();
+        LOG.info("load: loaded services of {} nodes in {}ms", nodeCount, System.currentTimeMillis() - start);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(m_threads, new LogPreservingThreadFactory(getClass().getSimpleName(), m_threads, false));
+        try {
+            forEachNode(executor, nodes, new NodeCallback() {
+                @Override
+                public void process(final List<ServiceRow> nodeRows) {
+                    for (final ServiceRow row : nodeRows) {
+                        try {
+                            row.m_package = m_poller.findPollingPackage(row.m_nodeId, row.m_ipAddr, row.m_serviceName, row.m_active);
+                        } catch (final Throwable e) {
+                            LOG.error("load: Unable to find the package of service {}/{}/{}", row.m_nodeId, row.m_ipAddr, row.m_serviceName, e);
+                        }
+                    }
+                }
+            });
+
+            for (final Map.Entry<String, List<List<ServiceRow>>> entry : groupByPackage(nodes).entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+
+                final long packageStart = System.currentTimeMillis();
+                final int packageStartCount = m_serviceCount.get();
+
+                forEachNode(executor, entry.getValue(), new NodeCallback() {
+                    @Override
+                    public void process(final List<ServiceRow> nodeRows) {
+                        scheduleNode(nodeRows);
+                    }
+                });
+
+                LOG.info("load: scheduled {} services of package {} in {}ms", m_serviceCount.get() - packageStartCount, entry.getKey(), System.currentTimeMillis() - packageStart);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        m_loadTime = System.currentTimeMillis() - start;
+        LOG.info("load: scheduled {} services on {} nodes in {}ms", m_serviceCount.get(), nodeCount, m_loadTime);
+    }
+
+    /**
+     * Returns the time the last {@link #load()} took.
+     *
+     * @return the load time in milliseconds or -1 if nothing has been loaded
+     */
+    public long getLoadTime() {
+        return m_loadTime;
+    }
+
+    /**
+     * Returns the number of services scheduled.
+     *
+     * @return the number of services scheduled
+     */
+    public int getServiceCount() {
+        return m_serviceCount.get();
+    }
+
+    private Map<String, OpenOutage> loadOpenOutages() {
+        final Map<String, OpenOutage> outages = new HashMap<String, OpenOutage>();
+
+        final Querier querier = new Querier(m_dataSource, OPEN_OUTAGES_SQL) {
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                final OpenOutage outage = new OpenOutage((Number)rs.getObject("svcLostEventId"), rs.getString("svcLostEventUei"), rs.getTimestamp("ifLostService"));
+                outages.put(outageKey(rs.getInt("nodeId"), rs.getString("ipAddr"), rs.getInt("serviceId")), outage);
+            }
+        };
+        querier.execute();
+
+        LOG.debug("loadOpenOutages: found {} services with open outages", outages.size());
+        return outages;
+    }
+
+    /**
+     * Reads the services and attaches their open outages.
+     *
+     * @return the services grouped by node
+     */
+    private List<List<ServiceRow>> loadServices(final Map<String, OpenOutage> outages) {
+        final List<List<ServiceRow>> nodes = new ArrayList<List<ServiceRow>>();
+
+        final Querier querier = new Querier(m_dataSource, SERVICES_SQL) {
+            private List<ServiceRow> m_nodeRows;
+
+            @Override
+            public void processRow(final ResultSet rs) throws SQLException {
+                final ServiceRow row = new ServiceRow(rs.getInt("nodeId"), rs.getString("nodeLabel"), rs.getString("ipAddr"), rs.getString("serviceName"), "A".equals(rs.getString("status")));
+
+                row.m_outage = outages.get(outageKey(row.m_nodeId, row.m_ipAddr, rs.getInt("serviceId")));
+
+                if (m_nodeRows == null || m_nodeRows.get(0).m_nodeId != row.m_nodeId) {
+                    m_nodeRows = new ArrayList<ServiceRow>();
+                    nodes.add(m_nodeRows);
+                }
+                m_nodeRows.add(row);
+            }
+        };
+        querier.execute();
+
+        return nodes;
+    }
+
+    private static String outageKey(final int nodeId, final String ipAddr, final int serviceId) {
+        return nodeId + "/" + ipAddr + "/" + serviceId;
+    }
+
+    /**
+     * Splits the services of each node by the package polling them, in the
+     * order of the packages in the configuration.
+     */
+    private Map<String, List<List<ServiceRow>>> groupByPackage(final List<List<ServiceRow>> nodes) {
+        final Map<String, List<List<ServiceRow>>> packages = new LinkedHashMap<String, List<List<ServiceRow>>>();
+        final Enumeration<Package> en = m_poller.getPollerConfig().enumeratePackage();
+        while (en.hasMoreElements()) {
+            packages.put(en.nextElement().getName(), new ArrayList<List<ServiceRow>>());
+        }
+
+        for (final List<ServiceRow> nodeRows : nodes) {
+            final Map<String, List<ServiceRow>> nodePackages = new HashMap<String, List<ServiceRow>>();
+            for (final ServiceRow row : nodeRows) {
+                if (row.m_package == null) {
+                    continue;
+                }
+                List<ServiceRow> packageRows = nodePackages.get(row.m_package.getName());
+                if (packageRows == null) {
+                    packageRows = new ArrayList<ServiceRow>();
+                    nodePackages.put(row.m_package.getName(), packageRows);
+                    packages.get(row.m_package.getName()).add(packageRows);
+                }
+                packageRows.add(row);
+            }
+        }
+
+        return packages;
+    }
+
+    /**
+     * Adds the services of a node to the pollable network, settles the
+     * initial status and cause of the node like the network does after a
+     * full load and schedules the services.  All of it is done holding the
+     * tree lock of the node, like {@link Poller#scheduleService(int, String, String, String)}
+     * does, since the services are initialised and can be polled by the
+     * already running scheduler while the rest of the node is loaded.
+     */
+    private void scheduleNode(final List<ServiceRow> nodeRows) {
+        final ServiceRow first = nodeRows.get(0);
+        final PollableNode node = m_poller.getNetwork().createNodeIfNecessary(first.m_nodeId, first.m_nodeLabel);
+        final List<PollableService> services = new ArrayList<PollableService>(nodeRows.size());
+
+        node.withTreeLock(new Runnable() {
+            @Override
+            public void run() {
+                for (final ServiceRow row : nodeRows) {
+                    try {
+                        final OpenOutage outage = (row.m_outage == null ? NO_OUTAGE : row.m_outage);
+                        final PollableService svc = m_poller.createService(row.m_package, row.m_nodeId, row.m_nodeLabel, row.m_ipAddr, row.m_serviceName, outage.m_svcLostEventId, outage.m_ifLostService, outage.m_svcLostUei);
+                        if (svc != null) {
+                            services.add(svc);
+                        }
+                    } catch (final Throwable e) {
+                        LOG.error("scheduleNode: Unable to schedule service {}/{}/{}", row.m_nodeId, row.m_ipAddr, row.m_serviceName, e);
+                    }
+                }
+
+                if (services.isEmpty()) {
+                    return;
+                }
+
+                node.recalculateStatus();
+                node.extrapolateCause();
+                node.inheritParentalCause();
+                node.resetStatusChanged();
+
+                for (final PollableService svc : services) {
+                    svc.schedule();
+                }
+            }
+        });
+        m_serviceCount.addAndGet(services.size());
+    }
+
+    /**
+     * Runs a callback for every node on the executor, handing each thread
+     * an even share of the nodes, and waits for all of them.
+     */
+    private void forEachNode(final ExecutorService executor, final List<List<ServiceRow>> nodes, final NodeCallback callback) throws InterruptedException {
+        final int batchSize = (nodes.size() + m_threads - 1) / m_threads;
+        final List<Future<Void>> futures = new ArrayList<Future<Void>>(m_threads);
+
+        for (int i = 0; i < nodes.size(); i += batchSize) {
+            final List<List<ServiceRow>> batch = nodes.subList(i, Math.min(nodes.size(), i + batchSize));
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (final List<ServiceRow> nodeRows : batch) {
+                        callback.process(nodeRows);
+                    }
+                    return null;
+                }
+            }));
+        }
+
+        for (final Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (final ExecutionException e) {
+                LOG.error("forEachNode: Failed to load the services of a batch of nodes", e.getCause());
+            }
+        }
+    }
+}
@@ -39,6 +39,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
+import org.opennms.core.fiber.Fiber;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.Querier;
 import org.opennms.core.utils.Updater;
@@ -57,9 +58,9 @@ import org.opennms.netmgt.poller.pollables.PollableService;
 import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
 import org.opennms.netmgt.poller.pollables.PollableVisitor;
 import org.opennms.netmgt.poller.pollables.PollableVisitorAdaptor;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.Schedule;
 import org.opennms.netmgt.scheduler.Scheduler;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,11 +76,17 @@ public class Poller extends AbstractServiceDaemon {
 
     private final static String LOG4J_CATEGORY = "poller";
 
+    /**
+     * System property with the number of threads that build the pollable
+     * network at startup, defaults to the number of processors.
+     */
+    public static final String STARTUP_THREADS_PROPERTY = "org.opennms.netmgt.poller.startupThreads";
+
     private final static Poller m_singleton = new Poller();
 
     private boolean m_initialized = false;
 
-    private LegacyScheduler m_scheduler = null;
+    private Scheduler m_scheduler = null;
 
     private PollerEventProcessor m_eventProcessor;
 
@@ -95,6 +102,10 @@ public class Poller extends AbstractServiceDaemon {
 
     private DataSource m_dataSource;
 
+    private volatile long m_startupTime = -1L;
+
+    private volatile int m_startupServiceCount = 0;
+
     /**
      * <p>Constructor for Poller.</p>
      */
@@ -232,9 +243,9 @@ public class Poller extends AbstractServiceDaemon {
     /**
      * <p>setScheduler</p>
      *
-     * @param scheduler a {@link org.opennms.netmgt.scheduler.LegacyScheduler} object.
+     * @param scheduler a {@link org.opennms.netmgt.scheduler.Scheduler} object.
      */
-    public void setScheduler(LegacyScheduler scheduler) {
+    public void setScheduler(Scheduler scheduler) {
         m_scheduler = scheduler;
     }
 
@@ -356,7 +367,7 @@ public class Poller extends AbstractServiceDaemon {
         try {
             LOG.debug("init: Creating poller scheduler");
 
-            setScheduler(new LegacyScheduler("Poller", getPollerConfig().getThreads()));
+            setScheduler(SchedulerFactory.createScheduler("Poller", getPollerConfig().getThreads()));
         } catch (RuntimeException e) {
             LOG.error("init: Failed to create poller scheduler", e);
             throw e;
@@ -372,10 +383,13 @@ public class Poller extends AbstractServiceDaemon {
         // start the scheduler
         //
         try {
-            if (LOG.isDebugEnabled())
+            // the scheduler is normally started while the existing
+            // services are loaded in onInit
+            if (getScheduler().getStatus() == Fiber.START_PENDING) {
                 LOG.debug("start: Starting poller scheduler");
 
-            getScheduler().start();
+                getScheduler().start();
+            }
         } catch (RuntimeException e) {
             LOG.error("start: Failed to start scheduler", e);
             throw e;
@@ -438,13 +452,18 @@ public class Poller extends AbstractServiceDaemon {
     }
 
     private void scheduleExistingServices() throws Exception {
-        scheduleMatchingServices(null);
-        
-        getNetwork().recalculateStatus();
-        getNetwork().propagateInitialCause();
-        getNetwork().resetStatusChanged();
-        
-        
+        // Start the scheduler right away so the services of each package
+        // are polled as soon as they are loaded rather than once the whole
+        // network has been built
+        LOG.debug("init: Starting poller scheduler");
+        getScheduler().start();
+
+        final PollableNetworkLoader loader = new PollableNetworkLoader(this, m_dataSource, Integer.getInteger(STARTUP_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        loader.load();
+
+        m_startupTime = loader.getLoadTime();
+        m_startupServiceCount = loader.getServiceCount();
+
         // Debug dump pollable network
         //
         LOG.debug("scheduleExistingServices: dumping content of pollable network: ");
@@ -545,6 +564,30 @@ public class Poller extends AbstractServiceDaemon {
     }
 
     private boolean scheduleService(int nodeId, String nodeLabel, String ipAddr, String serviceName, boolean active, Number svcLostEventId, Date date, String svcLostUei) {
+        Package pkg = findPollingPackage(nodeId, ipAddr, serviceName, active);
+        if (pkg == null) {
+            return false;
+        }
+
+        PollableService svc = createService(pkg, nodeId, nodeLabel, ipAddr, serviceName, svcLostEventId, date, svcLostUei);
+        if (svc == null) {
+            return false;
+        }
+
+        svc.schedule();
+        
+        return true;
+
+    }
+
+    /**
+     * Finds the package polling a service and updates the status of the
+     * service in the database if it was or is no longer polled.
+     *
+     * @return the last package the service is in or <code>null</code> if the
+     *         service is not polled
+     */
+    Package findPollingPackage(int nodeId, String ipAddr, String serviceName, boolean active) {
         // We don't want to adjust the management state of the service if we're
         // on a machine that uses multiple servers with access to the same database
         // so check the value of OpennmsServerConfigFactory.getInstance().verifyServer()
@@ -555,23 +598,33 @@ public class Poller extends AbstractServiceDaemon {
                 LOG.warn("Active service {} on {} not configured for any package. Marking as Not Polled.", serviceName, ipAddr);
                 updateServiceStatus(nodeId, ipAddr, serviceName, "N");
             }
-            return false;
         } else if (!active && !OpennmsServerConfigFactory.getInstance().verifyServer()) {
             LOG.info("Active service {} on {} is now configured for any package. Marking as active.", serviceName, ipAddr);
             updateServiceStatus(nodeId, ipAddr, serviceName, "A");
         }
+        return pkg;
+    }
 
+    /**
+     * Adds a service to the pollable network with the initial status of
+     * its outage, without scheduling it.  The caller has to hold the tree
+     * lock of the node of the service.
+     *
+     * @return the new service or <code>null</code> if the service has no
+     *         monitor or a bad address
+     */
+    PollableService createService(Package pkg, int nodeId, String nodeLabel, String ipAddr, String serviceName, Number svcLostEventId, Date date, String svcLostUei) {
         ServiceMonitor monitor = m_pollerConfig.getServiceMonitor(serviceName);
         if (monitor == null) {
             LOG.info("Could not find service monitor associated with service {}", serviceName);
-            return false;
+            return null;
         }
         
         InetAddress addr;
         addr = InetAddressUtils.addr(ipAddr);
         if (addr == null) {
             LOG.error("Could not convert {} as an InetAddress {}", ipAddr, ipAddr);
-            return false;
+            return null;
         }
         
         PollableService svc = getNetwork().createService(nodeId, nodeLabel, addr, serviceName);
@@ -600,9 +653,7 @@ public class Poller extends AbstractServiceDaemon {
 
         }
         
-        svc.schedule();
-        
-        return true;
+        return svc;
 
     }
 
@@ -718,6 +769,26 @@ public class Poller extends AbstractServiceDaemon {
         }
     }
 
+    /**
+     * Returns the time it took to load and schedule the existing services
+     * at startup.
+     *
+     * @return the startup time in milliseconds or -1 if the services have
+     *         not been loaded yet
+     */
+    public long getStartupTime() {
+        return m_startupTime;
+    }
+
+    /**
+     * Returns the number of existing services scheduled at startup.
+     *
+     * @return the number of services scheduled at startup
+     */
+    public int getStartupServiceCount() {
+        return m_startupServiceCount;
+    }
+
     public static String getLoggingCategory() {
         return LOG4J_CATEGORY;
 	}
@@ -29,6 +29,7 @@
 package org.opennms.netmgt.poller.jmx;
 
 import org.opennms.netmgt.daemon.AbstractSpringContextJmxServiceDaemon;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 
 /**
  * <p>Pollerd class.</p>
@@ -55,4 +56,34 @@ public class Pollerd extends AbstractSpringContextJmxServiceDaemon<org.opennms.n
     public long getNumPolls() {
         return getDaemon().getNumPolls();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getStartupTime() {
+        return getDaemon().getStartupTime();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getStartupServiceCount() {
+        return getDaemon().getStartupServiceCount();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogramBounds() {
+        return SchedulerFactory.getLagHistogramBounds(getDaemon().getScheduler());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogram() {
+        return SchedulerFactory.getLagHistogram(getDaemon().getScheduler());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSchedulerMaxLag() {
+        return SchedulerFactory.getMaxLag(getDaemon().getScheduler());
+    }
 }
@@ -43,4 +43,45 @@ public interface PollerdMBean extends BaseOnmsMBean {
      * @return the number of polls that have been executed
      */
     public long getNumPolls();
+
+    /**
+     * Returns the time it took to load and schedule the existing services at
+     * startup.
+     *
+     * @return the startup time in milliseconds, -1 while still loading
+     */
+    public long getStartupTime();
+
+    /**
+     * Returns the number of existing services scheduled at startup.
+     *
+     * @return the number of services scheduled at startup
+     */
+    public int getStartupServiceCount();
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets of
+     * {@link #getSchedulerLagHistogram()}. The last bucket counts everything
+     * above the last bound.
+     *
+     * @return the bucket bounds, empty unless the timing wheel scheduler is in use
+     */
+    public long[] getSchedulerLagHistogramBounds();
+
+    /**
+     * Returns the number of polls started per lag bucket, where the lag is the
+     * time between the time they were due and the time they were handed to
+     * the thread pool.
+     *
+     * @return the bucket counts, empty unless the timing wheel scheduler is in use
+     */
+    public long[] getSchedulerLagHistogram();
+
+    /**
+     * Returns the largest scheduler lag seen.
+     *
+     * @return the largest lag in milliseconds, 0 unless the timing wheel
+     *         scheduler is in use
+     */
+    public long getSchedulerMaxLag();
 }
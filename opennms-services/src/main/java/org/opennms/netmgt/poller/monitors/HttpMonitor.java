@@ -54,10 +54,13 @@ import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.SocketWrapper;
 import org.opennms.core.utils.TimeoutTracker;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.DefaultPollFuture;
 import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
 import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
+import org.opennms.netmgt.poller.PollFuture;
+import org.opennms.netmgt.poller.PollFutureListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -72,7 +75,7 @@ import org.slf4j.LoggerFactory;
  * @author <a href="mailto:david@opennms.org">David Hustace</a>
  */
 @Distributable
-public class HttpMonitor extends AbstractServiceMonitor {
+public class HttpMonitor extends AbstractAsyncServiceMonitor {
     
     public static final Logger LOG = LoggerFactory.getLogger(HttpMonitor.class);
     
@@ -209,6 +212,53 @@ public class HttpMonitor extends AbstractServiceMonitor {
 
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Polls the same way as {@link #poll(MonitoredService, Map)}, but on the
+     * {@link SocketConversationEngine}, so the polling thread is not held while
+     * waiting for the service.
+     */
+    @Override
+    public PollFuture pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        final NetworkInterface<InetAddress> iface = svc.getNetInterface();
+        final String nodeLabel = svc.getNodeLabel();
+
+        if (iface.getType() != NetworkInterface.TYPE_INET) {
+            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+        }
+
+        final HttpMonitorClient httpClient = new HttpMonitorClient(nodeLabel, iface, new TreeMap<String, Object>(parameters));
+        final DefaultPollFuture future = new DefaultPollFuture();
+        pollPort(httpClient, 0, future);
+        return future;
+    }
+
+    /**
+     * Polls the port at the given index of the port list, and the next one
+     * once that is done, until the service is found.
+     */
+    private void pollPort(final HttpMonitorClient httpClient, final int portIndex, final DefaultPollFuture future) {
+        final int[] ports = determinePorts(httpClient.getParameters());
+        if (portIndex >= ports.length || httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE) {
+            future.setStatus(httpClient.determinePollStatusResponse());
+            return;
+        }
+
+        httpClient.setTimeoutTracker(new TimeoutTracker(httpClient.getParameters(), DEFAULT_RETRY, DEFAULT_TIMEOUT));
+        httpClient.setCurrentPort(ports[portIndex]);
+        LOG.debug("Port = {}, Address = {}, {}", ports[portIndex], (httpClient.m_iface.getAddress()), httpClient.getTimeoutTracker());
+
+        final HttpConversation conversation = new HttpConversation(httpClient);
+        conversation.start().addListener(new PollFutureListener() {
+            @Override
+            public void operationComplete(final PollFuture portFuture) {
+                // No route to host: the other ports will not do any better
+                pollPort(httpClient, conversation.isNoRouteToHost() ? ports.length : portIndex + 1, future);
+            }
+        });
+    }
+
     private void logResponseTimes(Double responseTime, String line) {
         LOG.debug("poll: response= {}", line);
         LOG.debug("poll: responseTime= {}ms", responseTime);
@@ -317,6 +367,7 @@ public class HttpMonitor extends AbstractServiceMonitor {
         private boolean m_responseTextFound = false;
         private final String m_nodeLabel;
         private boolean m_headerFinished = false;
+        private boolean m_statusLineReceived = false;
         
         HttpMonitorClient(final String nodeLabel, final NetworkInterface<InetAddress> iface, final TreeMap<String, Object>parameters) {
             m_nodeLabel = nodeLabel;
@@ -511,7 +562,11 @@ public class HttpMonitor extends AbstractServiceMonitor {
         }
 
         public String readLine() throws IOException {
-            m_currentLine = m_lineRdr.readLine();
+            return setCurrentLine(m_lineRdr.readLine());
+        }
+
+        private String setCurrentLine(final String line) {
+            m_currentLine = line;
             
             if (determineVerbosity(m_parameters) && HttpMonitor.LOG.isDebugEnabled()) {
                 HttpMonitor.LOG.debug("\t<<: {}", m_currentLine);
@@ -523,7 +578,11 @@ public class HttpMonitor extends AbstractServiceMonitor {
 
         public String readLinedMatching() throws IOException {
             readLine();
-            
+            matchCurrentLine();
+            return m_currentLine;
+        }
+
+        private void matchCurrentLine() {
             if (m_responseText != null && m_currentLine != null && !m_responseTextFound) {
                 if (checkCurrentLineMatchesResponseText()) {
                     if (HttpMonitor.LOG.isDebugEnabled()) {
@@ -532,7 +591,69 @@ public class HttpMonitor extends AbstractServiceMonitor {
                     m_serviceStatus = PollStatus.SERVICE_AVAILABLE;
                 }
             }
-            return m_currentLine;
+        }
+
+        /**
+         * Starts an attempt of an asynchronous poll, once connected.
+         *
+         * @return the HTTP command to send
+         */
+        String connected() {
+            m_serviceStatus = PollStatus.SERVICE_UNRESPONSIVE;
+            m_statusLineReceived = false;
+            if (determineVerbosity(m_parameters) && HttpMonitor.LOG.isDebugEnabled()) {
+                HttpMonitor.LOG.debug("Sending HTTP command: {}", m_httpCmd);
+            }
+            return m_httpCmd;
+        }
+
+        /**
+         * Handles a line of the response of an asynchronous poll, like
+         * {@link #sendHttpCommand()} handles the status line and
+         * {@link #readLinedMatching()} the lines after it.
+         *
+         * @return true once no more lines are needed
+         */
+        boolean lineReceived(final String line) {
+            setCurrentLine(line);
+            if (!m_statusLineReceived) {
+                m_statusLineReceived = true;
+                if (determineVerbosity(m_parameters)) {
+                    HttpMonitor.LOG.debug("Server response: {}", m_currentLine);
+                }
+                determineServerInitialResponse();
+                m_headerFinished = false; // Clean header flag for each HTTP request.
+
+                setResponseTime(m_timeoutTracker.elapsedTimeInMillis());
+                logResponseTimes(getResponseTime(), getCurrentLine());
+
+                if (m_serviceStatus != PollStatus.SERVICE_AVAILABLE || StringUtils.isBlank(m_responseText)) {
+                    return true;
+                }
+                m_serviceStatus = PollStatus.SERVICE_UNAVAILABLE;
+                return false;
+            }
+            matchCurrentLine();
+            return m_responseTextFound;
+        }
+
+        /**
+         * Handles the end of the response of an asynchronous poll.
+         *
+         * @return true if the service closed the connection without sending
+         *         a status line
+         */
+        boolean endOfStream() {
+            m_currentLine = null;
+            if (!m_statusLineReceived) {
+                return true;
+            }
+            if (!m_responseTextFound) {
+                String message = "Matching text: ["+m_responseText+"] not found in body of HTTP response";
+                HttpMonitor.LOG.debug(message);
+                setReason(message);
+            }
+            return false;
         }
 
         public void sendHttpCommand() throws IOException {
@@ -634,4 +755,80 @@ public class HttpMonitor extends AbstractServiceMonitor {
         
     }
 
+    /**
+     * One port of an asynchronous poll, retried as configured. The
+     * {@link HttpMonitorClient} keeps the state of the poll across ports and
+     * attempts, the same as in the blocking poll.
+     */
+    private final class HttpConversation extends SocketConversation {
+        private final HttpMonitorClient m_httpClient;
+
+        private boolean m_noRouteToHost = false;
+
+        HttpConversation(final HttpMonitorClient httpClient) {
+            super(httpClient.m_iface.getAddress(), httpClient.getCurrentPort(), httpClient.getTimeoutTracker());
+            m_httpClient = httpClient;
+        }
+
+        boolean isNoRouteToHost() {
+            return m_noRouteToHost;
+        }
+
+        @Override
+        protected void connected() throws IOException {
+            LOG.debug("HttpMonitor: connected to host: {} on port: {}", getAddress().getAddress(), getAddress().getPort());
+            send(m_httpClient.connected());
+        }
+
+        @Override
+        protected void lineReceived(final String line) {
+            if (m_httpClient.lineReceived(line)) {
+                attemptFinished();
+            }
+        }
+
+        @Override
+        protected void endOfStream() {
+            if (m_httpClient.endOfStream()) {
+                retry(PollStatus.get(m_httpClient.getPollStatus(), m_httpClient.getReason()));
+            } else {
+                attemptFinished();
+            }
+        }
+
+        private void attemptFinished() {
+            if (m_httpClient.getPollStatus() == PollStatus.SERVICE_AVAILABLE) {
+                complete(PollStatus.available(m_httpClient.getResponseTime()));
+            } else {
+                retry(PollStatus.get(m_httpClient.getPollStatus(), m_httpClient.getReason()));
+            }
+        }
+
+        @Override
+        protected void failed(final IOException e) {
+            final InetAddress address = getAddress().getAddress();
+            final int port = getAddress().getPort();
+            if (e instanceof NoRouteToHostException) {
+                LOG.warn("checkStatus: No route to host exception for address {}", address, e);
+                m_noRouteToHost = true;
+                m_httpClient.setReason("No route to host exception");
+                complete(PollStatus.unavailable(m_httpClient.getReason()));
+                return;
+            } else if (e instanceof SocketTimeoutException) {
+                LOG.info("checkStatus: HTTP socket connection timed out with {}", getTimeoutTracker().toString());
+                m_httpClient.setReason("HTTP connection timeout");
+            } else if (e instanceof InterruptedIOException) {
+                LOG.info("checkStatus: HTTP connection interrupted after {} bytes transferred with {}", ((InterruptedIOException) e).bytesTransferred, getTimeoutTracker().toString(), e);
+                m_httpClient.setReason(String.format("HTTP connection interrupted, %d bytes transferred", ((InterruptedIOException) e).bytesTransferred));
+            } else if (e instanceof ConnectException) {
+                LOG.warn("Connection exception for {}:{}", address, port, e);
+                m_httpClient.setReason("HTTP connection exception on port: "+port+": "+e.getMessage());
+            } else {
+                LOG.warn("IOException while polling address {}", address, e);
+                m_httpClient.setReason("IOException while polling address: "+address+": "+e.getMessage());
+            }
+            retry(PollStatus.get(m_httpClient.getPollStatus(), m_httpClient.getReason()));
+        }
+    }
+
 }
@@ -33,7 +33,10 @@ import java.util.Map;
 import org.opennms.core.utils.ParameterMap;
 import org.opennms.core.utils.SocketWrapper;
 import org.opennms.core.utils.SslSocketWrapper;
+import org.opennms.netmgt.poller.DefaultPollFuture;
 import org.opennms.netmgt.poller.Distributable;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 
 /**
  * This class is designed to be used by the service poller framework to test the
@@ -65,4 +68,15 @@ final public class HttpsMonitor extends HttpMonitor {
         return new SslSocketWrapper();
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The socket conversations do not speak TLS, so this polls on the
+     * calling thread like {@link #poll(MonitoredService, Map)}.
+     */
+    @Override
+    public PollFuture pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+        return new DefaultPollFuture(poll(svc, parameters));
+    }
+
 }
@@ -50,6 +50,7 @@ import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
 import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
+import org.opennms.netmgt.poller.PollFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,7 +67,7 @@ import org.slf4j.LoggerFactory;
  */
 
 @Distributable
-public final class SmtpMonitor extends AbstractServiceMonitor {
+public final class SmtpMonitor extends AbstractAsyncServiceMonitor {
     
     public static final Logger LOG = LoggerFactory.getLogger(SmtpMonitor.class);
     
@@ -348,4 +349,141 @@ public final class SmtpMonitor extends AbstractServiceMonitor {
         return serviceStatus;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Runs the same poll as {@link #poll(MonitoredService, Map)} on the
+     * {@link SocketConversationEngine}, without blocking the calling thread.
+     */
+    @Override
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        NetworkInterface<InetAddress> iface = svc.getNetInterface();
+
+        // Get interface address from NetworkInterface
+        //
+        if (iface.getType() != NetworkInterface.TYPE_INET) {
+            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+        }
+        
+        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+
+        int port = ParameterMap.getKeyedInteger(parameters, "port", DEFAULT_PORT);
+
+        // Get interface address from NetworkInterface
+        //
+        InetAddress ipAddr = iface.getAddress();
+
+        final String hostAddress = InetAddressUtils.str(ipAddr);
+        LOG.debug("poll: address = {}, port = {}, {}", hostAddress, port, tracker);
+
+        return new SmtpConversation(ipAddr, port, tracker).start();
+    }
+
+    /**
+     * Reads the banner, sends HELO and QUIT and checks the reply codes. The
+     * reply of each step is the last line of a (possibly multi-line) reply.
+     */
+    private static final class SmtpConversation extends SocketConversation {
+        private static final int BANNER = 0;
+        private static final int HELO = 1;
+        private static final int QUIT = 2;
+
+        private PollStatus m_serviceStatus = PollStatus.unavailable();
+
+        private int m_state;
+
+        private double m_responseTime;
+
+        SmtpConversation(final InetAddress address, final int port, final TimeoutTracker tracker) {
+            super(address, port, tracker);
+        }
+
+        @Override
+        protected void connected() {
+            LOG.debug("SmtpMonitor: connected to host: {} on port: {}", getAddress().getAddress(), getAddress().getPort());
+
+            // We're connected, so upgrade status to unresponsive
+            m_serviceStatus = PollStatus.unresponsive();
+            m_state = BANNER;
+        }
+
+        @Override
+        protected void lineReceived(final String line) throws IOException {
+            if (MULTILINE.match(line)) {
+                // Ok we have a multi-line response, wait for the last line,
+                // which has the return code followed by a space.
+                return;
+            }
+
+            final int rc;
+            try {
+                rc = Integer.parseInt(new StringTokenizer(line).nextToken());
+            } catch (final RuntimeException e) {
+                String reason = "NumberFormatException while polling address " + InetAddressUtils.str(getAddress().getAddress());
+                LOG.debug(reason, e);
+                retry(PollStatus.unavailable(reason));
+                return;
+            }
+
+            switch (m_state) {
+            case BANNER:
+                LOG.debug("poll: banner = {}", line);
+                if (rc == 220) {
+                    //
+                    // Send the HELO command
+                    //
+                    m_state = HELO;
+                    send("HELO " + LOCALHOST_NAME + "\r\n");
+                    return;
+                }
+                break;
+            case HELO:
+                m_responseTime = getTimeoutTracker().elapsedTimeInMillis();
+                if (rc == 250) {
+                    m_state = QUIT;
+                    send("QUIT\r\n");
+                    return;
+                }
+                break;
+            case QUIT:
+                if (rc == 221) {
+                    complete(PollStatus.available(m_responseTime));
+                    return;
+                }
+                break;
+            }
+
+            // If we get this far then something didn't verify during
+            // the banner checking or HELO/QUIT comand process.
+            retry(PollStatus.unavailable());
+        }
+
+        @Override
+        protected void endOfStream() {
+            retry(m_serviceStatus);
+        }
+
+        @Override
+        protected void failed(final IOException e) {
+            final String hostAddress = InetAddressUtils.str(getAddress().getAddress());
+            if (e instanceof NoRouteToHostException) {
+                String reason = "No route to host exception for address " + hostAddress;
+                LOG.debug(reason, e);
+                complete(PollStatus.unavailable(reason));
+            } else if (e instanceof InterruptedIOException) {
+                String reason = "Did not receive expected response within timeout " + getTimeoutTracker();
+                LOG.debug(reason);
+                retry(PollStatus.unavailable(reason));
+            } else if (e instanceof ConnectException) {
+                String reason = "Unable to connect to address " + hostAddress;
+                LOG.debug(reason, e);
+                retry(PollStatus.unavailable(reason));
+            } else {
+                String reason = "IOException while polling address " + hostAddress;
+                LOG.debug(reason, e);
+                retry(PollStatus.unavailable(reason));
+            }
+        }
+    }
+
 }
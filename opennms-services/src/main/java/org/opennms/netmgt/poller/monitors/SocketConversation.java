@@ -0,0 +1,337 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.core.utils.TimeoutTracker;
+import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.DefaultPollFuture;
+import org.opennms.netmgt.poller.PollFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A line based conversation with a TCP service, run without blocking by the
+ * {@link SocketConversationEngine}. The {@link TimeoutTracker} drives the
+ * attempts the same way it drives the retry loop of a blocking monitor:
+ * the connect timeout applies to the connection, the read timeout to each
+ * wait for data.
+ *
+ * All the callbacks are called on the selector thread, one at a time, so
+ * they must not block. A callback ends the current attempt by calling
+ * {@link #complete(PollStatus)} or {@link #retry(PollStatus)}.
+ */
+abstract class SocketConversation {
+    private static final Logger LOG = LoggerFactory.getLogger(SocketConversation.class);
+
+    /**
+     * The charset of the requests sent and the lines received.
+     */
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final InetSocketAddress m_address;
+
+    private final TimeoutTracker m_tracker;
+
+    private final DefaultPollFuture m_future = new DefaultPollFuture();
+
+    private final ByteArrayOutputStream m_line = new ByteArrayOutputStream();
+
+    private SocketChannel m_channel;
+
+    private SelectionKey m_key;
+
+    private ByteBuffer m_output;
+
+    private long m_deadline;
+
+    /**
+     * <p>Constructor for SocketConversation.</p>
+     *
+     * @param address the address of the service
+     * @param port the port of the service
+     * @param tracker the retries and timeouts of the poll
+     */
+    protected SocketConversation(final InetAddress address, final int port, final TimeoutTracker tracker) {
+        m_address = new InetSocketAddress(address, port);
+        m_tracker = tracker;
+    }
+
+    /**
+     * Starts the first attempt of the conversation.
+     *
+     * @return the future completed by the last attempt
+     */
+    public PollFuture start() {
+        m_tracker.reset();
+        connect();
+        return m_future;
+    }
+
+    /**
+     * Called once the connection is established.
+     *
+     * @throws IOException if sending a request fails
+     */
+    protected abstract void connected() throws IOException;
+
+    /**
+     * Called for each line received, without its line terminator.
+     *
+     * @param line a {@link java.lang.String} object.
+     * @throws IOException if sending a request fails
+     */
+    protected abstract void lineReceived(String line) throws IOException;
+
+    /**
+     * Called when the service closes the connection. The connection is
+     * closed already.
+     */
+    protected abstract void endOfStream();
+
+    /**
+     * Called when the connection could not be established, or failed, or
+     * the service did not answer in time. The connection is closed already.
+     *
+     * @param e a {@link java.io.IOException} object.
+     */
+    protected abstract void failed(IOException e);
+
+    /**
+     * <p>getTimeoutTracker</p>
+     *
+     * @return a {@link org.opennms.core.utils.TimeoutTracker} object.
+     */
+    protected TimeoutTracker getTimeoutTracker() {
+        return m_tracker;
+    }
+
+    /**
+     * <p>getAddress</p>
+     *
+     * @return a {@link java.net.InetSocketAddress} object.
+     */
+    protected InetSocketAddress getAddress() {
+        return m_address;
+    }
+
+    /**
+     * Sends data to the service, once the connection is established.
+     *
+     * @param data a {@link java.lang.String} object.
+     * @throws IOException if the data cannot be written
+     */
+    protected final void send(final String data) throws IOException {
+        final byte[] bytes = data.getBytes(CHARSET);
+        if (m_output == null || !m_output.hasRemaining()) {
+            m_output = ByteBuffer.wrap(bytes);
+        } else {
+            final ByteBuffer output = ByteBuffer.allocate(m_output.remaining() + bytes.length);
+            output.put(m_output).put(bytes).flip();
+            m_output = output;
+        }
+        write();
+    }
+
+    /**
+     * Ends the conversation with the given status.
+     *
+     * @param status a {@link org.opennms.netmgt.model.PollStatus} object.
+     */
+    protected final void complete(final PollStatus status) {
+        close();
+        m_future.setStatus(status);
+    }
+
+    /**
+     * Ends the current attempt and starts the next one, or ends the
+     * conversation with the given status if there are no attempts left.
+     *
+     * @param status a {@link org.opennms.netmgt.model.PollStatus} object.
+     */
+    protected final void retry(final PollStatus status) {
+        close();
+        m_tracker.nextAttempt();
+        if (m_tracker.shouldRetry()) {
+            connect();
+        } else {
+            m_future.setStatus(status);
+        }
+    }
+
+    private void connect() {
+        m_tracker.startAttempt();
+        SocketConversationEngine.getInstance().connect(this);
+    }
+
+    private void close() {
+        if (m_key != null) {
+            m_key.cancel();
+            m_key = null;
+        }
+        if (m_channel != null) {
+            try {
+                m_channel.close();
+            } catch (final IOException e) {
+                LOG.debug("close: error closing the connection to {}", InetAddressUtils.str(m_address.getAddress()), e);
+            }
+            m_channel = null;
+        }
+        m_output = null;
+        m_line.reset();
+    }
+
+    private boolean isOpen() {
+        return m_channel != null;
+    }
+
+    /*
+     * The methods below are called by the engine on the selector thread.
+     */
+
+    void open(final Selector selector) throws IOException {
+        m_channel = SocketChannel.open();
+        m_channel.configureBlocking(false);
+        m_key = m_channel.register(selector, SelectionKey.OP_CONNECT, this);
+        m_deadline = System.currentTimeMillis() + m_tracker.getConnectionTimeout();
+        if (m_channel.connect(m_address)) {
+            connectionEstablished();
+        }
+    }
+
+    void finishConnect() throws IOException {
+        if (m_channel.finishConnect()) {
+            connectionEstablished();
+        }
+    }
+
+    private void connectionEstablished() throws IOException {
+        m_key.interestOps(SelectionKey.OP_READ);
+        m_deadline = System.currentTimeMillis() + m_tracker.getSoTimeout();
+        connected();
+    }
+
+    void write() throws IOException {
+        if (!isOpen() || m_key.interestOps() == SelectionKey.OP_CONNECT || m_output == null) {
+            return;
+        }
+        m_channel.write(m_output);
+        m_key.interestOps(m_output.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    void read(final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        final int count = m_channel.read(buffer);
+        if (count < 0) {
+            // like BufferedReader.readLine(), hand out the last line even if it is not terminated
+            if (m_line.size() > 0) {
+                deliverLine();
+                if (!isOpen()) {
+                    return;
+                }
+            }
+            close();
+            endOfStream();
+            return;
+        }
+
+        m_deadline = System.currentTimeMillis() + m_tracker.getSoTimeout();
+        buffer.flip();
+        while (buffer.hasRemaining() && isOpen()) {
+            final byte b = buffer.get();
+            if (b == '\n') {
+                deliverLine();
+            } else {
+                m_line.write(b);
+            }
+        }
+    }
+
+    private void deliverLine() throws IOException {
+        String line = new String(m_line.toByteArray(), CHARSET);
+        m_line.reset();
+        if (line.endsWith("\r")) {
+            line = line.substring(0, line.length() - 1);
+        }
+        lineReceived(line);
+    }
+
+    /**
+     * @return true if the conversation expired
+     */
+    boolean expire(final long now) {
+        if (!isOpen() || now < m_deadline) {
+            return false;
+        }
+        final boolean connecting = m_key.interestOps() == SelectionKey.OP_CONNECT;
+        fail(new SocketTimeoutException((connecting ? "connect" : "read") + " timed out with " + m_tracker));
+        return true;
+    }
+
+    long getDeadline() {
+        return m_deadline;
+    }
+
+    void fail(final IOException e) {
+        if (m_future.isDone()) {
+            return;
+        }
+        close();
+        failed(e);
+    }
+
+    void abort(final RuntimeException e) {
+        if (m_future.isDone()) {
+            return;
+        }
+        LOG.warn("abort: unexpected exception while polling {}", InetAddressUtils.str(m_address.getAddress()), e);
+        complete(PollStatus.unavailable("Unexpected exception while polling address " + InetAddressUtils.str(m_address.getAddress()) + ": " + e));
+    }
+
+    /**
+     * <p>toString</p>
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + InetAddressUtils.str(m_address.getAddress()) + ":" + m_address.getPort() + "]";
+    }
+}
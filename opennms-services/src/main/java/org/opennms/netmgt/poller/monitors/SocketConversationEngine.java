@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the {@link SocketConversation}s of all monitors on a single
+ * selector thread, so that a poll waiting for a slow or dead host does not
+ * hold a poller thread.
+ */
+final class SocketConversationEngine implements Runnable {
+    private static final Logger LOG = LoggerFactory.getLogger(SocketConversationEngine.class);
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private static SocketConversationEngine s_instance;
+
+    private final Selector m_selector;
+
+    private final Queue<SocketConversation> m_connects = new ConcurrentLinkedQueue<SocketConversation>();
+
+    private final ByteBuffer m_readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+
+    private SocketConversationEngine(final Selector selector) {
+        m_selector = selector;
+    }
+
+    /**
+     * Returns the engine, starting its thread on first use.
+     *
+     * @return the engine shared by all monitors
+     */
+    static synchronized SocketConversationEngine getInstance() {
+        if (s_instance == null) {
+            try {
+                s_instance = new SocketConversationEngine(Selector.open());
+            } catch (final IOException e) {
+                throw new IllegalStateException("Unable to open a selector for the socket conversations", e);
+            }
+            final Thread thread = new Thread(s_instance, "SocketConversationEngine");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return s_instance;
+    }
+
+    /**
+     * Queues a new attempt of the conversation, the connection is opened on
+     * the selector thread.
+     */
+    void connect(final SocketConversation conversation) {
+        m_connects.add(conversation);
+        m_selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        long timeout = 0;
+        while (true) {
+            try {
+                m_selector.select(timeout);
+                openConnections();
+                processSelectedKeys();
+                timeout = expireConversations();
+            } catch (final Throwable e) {
+                LOG.error("run: unexpected exception in the socket conversation loop", e);
+            }
+        }
+    }
+
+    private void openConnections() {
+        SocketConversation conversation;
+        while ((conversation = m_connects.poll()) != null) {
+            try {
+                conversation.open(m_selector);
+            } catch (final IOException e) {
+                conversation.fail(e);
+            } catch (final RuntimeException e) {
+                conversation.abort(e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> keys = m_selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+
+            final SocketConversation conversation = (SocketConversation) key.attachment();
+            try {
+                if (key.isValid() && key.isConnectable()) {
+                    conversation.finishConnect();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    conversation.write();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    conversation.read(m_readBuffer);
+                }
+            } catch (final IOException e) {
+                conversation.fail(e);
+            } catch (final RuntimeException e) {
+                conversation.abort(e);
+            }
+        }
+    }
+
+    /**
+     * Fails the conversations that have been waiting too long for a
+     * connection or data.
+     *
+     * @return the time in milliseconds until the next deadline, 0 if none
+     */
+    private long expireConversations() {
+        final long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+
+        for (final SelectionKey key : new ArrayList<SelectionKey>(m_selector.keys())) {
+            if (!key.isValid()) {
+                continue;
+            }
+            final SocketConversation conversation = (SocketConversation) key.attachment();
+            try {
+                if (conversation.expire(now)) {
+                    continue;
+                }
+            } catch (final RuntimeException e) {
+                conversation.abort(e);
+                continue;
+            }
+            next = Math.min(next, conversation.getDeadline());
+        }
+
+        return next == Long.MAX_VALUE ? 0 : Math.max(1, next - now);
+    }
+}
@@ -47,6 +47,7 @@ import org.opennms.netmgt.poller.Distributable;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
 import org.opennms.netmgt.poller.NetworkInterfaceNotSupportedException;
+import org.opennms.netmgt.poller.PollFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,7 +55,9 @@ import org.slf4j.LoggerFactory;
  * This class is designed to be used by the service poller framework to test the
  * availability of a generic TCP service on remote interfaces. The class
  * implements the ServiceMonitor interface that allows it to be used along with
- * other plug-ins by the service poller framework.
+ * other plug-ins by the service poller framework. An asynchronous poll runs
+ * on the {@link SocketConversationEngine} and does not hold the polling
+ * thread.
  *
  * @author Weave
  * @author <A HREF="mailto:tarus@opennms.org">Tarus Balog </A>
@@ -63,7 +66,7 @@ import org.slf4j.LoggerFactory;
  */
 
 @Distributable
-final public class TcpMonitor extends AbstractServiceMonitor {
+final public class TcpMonitor extends AbstractAsyncServiceMonitor {
     
     
     public static final Logger LOG = LoggerFactory.getLogger(TcpMonitor.class);
@@ -209,4 +212,121 @@ final public class TcpMonitor extends AbstractServiceMonitor {
         return serviceStatus;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Runs the same poll as {@link #poll(MonitoredService, Map)} on the
+     * {@link SocketConversationEngine}, without blocking the calling thread.
+     */
+    @Override
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        NetworkInterface<InetAddress> iface = svc.getNetInterface();
+
+        //
+        // Process parameters
+        //
+
+        //
+        // Get interface address from NetworkInterface
+        //
+        if (iface.getType() != NetworkInterface.TYPE_INET)
+            throw new NetworkInterfaceNotSupportedException("Unsupported interface type, only TYPE_INET currently supported");
+
+        TimeoutTracker tracker = new TimeoutTracker(parameters, DEFAULT_RETRY, DEFAULT_TIMEOUT);
+
+        // Port
+        //
+        int port = ParameterMap.getKeyedInteger(parameters, PARAMETER_PORT, DEFAULT_PORT);
+        if (port == DEFAULT_PORT) {
+            throw new RuntimeException("TcpMonitor: required parameter 'port' is not present in supplied properties.");
+        }
+
+        // BannerMatch
+        //
+        String strBannerMatch = ParameterMap.getKeyedString(parameters, PARAMETER_BANNER, null);
+
+        // Get the address instance.
+        //
+        InetAddress ipv4Addr = (InetAddress) iface.getAddress();
+
+        final String hostAddress = InetAddressUtils.str(ipv4Addr);
+	LOG.debug("poll: address = {}, port = {}, {}", hostAddress, port, tracker);
+
+        // Give it a whirl
+        //
+        return new TcpConversation(ipv4Addr, port, tracker, strBannerMatch).start();
+    }
+
+    /**
+     * Connects to the port and, if a banner match is configured, checks the
+     * first line sent by the service. An unexpected banner or a connection
+     * failure is retried, like any status that is not available.
+     */
+    private static final class TcpConversation extends SocketConversation {
+        private final String m_bannerMatch;
+
+        private PollStatus m_serviceStatus = PollStatus.unavailable();
+
+        TcpConversation(final InetAddress address, final int port, final TimeoutTracker tracker, final String bannerMatch) {
+            super(address, port, tracker);
+            m_bannerMatch = bannerMatch;
+        }
+
+        @Override
+        protected void connected() {
+            LOG.debug("TcpMonitor: connected to host: {} on port: {}", getAddress().getAddress(), getAddress().getPort());
+
+            // We're connected, so upgrade status to unresponsive
+            m_serviceStatus = PollStatus.unresponsive();
+
+            if (m_bannerMatch == null || m_bannerMatch.length() == 0 || m_bannerMatch.equals("*")) {
+                complete(PollStatus.available(getTimeoutTracker().elapsedTimeInMillis()));
+            }
+        }
+
+        @Override
+        protected void lineReceived(final String response) {
+            //
+            // Check the first line of the banner for a valid return.
+            //
+            double responseTime = getTimeoutTracker().elapsedTimeInMillis();
+
+            LOG.debug("poll: banner = {}", response);
+            LOG.debug("poll: responseTime= {}ms", responseTime);
+
+            if (response.indexOf(m_bannerMatch) > -1) {
+                complete(PollStatus.available(responseTime));
+            } else {
+                retry(PollStatus.unavailable("Banner: '"+response+"' does not contain match string '"+m_bannerMatch+"'"));
+            }
+        }
+
+        @Override
+        protected void endOfStream() {
+            retry(m_serviceStatus);
+        }
+
+        @Override
+        protected void failed(final IOException e) {
+            final InetAddress ipv4Addr = getAddress().getAddress();
+            if (e instanceof NoRouteToHostException) {
+                String reason = "No route to host exception for address " + InetAddressUtils.str(ipv4Addr);
+                LOG.debug(reason, e);
+                complete(PollStatus.unavailable(reason));
+            } else if (e instanceof InterruptedIOException) {
+                String reason = "did not connect to host with " + getTimeoutTracker();
+                LOG.debug(reason);
+                retry(PollStatus.unavailable(reason));
+            } else if (e instanceof ConnectException) {
+                String reason = "Connection exception for address: " + ipv4Addr;
+                LOG.debug(reason, e);
+                retry(PollStatus.unavailable(reason));
+            } else {
+                String reason = "IOException while polling address: " + ipv4Addr;
+                LOG.debug(reason, e);
+                retry(PollStatus.unavailable(reason));
+            }
+        }
+    }
+
 }
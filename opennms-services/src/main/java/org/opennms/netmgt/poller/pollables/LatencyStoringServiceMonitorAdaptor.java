@@ -45,7 +45,9 @@ import org.opennms.netmgt.config.PollerConfig;
 import org.opennms.netmgt.config.poller.Package;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.model.RrdRepository;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdException;
@@ -108,8 +110,46 @@ public class LatencyStoringServiceMonitorAdaptor implements ServiceMonitor {
     /** {@inheritDoc} */
     @Override
     public PollStatus poll(MonitoredService svc, Map<String, Object> parameters) {
-        PollStatus status = m_serviceMonitor.poll(svc, parameters);
+        return completePoll(svc, parameters, m_serviceMonitor.poll(svc, parameters));
+    }
 
+    /**
+     * <p>isAsync</p>
+     *
+     * @return true if the monitor can poll without holding the calling thread
+     */
+    public boolean isAsync() {
+        return m_serviceMonitor instanceof AsyncServiceMonitor;
+    }
+
+    /**
+     * Starts a poll of an {@link AsyncServiceMonitor}. The status it is
+     * completed with has to be passed to
+     * {@link #completePoll(MonitoredService, Map, PollStatus)}, which is not
+     * done by a listener since it writes to the RRD files and listeners may
+     * be notified on an I/O thread.
+     *
+     * @param svc a {@link org.opennms.netmgt.poller.MonitoredService} object.
+     * @param parameters a {@link java.util.Map} object.
+     * @return a {@link org.opennms.netmgt.poller.PollFuture} object.
+     */
+    public PollFuture pollAsync(MonitoredService svc, Map<String, Object> parameters) {
+        if (!isAsync()) {
+            throw new IllegalStateException("Monitor " + m_serviceMonitor + " cannot poll asynchronously");
+        }
+        return ((AsyncServiceMonitor) m_serviceMonitor).pollAsync(svc, parameters);
+    }
+
+    /**
+     * Stores the response times of a finished poll and applies the
+     * thresholds to them.
+     *
+     * @param svc a {@link org.opennms.netmgt.poller.MonitoredService} object.
+     * @param parameters a {@link java.util.Map} object.
+     * @param status the status returned by the monitor
+     * @return the status of the service
+     */
+    public PollStatus completePoll(MonitoredService svc, Map<String, Object> parameters, PollStatus status) {
         if (!status.getProperties().isEmpty()) {
             storeResponseTime(svc, new LinkedHashMap<String, Number>(status.getProperties()), parameters);
         }
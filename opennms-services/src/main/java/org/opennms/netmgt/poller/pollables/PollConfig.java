@@ -29,6 +29,7 @@
 package org.opennms.netmgt.poller.pollables;
 
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.scheduler.Timer;
 
 
@@ -47,6 +48,29 @@ public interface PollConfig extends Timer {
      */
     public PollStatus poll();
 
+    /**
+     * <p>isAsync</p>
+     *
+     * @return true if {@link #pollAsync()} can be used instead of {@link #poll()}
+     */
+    public boolean isAsync();
+
+    /**
+     * Starts a poll without holding the calling thread.
+     *
+     * @return a {@link org.opennms.netmgt.poller.PollFuture} object.
+     */
+    public PollFuture pollAsync();
+
+    /**
+     * Finishes a poll started by {@link #pollAsync()}, once its future is
+     * done. This must not be called on the thread that completed the future.
+     *
+     * @param future a {@link org.opennms.netmgt.poller.PollFuture} object.
+     * @return a {@link org.opennms.netmgt.model.PollStatus} object.
+     */
+    public PollStatus completePoll(PollFuture future);
+
     /**
      * <p>getCurrentTime</p>
      *
@@ -30,12 +30,17 @@ package org.opennms.netmgt.poller.pollables;
 
 import java.net.InetAddress;
 import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.InetNetworkInterface;
 import org.opennms.netmgt.poller.MonitoredService;
 import org.opennms.netmgt.poller.NetworkInterface;
+import org.opennms.netmgt.poller.PollFuture;
+import org.opennms.netmgt.poller.PollFutureListener;
 import org.opennms.netmgt.scheduler.PostponeNecessary;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
 import org.opennms.netmgt.scheduler.Schedule;
@@ -53,12 +58,20 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     
     private static final Logger LOG = LoggerFactory.getLogger(PollableService.class);
 
+    private static final Random s_random = new Random();
+
     private final class PollRunner implements Runnable {
     	
+    	private final PollStatus m_completed;
     	private volatile PollStatus m_pollStatus;
+
+    	public PollRunner(PollStatus completed) {
+    	    m_completed = completed;
+    	}
+
             @Override
 		public void run() {
-		    doPoll();
+		    doPollCompleted(m_completed);
 		    getNode().processStatusChange(new Date());
 		    m_pollStatus = getStatus();
 		}
@@ -67,6 +80,50 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
 		}
 	}
 
+    /**
+     * Processes the result of an asynchronous poll on a poller thread, the
+     * same way a scheduled run processes the result of a blocking poll.
+     */
+    private final class PollCompletion implements ReadyRunnable {
+        private final PollFuture m_future;
+        private PollStatus m_status;
+
+        public PollCompletion(PollFuture future) {
+            m_future = future;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+            boolean postponed = false;
+            try {
+                if (isDeleted()) {
+                    LOG.debug("Service {} was deleted while it was polled", PollableService.this);
+                    return;
+                }
+                if (m_status == null) {
+                    m_status = m_pollConfig.completePoll(m_future);
+                }
+                doRun(500, m_status);
+            } catch (PostponeNecessary e) {
+                // Chose a random number of seconds between 5 and 14 to wait before trying again
+                postponed = true;
+                getSchedule().runLater(s_random.nextInt(10)*1000+5000, this);
+            } finally {
+                if (!postponed) {
+                    m_asyncPollPending.set(false);
+                }
+            }
+        }
+
+        @Override
+        public String toString() { return "PollCompletion for "+PollableService.this; }
+    }
+
 	private final String m_svcName;
     private final InetNetworkInterface m_netInterface;
 
@@ -74,6 +131,8 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
     private volatile PollStatus m_oldStatus;
     private volatile Schedule m_schedule;
     private volatile long m_statusChangeTime = 0L;
+    private final AtomicBoolean m_asyncPollPending = new AtomicBoolean(false);
+    private final AtomicReference<PollStatus> m_completedStatus = new AtomicReference<PollStatus>();
     /**
      * <p>Constructor for PollableService.</p>
      *
@@ -186,7 +245,11 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public PollStatus poll() {
-        PollStatus newStatus = m_pollConfig.poll();
+        // the result of an asynchronous poll that is being processed
+        PollStatus newStatus = m_completedStatus.getAndSet(null);
+        if (newStatus == null) {
+            newStatus = m_pollConfig.poll();
+        }
         if (!newStatus.isUnknown()) { 
             updateStatus(newStatus);
         }
@@ -228,6 +291,21 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
             return poll();
         }
     }
+
+    /**
+     * Polls the service like {@link #doPoll()}, but processes the result of
+     * an asynchronous poll for this service if one is given. The caller
+     * holds the tree lock when node processing is enabled, so a poll of the
+     * node started for another service cannot take the result.
+     */
+    private PollStatus doPollCompleted(PollStatus completed) {
+        m_completedStatus.set(completed);
+        try {
+            return doPoll();
+        } finally {
+            m_completedStatus.set(null);
+        }
+    }
     
 
     
@@ -383,7 +461,33 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      */
     @Override
     public void run() {
-        doRun(500);
+        if (m_pollConfig.isAsync()) {
+            startAsyncPoll();
+        } else {
+            doRun(500, null);
+        }
+    }
+
+    /**
+     * Starts a poll with an asynchronous monitor and returns. Once the poll
+     * is done its result is processed by a {@link PollCompletion} run on the
+     * poller threads, so no thread waits for the service in between.
+     */
+    private void startAsyncPoll() {
+        if (!m_asyncPollPending.compareAndSet(false, true)) {
+            LOG.info("Previous poll of {} has not finished yet, skipping this one", this);
+            return;
+        }
+
+        LOG.debug("Start asynchronous poll of service {}", this);
+        final Schedule schedule = getSchedule();
+        m_pollConfig.pollAsync().addListener(new PollFutureListener() {
+            @Override
+            public void operationComplete(PollFuture future) {
+                // the listener may be called on an I/O thread
+                schedule.runLater(0, new PollCompletion(future));
+            }
+        });
     }
     
     /**
@@ -392,15 +496,19 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
      * @return a {@link org.opennms.netmgt.model.PollStatus} object.
      */
     public PollStatus doRun() {
-    	return doRun(0);
+    	return doRun(0, null);
     }
 
-	private PollStatus doRun(int timeout) {
+	/**
+	 * @param completed the result of an asynchronous poll to process
+	 * instead of polling the service, or null
+	 */
+	private PollStatus doRun(int timeout, PollStatus completed) {
 		long startDate = System.currentTimeMillis();
         LOG.debug("Start Scheduled Poll of service {}", this);
         PollStatus status;
         if (getContext().isNodeProcessingEnabled()) {
-            PollRunner r = new PollRunner();
+            PollRunner r = new PollRunner(completed);
             try {
 				withTreeLock(r, timeout);
             } catch (LockUnavailable e) {
@@ -410,7 +518,7 @@ public class PollableService extends PollableElement implements ReadyRunnable, M
             status = r.getPollStatus();
         }
         else {
-            doPoll();
+            doPollCompleted(completed);
             processStatusChange(new Date());
             status = getStatus();
         }
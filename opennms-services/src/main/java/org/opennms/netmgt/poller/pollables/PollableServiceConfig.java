@@ -40,6 +40,8 @@ import org.opennms.netmgt.config.poller.Package;
 import org.opennms.netmgt.config.poller.Parameter;
 import org.opennms.netmgt.config.poller.Service;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.DefaultPollFuture;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.scheduler.ScheduleInterval;
 import org.opennms.netmgt.scheduler.Timer;
@@ -53,6 +55,13 @@ import org.opennms.netmgt.scheduler.Timer;
 public class PollableServiceConfig implements PollConfig, ScheduleInterval {
     private static final Logger LOG = LoggerFactory.getLogger(PollableServiceConfig.class);
 
+    /**
+     * Set to true to poll with asynchronous monitors without holding a poller
+     * thread. By default they poll on the poller threads like any other
+     * monitor.
+     */
+    public static final String ASYNC_PROPERTY = "org.opennms.netmgt.poller.async";
+
     private PollerConfig m_pollerConfig;
     private PollOutagesConfig m_pollOutagesConfig;
     private PollableService m_service;
@@ -60,7 +69,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
     private Package m_pkg;
     private Timer m_timer;
     private Service m_configService;
-	private ServiceMonitor m_serviceMonitor;
+	private LatencyStoringServiceMonitorAdaptor m_serviceMonitor;
 
     /**
      * <p>Constructor for PollableServiceConfig.</p>
@@ -79,7 +88,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
         m_timer = timer;
         m_configService = findService(pkg);
         
-        ServiceMonitor monitor = getServiceMonitor();
+        LatencyStoringServiceMonitorAdaptor monitor = getServiceMonitor();
         monitor.initialize(m_service);
     }
 
@@ -110,7 +119,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
             packageName = m_pkg.getName();
         }
         try {
-            ServiceMonitor monitor = getServiceMonitor();
+            LatencyStoringServiceMonitorAdaptor monitor = getServiceMonitor();
             LOG.debug("Polling {} using pkg {}", packageName, m_service);
             PollStatus result = monitor.poll(m_service, getParameters());
             LOG.debug("Finish polling {} using pkg {} result = {}", result, m_service, packageName);
@@ -121,7 +130,50 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
         }
     }
 
-	private synchronized ServiceMonitor getServiceMonitor() {
+    /**
+     * <p>isAsync</p>
+     *
+     * @return a boolean.
+     */
+    @Override
+    public boolean isAsync() {
+        return Boolean.parseBoolean(System.getProperty(ASYNC_PROPERTY, "false")) && getServiceMonitor().isAsync();
+    }
+
+    /**
+     * <p>pollAsync</p>
+     *
+     * @return a {@link org.opennms.netmgt.poller.PollFuture} object.
+     */
+    @Override
+    public PollFuture pollAsync() {
+        String packageName = null;
+        synchronized(this) {
+            packageName = m_pkg.getName();
+        }
+        try {
+            LOG.debug("Polling {} asynchronously using pkg {}", m_service, packageName);
+            return getServiceMonitor().pollAsync(m_service, getParameters());
+        } catch (Throwable e) {
+            LOG.error("Unexpected exception while polling {}. Marking service as DOWN", m_service, e);
+            return new DefaultPollFuture(PollStatus.down("Unexpected exception while polling "+m_service+". "+e));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PollStatus completePoll(PollFuture future) {
+        try {
+            PollStatus result = getServiceMonitor().completePoll(m_service, getParameters(), future.getStatus());
+            LOG.debug("Finish polling {} result = {}", m_service, result);
+            return result;
+        } catch (Throwable e) {
+            LOG.error("Unexpected exception while polling {}. Marking service as DOWN", m_service, e);
+            return PollStatus.down("Unexpected exception while polling "+m_service+". "+e);
+        }
+    }
+
+	private synchronized LatencyStoringServiceMonitorAdaptor getServiceMonitor() {
 		if (m_serviceMonitor == null) {
 			ServiceMonitor monitor = m_pollerConfig.getServiceMonitor(m_service.getSvcName());
 			m_serviceMonitor = new LatencyStoringServiceMonitorAdaptor(monitor, m_pollerConfig, m_pkg);
@@ -151,7 +203,7 @@ public class PollableServiceConfig implements PollConfig, ScheduleInterval {
      */
     @Override
     public synchronized void refreshThresholds() {
-        ((LatencyStoringServiceMonitorAdaptor)getServiceMonitor()).refreshThresholds();
+        getServiceMonitor().refreshThresholds();
     }
 
 
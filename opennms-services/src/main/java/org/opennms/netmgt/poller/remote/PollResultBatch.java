@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.opennms.netmgt.model.PollStatus;
+
+/**
+ * Poll results a location monitor reports to the back end in a single call,
+ * in the order they were polled.
+ *
+ * The results are compressed when the batch is serialized, as the poll
+ * statuses of a remote poller repeat the same few strings and class
+ * descriptors over and over.
+ */
+public class PollResultBatch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private transient List<Integer> m_serviceIds = new ArrayList<Integer>();
+    private transient List<PollStatus> m_statuses = new ArrayList<PollStatus>();
+
+    /**
+     * <p>add</p>
+     *
+     * @param serviceId the id of the service that was polled
+     * @param status the result of the poll
+     */
+    public void add(final int serviceId, final PollStatus status) {
+        m_serviceIds.add(serviceId);
+        m_statuses.add(status);
+    }
+
+    /**
+     * <p>size</p>
+     *
+     * @return the number of results in the batch
+     */
+    public int size() {
+        return m_serviceIds.size();
+    }
+
+    /**
+     * <p>isEmpty</p>
+     *
+     * @return true if the batch holds no result
+     */
+    public boolean isEmpty() {
+        return m_serviceIds.isEmpty();
+    }
+
+    /**
+     * <p>getServiceId</p>
+     *
+     * @param index the index of a result
+     * @return the id of the service that was polled
+     */
+    public int getServiceId(final int index) {
+        return m_serviceIds.get(index);
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @param index the index of a result
+     * @return the result of the poll
+     */
+    public PollStatus getStatus(final int index) {
+        return m_statuses.get(index);
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream results = new ObjectOutputStream(new GZIPOutputStream(bytes));
+        results.writeInt(m_serviceIds.size());
+        for (int i = 0; i < m_serviceIds.size(); i++) {
+            results.writeInt(m_serviceIds.get(i));
+            results.writeObject(m_statuses.get(i));
+        }
+        results.close();
+
+        out.writeObject(bytes.toByteArray());
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+
+        final ObjectInputStream results = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream((byte[])in.readObject())));
+        try {
+            final int size = results.readInt();
+            m_serviceIds = new ArrayList<Integer>(size);
+            m_statuses = new ArrayList<PollStatus>(size);
+            for (int i = 0; i < size; i++) {
+                m_serviceIds.add(results.readInt());
+                m_statuses.add((PollStatus)results.readObject());
+            }
+        } finally {
+            results.close();
+        }
+    }
+}
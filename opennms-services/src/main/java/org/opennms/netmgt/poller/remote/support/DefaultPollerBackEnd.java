@@ -40,6 +40,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -67,6 +68,7 @@ import org.opennms.netmgt.model.events.EventIpcManager;
 import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.ServiceMonitorLocator;
 import org.opennms.netmgt.poller.remote.OnmsPollModel;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PolledService;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
 import org.opennms.netmgt.poller.remote.PollerConfiguration;
@@ -78,6 +80,8 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.PermissionDeniedDataAccessException;
 import org.springframework.orm.ObjectRetrievalFailureException;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 
 /**
@@ -138,6 +142,35 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     AtomicReference<Date> m_configurationTimestamp = new AtomicReference<Date>();
     AtomicReference<ConcurrentHashMap<String, SimplePollerConfiguration>> m_configCache = new AtomicReference<ConcurrentHashMap<String,SimplePollerConfiguration>>();
 
+    /*
+     * What the back end remembers of the results reported so far, so a
+     * result that does not change the status of a service is processed
+     * without going to the database: the status code last saved for each
+     * location monitor and service, and the few details of the services
+     * and location monitors needed to store the response times
+     */
+    private final ConcurrentHashMap<Long, Integer> m_reportedStatuses = new ConcurrentHashMap<Long, Integer>();
+    private final ConcurrentHashMap<Integer, ReportedService> m_reportedServices = new ConcurrentHashMap<Integer, ReportedService>();
+    private final ConcurrentHashMap<Integer, String> m_reportedMonitors = new ConcurrentHashMap<Integer, String>();
+
+    private static final class ReportedService {
+        private final String m_serviceName;
+        private final InetAddress m_ipAddress;
+
+        ReportedService(final OnmsMonitoredService monSvc) {
+            m_serviceName = monSvc.getServiceName();
+            m_ipAddress = monSvc.getIpAddress();
+        }
+
+        public String getServiceName() {
+            return m_serviceName;
+        }
+
+        public InetAddress getIpAddress() {
+            return m_ipAddress;
+        }
+    }
+
     /**
      * <p>afterPropertiesSet</p>
      *
@@ -236,6 +269,11 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     public void configurationUpdated() {
         m_configurationTimestamp.set(m_timeKeeper.getCurrentDate());
         m_configCache.set(new ConcurrentHashMap<String, SimplePollerConfiguration>());
+
+        // services may have been deleted or moved to another address
+        m_reportedStatuses.clear();
+        m_reportedServices.clear();
+        m_reportedMonitors.clear();
     }
 
     private static EventBuilder createEventBuilder(final OnmsLocationMonitor mon, final String uei) {
@@ -359,9 +397,13 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     }
 
     private String getPackageName(final OnmsLocationMonitor mon) {
-        final OnmsMonitoringLocationDefinition def = m_locMonDao.findMonitoringLocationDefinition(mon.getDefinitionName());
+        return getPackageName(mon.getDefinitionName(), mon.getId());
+    }
+
+    private String getPackageName(final String definitionName, final Integer locationMonitorId) {
+        final OnmsMonitoringLocationDefinition def = m_locMonDao.findMonitoringLocationDefinition(definitionName);
         if (def == null) {
-            throw new IllegalStateException("Location definition '" + mon.getDefinitionName() + "' could not be found for location monitor ID " + mon.getId());
+            throw new IllegalStateException("Location definition '" + definitionName + "' could not be found for location monitor ID " + locationMonitorId);
         }
         String pollingPackageName = def.getPollingPackageName();
         return pollingPackageName;
@@ -401,6 +443,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
 			final OnmsLocationMonitor mon = m_locMonDao.get(locationMonitorId);
 			if (mon == null) {
 			    LOG.debug("Deleted monitor checked in with ID {}", locationMonitorId);
+			    forgetReportedResults(locationMonitorId);
 			    return MonitorStatus.DELETED;
 			}
 
@@ -414,6 +457,8 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     /** {@inheritDoc} */
     @Override
     public boolean pollerStarting(final int locationMonitorId, final Map<String, String> pollerDetails) {
+        forgetReportedResults(locationMonitorId);
+
         final OnmsLocationMonitor mon = m_locMonDao.get(locationMonitorId);
         if (mon == null) {
             return false;
@@ -478,6 +523,8 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     /** {@inheritDoc} */
     @Override
     public void pollerStopping(final int locationMonitorId) {
+        forgetReportedResults(locationMonitorId);
+
         final OnmsLocationMonitor mon = m_locMonDao.get(locationMonitorId);
         if (mon == null) {
             LOG.info("pollerStopping was called for location monitor ID {} which does not exist", locationMonitorId);
@@ -527,6 +574,11 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
     /** {@inheritDoc} */
     @Override
     public void reportResult(final int locationMonitorId, final int serviceId, final PollStatus pollResult) {
+        final Long key = getReportedStatusKey(locationMonitorId, serviceId);
+        if (pollResult != null && reportUnchangedResult(key, locationMonitorId, serviceId, pollResult)) {
+            return;
+        }
+
         final OnmsLocationMonitor locationMonitor;
         try {
         	locationMonitor = m_locMonDao.get(locationMonitorId);
@@ -569,11 +621,85 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
 		try {
 	        final OnmsLocationSpecificStatus currentStatus = m_locMonDao.getMostRecentStatusChange(locationMonitor, monSvc);
 	        processStatusChange(currentStatus, newStatus);
+
+	        m_reportedMonitors.put(locationMonitorId, locationMonitor.getDefinitionName());
+	        m_reportedServices.put(serviceId, new ReportedService(monSvc));
+	        rememberReportedStatus(key, pollResult.getStatusCode());
 		} catch (final Exception e) {
 			LOG.error("Unable to save result for location monitor ID {}, monitored service ID {}.", locationMonitorId, serviceId, e);
 		}
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The results are processed in a single transaction, so the status
+     * changes of the batch are written to the database together.
+     */
+    @Override
+    public void reportResults(final int locationMonitorId, final PollResultBatch results) {
+        LOG.debug("Reporting {} results for location monitor ID {}", results.size(), locationMonitorId);
+        for (int i = 0; i < results.size(); i++) {
+            reportResult(locationMonitorId, results.getServiceId(i), results.getStatus(i));
+        }
+    }
+
+    /**
+     * Processes a result that has the status last saved for the service,
+     * which leaves only the response time to store.
+     *
+     * @return false if the status changed or is not known
+     */
+    private boolean reportUnchangedResult(final Long key, final int locationMonitorId, final int serviceId, final PollStatus pollResult) {
+        final Integer statusCode = m_reportedStatuses.get(key);
+        final String definitionName = m_reportedMonitors.get(locationMonitorId);
+        final ReportedService service = m_reportedServices.get(serviceId);
+        if (statusCode == null || definitionName == null || service == null || statusCode.intValue() != pollResult.getStatusCode()) {
+            return false;
+        }
+
+        try {
+            if (pollResult.getResponseTime() != null) {
+                final Package pkg = getPollingPackage(getPackageName(definitionName, locationMonitorId), definitionName);
+                saveResponseTimeData(Integer.toString(locationMonitorId), service.getServiceName(), service.getIpAddress(), pollResult.getResponseTime(), pkg);
+            }
+        } catch (final Exception e) {
+            LOG.error("Unable to save response time data for location monitor ID {}, monitored service ID {}.", locationMonitorId, serviceId, e);
+        }
+        return true;
+    }
+
+    private static Long getReportedStatusKey(final int locationMonitorId, final int serviceId) {
+        return Long.valueOf(((long)locationMonitorId << 32) | (serviceId & 0xffffffffL));
+    }
+
+    private void rememberReportedStatus(final Long key, final int statusCode) {
+        final Integer reportedStatus = Integer.valueOf(statusCode);
+        m_reportedStatuses.put(key, reportedStatus);
+
+        // the status change is only saved once the transaction commits
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    if (status != STATUS_COMMITTED) {
+                        m_reportedStatuses.remove(key, reportedStatus);
+                    }
+                }
+            });
+        }
+    }
+
+    private void forgetReportedResults(final int locationMonitorId) {
+        m_reportedMonitors.remove(locationMonitorId);
+        final Iterator<Long> keys = m_reportedStatuses.keySet().iterator();
+        while (keys.hasNext()) {
+            if ((int)(keys.next().longValue() >>> 32) == locationMonitorId) {
+                keys.remove();
+            }
+        }
+    }
+
     /**
      * <p>saveResponseTimeData</p>
      *
@@ -584,7 +710,10 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
      */
     @Override
     public void saveResponseTimeData(final String locationMonitor, final OnmsMonitoredService monSvc, final double responseTime, final Package pkg) {
-        final String svcName = monSvc.getServiceName();
+        saveResponseTimeData(locationMonitor, monSvc.getServiceName(), monSvc.getIpAddress(), responseTime, pkg);
+    }
+
+    private void saveResponseTimeData(final String locationMonitor, final String svcName, final InetAddress ipAddress, final double responseTime, final Package pkg) {
         final Service svc = m_pollerConfig.getServiceInPackage(svcName, pkg);
         
         final String dsName = getServiceParameter(svc, "ds-name");
@@ -597,7 +726,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
             return;
         }
         
-        final String rrdDir = rrdRepository+File.separatorChar+"distributed"+File.separatorChar+locationMonitor+File.separator+str(monSvc.getIpAddress());
+        final String rrdDir = rrdRepository+File.separatorChar+"distributed"+File.separatorChar+locationMonitor+File.separator+str(ipAddress);
 
         try {
             final File rrdFile = new File(rrdDir, dsName);
@@ -606,7 +735,7 @@ public class DefaultPollerBackEnd implements PollerBackEnd, SpringServiceDaemon
             }
             RrdUtils.updateRRD(locationMonitor, rrdDir, dsName, System.currentTimeMillis(), String.valueOf(responseTime));
         } catch (final RrdException e) {
-            throw new PermissionDeniedDataAccessException("Unable to store rrdData from "+locationMonitor+" for service "+monSvc, e);
+            throw new PermissionDeniedDataAccessException("Unable to store rrdData from "+locationMonitor+" for service "+svcName+" on "+str(ipAddress), e);
         }
     }
     
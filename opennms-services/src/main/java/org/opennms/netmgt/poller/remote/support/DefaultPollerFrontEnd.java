@@ -49,6 +49,7 @@ import org.opennms.netmgt.model.OnmsMonitoringLocationDefinition;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.remote.ConfigurationChangedListener;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PollService;
 import org.opennms.netmgt.poller.remote.PolledService;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
@@ -75,6 +76,15 @@ import org.springframework.util.ObjectUtils;
 public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean, DisposableBean {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultPollerFrontEnd.class);
 
+    /**
+     * Poll results that do not change the status of a service are sent to
+     * the back end in batches, at the latest this many milliseconds after
+     * the first result of the batch was polled, or once the batch holds
+     * this many results. Status changes are sent right away.
+     */
+    private static final long REPORT_INTERVAL = Long.getLong("opennms.poller.reportInterval", 10000L);
+    private static final int REPORT_BATCH_SIZE = Integer.getInteger("opennms.poller.reportBatchSize", 500);
+
     private class Disconnected extends RunningState {
 
         @Override
@@ -190,6 +200,7 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
         @Override
         public void checkIn() {
             try {
+                doReportPendingResults();
                 final MonitorStatus status = doCheckIn();
                 switch (status) {
                     case CONFIG_CHANGED:
@@ -383,6 +394,12 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
     // current state of polled services
     private Map<Integer, ServicePollState> m_pollState = new LinkedHashMap<Integer, ServicePollState>();
 
+    // poll results waiting to be reported to the back end
+    private final Object m_pendingResultsLock = new Object();
+    private final Object m_reportLock = new Object();
+    private PollResultBatch m_pendingResults = new PollResultBatch();
+    private long m_pendingResultsSince;
+
     /** {@inheritDoc} */
     @Override
     public void addConfigurationChangedListener(ConfigurationChangedListener l) {
@@ -511,9 +528,44 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
         if (result == null)
             return;
 
-        updateServicePollState(polledServiceId, result);
+        final boolean statusChanged = updateServicePollState(polledServiceId, result);
 
-        m_backEnd.reportResult(getMonitorId(), polledServiceId, result);
+        reportResult(polledServiceId, result, statusChanged);
+    }
+
+    private void reportResult(final Integer polledServiceId, final PollStatus result, final boolean statusChanged) {
+        synchronized (m_pendingResultsLock) {
+            if (m_pendingResults.isEmpty()) {
+                m_pendingResultsSince = System.currentTimeMillis();
+            }
+            m_pendingResults.add(polledServiceId, result);
+            if (!statusChanged && m_pendingResults.size() < REPORT_BATCH_SIZE && System.currentTimeMillis() - m_pendingResultsSince < REPORT_INTERVAL) {
+                return;
+            }
+        }
+        doReportPendingResults();
+    }
+
+    /**
+     * <p>doReportPendingResults</p>
+     *
+     * Sends the poll results waiting to be reported to the back end, in the
+     * order they were polled.
+     */
+    public void doReportPendingResults() {
+        synchronized (m_reportLock) {
+            final PollResultBatch results;
+            synchronized (m_pendingResultsLock) {
+                results = m_pendingResults;
+                m_pendingResults = new PollResultBatch();
+            }
+
+            if (results.size() == 1) {
+                m_backEnd.reportResult(getMonitorId(), results.getServiceId(0), results.getStatus(0));
+            } else if (!results.isEmpty()) {
+                m_backEnd.reportResults(getMonitorId(), results);
+            }
+        }
     }
 
     /**
@@ -534,6 +586,7 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
      * <p>doStop</p>
      */
     public void doStop() {
+        doReportPendingResults();
         m_backEnd.pollerStopping(getMonitorId());
     }
 
@@ -870,11 +923,16 @@ public class DefaultPollerFrontEnd implements PollerFrontEnd, InitializingBean,
         return m_state.isExitNecessary();
     }
 
-    private void updateServicePollState(final Integer polledServiceId, final PollStatus result) {
+    /**
+     * @return true unless the result has the status of the previous poll
+     */
+    private boolean updateServicePollState(final Integer polledServiceId, final PollStatus result) {
         final ServicePollState pollState = getServicePollState(polledServiceId);
-        if (pollState == null) return;
+        if (pollState == null) return true;
+        final PollStatus lastPoll = pollState.getLastPoll();
         pollState.setLastPoll(result);
         fireServicePollStateChanged(pollState.getPolledService(), pollState.getIndex());
+        return lastPoll == null || !lastPoll.equals(result);
     }
 
 }
@@ -42,6 +42,7 @@ import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.model.OnmsLocationMonitor.MonitorStatus;
 import org.opennms.netmgt.poller.DistributionContext;
 import org.opennms.netmgt.poller.ServiceMonitorLocator;
+import org.opennms.netmgt.poller.remote.PollResultBatch;
 import org.opennms.netmgt.poller.remote.PollerBackEnd;
 import org.opennms.netmgt.poller.remote.PollerConfiguration;
 import org.springframework.remoting.RemoteAccessException;
@@ -174,6 +175,19 @@ public class ServerUnreachableAdaptor implements PollerBackEnd {
         }
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public void reportResults(final int locationMonitorID, final PollResultBatch results) {
+        if (!m_serverUnresponsive) {
+            try {
+                m_remoteBackEnd.reportResults(locationMonitorID, results);
+            } catch (RemoteAccessException e) {
+                m_serverUnresponsive = true;
+                LOG.warn("Server is unable to respond due to the following exception.", e);
+            }
+        }
+    }
+
 
     /** {@inheritDoc} */
     @Override
@@ -247,5 +247,33 @@ public class Queued extends AbstractSpringContextJmxServiceDaemon<org.opennms.ne
         }
     }
 
+    /**
+     * <p>getShardOperationsPending</p>
+     *
+     * @return an array of long.
+     */
+    @Override
+    public long[] getShardOperationsPending() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getShardOperationsPending();
+        } else {
+            return new long[0];
+        }
+    }
+
+    /**
+     * <p>getShardFilesPending</p>
+     *
+     * @return an array of int.
+     */
+    @Override
+    public int[] getShardFilesPending() {
+        if (getStatsStatus()) {
+            return getRrdStrategy().getShardFilesPending();
+        } else {
+            return new int[0];
+        }
+    }
+
 
 }
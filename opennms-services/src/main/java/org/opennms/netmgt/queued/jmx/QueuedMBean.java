@@ -115,5 +115,19 @@ public interface QueuedMBean extends BaseOnmsMBean {
 	 * @return a long.
 	 */
 	public long getStartTime();
+	/**
+	 * Returns the number of operations waiting to be written in each
+	 * shard of the queue.
+	 *
+	 * @return an array of long.
+	 */
+	public long[] getShardOperationsPending();
+	/**
+	 * Returns the number of files with pending operations in each shard of
+	 * the queue.
+	 *
+	 * @return an array of int.
+	 */
+	public int[] getShardFilesPending();
 
 }
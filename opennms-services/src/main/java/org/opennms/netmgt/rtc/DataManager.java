@@ -45,6 +45,9 @@ import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.sql.DataSource;
 
@@ -83,6 +86,9 @@ import org.xml.sax.SAXException;
  * 'nodeGainedService' event would result in the 'nodeGainedService()' method
  * being called by the DataUpdater(s).
  *
+ * Updates take the write lock so only one of them changes the data at a time,
+ * queries take the read lock and run concurrently with each other.
+ *
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Nataraj </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  */
@@ -189,6 +195,19 @@ public class DataManager {
      */
     private RTCHashMap m_map;
 
+    /**
+     * Events are applied to the map and the categories one at a time under
+     * the write lock while any number of readers can compute the values
+     * under the read lock. The service times of each node have their own
+     * monitor on top of that, so that readers don't trip over each other
+     * when they expire outages.
+     */
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+    private final Lock m_readLock = m_lock.readLock();
+
+    private final Lock m_writeLock = m_lock.writeLock();
+
     /**
      * Get the 'ismanaged' status for the node ID, IP address combination
      * 
@@ -398,52 +417,56 @@ public class DataManager {
      * @param svcName
      *            the service name
      */
-    public synchronized void nodeGainedService(long nodeid, InetAddress ip, String svcName) {
-        //
-        // check the 'status' flag for the service
-        //
-        char svcStatus = getServiceStatus(nodeid, ip, svcName);
-
-        //
-        // Include only service status 'A' and where service is not SNMP
-        //
-        if (svcStatus != 'A') {
-            LOG.info("nodeGainedSvc: {}/{}/{} IGNORED because status is not active: {}", nodeid, ip, svcName, svcStatus);
-        } else {
-            LOG.debug("nodeGainedSvc: {}/{}/{}/{}", nodeid, ip, svcName, svcStatus);
-
-            // I ran into problems with adding new services, so I just ripped
-            // all that out and added
-            // a call to the rescan method. -T
-
-            // Hrm - since the rules can be based on things other than the
-            // service name
-            // we really need to rescan every time a new service is discovered.
-            // For
-            // example, if I have a category where the rule is "ipaddr =
-            // 10.1.1.1 & isHTTP"
-            // yet I only have ICMP in the service list, the node will not be
-            // added when
-            // HTTP is discovered, because it is not in the services list.
-            // 
-            // This is mainly useful when SNMP is discovered on a node.
-
-            LOG.debug("rtcN : Rescanning services on : {}", ip);
-            try {
-                rtcNodeRescan(nodeid);
-            } catch (FilterParseException ex) {
-                LOG.warn("Failed to unmarshall database config", ex);
-                throw new UndeclaredThrowableException(ex);
-            } catch (SQLException ex) {
-                LOG.warn("Failed to get database connection", ex);
-                throw new UndeclaredThrowableException(ex);
-            } catch (RTCException ex) {
-                LOG.warn("Failed to get database connection", ex);
-                throw new UndeclaredThrowableException(ex);
-            }
+    public void nodeGainedService(long nodeid, InetAddress ip, String svcName) {
+        m_writeLock.lock();
+        try {
+            //
+            // check the 'status' flag for the service
+            //
+            char svcStatus = getServiceStatus(nodeid, ip, svcName);
+
+            //
+            // Include only service status 'A' and where service is not SNMP
+            //
+            if (svcStatus != 'A') {
+                LOG.info("nodeGainedSvc: {}/{}/{} IGNORED because status is not active: {}", nodeid, ip, svcName, svcStatus);
+            } else {
+                LOG.debug("nodeGainedSvc: {}/{}/{}/{}", nodeid, ip, svcName, svcStatus);
+
+                // I ran into problems with adding new services, so I just ripped
+                // all that out and added
+                // a call to the rescan method. -T
+
+                // Hrm - since the rules can be based on things other than the
+                // service name
+                // we really need to rescan every time a new service is discovered.
+                // For
+                // example, if I have a category where the rule is "ipaddr =
+                // 10.1.1.1 & isHTTP"
+                // yet I only have ICMP in the service list, the node will not be
+                // added when
+                // HTTP is discovered, because it is not in the services list.
+                // 
+                // This is mainly useful when SNMP is discovered on a node.
+
+                LOG.debug("rtcN : Rescanning services on : {}", ip);
+                try {
+                    rtcNodeRescan(nodeid);
+                } catch (FilterParseException ex) {
+                    LOG.warn("Failed to unmarshall database config", ex);
+                    throw new UndeclaredThrowableException(ex);
+                } catch (SQLException ex) {
+                    LOG.warn("Failed to get database connection", ex);
+                    throw new UndeclaredThrowableException(ex);
+                } catch (RTCException ex) {
+                    LOG.warn("Failed to get database connection", ex);
+                    throw new UndeclaredThrowableException(ex);
+                }
 
+            }
+        } finally {
+            m_writeLock.unlock();
         }
-
     }
 
     /**
@@ -459,18 +482,22 @@ public class DataManager {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void nodeLostService(long nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a nodeLostService event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
-
-        // inform node
-        rtcN.nodeLostService(t);
+    public void nodeLostService(long nodeid, InetAddress ip, String svcName, long t) {
+        m_writeLock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a nodeLostService event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
+            // inform node
+            rtcN.nodeLostService(t);
+        } finally {
+            m_writeLock.unlock();
+        }
     }
 
     /**
@@ -483,9 +510,14 @@ public class DataManager {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void interfaceDown(long nodeid, InetAddress ip, long t) {
-        for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid, ip)) {
-            rtcN.nodeLostService(t);
+    public void interfaceDown(long nodeid, InetAddress ip, long t) {
+        m_writeLock.lock();
+        try {
+            for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid, ip)) {
+                rtcN.nodeLostService(t);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -497,9 +529,14 @@ public class DataManager {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void nodeDown(long nodeid, long t) {
-    	for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid)) {
-            rtcN.nodeLostService(t);
+    public void nodeDown(long nodeid, long t) {
+        m_writeLock.lock();
+        try {
+        	for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid)) {
+                rtcN.nodeLostService(t);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -511,9 +548,14 @@ public class DataManager {
      * @param t
      *            the time at which service was regained
      */
-    public synchronized void nodeUp(long nodeid, long t) {
-    	for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid)) {
-            rtcN.nodeRegainedService(t);
+    public void nodeUp(long nodeid, long t) {
+        m_writeLock.lock();
+        try {
+        	for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid)) {
+                rtcN.nodeRegainedService(t);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -527,9 +569,14 @@ public class DataManager {
      * @param t
      *            the time at which service was regained
      */
-    public synchronized void interfaceUp(long nodeid, InetAddress ip, long t) {
-        for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid, ip)) {
-            rtcN.nodeRegainedService(t);
+    public void interfaceUp(long nodeid, InetAddress ip, long t) {
+        m_writeLock.lock();
+        try {
+            for (RTCNode rtcN : (List<RTCNode>) m_map.getRTCNodes(nodeid, ip)) {
+                rtcN.nodeRegainedService(t);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -545,17 +592,22 @@ public class DataManager {
      * @param t
      *            the time at which service was regained
      */
-    public synchronized void nodeRegainedService(long nodeid, InetAddress ip, String svcName, long t) {
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            // oops! got a lost/regained service for a node that is not known?
-            LOG.info("Received a nodeRegainedService event for an unknown/irrelevant node: {}", key.toString());
-            return;
-        }
+    public void nodeRegainedService(long nodeid, InetAddress ip, String svcName, long t) {
+        m_writeLock.lock();
+        try {
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                // oops! got a lost/regained service for a node that is not known?
+                LOG.info("Received a nodeRegainedService event for an unknown/irrelevant node: {}", key.toString());
+                return;
+            }
 
-        // inform node
-        rtcN.nodeRegainedService(t);
+            // inform node
+            rtcN.nodeRegainedService(t);
+        } finally {
+            m_writeLock.unlock();
+        }
     }
 
     /**
@@ -568,51 +620,55 @@ public class DataManager {
      * @param svcName
      *            the service that was deleted
      */
-    public synchronized void serviceDeleted(long nodeid, InetAddress ip, String svcName) {
-        // create lookup key
-        RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
+    public void serviceDeleted(long nodeid, InetAddress ip, String svcName) {
+        m_writeLock.lock();
+        try {
+            // create lookup key
+            RTCNodeKey key = new RTCNodeKey(nodeid, ip, svcName);
 
-        // lookup the node
-        RTCNode rtcN = m_map.getRTCNode(key);
-        if (rtcN == null) {
-            LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
+            // lookup the node
+            RTCNode rtcN = m_map.getRTCNode(key);
+            if (rtcN == null) {
+                LOG.warn("Received a {} event for an unknown node: {}", EventConstants.SERVICE_DELETED_EVENT_UEI, key.toString());
 
-            return;
-        }
+                return;
+            }
 
-        //
-        // Go through from all the categories this node belongs to
-        // and delete the service
-        //
-        List<String> categories = rtcN.getCategories();
-        ListIterator<String> catIter = categories.listIterator();
-        while (catIter.hasNext()) {
-            String catlabel = (String) catIter.next();
-
-            RTCCategory cat = (RTCCategory) m_categories.get(catlabel);
-
-            // get nodes in this category
-            List<Long> catNodes = cat.getNodes();
-
-            // check if the category contains this node
-            Long tmpNodeid = Long.valueOf(rtcN.getNodeID());
-            int nIndex = catNodes.indexOf(tmpNodeid);
-            if (nIndex != -1) {
-                // remove from the category if it is the only service left.
-                if (m_map.getServiceCount(nodeid, catlabel) == 1) {
-                    catNodes.remove(nIndex);
-                    LOG.info("Removing node from category: {}", catlabel);
-                }
+            //
+            // Go through from all the categories this node belongs to
+            // and delete the service
+            //
+            List<String> categories = rtcN.getCategories();
+            ListIterator<String> catIter = categories.listIterator();
+            while (catIter.hasNext()) {
+                String catlabel = (String) catIter.next();
+
+                RTCCategory cat = (RTCCategory) m_categories.get(catlabel);
+
+                // get nodes in this category
+                List<Long> catNodes = cat.getNodes();
 
-                // let the node know that this category is out
-                catIter.remove();
+                // check if the category contains this node
+                Long tmpNodeid = Long.valueOf(rtcN.getNodeID());
+                int nIndex = catNodes.indexOf(tmpNodeid);
+                if (nIndex != -1) {
+                    // remove from the category if it is the only service left.
+                    if (m_map.getServiceCount(nodeid, catlabel) == 1) {
+                        catNodes.remove(nIndex);
+                        LOG.info("Removing node from category: {}", catlabel);
+                    }
+
+                    // let the node know that this category is out
+                    catIter.remove();
+                }
             }
-        }
 
-        // finally remove from map
-        
-        m_map.delete(rtcN);
+            // finally remove from map
 
+            m_map.delete(rtcN);
+        } finally {
+            m_writeLock.unlock();
+        }
     }
     
     /**
@@ -620,21 +676,24 @@ public class DataManager {
      *
      * @param nodeid a long.
      */
-    public synchronized void assetInfoChanged(long nodeid) {
+    public void assetInfoChanged(long nodeid) {
+        m_writeLock.lock();
         try {
-        	rtcNodeRescan(nodeid);
-        } catch (FilterParseException ex) {
-            LOG.warn("Failed to unmarshall database config", ex);
-            throw new UndeclaredThrowableException(ex);
-        } catch (SQLException ex) {
-            LOG.warn("Failed to get database connection", ex);
-            throw new UndeclaredThrowableException(ex);
-        } catch (RTCException ex) {
-            LOG.warn("Failed to get database connection", ex);
-            throw new UndeclaredThrowableException(ex);
+            try {
+            	rtcNodeRescan(nodeid);
+            } catch (FilterParseException ex) {
+                LOG.warn("Failed to unmarshall database config", ex);
+                throw new UndeclaredThrowableException(ex);
+            } catch (SQLException ex) {
+                LOG.warn("Failed to get database connection", ex);
+                throw new UndeclaredThrowableException(ex);
+            } catch (RTCException ex) {
+                LOG.warn("Failed to get database connection", ex);
+                throw new UndeclaredThrowableException(ex);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
-
-    	
     }
     
     /**
@@ -642,18 +701,23 @@ public class DataManager {
      *
      * @param nodeid a long.
      */
-    public synchronized void nodeCategoryMembershipChanged(long nodeid) {
+    public void nodeCategoryMembershipChanged(long nodeid) {
+        m_writeLock.lock();
         try {
-        	rtcNodeRescan(nodeid);
-        } catch (FilterParseException ex) {
-            LOG.warn("Failed to unmarshall database config", ex);
-            throw new UndeclaredThrowableException(ex);
-        } catch (SQLException ex) {
-            LOG.warn("Failed to get database connection", ex);
-            throw new UndeclaredThrowableException(ex);
-        } catch (RTCException ex) {
-            LOG.warn("Failed to get database connection", ex);
-            throw new UndeclaredThrowableException(ex);
+            try {
+            	rtcNodeRescan(nodeid);
+            } catch (FilterParseException ex) {
+                LOG.warn("Failed to unmarshall database config", ex);
+                throw new UndeclaredThrowableException(ex);
+            } catch (SQLException ex) {
+                LOG.warn("Failed to get database connection", ex);
+                throw new UndeclaredThrowableException(ex);
+            } catch (RTCException ex) {
+                LOG.warn("Failed to get database connection", ex);
+                throw new UndeclaredThrowableException(ex);
+            }
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -672,17 +736,20 @@ public class DataManager {
      *             if the database read or filtering the data against the
      *             category rule fails for some reason
      */
-    public synchronized void rtcNodeRescan(long nodeid) throws SQLException, FilterParseException, RTCException {
-    	
-    	for (Iterator<RTCCategory> it = m_categories.values().iterator(); it.hasNext();) {
-			RTCCategory cat = it.next();
-			cat.deleteNode(nodeid);
-		}
-    	
-    	m_map.deleteNode(nodeid);
-    	
-    	populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
-    	
+    public void rtcNodeRescan(long nodeid) throws SQLException, FilterParseException, RTCException {
+        m_writeLock.lock();
+        try {
+        	for (Iterator<RTCCategory> it = m_categories.values().iterator(); it.hasNext();) {
+    			RTCCategory cat = it.next();
+    			cat.deleteNode(nodeid);
+    		}
+
+        	m_map.deleteNode(nodeid);
+
+        	populateNodesFromDB("ifsvc.nodeid = ?", new Object[] { Long.valueOf(nodeid) });
+        } finally {
+            m_writeLock.unlock();
+        }
     }
 
     /**
@@ -705,33 +772,38 @@ public class DataManager {
      * @param newNodeId
      *            the node that the IP now belongs to
      */
-    public synchronized void interfaceReparented(InetAddress ip, long oldNodeId, long newNodeId) {
-        // get all RTCNodes with the IP/old node ID
-    	List<RTCNode> nodesList = m_map.getRTCNodes(oldNodeId, ip);
-        ListIterator<RTCNode> listIter = new LinkedList<RTCNode>(nodesList).listIterator();
-        while (listIter.hasNext()) {
-            RTCNode rtcN = listIter.next();
-
-            // remove the node with the old node id from the map
-            m_map.delete(rtcN);
-
-            // change the node ID on the RTCNode
-            rtcN.setNodeID(newNodeId);
-
-            // now add the node with the new node ID
-            m_map.add(rtcN);
-
-            // remove old node ID from the categories it belonged to
-            // and the new node ID
-            Iterator<String> catIter = rtcN.getCategories().listIterator();
-            while (catIter.hasNext()) {
-                String catlabel = catIter.next();
+    public void interfaceReparented(InetAddress ip, long oldNodeId, long newNodeId) {
+        m_writeLock.lock();
+        try {
+            // get all RTCNodes with the IP/old node ID
+        	List<RTCNode> nodesList = m_map.getRTCNodes(oldNodeId, ip);
+            ListIterator<RTCNode> listIter = new LinkedList<RTCNode>(nodesList).listIterator();
+            while (listIter.hasNext()) {
+                RTCNode rtcN = listIter.next();
+
+                // remove the node with the old node id from the map
+                m_map.delete(rtcN);
+
+                // change the node ID on the RTCNode
+                rtcN.setNodeID(newNodeId);
+
+                // now add the node with the new node ID
+                m_map.add(rtcN);
+
+                // remove old node ID from the categories it belonged to
+                // and the new node ID
+                Iterator<String> catIter = rtcN.getCategories().listIterator();
+                while (catIter.hasNext()) {
+                    String catlabel = catIter.next();
+
+                    RTCCategory rtcCat = m_categories.get(catlabel);
+                    rtcCat.deleteNode(oldNodeId);
+                    rtcCat.addNode(newNodeId);
+                }
 
-                RTCCategory rtcCat = m_categories.get(catlabel);
-                rtcCat.deleteNode(oldNodeId);
-                rtcCat.addNode(newNodeId);
             }
-
+        } finally {
+            m_writeLock.unlock();
         }
     }
 
@@ -748,8 +820,13 @@ public class DataManager {
      * @return the value(uptime) for the category in the last 'rollingWindow'
      *         starting at current time
      */
-    public synchronized double getValue(String catLabel, long curTime, long rollingWindow) {
-        return m_map.getValue(catLabel, curTime, rollingWindow);
+    public double getValue(String catLabel, long curTime, long rollingWindow) {
+        m_readLock.lock();
+        try {
+            return m_map.getValue(catLabel, curTime, rollingWindow);
+        } finally {
+            m_readLock.unlock();
+        }
     }
 
     /**
@@ -767,8 +844,13 @@ public class DataManager {
      * @return the value(uptime) for the node in the last 'rollingWindow'
      *         starting at current time in the context of the passed category
      */
-    public synchronized double getValue(long nodeid, String catLabel, long curTime, long rollingWindow) {
-        return m_map.getValue(nodeid, catLabel, curTime, rollingWindow);
+    public double getValue(long nodeid, String catLabel, long curTime, long rollingWindow) {
+        m_readLock.lock();
+        try {
+            return m_map.getValue(nodeid, catLabel, curTime, rollingWindow);
+        } finally {
+            m_readLock.unlock();
+        }
     }
 
     /**
@@ -782,8 +864,13 @@ public class DataManager {
      * @return the service count for the nodeid in the context of the passed
      *         category
      */
-    public synchronized int getServiceCount(long nodeid, String catLabel) {
-        return m_map.getServiceCount(nodeid, catLabel);
+    public int getServiceCount(long nodeid, String catLabel) {
+        m_readLock.lock();
+        try {
+            return m_map.getServiceCount(nodeid, catLabel);
+        } finally {
+            m_readLock.unlock();
+        }
     }
 
     /**
@@ -797,8 +884,13 @@ public class DataManager {
      * @return the service down count for the nodeid in the context of the
      *         passed category
      */
-    public synchronized int getServiceDownCount(long nodeid, String catLabel) {
-        return m_map.getServiceDownCount(nodeid, catLabel);
+    public int getServiceDownCount(long nodeid, String catLabel) {
+        m_readLock.lock();
+        try {
+            return m_map.getServiceDownCount(nodeid, catLabel);
+        } finally {
+            m_readLock.unlock();
+        }
     }
 
     /**
@@ -806,8 +898,19 @@ public class DataManager {
      *
      * @return the categories
      */
-    public synchronized Map<String, RTCCategory> getCategories() {
+    public Map<String, RTCCategory> getCategories() {
         return m_categories;
     }
 
+    /**
+     * Get the lock that keeps out the event updates while it is held. Take it
+     * to read several values that have to be consistent with each other, the
+     * single value getters take it themselves.
+     *
+     * @return a {@link java.util.concurrent.locks.Lock} object.
+     */
+    public Lock getReadLock() {
+        return m_readLock;
+    }
+
 }
@@ -186,25 +186,8 @@ public class RTCNode {
      * @param t
      *            the time at which service was lost
      */
-    public synchronized void nodeLostService(long t) {
-        // check if the last element in the times list is 'open'
-        // i.e. is waiting for a regained service - if yes,
-        // don't add anything
-
-        int listsize = m_svcTimesList.size();
-        if (listsize > 0) {
-            RTCNodeSvcTime stime = (RTCNodeSvcTime) m_svcTimesList.get(listsize - 1);
-
-            if (stime.getRegainedTime() == -1) {
-                // last event was a 'lostService'
-                // ignore this event
-                return;
-            }
-        }
-
-        // create a new entry
-        RTCNodeSvcTime newStime = new RTCNodeSvcTime(t);
-        m_svcTimesList.add(newStime);
+    public void nodeLostService(long t) {
+        m_svcTimesList.serviceLost(t);
     }
 
     /**
@@ -215,19 +198,8 @@ public class RTCNode {
      * @param t
      *            the time at which node regained service
      */
-    public synchronized void nodeRegainedService(long t) {
-        int listsize = m_svcTimesList.size();
-        if (listsize > 0) {
-            RTCNodeSvcTime stime = (RTCNodeSvcTime) m_svcTimesList.get(listsize - 1);
-
-            if (stime.getRegainedTime() != -1) {
-                // last event was a 'regainedService'
-                // ignore this event
-                return;
-            }
-
-            stime.setRegainedTime(t);
-        }
+    public void nodeRegainedService(long t) {
+        m_svcTimesList.serviceRegained(t);
     }
 
     /**
@@ -350,26 +322,7 @@ public class RTCNode {
      * @return if the service is currently up/down
      */
     public boolean isServiceCurrentlyDown() {
-        int size = m_svcTimesList.size();
-        if (size == 0) {
-            return false;
-        }
-
-        // else get last entry
-        RTCNodeSvcTime svctime = (RTCNodeSvcTime) m_svcTimesList.get(size - 1);
-        if (svctime.getRegainedTime() != -1) {
-            // node has regained service - so service not currently down
-            return false;
-        }
-
-        // getting here means the service losttime is the one to be returned
-        long svclosttime = svctime.getLostTime();
-        if (svclosttime == -1) {
-            // huh? how is it possible?
-            return false;
-        }
-
-        return true;
+        return m_svcTimesList.isServiceDown();
     }
 
     /** {@inheritDoc} */
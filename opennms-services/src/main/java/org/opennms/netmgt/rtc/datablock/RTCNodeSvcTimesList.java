@@ -25,7 +25,6 @@
  *     http://www.opennms.org/
  *     http://www.opennms.com/
  *******************************************************************************/
-
 package org.opennms.netmgt.rtc.datablock;
 
 import java.util.Iterator;
@@ -45,8 +44,16 @@ import org.opennms.netmgt.config.RTCConfigFactory;
  * window is calculated, the same calculations are not done on the node multiple
  * times.
  *
+ * The total down time of the closed outages in the list is kept up to date as
+ * outages are added, regained and expired, so that the down time for a window
+ * only has to look at the outages that straddle the start of the window and
+ * the currently open outage instead of walking the whole list.
+ *
  * 'Expired' outages are removed during 'add' and 'getDownTime' operations.
  *
+ * The list is modified and read through its own monitor, so different nodes
+ * can be updated and queried concurrently.
+ *
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Kumaraswamy </A>
  * @author <A HREF="http://www.opennms.org">OpenNMS.org </A>
  * @author <A HREF="mailto:sowmya@opennms.org">Sowmya Kumaraswamy </A>
@@ -62,11 +69,100 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      */
     private long m_outTimeSince;
 
+    /**
+     * The time up to which the current outtime 'm_outTime' is calculated
+     */
+    private long m_outTimeUntil;
+
     /**
      * The outage time computed since 'm_outTimeSince'
      */
     private long m_outTime;
 
+    /**
+     * The sum of the lost to regained time of all closed outages in the list
+     */
+    private long m_closedDownTime;
+
+    /**
+     * The number of open outages in the list
+     */
+    private int m_openCount;
+
+    /**
+     * Whether the outages have been added in the order of their lost time
+     */
+    private boolean m_ordered;
+
+    /**
+     * The modification count of the list when the totals above were last
+     * updated, used to pick up changes made through the plain list methods
+     */
+    private int m_countedModCount;
+
+    /**
+     * Default constructor.
+     */
+    public RTCNodeSvcTimesList() {
+        super();
+
+        m_outTimeSince = -1;
+
+        m_outTime = 0;
+
+        m_ordered = true;
+
+        m_countedModCount = modCount;
+    }
+
+    /**
+     * Recalculate the totals if the list was changed through the plain list
+     * methods since they were last updated.
+     */
+    private void recount() {
+        if (m_countedModCount == modCount) {
+            return;
+        }
+
+        m_closedDownTime = 0;
+        m_openCount = 0;
+        m_ordered = true;
+
+        long lastLostTime = Long.MIN_VALUE;
+        for (RTCNodeSvcTime svcTime : this) {
+            account(svcTime, 1);
+            if (svcTime.getLostTime() < lastLostTime) {
+                m_ordered = false;
+            }
+            lastLostTime = svcTime.getLostTime();
+        }
+
+        m_countedModCount = modCount;
+        m_outTimeSince = -1;
+    }
+
+    private void account(RTCNodeSvcTime svcTime, int sign) {
+        if (svcTime.getRegainedTime() == -1) {
+            m_openCount += sign;
+        } else {
+            m_closedDownTime += sign * (svcTime.getRegainedTime() - svcTime.getLostTime());
+        }
+    }
+
+    private void append(RTCNodeSvcTime svcTime) {
+        recount();
+
+        if (size() > 0 && getLast().getLostTime() > svcTime.getLostTime()) {
+            m_ordered = false;
+        }
+
+        addLast(svcTime);
+        account(svcTime, 1);
+
+        m_countedModCount = modCount;
+        m_outTimeSince = -1;
+    }
+
     /**
      * Remove expired outages. Remove all closed outages that are not in the the
      * last 'rollingWindow'
@@ -88,6 +184,8 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      *            the rolling window to use.
      */
     private void removeExpiredOutages(long curTime, long rollingWindow) {
+        recount();
+
         // the start of the rolling window
         long startTime = curTime - rollingWindow;
 
@@ -103,20 +201,12 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
 
             if (svcTime.hasExpired(startTime)) {
                 iter.remove();
+                account(svcTime, -1);
             }
 
         }
-    }
-
-    /**
-     * Default constructor.
-     */
-    public RTCNodeSvcTimesList() {
-        super();
-
-        m_outTimeSince = -1;
 
-        m_outTime = 0;
+        m_countedModCount = modCount;
     }
 
     /**
@@ -127,7 +217,7 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      * @param regainedtime
      *            time at which service was regained
      */
-    public void addSvcTime(long losttime, long regainedtime) {
+    public synchronized void addSvcTime(long losttime, long regainedtime) {
         // remove expired outages
         removeExpiredOutages();
 
@@ -137,7 +227,7 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
             return;
         }
 
-        addLast(new RTCNodeSvcTime(losttime, regainedtime));
+        append(new RTCNodeSvcTime(losttime, regainedtime));
     }
 
     /**
@@ -146,11 +236,77 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      * @param losttime
      *            time at which service was lost
      */
-    public void addSvcTime(long losttime) {
+    public synchronized void addSvcTime(long losttime) {
         // remove expired outages
         removeExpiredOutages();
 
-        addLast(new RTCNodeSvcTime(losttime));
+        append(new RTCNodeSvcTime(losttime));
+    }
+
+    /**
+     * Open a new outage at the end of the list unless the last outage is
+     * still open.
+     *
+     * @param losttime
+     *            time at which service was lost
+     */
+    public synchronized void serviceLost(long losttime) {
+        // check if the last element in the times list is 'open'
+        // i.e. is waiting for a regained service - if yes,
+        // don't add anything
+        if (size() > 0 && getLast().getRegainedTime() == -1) {
+            return;
+        }
+
+        append(new RTCNodeSvcTime(losttime));
+    }
+
+    /**
+     * Close the last outage in the list if it is still open.
+     *
+     * @param regainedtime
+     *            time at which service was regained
+     */
+    public synchronized void serviceRegained(long regainedtime) {
+        if (size() == 0) {
+            return;
+        }
+
+        recount();
+
+        RTCNodeSvcTime svcTime = getLast();
+        if (svcTime.getRegainedTime() != -1) {
+            // last event was a 'regainedService'
+            // ignore this event
+            return;
+        }
+
+        account(svcTime, -1);
+        svcTime.setRegainedTime(regainedtime);
+        account(svcTime, 1);
+
+        m_outTimeSince = -1;
+    }
+
+    /**
+     * Return if the last outage in the list is still open.
+     *
+     * @return if the service is currently down
+     */
+    public synchronized boolean isServiceDown() {
+        if (size() == 0) {
+            return false;
+        }
+
+        // else get last entry
+        RTCNodeSvcTime svcTime = getLast();
+        if (svcTime.getRegainedTime() != -1) {
+            // node has regained service - so service not currently down
+            return false;
+        }
+
+        // getting here means the service losttime is the one to be returned
+        return svcTime.getLostTime() != -1;
     }
 
     /**
@@ -163,27 +319,82 @@ public class RTCNodeSvcTimesList extends LinkedList<RTCNodeSvcTime> {
      *            the last window for which the downtime is to be calculated
      * @return total down time in service times in this list
      */
-    public long getDownTime(long curTime, long rollingWindow) {
+    public synchronized long getDownTime(long curTime, long rollingWindow) {
+        // remove expired outages
+        removeExpiredOutages(curTime, rollingWindow);
+
         // calculate effective start time
         long startTime = curTime - rollingWindow;
-        if (m_outTimeSince == startTime) {
+        if (m_outTimeSince == startTime && m_outTimeUntil == curTime) {
             return m_outTime;
         }
 
+        if (isIncremental(curTime)) {
+            m_outTime = getIncrementalDownTime(curTime, rollingWindow);
+        } else {
+            m_outTime = getFullDownTime(curTime, rollingWindow);
+        }
+
         m_outTimeSince = startTime;
+        m_outTimeUntil = curTime;
 
-        m_outTime = 0;
+        return m_outTime;
+    }
 
-        // remove expired outages
-        removeExpiredOutages(curTime, rollingWindow);
+    /**
+     * The running total can be used if the outages are in order, there is at
+     * most one open outage at the end of the list and none of the outages
+     * starts after 'curTime'.
+     */
+    private boolean isIncremental(long curTime) {
+        if (size() == 0) {
+            return true;
+        }
+
+        RTCNodeSvcTime last = getLast();
+        if (!m_ordered || last.getLostTime() > curTime) {
+            return false;
+        }
+
+        return m_openCount == 0 || (m_openCount == 1 && last.getRegainedTime() == -1);
+    }
+
+    private long getIncrementalDownTime(long curTime, long rollingWindow) {
+        long startTime = curTime - rollingWindow;
+        long downTime = m_closedDownTime;
+
+        // only the outages that started before the window need to be
+        // clipped, they are all at the head of the list
+        Iterator<RTCNodeSvcTime> iter = iterator();
+        while (iter.hasNext()) {
+            RTCNodeSvcTime svcTime = iter.next();
+            if (svcTime.getLostTime() >= startTime) {
+                break;
+            }
+
+            if (svcTime.getRegainedTime() != -1) {
+                downTime -= svcTime.getRegainedTime() - svcTime.getLostTime();
+                downTime += svcTime.getDownTime(curTime, rollingWindow);
+            }
+        }
+
+        if (m_openCount == 1) {
+            downTime += getLast().getDownTime(curTime, rollingWindow);
+        }
+
+        return downTime;
+    }
+
+    private long getFullDownTime(long curTime, long rollingWindow) {
+        long downTime = 0;
 
         Iterator<RTCNodeSvcTime> iter = iterator();
         while (iter.hasNext()) {
             RTCNodeSvcTime svcTime = (RTCNodeSvcTime) iter.next();
 
-            m_outTime += svcTime.getDownTime(curTime, rollingWindow);
+            downTime += svcTime.getDownTime(curTime, rollingWindow);
         }
 
-        return m_outTime;
+        return downTime;
     }
 }
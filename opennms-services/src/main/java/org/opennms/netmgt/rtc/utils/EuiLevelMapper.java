@@ -99,7 +99,8 @@ public class EuiLevelMapper extends Object {
 
         // get a handle to data
         DataManager rtcDataMgr = RTCManager.getDataManager();
-        synchronized (rtcDataMgr) {
+        rtcDataMgr.getReadLock().lock();
+        try {
             // category label
             levelCat.setCatlabel(rtcCat.getLabel());
 
@@ -126,7 +127,8 @@ public class EuiLevelMapper extends Object {
                 // add the node
                 levelCat.addNode(levelNode);
             }
-
+        } finally {
+            rtcDataMgr.getReadLock().unlock();
         }
 
         // add category
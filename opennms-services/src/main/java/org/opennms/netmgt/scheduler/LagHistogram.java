@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how late work started compared to the time it was due. Lags are
+ * counted in fixed buckets and the largest lag seen is kept. Recording is
+ * lock free, so it can be done from any number of threads.
+ */
+public class LagHistogram {
+    /**
+     * The upper bounds in milliseconds of the buckets of the histogram.
+     * The histogram has one more bucket for everything above the last bound.
+     */
+    private static final long[] BOUNDS = new long[] { 10, 50, 100, 250, 500, 1000, 5000, 30000 };
+
+    private final AtomicLongArray m_counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    private final AtomicLong m_max = new AtomicLong(0);
+
+    /**
+     * Counts a lag in its bucket.
+     *
+     * @param lag the lag in milliseconds.
+     */
+    public void record(final long lag) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && lag > BOUNDS[bucket]) {
+            bucket++;
+        }
+        m_counts.incrementAndGet(bucket);
+
+        long max = m_max.get();
+        while (lag > max && !m_max.compareAndSet(max, lag)) {
+            max = m_max.get();
+        }
+    }
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets returned by
+     * {@link #getCounts()}. The last bucket counts everything above the
+     * last bound.
+     *
+     * @return an array of long.
+     */
+    public long[] getBounds() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Returns the number of lags recorded per bucket.
+     *
+     * @return an array of long.
+     */
+    public long[] getCounts() {
+        final long[] counts = new long[m_counts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = m_counts.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * <p>getMax</p>
+     *
+     * @return the largest lag recorded in milliseconds.
+     */
+    public long getMax() {
+        return m_max.get();
+    }
+}
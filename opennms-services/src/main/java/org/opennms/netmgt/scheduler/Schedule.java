@@ -142,6 +142,17 @@ public class Schedule {
         m_schedulable.run();
     }
 
+    /**
+     * Runs a task once on the timer of this schedule, for work the
+     * schedulable has to finish outside of its scheduled runs.
+     *
+     * @param interval a long.
+     * @param task a {@link org.opennms.netmgt.scheduler.ReadyRunnable} object.
+     */
+    public void runLater(long interval, ReadyRunnable task) {
+        m_timer.schedule(interval, task);
+    }
+
     /**
      * <p>adjustSchedule</p>
      */
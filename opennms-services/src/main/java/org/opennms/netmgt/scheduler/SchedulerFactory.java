@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the {@link Scheduler} used by the daemons. The implementation is
+ * selected with the <code>org.opennms.netmgt.scheduler.implementation</code>
+ * system property, either <code>legacy</code> (the default) or
+ * <code>timingwheel</code>.
+ */
+public abstract class SchedulerFactory {
+    private static final Logger LOG = LoggerFactory.getLogger(SchedulerFactory.class);
+
+    /** Constant <code>IMPLEMENTATION_PROPERTY="org.opennms.netmgt.scheduler.implementation"</code> */
+    public static final String IMPLEMENTATION_PROPERTY = "org.opennms.netmgt.scheduler.implementation";
+
+    /** Constant <code>TICK_PROPERTY="org.opennms.netmgt.scheduler.tick"</code> */
+    public static final String TICK_PROPERTY = "org.opennms.netmgt.scheduler.tick";
+
+    /** Constant <code>WHEEL_SIZE_PROPERTY="org.opennms.netmgt.scheduler.wheelSize"</code> */
+    public static final String WHEEL_SIZE_PROPERTY = "org.opennms.netmgt.scheduler.wheelSize";
+
+    /** Constant <code>RETRY_PROPERTY="org.opennms.netmgt.scheduler.retry"</code> */
+    public static final String RETRY_PROPERTY = "org.opennms.netmgt.scheduler.retry";
+
+    /**
+     * Create a new, not yet started scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @return a {@link org.opennms.netmgt.scheduler.Scheduler} object.
+     */
+    public static Scheduler createScheduler(final String parent, final int maxSize) {
+        final String implementation = System.getProperty(IMPLEMENTATION_PROPERTY, "legacy");
+        if (!"timingwheel".equalsIgnoreCase(implementation)) {
+            if (!"legacy".equalsIgnoreCase(implementation)) {
+                LOG.warn("createScheduler: unknown scheduler implementation {}, using the legacy scheduler", implementation);
+            }
+            LOG.debug("createScheduler: using the legacy scheduler for {}", parent);
+            return new LegacyScheduler(parent, maxSize);
+        }
+
+        final long tick = Long.getLong(TICK_PROPERTY, TimingWheelScheduler.DEFAULT_TICK_MILLIS);
+        final int wheelSize = Integer.getInteger(WHEEL_SIZE_PROPERTY, TimingWheelScheduler.DEFAULT_WHEEL_SIZE);
+        final long retry = Long.getLong(RETRY_PROPERTY, TimingWheelScheduler.DEFAULT_RETRY_MILLIS);
+        LOG.debug("createScheduler: using a timing wheel scheduler for {} with tick={}ms, wheelSize={}, retry={}ms", parent, tick, wheelSize, retry);
+        return new TimingWheelScheduler(parent, maxSize, tick, wheelSize, retry);
+    }
+
+    /**
+     * Returns the upper bounds in milliseconds of the lag histogram buckets of
+     * a scheduler created by {@link #createScheduler(String, int)}.
+     *
+     * @param scheduler the scheduler, may be null.
+     * @return the bucket bounds, empty unless the scheduler is a
+     *         {@link TimingWheelScheduler}.
+     */
+    public static long[] getLagHistogramBounds(final Scheduler scheduler) {
+        return scheduler instanceof TimingWheelScheduler ? ((TimingWheelScheduler) scheduler).getLagHistogramBounds() : new long[0];
+    }
+
+    /**
+     * Returns the lag histogram of a scheduler created by
+     * {@link #createScheduler(String, int)}.
+     *
+     * @param scheduler the scheduler, may be null.
+     * @return the number of runnables started per lag bucket, empty unless
+     *         the scheduler is a {@link TimingWheelScheduler}.
+     */
+    public static long[] getLagHistogram(final Scheduler scheduler) {
+        return scheduler instanceof TimingWheelScheduler ? ((TimingWheelScheduler) scheduler).getLagHistogram() : new long[0];
+    }
+
+    /**
+     * Returns the largest lag of a scheduler created by
+     * {@link #createScheduler(String, int)}.
+     *
+     * @param scheduler the scheduler, may be null.
+     * @return the largest lag seen in milliseconds, 0 unless the scheduler
+     *         is a {@link TimingWheelScheduler}.
+     */
+    public static long getMaxLag(final Scheduler scheduler) {
+        return scheduler instanceof TimingWheelScheduler ? ((TimingWheelScheduler) scheduler).getMaxLag() : 0;
+    }
+}
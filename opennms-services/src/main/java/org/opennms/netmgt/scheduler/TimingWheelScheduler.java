@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.concurrent.LogPreservingThreadFactory;
+import org.opennms.core.fiber.PausableFiber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A scheduler that keeps its runnables in a hashed timing wheel instead of
+ * the per-interval FIFO queues of {@link LegacyScheduler}.
+ *
+ * The wheel is an array of buckets, each covering one tick. A runnable is
+ * hashed into the bucket of the tick in which it becomes due, together with
+ * the number of full turns of the wheel that have to pass first, so adding
+ * a runnable is O(1) no matter how many are scheduled. Once per tick the
+ * worker thread expires a single bucket and hands every runnable that is
+ * ready to the thread pool, so a runnable is started at most one tick after
+ * it is due.
+ *
+ * As with the legacy scheduler, a runnable is only started once its
+ * {@link ReadyRunnable#isReady()} returns true. Runnables that are due but
+ * not ready are checked again after the retry interval.
+ *
+ * The delay between the time a runnable was due and the time it was handed
+ * to the thread pool is recorded in a per-scheduler lag histogram, see
+ * {@link #getLagHistogram()}.
+ */
+public class TimingWheelScheduler implements Runnable, PausableFiber, Scheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    /** The default length of a tick in milliseconds. */
+    public static final long DEFAULT_TICK_MILLIS = 100;
+
+    /** The default number of buckets in the wheel. */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    /** The default time in milliseconds before a due but not ready runnable is checked again. */
+    public static final long DEFAULT_RETRY_MILLIS = 1000;
+
+    private static final class Entry {
+        private final ReadyRunnable m_runnable;
+        private final long m_timeToRun;
+        private final boolean m_recordLag;
+        private long m_remainingRounds;
+
+        Entry(final ReadyRunnable runnable, final long timeToRun, final boolean recordLag) {
+            m_runnable = runnable;
+            m_timeToRun = timeToRun;
+            m_recordLag = recordLag;
+        }
+    }
+
+    private final long m_tickMillis;
+
+    private final long m_retryMillis;
+
+    private final int m_mask;
+
+    private final List<LinkedList<Entry>> m_wheel;
+
+    /**
+     * The time at which tick 0 started.
+     */
+    private final long m_startTime;
+
+    /**
+     * The next tick to be expired by the worker thread. Tick n holds the
+     * runnables due in the tick before m_startTime + n * m_tickMillis.
+     */
+    private long m_tick;
+
+    /**
+     * The total number of elements currently scheduled.
+     */
+    private int m_scheduled;
+
+    /**
+     * The pool of threads that are used to executed the runnable instances
+     * scheduled by the class' instance.
+     */
+    private final ExecutorService m_runner;
+
+    /**
+     * The status for this fiber.
+     */
+    private int m_status;
+
+    /**
+     * The worker thread that executes this instance.
+     */
+    private Thread m_worker;
+
+    private final AtomicLong m_numTasksExecuted = new AtomicLong(0);
+
+    private final LagHistogram m_lagHistogram = new LagHistogram();
+
+    /**
+     * Constructs a new instance of the scheduler with the default tick
+     * length, wheel size and retry interval.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize) {
+        this(parent, maxSize, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE, DEFAULT_RETRY_MILLIS);
+    }
+
+    /**
+     * Constructs a new instance of the scheduler.
+     *
+     * @param parent
+     *            String prepended to "Scheduler" to create fiber name
+     * @param maxSize
+     *            The maximum size of the thread pool.
+     * @param tickMillis
+     *            The length of a tick in milliseconds. This is the
+     *            maximum time a runnable waits after it is due.
+     * @param wheelSize
+     *            The number of buckets in the wheel, rounded up to a power
+     *            of two.
+     * @param retryMillis
+     *            The time in milliseconds before a due runnable that is not
+     *            ready is checked again.
+     */
+    public TimingWheelScheduler(final String parent, final int maxSize, final long tickMillis, final int wheelSize, final long retryMillis) {
+        Assert.isTrue(tickMillis > 0, "tickMillis must be greater than 0");
+        Assert.isTrue(wheelSize > 0, "wheelSize must be greater than 0");
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        m_tickMillis = tickMillis;
+        m_retryMillis = Math.max(retryMillis, tickMillis);
+        m_mask = size - 1;
+        m_wheel = new ArrayList<LinkedList<Entry>>(size);
+        for (int i = 0; i < size; i++) {
+            m_wheel.add(new LinkedList<Entry>());
+        }
+
+        m_status = START_PENDING;
+        m_runner = Executors.newFixedThreadPool(maxSize, new LogPreservingThreadFactory(parent, maxSize, false));
+        m_startTime = getCurrentTime();
+        m_tick = 0;
+        m_scheduled = 0;
+        m_worker = null;
+    }
+
+    /**
+     * This method is used to schedule a ready runnable in the system. As
+     * with {@link LegacyScheduler#schedule(ReadyRunnable, long)} the
+     * runnable is started as soon as it is ready, the interval is not used.
+     *
+     * @param runnable
+     *            The element to run when it is ready.
+     * @param interval
+     *            Ignored.
+     */
+    public synchronized void schedule(final ReadyRunnable runnable, final long interval) {
+        LOG.debug("schedule: Adding ready runnable {} at interval {}", runnable, interval);
+        add(new Entry(runnable, getCurrentTime(), false));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void schedule(final long interval, final ReadyRunnable runnable) {
+        LOG.debug("schedule: Adding ready runnable {} in {}ms", runnable, interval);
+        add(new Entry(runnable, getCurrentTime() + Math.max(0, interval), true));
+    }
+
+    /**
+     * Hash the entry into the bucket of the tick in which it is due. Must be
+     * called holding the lock.
+     */
+    private void add(final Entry entry) {
+        if (m_scheduled == 0) {
+            // the worker stops advancing the wheel while it is empty, so
+            // catch up before hashing relative to the current tick
+            m_tick = Math.max(m_tick, (getCurrentTime() - m_startTime) / m_tickMillis);
+        }
+
+        // entries that are already due go into the next tick to be expired
+        final long dueTick = Math.max(m_tick, (entry.m_timeToRun - m_startTime + m_tickMillis - 1) / m_tickMillis);
+        entry.m_remainingRounds = (dueTick - m_tick) / m_wheel.size();
+        m_wheel.get((int) (dueTick & m_mask)).add(entry);
+
+        if (m_scheduled++ == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * <p>getCurrentTime</p>
+     *
+     * @return a long.
+     */
+    @Override
+    public long getCurrentTime() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * <p>start</p>
+     */
+    @Override
+    public synchronized void start() {
+        Assert.state(m_worker == null, "The fiber has already run or is running");
+
+        m_worker = new Thread(this, getName());
+        m_worker.start();
+        m_status = STARTING;
+
+        LOG.info("start: scheduler started");
+    }
+
+    /**
+     * <p>stop</p>
+     */
+    @Override
+    public synchronized void stop() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+
+        m_status = STOP_PENDING;
+        m_worker.interrupt();
+        m_runner.shutdown();
+
+        LOG.info("stop: scheduler stopped, maximum lag {}ms", m_lagHistogram.getMax());
+    }
+
+    /**
+     * <p>pause</p>
+     */
+    @Override
+    public synchronized void pause() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == PAUSED) {
+            return;
+        }
+
+        m_status = PAUSE_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>resume</p>
+     */
+    @Override
+    public synchronized void resume() {
+        Assert.state(m_worker != null, "The fiber has never been started");
+        Assert.state(m_status != STOPPED && m_status != STOP_PENDING, "The fiber is not running or a stop is pending");
+
+        if (m_status == RUNNING) {
+            return;
+        }
+
+        m_status = RESUME_PENDING;
+        notifyAll();
+    }
+
+    /**
+     * <p>getStatus</p>
+     *
+     * @return a int.
+     */
+    @Override
+    public synchronized int getStatus() {
+        if (m_worker != null && m_worker.isAlive() == false) {
+            m_status = STOPPED;
+        }
+        return m_status;
+    }
+
+    /**
+     * Returns the name of this fiber.
+     *
+     * @return a {@link java.lang.String} object.
+     */
+    @Override
+    public String getName() {
+        return m_runner.toString();
+    }
+
+    /**
+     * Returns total number of elements currently scheduled.
+     *
+     * @return the number of elements in the wheel
+     */
+    public synchronized int getScheduled() {
+        return m_scheduled;
+    }
+
+    /**
+     * Returns the pool of threads that are used to executed the runnable
+     * instances scheduled by the class' instance.
+     *
+     * @return thread pool
+     */
+    public ExecutorService getRunner() {
+        return m_runner;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getNumTasksExecuted() {
+        return m_numTasksExecuted.get();
+    }
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets returned by
+     * {@link #getLagHistogram()}. The last bucket of the histogram counts
+     * everything above the last bound.
+     *
+     * @return an array of long.
+     */
+    public long[] getLagHistogramBounds() {
+        return m_lagHistogram.getBounds();
+    }
+
+    /**
+     * Returns the number of runnables started per lag bucket, where the lag
+     * is the time between the time a runnable scheduled with
+     * {@link #schedule(long, ReadyRunnable)} was due and the time it was
+     * handed to the thread pool.
+     *
+     * @return an array of long.
+     */
+    public long[] getLagHistogram() {
+        return m_lagHistogram.getCounts();
+    }
+
+    /**
+     * <p>getMaxLag</p>
+     *
+     * @return the largest lag seen in milliseconds.
+     */
+    public long getMaxLag() {
+        return m_lagHistogram.getMax();
+    }
+
+    /**
+     * The main method of the scheduler. Once per tick this method removes
+     * the entries that are due from the current bucket of the wheel and
+     * hands the ones that are ready to the thread pool.
+     */
+    @Override
+    public void run() {
+        synchronized (this) {
+            m_status = RUNNING;
+        }
+
+        LOG.debug("run: scheduler running");
+
+        for (;;) {
+            final List<Entry> expired = new ArrayList<Entry>();
+
+            synchronized (this) {
+                if (m_status != RUNNING && m_status != PAUSED && m_status != PAUSE_PENDING && m_status != RESUME_PENDING) {
+                    LOG.debug("run: status = {}, time to exit", m_status);
+                    break;
+                }
+
+                // if paused or pause pending then block
+                try {
+                    while (m_status == PAUSE_PENDING || m_status == PAUSED) {
+                        if (m_status == PAUSE_PENDING) {
+                            LOG.debug("run: pausing.");
+                        }
+                        m_status = PAUSED;
+                        wait();
+                    }
+
+                    if (m_status == RESUME_PENDING) {
+                        LOG.debug("run: resuming.");
+                        m_status = RUNNING;
+                    }
+
+                    if (m_scheduled == 0) {
+                        LOG.debug("run: no ready runnables scheduled, waiting...");
+                        wait();
+                        continue;
+                    }
+
+                    // sleep until the runnables of the next tick are due
+                    final long sleep = m_startTime + m_tick * m_tickMillis - getCurrentTime();
+                    if (sleep > 0) {
+                        wait(sleep);
+                        continue;
+                    }
+                } catch (final InterruptedException e) {
+                    break;
+                }
+
+                final LinkedList<Entry> bucket = m_wheel.get((int) (m_tick & m_mask));
+                for (final Iterator<Entry> it = bucket.iterator(); it.hasNext();) {
+                    final Entry entry = it.next();
+                    if (entry.m_remainingRounds <= 0) {
+                        it.remove();
+                        expired.add(entry);
+                    } else {
+                        entry.m_remainingRounds--;
+                    }
+                }
+                m_scheduled -= expired.size();
+                m_tick++;
+            }
+
+            if (!dispatch(expired)) {
+                break;
+            }
+        }
+
+        LOG.debug("run: scheduler exiting, state = STOPPED");
+        synchronized (this) {
+            m_status = STOPPED;
+        }
+    }
+
+    /**
+     * Hand the ready entries to the thread pool and put the others back in
+     * the wheel. The isReady() checks run without holding the lock since
+     * they may be expensive.
+     *
+     * @return false if the thread pool has been shut down
+     */
+    private boolean dispatch(final List<Entry> expired) {
+        List<Entry> notReady = null;
+        for (final Entry entry : expired) {
+            if (entry.m_runnable.isReady()) {
+                LOG.debug("run: found ready runnable {}", entry.m_runnable);
+                if (entry.m_recordLag) {
+                    m_lagHistogram.record(Math.max(0, getCurrentTime() - entry.m_timeToRun));
+                }
+                m_numTasksExecuted.incrementAndGet();
+                try {
+                    m_runner.execute(entry.m_runnable);
+                } catch (final RejectedExecutionException e) {
+                    if (m_runner.isShutdown()) {
+                        return false;
+                    }
+                    throw new UndeclaredThrowableException(e);
+                }
+            } else {
+                if (notReady == null) {
+                    notReady = new ArrayList<Entry>();
+                }
+                notReady.add(entry);
+            }
+        }
+
+        if (notReady != null) {
+            synchronized (this) {
+                final long retryTime = getCurrentTime() + m_retryMillis;
+                for (final Entry entry : notReady) {
+                    // the runnable was due already, the time it waits on
+                    // itself to become ready is not scheduler lag
+                    add(new Entry(entry.m_runnable, retryTime, false));
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opennms.core.utils.StringUtils;
+import org.opennms.netmgt.collectd.PersistOperationBuilder;
+import org.opennms.netmgt.rrd.RrdDataSource;
+import org.opennms.netmgt.rrd.RrdUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the last values collectd wrote for the data sources threshd checks,
+ * so that {@link SnmpThresholder} and {@link JMXThresholder} don't have to
+ * read back from the RRD files what was just written to them.
+ *
+ * <p>Collectd publishes every update it persists, see
+ * {@link PersistOperationBuilder#commit()}.  Only the values of data sources
+ * a thresholder has asked for are kept: the first lookup of a data source
+ * subscribes to it and returns nothing, so the thresholder falls back to
+ * fetching the value from the RRD file until the next collection.  Counters
+ * are turned into rates the same way RRDtool does, gauges are kept as they
+ * are, and values outside of the minimum and maximum of the data source are
+ * unknown.</p>
+ *
+ * <p>The number of values kept is bounded, once the limit is reached values
+ * that have not been updated for longer than their heartbeat are dropped,
+ * and new data sources are left to the RRD fetch if that doesn't free up
+ * any room.</p>
+ *
+ * <p>The cache is disabled unless the
+ * <code>org.opennms.threshd.inlineValues</code> system property is set to
+ * <code>true</code>.</p>
+ */
+public class CollectedValueCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CollectedValueCache.class);
+
+    /** Constant <code>ENABLED_PROPERTY="org.opennms.threshd.inlineValues"</code> */
+    public static final String ENABLED_PROPERTY = "org.opennms.threshd.inlineValues";
+
+    /** Constant <code>MAX_ENTRIES_PROPERTY="org.opennms.threshd.inlineValues.maxEntries"</code> */
+    public static final String MAX_ENTRIES_PROPERTY = "org.opennms.threshd.inlineValues.maxEntries";
+
+    private static final double COUNTER32_WRAP = 4294967296.0;
+    private static final double COUNTER64_WRAP = 18446744073709551616.0;
+
+    private static CollectedValueCache s_instance = null;
+
+    private final boolean m_enabled;
+
+    private final int m_maxEntries;
+
+    private final Set<String> m_subscribed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final ConcurrentMap<String, Entry> m_entries = new ConcurrentHashMap<String, Entry>();
+
+    private final AtomicLong m_hits = new AtomicLong();
+    private final AtomicLong m_misses = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+
+    /**
+     * The last value of one data source.
+     */
+    private static class Entry {
+        private final boolean m_counter;
+        private final long m_heartbeat;
+        private final double m_min;
+        private final double m_max;
+        private double m_raw = Double.NaN;
+        private long m_rawTime = 0;
+        private double m_value = Double.NaN;
+        private long m_valueTime = 0;
+
+        private Entry(final boolean counter, final long heartbeat, final double min, final double max) {
+            m_counter = counter;
+            m_heartbeat = heartbeat;
+            m_min = min;
+            m_max = max;
+        }
+
+        private synchronized void update(final long timestamp, final double raw) {
+            if (!m_counter) {
+                m_value = raw;
+            } else if (Double.isNaN(raw) || Double.isNaN(m_raw) || timestamp <= m_rawTime || timestamp - m_rawTime > m_heartbeat) {
+                m_value = Double.NaN;
+            } else {
+                m_value = counterDelta(m_raw, raw) * 1000.0 / (timestamp - m_rawTime);
+            }
+            // like RRDtool, values outside of the data source's range are unknown
+            if (m_value < m_min || m_value > m_max) {
+                m_value = Double.NaN;
+            }
+            m_raw = raw;
+            m_rawTime = timestamp;
+            m_valueTime = timestamp;
+        }
+
+        private synchronized Double getValue(final long now, final long maxAge) {
+            if (m_valueTime == 0 || now - m_valueTime > maxAge) {
+                return null;
+            }
+            return m_value;
+        }
+
+        private synchronized boolean isExpired(final long now) {
+            return now - m_rawTime > m_heartbeat;
+        }
+    }
+
+    /**
+     * <p>getInstance</p>
+     *
+     * @return the cache shared by collectd and threshd
+     */
+    public static synchronized CollectedValueCache getInstance() {
+        if (s_instance == null) {
+            s_instance = new CollectedValueCache(Boolean.getBoolean(ENABLED_PROPERTY), Integer.getInteger(MAX_ENTRIES_PROPERTY, 500000));
+        }
+        return s_instance;
+    }
+
+    /**
+     * <p>Constructor for CollectedValueCache.</p>
+     *
+     * @param enabled whether values are kept at all
+     * @param maxEntries the maximum number of data source values kept
+     */
+    protected CollectedValueCache(final boolean enabled, final int maxEntries) {
+        m_enabled = enabled;
+        m_maxEntries = maxEntries;
+        if (enabled) {
+            LOG.info("Thresholding on collected values in memory, keeping up to {} values", maxEntries);
+        }
+    }
+
+    /**
+     * <p>isEnabled</p>
+     *
+     * @return true if thresholders should look up values here first
+     */
+    public boolean isEnabled() {
+        return m_enabled;
+    }
+
+    /**
+     * Called by collectd for every RRD update it persisted.
+     *
+     * @param directory the directory of the RRD file
+     * @param rrdName the name of the RRD file, without the extension
+     * @param dataSources the data sources of the file
+     * @param timestamp the time of the update in milliseconds
+     * @param values the values of the update, in the order of the data sources
+     */
+    public void publish(final String directory, final String rrdName, final List<RrdDataSource> dataSources, final long timestamp, final double[] values) {
+        if (!m_enabled || m_subscribed.isEmpty()) {
+            return;
+        }
+
+        final String path = directory + File.separator + rrdName;
+        for (int i = 0; i < dataSources.size() && i < values.length; i++) {
+            final RrdDataSource dataSource = dataSources.get(i);
+            if (!m_subscribed.contains(dataSource.getName())) {
+                continue;
+            }
+
+            final String key = getKey(path, dataSource.getName());
+            Entry entry = m_entries.get(key);
+            if (entry == null) {
+                if (m_entries.size() >= m_maxEntries && !purge(timestamp)) {
+                    m_dropped.incrementAndGet();
+                    continue;
+                }
+                final Entry newEntry = new Entry("COUNTER".equals(dataSource.getType()), dataSource.getHeartBeat() * 1000L,
+                                                 parseLimit(dataSource.getMin(), Double.NEGATIVE_INFINITY), parseLimit(dataSource.getMax(), Double.POSITIVE_INFINITY));
+                entry = m_entries.putIfAbsent(key, newEntry);
+                if (entry == null) {
+                    entry = newEntry;
+                }
+            }
+            entry.update(timestamp, values[i]);
+        }
+    }
+
+    /**
+     * Look up the last value collected for a data source, in place of
+     * fetching the last value from the RRD file.
+     *
+     * @param rrdFile the RRD file, with its extension
+     * @param datasource the data source in the file
+     * @param interval the thresholding interval in milliseconds
+     * @param range how much older than the interval the value may be, in milliseconds
+     * @return the value, NaN if it is unknown, or null if the value has to be
+     *         fetched from the RRD file
+     */
+    public Double getLastValue(final File rrdFile, final String datasource, final long interval, final long range) {
+        if (!m_enabled) {
+            return null;
+        }
+
+        final String dsName = StringUtils.truncate(datasource, PersistOperationBuilder.MAX_DS_NAME_LENGTH);
+        if (m_subscribed.add(dsName)) {
+            LOG.debug("getLastValue: subscribed to collected values for data source {}", dsName);
+        }
+
+        String path = rrdFile.getAbsolutePath();
+        if (path.endsWith(RrdUtils.getExtension())) {
+            path = path.substring(0, path.length() - RrdUtils.getExtension().length());
+        }
+
+        final Entry entry = m_entries.get(getKey(path, dsName));
+        final Double value = entry == null ? null : entry.getValue(System.currentTimeMillis(), interval + range);
+        if (value == null) {
+            m_misses.incrementAndGet();
+        } else {
+            m_hits.incrementAndGet();
+        }
+        return value;
+    }
+
+    private boolean purge(final long now) {
+        synchronized (m_entries) {
+            if (m_entries.size() < m_maxEntries) {
+                return true;
+            }
+            for (final Iterator<Map.Entry<String, Entry>> it = m_entries.entrySet().iterator(); it.hasNext();) {
+                if (it.next().getValue().isExpired(now)) {
+                    it.remove();
+                }
+            }
+            final boolean room = m_entries.size() < m_maxEntries;
+            if (!room) {
+                LOG.warn("purge: all {} collected values are current, the values of new data sources will be fetched from the RRD files. Consider raising {}.", m_entries.size(), MAX_ENTRIES_PROPERTY);
+            }
+            return room;
+        }
+    }
+
+    /**
+     * Parse the minimum or maximum of a data source, "U" or anything that
+     * is not a number means there is no limit.
+     */
+    static double parseLimit(final String limit, final double none) {
+        if (limit == null || "U".equals(limit)) {
+            return none;
+        }
+        try {
+            return Double.parseDouble(limit);
+        } catch (final NumberFormatException e) {
+            return none;
+        }
+    }
+
+    private static String getKey(final String path, final String dsName) {
+        return path + '\u0000' + dsName;
+    }
+
+    /**
+     * The difference between two counter values, accounting for the
+     * counter wrapping like RRDtool does.
+     */
+    static double counterDelta(final double previous, final double current) {
+        double delta = current - previous;
+        if (delta < 0) {
+            delta += COUNTER32_WRAP;
+            if (delta < 0) {
+                delta += COUNTER64_WRAP - COUNTER32_WRAP;
+            }
+        }
+        return delta;
+    }
+
+    /**
+     * @return the number of lookups answered from memory
+     */
+    public long getHits() {
+        return m_hits.get();
+    }
+
+    /**
+     * @return the number of lookups that had to fall back to the RRD files
+     */
+    public long getMisses() {
+        return m_misses.get();
+    }
+
+    /**
+     * @return the number of values not kept because the cache was full
+     */
+    public long getDropped() {
+        return m_dropped.get();
+    }
+
+    /**
+     * @return the number of values kept
+     */
+    public int size() {
+        return m_entries.size();
+    }
+}
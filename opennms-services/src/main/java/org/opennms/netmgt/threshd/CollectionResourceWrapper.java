@@ -33,7 +33,6 @@ import java.io.FileNotFoundException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.opennms.netmgt.collectd.AliasedResource;
 import org.opennms.netmgt.collectd.IfInfo;
@@ -72,32 +71,10 @@ public class CollectionResourceWrapper {
     private final CollectionResource m_resource;
     private final Map<String, CollectionAttribute> m_attributes;
     
-    /**
-     * Keeps track of both the Double value, and when it was collected, for the static cache of attributes
-     * 
-     * This is necessary for the *correct* calculation of Counter rates, across variable collection times and possible
-     * collection failures (see NMS-4244)
-     * 
-     * Just a holder class for two associated values; no need for the formality of accessors
-     */
-    static class CacheEntry {
-        final Date timestamp;
-        final Double value;
-        public CacheEntry(final Date timestamp, final Double value) {
-            if (timestamp == null) {
-                throw new IllegalArgumentException("Illegal null timestamp in cache value");
-            } else if (value == null) {
-                throw new IllegalArgumentException("Illegal null value in cache value");
-            }
-            this.timestamp = timestamp;
-            this.value = value;
-        }
-    }
-
     /*
      * Holds last values for counter attributes (in order to calculate delta)
      */
-    static final ConcurrentHashMap<String, CacheEntry> s_cache = new ConcurrentHashMap<String,CacheEntry>();
+    static final CounterRateCache s_cache = new CounterRateCache();
     
     /*
      * To avoid update static cache on every call of getAttributeValue.
@@ -167,6 +144,15 @@ public class CollectionResourceWrapper {
         }
     }    
     
+    /**
+     * <p>getCounterRateCache</p>
+     *
+     * @return the cache holding the last values of the counter attributes
+     */
+    public static CounterRateCache getCounterRateCache() {
+        return s_cache;
+    }
+
     /**
      * <p>getNodeId</p>
      *
@@ -362,79 +348,35 @@ public class CollectionResourceWrapper {
             LOG.info("getAttributeValue: can't find numeric value for {} on {}", ds, m_resource);
             return null;
         }
-        // Generating a unique ID for the node/resourceType/resource/metric combination.
-        String id =  "node[" + m_nodeId + "].resourceType[" + m_resource.getResourceTypeName() + "].instance[" + m_resource.getLabel() + "].metric[" + ds + "]";
         Double current = null;
         try {
             current = Double.parseDouble(numValue);
         } catch (NumberFormatException e) {
-            LOG.error("{} does not have a numeric value: {}", id, numValue);
+            LOG.error("{} on {} does not have a numeric value: {}", ds, m_resource, numValue);
             return null;
         }
         if (m_attributes.get(ds).getType().toLowerCase().startsWith("counter") == false) {
-            LOG.debug("getAttributeValue: id={}, value= {}", id, current);
+            LOG.debug("getAttributeValue: {} on {}, value= {}", ds, m_resource, current);
             return current;
         } else {
-            return getCounterValue(id, current);
+            return getCounterValue(ds, current);
         }
     }
 
     /*
      * This will return the rate based on configured collection step
      */
-    private Double getCounterValue(String id, Double current) {
+    private Double getCounterValue(String ds, Double current) {
         synchronized (m_localCache) {
-
-        if (m_localCache.containsKey(id) == false) {
-            // Atomically replace the CacheEntry with the new value
-            CacheEntry last = s_cache.put(id, new CacheEntry(m_collectionTimestamp, current));
-            LOG.debug("getCounterValue: id={}, last={}, current={}", id, (last==null ? last : last.value +"@"+ last.timestamp), current);
-            if (last == null) {
-                m_localCache.put(id, Double.NaN);
-                LOG.info("getCounterValue: unknown last value for {}, ignoring current", id);
-            } else {                
-                Double delta = current.doubleValue() - last.value.doubleValue();
-                // wrapped counter handling(negative delta), rrd style
-                if (delta < 0) {
-                    double newDelta = delta.doubleValue();
-                    // 2-phase adjustment method
-                    // try 32-bit adjustment
-                    newDelta += Math.pow(2, 32);
-                    if (newDelta < 0) {
-                        // try 64-bit adjustment
-                        newDelta += Math.pow(2, 64) - Math.pow(2, 32);
-                    }
-                    LOG.info("getCounterValue: {}(counter) wrapped counter adjusted last={}@{}, current={}, olddelta={}, newdelta={}", id, last.value, last.timestamp, current, delta, newDelta);
-                    delta = newDelta;
-                }
-                // Get the interval between when this current collection was taken, and the last time this
-                // value was collected (and had a counter rate calculated for it).
-                // If the interval is zero, than the current rate must returned as 0.0 since there can be 
-                // no delta across a time interval of zero.
-                long interval = ( m_collectionTimestamp.getTime() - last.timestamp.getTime() ) / 1000;
-                if (interval > 0) {
-                    final Double value = (delta/interval);
-                    LOG.debug("getCounterValue: id={}, value={}, delta={}, interval={}", id, value, delta, interval);
-                    m_localCache.put(id, value);
-                } else {
-                    LOG.info("getCounterValue: invalid zero-length rate interval for {}, returning rate of zero", id);
-                    m_localCache.put(id, 0.0);
-                    // Restore the original value inside the static cache
-                    s_cache.put(id, last);
-                }
+            Double value = m_localCache.get(ds);
+            if (value == null) {
+                // The wrapper is created for one resource and one collection, so the data source
+                // alone identifies the counter here; the static cache calculates the rate only once
+                value = s_cache.getRate(m_nodeId, m_resource.getResourceTypeName(), m_resource.getLabel(), ds, m_collectionTimestamp.getTime(), current.doubleValue(), m_repository == null ? 0 : m_repository.getStep());
+                m_localCache.put(ds, value);
             }
-        }
-        Double value = m_localCache.get(id);
-        // This is just a sanity check, we should never have a value of null for the value at this point
-        if (value == null) {
-            LOG.error("getCounterValue: value was not calculated correctly for {}, using NaN", id);
-            m_localCache.put(id, Double.NaN);
-            return Double.NaN;
-        } else {
             return value;
         }
-
-        }
     }
 
     /**
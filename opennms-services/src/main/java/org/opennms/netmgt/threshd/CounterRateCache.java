@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds the last value of every counter attribute that is thresholded, in
+ * order to calculate the rate of the counter on the next collection (see
+ * NMS-4244).
+ *
+ * <p>A counter is identified by its node, the 64-bit hash of its resource
+ * type and instance, and an id for the attribute name, so no strings are
+ * kept per counter.  The keys, timestamps and values are held in primitive
+ * arrays forming open addressing hash tables, split in segments with a lock
+ * each.</p>
+ *
+ * <p>A value expires {@value #TTL_INTERVALS} collection intervals after it
+ * was collected, and is then treated as unknown.  Expired values, such as
+ * the ones of deleted nodes or reindexed interfaces, are removed from the
+ * tables as the collections go on.</p>
+ */
+public class CounterRateCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CounterRateCache.class);
+
+    /** The number of collection intervals a value is kept */
+    public static final int TTL_INTERVALS = 3;
+
+    /** The collection interval used when the repository has no step */
+    public static final long DEFAULT_STEP_MILLIS = 300000;
+
+    private static final long SWEEP_INTERVAL_MILLIS = 60000;
+
+    private static final int SEGMENTS = 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final double COUNTER32_WRAP = Math.pow(2, 32);
+    private static final double COUNTER64_WRAP = Math.pow(2, 64);
+
+    private final Segment[] m_segments = new Segment[SEGMENTS];
+
+    private final ConcurrentMap<String, Integer> m_attributeIds = new ConcurrentHashMap<String, Integer>();
+
+    private final AtomicLong m_evictions = new AtomicLong();
+
+    /**
+     * One open addressing hash table with linear probing.  All of the
+     * arrays are indexed by slot, a slot is in use if its
+     * <code>m_used</code> flag is set.
+     */
+    private final class Segment {
+        private long[] m_resources;
+        private long[] m_nodeAttributes;
+        private long[] m_timestamps;
+        private long[] m_expires;
+        private double[] m_values;
+        private boolean[] m_used;
+        private int m_size = 0;
+        private long m_lastSweep = 0;
+
+        private Segment() {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        private void allocate(final int capacity) {
+            m_resources = new long[capacity];
+            m_nodeAttributes = new long[capacity];
+            m_timestamps = new long[capacity];
+            m_expires = new long[capacity];
+            m_values = new double[capacity];
+            m_used = new boolean[capacity];
+        }
+
+        private int slot(final long resource, final long nodeAttribute) {
+            return mix(resource ^ (nodeAttribute * 0x9E3779B97F4A7C15L)) & (m_used.length - 1);
+        }
+
+        /**
+         * @return the slot of the key, or the complement of the free slot it
+         *         would go into
+         */
+        private int find(final long resource, final long nodeAttribute) {
+            final int mask = m_used.length - 1;
+            int i = slot(resource, nodeAttribute);
+            while (m_used[i]) {
+                if (m_resources[i] == resource && m_nodeAttributes[i] == nodeAttribute) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return ~i;
+        }
+
+        private void put(final long resource, final long nodeAttribute, final long timestamp, final long expires, final double value) {
+            int i = find(resource, nodeAttribute);
+            if (i < 0) {
+                if ((m_size + 1) * 2 > m_used.length) {
+                    resize(m_used.length * 2);
+                    i = find(resource, nodeAttribute);
+                }
+                i = ~i;
+                m_used[i] = true;
+                m_resources[i] = resource;
+                m_nodeAttributes[i] = nodeAttribute;
+                m_size++;
+            }
+            m_timestamps[i] = timestamp;
+            m_expires[i] = expires;
+            m_values[i] = value;
+        }
+
+        private void resize(final int capacity) {
+            final long[] resources = m_resources;
+            final long[] nodeAttributes = m_nodeAttributes;
+            final long[] timestamps = m_timestamps;
+            final long[] expires = m_expires;
+            final double[] values = m_values;
+            final boolean[] used = m_used;
+
+            allocate(capacity);
+            m_size = 0;
+            for (int i = 0; i < used.length; i++) {
+                if (used[i]) {
+                    put(resources[i], nodeAttributes[i], timestamps[i], expires[i], values[i]);
+                }
+            }
+        }
+
+        /**
+         * Remove the entry in the slot, moving back the entries after it
+         * that would otherwise no longer be found.
+         */
+        private void remove(int i) {
+            final int mask = m_used.length - 1;
+            m_used[i] = false;
+            m_size--;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (!m_used[j]) {
+                    return;
+                }
+                final int k = slot(m_resources[j], m_nodeAttributes[j]);
+                if (i <= j ? (i < k && k <= j) : (i < k || k <= j)) {
+                    continue;
+                }
+                m_resources[i] = m_resources[j];
+                m_nodeAttributes[i] = m_nodeAttributes[j];
+                m_timestamps[i] = m_timestamps[j];
+                m_expires[i] = m_expires[j];
+                m_values[i] = m_values[j];
+                m_used[i] = true;
+                m_used[j] = false;
+                i = j;
+            }
+        }
+
+        private void sweep(final long now) {
+            if (now - m_lastSweep < SWEEP_INTERVAL_MILLIS) {
+                return;
+            }
+            m_lastSweep = now;
+
+            int evicted = 0;
+            int i = 0;
+            while (i < m_used.length) {
+                if (m_used[i] && m_expires[i] < now) {
+                    // an entry may have moved into this slot, look at it again
+                    remove(i);
+                    evicted++;
+                } else {
+                    i++;
+                }
+            }
+            if (evicted > 0) {
+                m_evictions.addAndGet(evicted);
+                if (m_size * 8 < m_used.length && m_used.length > INITIAL_CAPACITY) {
+                    resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(m_size * 4)));
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Constructor for CounterRateCache.</p>
+     */
+    public CounterRateCache() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            m_segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Calculate the rate of a counter from the value collected last time,
+     * and keep the current value for the next collection.
+     *
+     * @param nodeId the node of the resource
+     * @param resourceType the type of the resource
+     * @param instance the instance of the resource
+     * @param attribute the name of the counter attribute
+     * @param timestamp when the value was collected
+     * @param value the current value of the counter
+     * @param step the collection interval in seconds, 0 if unknown
+     * @return the rate per second, or NaN if there is no earlier value
+     */
+    public double getRate(final int nodeId, final String resourceType, final String instance, final String attribute, final long timestamp, final double value, final int step) {
+        final long resource = hashResource(resourceType, instance);
+        final long nodeAttribute = ((long) nodeId << 32) | (getAttributeId(attribute) & 0xFFFFFFFFL);
+        final long expires = timestamp + TTL_INTERVALS * (step > 0 ? step * 1000L : DEFAULT_STEP_MILLIS);
+        final Segment segment = m_segments[mix(resource + nodeAttribute) & (SEGMENTS - 1)];
+
+        final long lastTimestamp;
+        final double lastValue;
+        synchronized (segment) {
+            segment.sweep(timestamp);
+
+            final int i = segment.find(resource, nodeAttribute);
+            if (i < 0 || segment.m_expires[i] < timestamp) {
+                segment.put(resource, nodeAttribute, timestamp, expires, value);
+                LOG.info("getRate: unknown last value for node {} resource {}[{}] attribute {}, ignoring current", nodeId, resourceType, instance, attribute);
+                return Double.NaN;
+            }
+
+            lastTimestamp = segment.m_timestamps[i];
+            lastValue = segment.m_values[i];
+
+            // Get the interval between when this current collection was taken, and the last time this
+            // value was collected (and had a counter rate calculated for it).
+            // If the interval is zero, than the current rate must returned as 0.0 since there can be
+            // no delta across a time interval of zero, and the last value is kept.
+            final long interval = (timestamp - lastTimestamp) / 1000;
+            if (interval <= 0) {
+                LOG.info("getRate: invalid zero-length rate interval for node {} resource {}[{}] attribute {}, returning rate of zero", nodeId, resourceType, instance, attribute);
+                return 0.0;
+            }
+            segment.m_timestamps[i] = timestamp;
+            segment.m_expires[i] = expires;
+            segment.m_values[i] = value;
+
+            double delta = value - lastValue;
+            // wrapped counter handling(negative delta), rrd style
+            if (delta < 0) {
+                double newDelta = delta;
+                // 2-phase adjustment method
+                // try 32-bit adjustment
+                newDelta += COUNTER32_WRAP;
+                if (newDelta < 0) {
+                    // try 64-bit adjustment
+                    newDelta += COUNTER64_WRAP - COUNTER32_WRAP;
+                }
+                LOG.info("getRate: wrapped counter adjusted for node {} resource {}[{}] attribute {}: last={}@{}, current={}, olddelta={}, newdelta={}", nodeId, resourceType, instance, attribute, lastValue, lastTimestamp, value, delta, newDelta);
+                delta = newDelta;
+            }
+            final double rate = delta / interval;
+            LOG.debug("getRate: node {} resource {}[{}] attribute {}: value={}, delta={}, interval={}", nodeId, resourceType, instance, attribute, rate, delta, interval);
+            return rate;
+        }
+    }
+
+    /**
+     * <p>getValue</p>
+     *
+     * @return the last value kept for the counter, or null if there is none
+     */
+    public Double getValue(final int nodeId, final String resourceType, final String instance, final String attribute) {
+        final long resource = hashResource(resourceType, instance);
+        final long nodeAttribute = ((long) nodeId << 32) | (getAttributeId(attribute) & 0xFFFFFFFFL);
+        final Segment segment = m_segments[mix(resource + nodeAttribute) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            final int i = segment.find(resource, nodeAttribute);
+            return i < 0 ? null : Double.valueOf(segment.m_values[i]);
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void clear() {
+        for (final Segment segment : m_segments) {
+            synchronized (segment) {
+                segment.allocate(INITIAL_CAPACITY);
+                segment.m_size = 0;
+                segment.m_lastSweep = 0;
+            }
+        }
+    }
+
+    /**
+     * <p>size</p>
+     *
+     * @return the number of counter values kept
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : m_segments) {
+            synchronized (segment) {
+                size += segment.m_size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * <p>getEvictions</p>
+     *
+     * @return the number of expired counter values removed
+     */
+    public long getEvictions() {
+        return m_evictions.get();
+    }
+
+    private int getAttributeId(final String attribute) {
+        final Integer id = m_attributeIds.get(attribute);
+        if (id != null) {
+            return id;
+        }
+        synchronized (m_attributeIds) {
+            final Integer existing = m_attributeIds.get(attribute);
+            if (existing != null) {
+                return existing;
+            }
+            final int newId = m_attributeIds.size();
+            m_attributeIds.put(attribute, newId);
+            return newId;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the resource type and instance.
+     */
+    static long hashResource(final String resourceType, final String instance) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, resourceType);
+        hash = (hash ^ '/') * 0x100000001b3L;
+        return hash(hash, instance);
+    }
+
+    private static long hash(long hash, final String value) {
+        if (value == null) {
+            return (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int mix(final long key) {
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+}
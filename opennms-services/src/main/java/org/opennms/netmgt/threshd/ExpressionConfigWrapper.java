@@ -30,13 +30,14 @@ package org.opennms.netmgt.threshd;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.jexl2.ExpressionImpl;
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
-import org.apache.commons.jexl2.MapContext;
 import org.opennms.netmgt.config.threshd.Expression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,16 +51,31 @@ import org.slf4j.LoggerFactory;
 public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
     private static final Logger LOG = LoggerFactory.getLogger(ExpressionConfigWrapper.class);
 
+    /**
+     * The engine is thread safe once it is set up, so all of the expressions
+     * share one, along with its introspection cache.
+     */
+    private static final JexlEngine JEXL_ENGINE = new JexlEngine();
+
+    private static final MathBinding MATH_BINDING = new MathBinding();
+
     private final Expression m_expression;
     private final Collection<String> m_datasources;
+
+    /**
+     * The expression parsed once up front.  A parsed JEXL expression can be
+     * evaluated by several threads at the same time.
+     */
+    private final org.apache.commons.jexl2.Expression m_parsedExpression;
+
     public ExpressionConfigWrapper(Expression expression) throws ThresholdExpressionException {
         super(expression);
         m_expression = expression;
 
-        JexlEngine expressionParser = new JexlEngine();
         m_datasources = new ArrayList<String>();
         try {
-            ExpressionImpl e = (ExpressionImpl) expressionParser.createExpression(m_expression.getExpression());
+            ExpressionImpl e = (ExpressionImpl) JEXL_ENGINE.createExpression(m_expression.getExpression());
+            m_parsedExpression = e;
             LOG.trace("List of Variables on the Expression: {}", e.getVariables());
             for (List<String> list : e.getVariables()) { // Requires JEXL 2.1.x
                 if (list.get(0).equalsIgnoreCase("math")) {
@@ -140,17 +156,53 @@ public class ExpressionConfigWrapper extends BaseThresholdDefConfigWrapper {
         public float ulp(float a) { return Math.ulp(a); }
     }
 
+    /**
+     * Gives the expression access to the values of the data sources, without
+     * copying them into a new map for every evaluation.  The data sources are
+     * available by name and through the <code>datasources</code> map (to
+     * work around NMS-5019), next to the <code>math</code> functions.
+     */
+    private static class ValuesContext implements JexlContext {
+        private final Map<String, Double> m_values;
+        private Map<String, Object> m_assigned = null;
+
+        private ValuesContext(final Map<String, Double> values) {
+            m_values = values;
+        }
+
+        @Override
+        public Object get(final String name) {
+            if (m_assigned != null && m_assigned.containsKey(name)) {
+                return m_assigned.get(name);
+            } else if ("math".equals(name)) {
+                return MATH_BINDING;
+            } else if ("datasources".equals(name)) {
+                return Collections.unmodifiableMap(m_values);
+            }
+            return m_values.get(name);
+        }
+
+        @Override
+        public void set(final String name, final Object value) {
+            // only an expression assigning a variable gets here, keep the
+            // values of the data sources untouched
+            if (m_assigned == null) {
+                m_assigned = new HashMap<String, Object>();
+            }
+            m_assigned.put(name, value);
+        }
+
+        @Override
+        public boolean has(final String name) {
+            return (m_assigned != null && m_assigned.containsKey(name)) || "math".equals(name) || "datasources".equals(name) || m_values.containsKey(name);
+        }
+    }
+
     @Override
     public double evaluate(Map<String, Double> values) throws ThresholdExpressionException {
-        // Add all of the variable values to the script context
-        Map<String,Object> context = new HashMap<String,Object>();
-        context.putAll(values);
-        context.put("datasources", new HashMap<String, Double>(values)); // To workaround NMS-5019
-        context.put("math", new MathBinding());
         double result = Double.NaN;
         try {
-            // Fetch an instance of the JEXL script engine to evaluate the script expression
-            Object resultObject = new JexlEngine().createExpression(m_expression.getExpression()).evaluate(new MapContext(context));
+            Object resultObject = m_parsedExpression.evaluate(new ValuesContext(values));
             result = Double.parseDouble(resultObject.toString());
         } catch (Throwable e) {
             throw new ThresholdExpressionException("Error while evaluating expression " + m_expression.getExpression() + ": " + e.getMessage(), e);
@@ -481,8 +481,10 @@ public abstract class JMXThresholder implements ServiceThresholder {
         Map<String, Double> values=new HashMap<String,Double>();
         for(String ds: requiredDatasources) {
             File dsFile=new File(directory,ds+RrdUtils.getExtension());
-            Double thisValue=null;
-            if(dsFile.exists()) {
+            Double thisValue=CollectedValueCache.getInstance().getLastValue(dsFile, ds, interval, range);
+            if (thisValue != null) {
+                LOG.debug("using the collected value of datasource '{}' instead of fetching it", ds);
+            } else if(dsFile.exists()) {
                 try {
                     if (range != 0) {
                         LOG.debug("checking values within {} mS of last possible PDP", range);
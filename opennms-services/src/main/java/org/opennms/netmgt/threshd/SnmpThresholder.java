@@ -659,10 +659,12 @@ public final class SnmpThresholder implements ServiceThresholder {
      * using the threshold configuration.
      */
     private Double getDataSourceValue(SnmpThresholdConfiguration thresholdConfiguration, File file, String datasource) {
-        Double dsValue;
+        Double dsValue = CollectedValueCache.getInstance().getLastValue(file, datasource, thresholdConfiguration.getInterval(), thresholdConfiguration.getRange());
 
         try {
-        	if (thresholdConfiguration.getRange() != 0) {
+        	if (dsValue != null) {
+			LOG.debug("Using the collected value of datasource '{}' instead of fetching it.", datasource);
+        	} else if (thresholdConfiguration.getRange() != 0) {
 			LOG.debug("Checking datasource '{}' for values within {} milliseconds of last possible PDP with interval {}.", datasource, thresholdConfiguration.getRange(), thresholdConfiguration.getInterval());
         		dsValue = RrdUtils.fetchLastValueInRange(file.getAbsolutePath(), datasource, thresholdConfiguration.getInterval(), thresholdConfiguration.getRange());
         	} else {
@@ -45,8 +45,8 @@ import org.opennms.netmgt.eventd.EventIpcManagerFactory;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.model.events.EventProxy;
 import org.opennms.netmgt.poller.InetNetworkInterface;
-import org.opennms.netmgt.scheduler.LegacyScheduler;
 import org.opennms.netmgt.scheduler.ReadyRunnable;
+import org.opennms.netmgt.scheduler.Scheduler;
 
 /**
  * <P>
@@ -103,7 +103,7 @@ final class ThresholdableService extends InetNetworkInterface implements Thresho
     /**
      * The scheduler for threshd
      */
-    private final LegacyScheduler m_scheduler;
+    private final Scheduler m_scheduler;
 
     /**
      * Service updates
@@ -336,7 +336,7 @@ final class ThresholdableService extends InetNetworkInterface implements Thresho
         // that threshold checking should be skipped
         if (scheduledOutage()) {
             // Outage applied...reschedule the service and return
-            m_scheduler.schedule(this, m_service.getInterval());
+            m_scheduler.schedule(m_service.getInterval(), this);
             return;
         }
 
@@ -379,7 +379,7 @@ final class ThresholdableService extends InetNetworkInterface implements Thresho
 
         // Reschedule ourselves
         //
-        m_scheduler.schedule(this, this.getInterval());
+        m_scheduler.schedule(getInterval(), this);
 
         return;
     }
@@ -37,6 +37,7 @@ import org.opennms.netmgt.config.PollOutagesConfigFactory;
 import org.opennms.netmgt.config.ThreshdConfigFactory;
 import org.opennms.netmgt.config.ThresholdingConfigFactory;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
+import org.opennms.netmgt.scheduler.SchedulerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -135,4 +136,22 @@ public class Threshd extends AbstractServiceDaemon implements ThreshdMBean {
     public int getStatus() {
         return getInstance().getStatus();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogramBounds() {
+        return SchedulerFactory.getLagHistogramBounds(getInstance().getScheduler());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long[] getSchedulerLagHistogram() {
+        return SchedulerFactory.getLagHistogram(getInstance().getScheduler());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public long getSchedulerMaxLag() {
+        return SchedulerFactory.getMaxLag(getInstance().getScheduler());
+    }
 }
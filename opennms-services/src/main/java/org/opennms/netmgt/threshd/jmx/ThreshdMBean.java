@@ -37,4 +37,30 @@ import org.opennms.netmgt.daemon.BaseOnmsMBean;
  * @version $Id: $
  */
 public interface ThreshdMBean extends BaseOnmsMBean {
+
+    /**
+     * Returns the upper bounds in milliseconds of the buckets of
+     * {@link #getSchedulerLagHistogram()}. The last bucket counts everything
+     * above the last bound.
+     *
+     * @return the bucket bounds, empty unless the timing wheel scheduler is in use
+     */
+    public long[] getSchedulerLagHistogramBounds();
+
+    /**
+     * Returns the number of threshold checks started per lag bucket, where the lag is the
+     * time between the time they were due and the time they were handed to
+     * the thread pool.
+     *
+     * @return the bucket counts, empty unless the timing wheel scheduler is in use
+     */
+    public long[] getSchedulerLagHistogram();
+
+    /**
+     * Returns the largest scheduler lag seen.
+     *
+     * @return the largest lag in milliseconds, 0 unless the timing wheel
+     *         scheduler is in use
+     */
+    public long getSchedulerMaxLag();
 }
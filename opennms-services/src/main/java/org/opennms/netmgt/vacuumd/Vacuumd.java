@@ -34,6 +34,7 @@ import java.lang.reflect.UndeclaredThrowableException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 
@@ -42,10 +43,12 @@ import javax.sql.DataSource;
 import org.exolab.castor.xml.MarshalException;
 import org.exolab.castor.xml.ValidationException;
 import org.opennms.core.db.DataSourceFactory;
+import org.opennms.core.db.TablePartitioner;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.config.VacuumdConfigFactory;
 import org.opennms.netmgt.config.vacuumd.Action;
 import org.opennms.netmgt.config.vacuumd.Automation;
+import org.opennms.netmgt.config.vacuumd.Partition;
 import org.opennms.netmgt.config.vacuumd.Statement;
 import org.opennms.netmgt.config.vacuumd.Trigger;
 import org.opennms.netmgt.daemon.AbstractServiceDaemon;
@@ -191,6 +194,9 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
 
         long waitTime = 500L;
 
+        // make sure the partitions for the current interval exist right away
+        maintainPartitions();
+
         while (!m_stopped) {
             try {
                 now = waitPeriod(now, period, waitTime);
@@ -215,6 +221,58 @@ public class Vacuumd extends AbstractServiceDaemon implements Runnable, EventLis
             for (Statement statement : statements) {
 				runUpdate(statement.getContent(), statement.getTransactional());
 			}
+            maintainPartitions();
+        }
+    }
+
+    /**
+     * Creates the partitions ahead of time and drops the expired partitions
+     * of the partitioned tables.
+     */
+    protected void maintainPartitions() {
+        final List<Partition> partitions = getVacuumdConfig().getPartitions();
+        if (m_stopped || partitions.isEmpty()) {
+            return;
+        }
+
+        Connection dbConn = null;
+        try {
+            dbConn = getDataSourceFactory().getConnection();
+            final TablePartitioner partitioner = new TablePartitioner(dbConn);
+            for (final Partition partition : partitions) {
+                if (!partitioner.isPartitioned(partition.getTable())) {
+                    LOG.warn("Vacuumd: table {} is not partitioned, run the installer with -t to partition it", partition.getTable());
+                    continue;
+                }
+
+                final List<String> created = partitioner.createPartitions(partition.getTable(), partition.getPremake());
+                if (!created.isEmpty()) {
+                    LOG.info("Vacuumd: created partitions {} of table {}", created, partition.getTable());
+                }
+
+                final List<String> cascade = new ArrayList<String>();
+                if (partition.getCascade() != null) {
+                    for (final String table : partition.getCascade().split(",")) {
+                        if (table.trim().length() > 0) {
+                            cascade.add(table.trim().toLowerCase());
+                        }
+                    }
+                }
+
+                final List<String> dropped = partitioner.dropPartitions(partition.getTable(), partition.getKeep(), partition.getRetain(), cascade);
+                if (!dropped.isEmpty()) {
+                    LOG.info("Vacuumd: dropped partitions {} of table {}", dropped, partition.getTable());
+                }
+            }
+        } catch (SQLException ex) {
+            LOG.error("Vacuumd: Database error maintaining partitions", ex);
+        } finally {
+            if (dbConn != null) {
+                try {
+                    dbConn.close();
+                } catch (Throwable e) {
+                }
+            }
         }
     }
 
@@ -28,6 +28,10 @@
 
 package org.opennms.netmgt.collectd;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
@@ -192,6 +196,25 @@ public class PersistOperationBuilderTest {
         builder.commit();
     }
 
+    @Test
+    public void testParseValue() throws Exception {
+        assertEquals(6.022E23, PersistOperationBuilder.parseValue("6.022E23"), 0.0);
+        assertEquals(42.0, PersistOperationBuilder.parseValue("42"), 0.0);
+        assertTrue(Double.isNaN(PersistOperationBuilder.parseValue("U")));
+        assertTrue(Double.isNaN(PersistOperationBuilder.parseValue("hello")));
+        assertTrue(Double.isNaN(PersistOperationBuilder.parseValue(null)));
+    }
+
+    @Test
+    public void testIsExact() throws Exception {
+        assertTrue(PersistOperationBuilder.isExact(12345.0));
+        assertTrue(PersistOperationBuilder.isExact(PersistOperationBuilder.parseValue("9007199254740991")));
+        assertFalse(PersistOperationBuilder.isExact(PersistOperationBuilder.parseValue("9007199254740993")));
+        assertFalse(PersistOperationBuilder.isExact(PersistOperationBuilder.parseValue("18446744073709551615")));
+        assertFalse(PersistOperationBuilder.isExact(PersistOperationBuilder.parseValue("-18446744073709551615")));
+        assertTrue(PersistOperationBuilder.isExact(0.1));
+        assertTrue(PersistOperationBuilder.isExact(Double.NaN));
+    }
 
     private RrdRepository createRrdRepository() throws IOException {
         RrdRepository repository = new RrdRepository();
@@ -29,10 +29,11 @@
 package org.opennms.netmgt.collectd;
 
 import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.aryEq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.isNull;
-import static org.easymock.EasyMock.matches;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -136,7 +137,7 @@ public class SnmpAttributeTest extends TestCase {
         m_rrdStrategy.createFile(isA(Object.class), (Map<String, String>) isNull());
 
         expect(m_rrdStrategy.openFile(isA(String.class))).andReturn(new Object());
-        m_rrdStrategy.updateFile(isA(Object.class), isA(String.class), matches(".*:" + matchValue));
+        m_rrdStrategy.updateFile(isA(Object.class), isA(String.class), anyLong(), aryEq(new double[] { Double.parseDouble(matchValue) }));
         m_rrdStrategy.closeFile(isA(Object.class));
 
         m_mocks.replayAll();
@@ -30,12 +30,16 @@ package org.opennms.netmgt.collectd;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -50,12 +54,16 @@ import org.opennms.core.test.snmp.annotations.JUnitSnmpAgent;
 import org.opennms.core.utils.BeanUtils;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.SnmpPeerFactory;
+import org.opennms.netmgt.config.collector.CollectionResource;
 import org.opennms.netmgt.config.collector.CollectionSet;
+import org.opennms.netmgt.config.collector.CollectionSetVisitor;
+import org.opennms.netmgt.config.collector.ServiceParameters;
 import org.opennms.netmgt.dao.api.IpInterfaceDao;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.model.NetworkBuilder;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.RrdRepository;
 import org.opennms.netmgt.rrd.RrdDataSource;
 import org.opennms.netmgt.rrd.RrdStrategy;
 import org.opennms.netmgt.rrd.RrdUtils;
@@ -468,6 +476,83 @@ public class SnmpCollectorTest implements InitializingBean, TestContextAware {
         m_collectionSpecification.release(m_collectionAgent);
     }
 
+    @Test
+    @Transactional
+    @JUnitCollector(
+                    datacollectionConfig="/org/opennms/netmgt/config/datacollection-brocade-config.xml", 
+                    datacollectionType="snmp",
+                    anticipateRrds={ 
+                            "1/brocadeFCPortIndex/1/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/1/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/2/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/2/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/3/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/3/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/4/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/4/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/5/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/5/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/6/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/6/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/7/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/7/swFCPortRxWords",
+                            "1/brocadeFCPortIndex/8/swFCPortTxWords",
+                            "1/brocadeFCPortIndex/8/swFCPortRxWords"
+                    }, 
+                    anticipateFiles={ 
+                            "1",
+                            "1/brocadeFCPortIndex",
+                            "1/brocadeFCPortIndex/1/strings.properties",
+                            "1/brocadeFCPortIndex/1",
+                            "1/brocadeFCPortIndex/2/strings.properties",
+                            "1/brocadeFCPortIndex/2",
+                            "1/brocadeFCPortIndex/3/strings.properties",
+                            "1/brocadeFCPortIndex/3",
+                            "1/brocadeFCPortIndex/4/strings.properties",
+                            "1/brocadeFCPortIndex/4",
+                            "1/brocadeFCPortIndex/5/strings.properties",
+                            "1/brocadeFCPortIndex/5",
+                            "1/brocadeFCPortIndex/6/strings.properties",
+                            "1/brocadeFCPortIndex/6",
+                            "1/brocadeFCPortIndex/7/strings.properties",
+                            "1/brocadeFCPortIndex/7",
+                            "1/brocadeFCPortIndex/8/strings.properties",
+                            "1/brocadeFCPortIndex/8"
+                    }
+            )
+    @JUnitSnmpAgent(resource = "/org/opennms/netmgt/snmp/brocadeTestData1.properties")
+    public void testStreamingCollect() throws Exception {
+        System.setProperty("org.opennms.netmgt.collectd.SnmpCollector.limitCollectionToInstances", "false");
+        System.setProperty(SnmpCollector.STREAMING_PROPERTY, "true");
+        try {
+            m_collectionSpecification.initialize(m_collectionAgent);
+            assertTrue(m_collectionSpecification.isStreaming());
+
+            final RrdRepository repository = m_collectionSpecification.getRrdRepository("default");
+            final ServiceParameters params = new ServiceParameters(m_collectionSpecification.getReadOnlyPropertyMap());
+            final List<String> ports = new ArrayList<String>();
+            final CollectionSetVisitor visitor = new AggregateCollectionSetVisitor(new OneToOnePersister(params, repository), new ResourceVisitor() {
+                @Override
+                public void visitResource(CollectionResource resource) {
+                    if ("brocadeFCPortIndex".equals(resource.getResourceTypeName())) {
+                        ports.add(resource.getInstance());
+                    }
+                }
+            });
+
+            // the data is persisted while it is collected
+            CollectionSet collectionSet = m_collectionSpecification.collect(m_collectionAgent, visitor);
+            assertEquals("collection status",
+                         ServiceCollector.COLLECTION_SUCCEEDED,
+                         collectionSet.getStatus());
+            assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8"), ports);
+
+            m_collectionSpecification.release(m_collectionAgent);
+        } finally {
+            System.clearProperty(SnmpCollector.STREAMING_PROPERTY);
+        }
+    }
+
     private static String rrd(String file) {
         return file + RrdUtils.getExtension();
     }
@@ -31,11 +31,14 @@ package org.opennms.netmgt.collectd;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -193,6 +196,39 @@ public class SnmpIfCollectorTest extends SnmpCollectorTestCase {
         assertInterfaceMibObjectsPresent(collector.getCollectionSet(), 3);
     }
 
+    @Test
+    public void testStreamingManyIfs() throws Exception {
+        addIfTable();
+        
+        assertFalse(getAttributeList().isEmpty());
+
+        createSnmpInterface(1, 24, "lo0", true);
+        createSnmpInterface(2, 55, "gif0", true);
+        createSnmpInterface(3, 57, "stf0", true);
+        
+        initializeAgent();
+
+        final List<IfInfo> visited = new ArrayList<IfInfo>();
+        getCollectionSet().collect(new ResourceVisitor() {
+            @Override
+            public void visitResource(CollectionResource resource) {
+                if (!(resource instanceof IfInfo)) return;
+
+                // every column of the row is there when it is handed on
+                assertMibObjectsPresent(resource, getAttributeList());
+                visited.add((IfInfo) resource);
+            }
+        });
+
+        assertEquals(ServiceCollector.COLLECTION_SUCCEEDED, getCollectionSet().getStatus());
+        assertEquals("Unexpected number of interfaces", 3, visited.size());
+        for (int i = 0; i < visited.size(); i++) {
+            assertEquals(i + 1, visited.get(i).getIndex());
+            // the values are dropped once the row has been visited
+            assertTrue(visited.get(i).getGroups().isEmpty());
+        }
+    }
+
     // TODO: add test for very large v2 request
 
     
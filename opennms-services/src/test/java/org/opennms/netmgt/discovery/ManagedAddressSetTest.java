@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.discovery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.opennms.core.utils.InetAddressUtils.addr;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ManagedAddressSetTest {
+
+    @Test
+    public void testAddAndRemove() {
+        final ManagedAddressSet addresses = new ManagedAddressSet();
+        assertTrue(addresses.add("192.168.1.1"));
+        assertFalse(addresses.add("192.168.1.1"));
+        assertTrue(addresses.add("192.168.1.2"));
+        assertTrue(addresses.add("10.0.0.1"));
+        assertTrue(addresses.add("255.255.255.255"));
+        assertTrue(addresses.add("fe80:0000:0000:0000:0211:43ff:fe33:5a3b"));
+        assertFalse(addresses.add("fe80::211:43ff:fe33:5a3b"));
+        assertEquals(5, addresses.size());
+
+        assertTrue(addresses.contains(addr("192.168.1.1")));
+        assertTrue(addresses.contains(addr("255.255.255.255")));
+        assertTrue(addresses.contains(addr("fe80::211:43ff:fe33:5a3b")));
+        assertFalse(addresses.contains(addr("192.168.1.3")));
+        assertFalse(addresses.contains(addr("192.169.1.1")));
+
+        assertTrue(addresses.remove("192.168.1.1"));
+        assertFalse(addresses.remove("192.168.1.1"));
+        assertFalse(addresses.remove("172.16.0.1"));
+        assertFalse(addresses.contains(addr("192.168.1.1")));
+        assertTrue(addresses.contains(addr("192.168.1.2")));
+        assertEquals(4, addresses.size());
+    }
+
+    @Test
+    public void testReplaceAll() {
+        final ManagedAddressSet addresses = new ManagedAddressSet();
+        addresses.add("192.168.1.1");
+        addresses.replaceAll(Arrays.asList("10.1.2.3", "10.1.2.4", "10.1.2.3", "not an address"));
+
+        assertFalse(addresses.contains(addr("192.168.1.1")));
+        assertTrue(addresses.contains(addr("10.1.2.3")));
+        assertTrue(addresses.contains(addr("10.1.2.4")));
+        assertEquals(2, addresses.size());
+    }
+}
@@ -30,13 +30,19 @@ package org.opennms.netmgt.eventd;
 
 import static org.opennms.core.utils.InetAddressUtils.addr;
 
+import java.io.File;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
 import org.opennms.netmgt.EventConstants;
+import org.opennms.netmgt.config.eventd.ListenerQueue;
 import org.opennms.netmgt.model.events.EventBuilder;
 import org.opennms.netmgt.model.events.EventListener;
 import org.opennms.netmgt.xml.event.Event;
@@ -425,6 +431,169 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
     }
     
 
+    public void testRemoveEventListenerWithUeiAfterBroadcast() throws Exception {
+        EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testRemoveEventListenerWithUeiAfterBroadcast");
+        Event e = bldr.getEvent();
+        Event marker = new EventBuilder("uei.opennms.org/marker", "testRemoveEventListenerWithUeiAfterBroadcast").getEvent();
+        
+        m_mocks.replayAll();
+
+        m_manager.addEventListener(m_listener, e.getUei());
+        m_manager.addEventListener(m_listener, marker.getUei());
+        m_manager.broadcastNow(e);
+        assertTrue("broadcasted event was not received", m_listener.waitForEvent(e));
+
+        assertTrue("could not remove broadcasted event--did it make it?", m_listener.getEvents().remove(e));
+
+        // the cached dispatch entry for this UEI must not outlive the registration
+        m_manager.removeEventListener(m_listener, e.getUei());
+        m_manager.broadcastNow(e);
+
+        // a listener gets its events in order, so once the marker is in the
+        // event broadcast before it would have been delivered as well
+        m_manager.broadcastNow(marker);
+        assertTrue("marker event was not received", m_listener.waitForEvent(marker));
+        assertTrue("could not remove marker event", m_listener.getEvents().remove(marker));
+        assertTrue("listener received an event after it was removed", m_listener.getEvents().isEmpty());
+        
+        m_mocks.verifyAll();
+    }
+
+    public void testListenerStatistics() throws Exception {
+        EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testListenerStatistics");
+        Event e = bldr.getEvent();
+        
+        m_mocks.replayAll();
+
+        BlockingEventListener listener = new BlockingEventListener(1);
+        listener.release();
+        m_manager.addEventListener(listener, "uei.opennms.org/");
+        m_manager.broadcastNow(e);
+        assertTrue("listener did not get the event", listener.awaitEvents());
+        
+        m_mocks.verifyAll();
+        
+        assertEquals(Arrays.asList("uei.opennms.org/foo"), listener.getUeis());
+        assertEquals(Long.valueOf(1), m_manager.getListenerEventsDelivered().get(listener.getName()));
+        assertEquals(Long.valueOf(0), m_manager.getListenerEventsDropped().get(listener.getName()));
+        assertEquals(Integer.valueOf(0), m_manager.getListenerQueueDepths().get(listener.getName()));
+    }
+
+    public void testListenerQueueDropOldest() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        queue.setName("blocking listener");
+        queue.setCapacity(2);
+        queue.setPolicy("drop-oldest");
+        m_manager.setListenerQueues(Collections.singletonList(queue));
+
+        BlockingEventListener listener = new BlockingEventListener(3);
+        m_manager.addEventListener(listener);
+
+        // the first event keeps the listener busy while the rest queue up
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/1", "testListenerQueueDropOldest").getEvent());
+        assertTrue("listener did not get the first event", listener.awaitFirstEvent());
+        for (int i = 2; i <= 5; i++) {
+            m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/" + i, "testListenerQueueDropOldest").getEvent());
+        }
+        listener.release();
+        assertTrue("listener did not get the queued events", listener.awaitEvents());
+
+        assertEquals(Arrays.asList("uei.opennms.org/test/1", "uei.opennms.org/test/4", "uei.opennms.org/test/5"), listener.getUeis());
+        assertEquals(Long.valueOf(5), m_manager.getListenerEventsEnqueued().get(listener.getName()));
+        assertEquals(Long.valueOf(2), m_manager.getListenerEventsDropped().get(listener.getName()));
+    }
+
+    public void testListenerQueueDropByPriority() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        queue.setName("blocking listener");
+        queue.setCapacity(2);
+        queue.setPolicy("drop-by-priority");
+        queue.addPriorityUei("uei.opennms.org/priority/");
+        m_manager.setListenerQueues(Collections.singletonList(queue));
+
+        BlockingEventListener listener = new BlockingEventListener(3);
+        m_manager.addEventListener(listener);
+
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/1", "testListenerQueueDropByPriority").getEvent());
+        assertTrue("listener did not get the first event", listener.awaitFirstEvent());
+
+        // fills the queue with a priority and an ordinary event
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/priority/2", "testListenerQueueDropByPriority").getEvent());
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/3", "testListenerQueueDropByPriority").getEvent());
+        // replaces the ordinary event
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/priority/4", "testListenerQueueDropByPriority").getEvent());
+        // finds only priority events queued and is dropped itself
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/5", "testListenerQueueDropByPriority").getEvent());
+
+        listener.release();
+        assertTrue("listener did not get the queued events", listener.awaitEvents());
+
+        assertEquals(Arrays.asList("uei.opennms.org/test/1", "uei.opennms.org/priority/2", "uei.opennms.org/priority/4"), listener.getUeis());
+        assertEquals(Long.valueOf(5), m_manager.getListenerEventsEnqueued().get(listener.getName()));
+        assertEquals(Long.valueOf(2), m_manager.getListenerEventsDropped().get(listener.getName()));
+    }
+
+    public void testListenerQueueBlock() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        queue.setName("blocking listener");
+        queue.setCapacity(1);
+        queue.setPolicy("block");
+        m_manager.setListenerQueues(Collections.singletonList(queue));
+
+        BlockingEventListener listener = new BlockingEventListener(3);
+        m_manager.addEventListener(listener);
+
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/1", "testListenerQueueBlock").getEvent());
+        assertTrue("listener did not get the first event", listener.awaitFirstEvent());
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/2", "testListenerQueueBlock").getEvent());
+
+        // the queue is full, so the next broadcast has to wait for the listener
+        final CountDownLatch broadcastDone = new CountDownLatch(1);
+        Thread broadcaster = new Thread("testListenerQueueBlock-broadcaster") {
+            @Override
+            public void run() {
+                m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/3", "testListenerQueueBlock").getEvent());
+                broadcastDone.countDown();
+            }
+        };
+        broadcaster.start();
+        assertFalse("broadcast did not block on the full queue", broadcastDone.await(500, TimeUnit.MILLISECONDS));
+
+        listener.release();
+        assertTrue("broadcast did not complete once the queue had room", broadcastDone.await(5, TimeUnit.SECONDS));
+        assertTrue("listener did not get the queued events", listener.awaitEvents());
+        broadcaster.join();
+
+        assertEquals(Arrays.asList("uei.opennms.org/test/1", "uei.opennms.org/test/2", "uei.opennms.org/test/3"), listener.getUeis());
+        assertEquals(Long.valueOf(0), m_manager.getListenerEventsDropped().get(listener.getName()));
+    }
+
+    public void testListenerQueueSpill() throws Exception {
+        ListenerQueue queue = new ListenerQueue();
+        queue.setName("blocking listener");
+        queue.setCapacity(1);
+        queue.setPolicy("spill");
+        m_manager.setListenerQueues(Collections.singletonList(queue));
+        m_manager.setSpoolDirectory(new File("target" + File.separator + "eventd-spool"));
+
+        BlockingEventListener listener = new BlockingEventListener(5);
+        m_manager.addEventListener(listener);
+
+        m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/1", "testListenerQueueSpill").getEvent());
+        assertTrue("listener did not get the first event", listener.awaitFirstEvent());
+        for (int i = 2; i <= 5; i++) {
+            m_manager.broadcastNow(new EventBuilder("uei.opennms.org/test/" + i, "testListenerQueueSpill").getEvent());
+        }
+        assertEquals(Integer.valueOf(4), m_manager.getListenerQueueDepths().get(listener.getName()));
+        listener.release();
+        assertTrue("listener did not get the spilled events", listener.awaitEvents());
+
+        // spilled events are delivered in order after the queued one
+        assertEquals(Arrays.asList("uei.opennms.org/test/1", "uei.opennms.org/test/2", "uei.opennms.org/test/3", "uei.opennms.org/test/4", "uei.opennms.org/test/5"), listener.getUeis());
+        assertEquals(Long.valueOf(3), m_manager.getListenerEventsSpilled().get(listener.getName()));
+        assertEquals(Long.valueOf(0), m_manager.getListenerEventsDropped().get(listener.getName()));
+    }
+
     /**
      * This is the type of exception we want to catch.
      * 
@@ -454,6 +623,50 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
         m_mocks.verifyAll();
     }
     
+    public class BlockingEventListener implements EventListener {
+        private final CountDownLatch m_firstEvent = new CountDownLatch(1);
+        private final CountDownLatch m_release = new CountDownLatch(1);
+        private final CountDownLatch m_events;
+        private final List<String> m_ueis = Collections.synchronizedList(new ArrayList<String>());
+
+        public BlockingEventListener(int expectedEvents) {
+            m_events = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public String getName() {
+            return "blocking listener";
+        }
+
+        @Override
+        public void onEvent(Event e) {
+            m_ueis.add(e.getUei());
+            m_firstEvent.countDown();
+            try {
+                m_release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            m_events.countDown();
+        }
+
+        public boolean awaitFirstEvent() throws InterruptedException {
+            return m_firstEvent.await(5, TimeUnit.SECONDS);
+        }
+
+        public boolean awaitEvents() throws InterruptedException {
+            return m_events.await(5, TimeUnit.SECONDS);
+        }
+
+        public void release() {
+            m_release.countDown();
+        }
+
+        public List<String> getUeis() {
+            return m_ueis;
+        }
+    }
+
     public class MockEventListener implements EventListener {
         private List<Event> m_events = new ArrayList<Event>();
         
@@ -463,12 +676,25 @@ public class EventIpcManagerDefaultImplTest extends TestCase {
         }
 
         @Override
-        public void onEvent(Event e) {
+        public synchronized void onEvent(Event e) {
             m_events.add(e);
+            notifyAll();
         }
         
         public List<Event> getEvents() {
             return m_events;
         }
+
+        public synchronized boolean waitForEvent(Event e) throws InterruptedException {
+            final long end = System.currentTimeMillis() + 5000;
+            while (!m_events.contains(e)) {
+                final long remaining = end - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
     }
 }
@@ -34,6 +34,7 @@ import org.opennms.core.test.db.PopulatedTemporaryDatabaseTestCase;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.eventd.JdbcEventdServiceManager;
 import org.opennms.netmgt.model.events.EventBuilder;
+import org.opennms.netmgt.model.events.EventProcessorException;
 import org.opennms.netmgt.snmp.SnmpUtils;
 import org.opennms.netmgt.snmp.SnmpValue;
 import org.opennms.netmgt.xml.event.Event;
@@ -214,4 +215,162 @@ public class JdbcEventWriterTest extends PopulatedTemporaryDatabaseTestCase {
         assertEquals("event count", 1, getJdbcTemplate().queryForInt("select count(*) from events"));
         assertEquals("event service ID", serviceId, getJdbcTemplate().queryForInt("select serviceID from events"));
     }
+
+    /**
+     * Events without a logmsg are logged and displayed.
+     */
+    public void testWriteEventWithoutLogmsg() throws Exception {
+        EventBuilder bldr = new EventBuilder("testUei", "testSource");
+        assertNull(bldr.getEvent().getLogmsg());
+
+        m_jdbcEventWriter.process(null, bldr.getEvent());
+
+        assertEquals("Y", jdbcTemplate.queryForObject("SELECT eventLog FROM events LIMIT 1", String.class));
+        assertEquals("Y", jdbcTemplate.queryForObject("SELECT eventDisplay FROM events LIMIT 1", String.class));
+    }
+
+    public void testGetNextIdBlockString() {
+        assertEquals("SELECT nextval('eventsNxtId') FROM generate_series(1, ?)", JdbcEventWriter.getNextIdBlockString("SELECT nextval('eventsNxtId')"));
+        assertEquals("SELECT nextval('myEventSeq') FROM generate_series(1, ?)", JdbcEventWriter.getNextIdBlockString("  select nextval('myEventSeq');"));
+        assertNull(JdbcEventWriter.getNextIdBlockString("SELECT max(eventId) + 1 FROM events"));
+        assertNull(JdbcEventWriter.getNextIdBlockString("CALL next_event_id()"));
+    }
+
+    public void testWriteEventsBatchedWithIdsOneAtATime() throws Exception {
+        final JdbcEventWriter batchWriter = createBatchWriter(10, 50);
+        batchWriter.setGetNextIdString("SELECT nextval('eventsNxtId') FROM (SELECT 1) AS one");
+        batchWriter.afterPropertiesSet();
+        try {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testWriteEventsBatchedWithIdsOneAtATime");
+            bldr.setLogDest("logonly");
+            batchWriter.process(null, bldr.getEvent());
+
+            bldr = new EventBuilder("uei.opennms.org/foo", "testWriteEventsBatchedWithIdsOneAtATime");
+            batchWriter.process(null, bldr.getEvent());
+
+            assertEquals("event count", 2, getJdbcTemplate().queryForInt("select count(*) from events"));
+            // the second event has no logmsg, it must not get the eventLog of the first one
+            assertEquals("Y", jdbcTemplate.queryForObject("SELECT eventLog FROM events WHERE eventId = ?", String.class, bldr.getEvent().getDbid()));
+        } finally {
+            batchWriter.destroy();
+        }
+    }
+
+    public void testDestroyWritesPendingEvents() throws Exception {
+        // the batch would wait far longer than the test for more events
+        final JdbcEventWriter batchWriter = createBatchWriter(10, 60000);
+        batchWriter.afterPropertiesSet();
+
+        final Thread[] threads = new Thread[3];
+        final Exception[] errors = new Exception[threads.length];
+        startProcessing(batchWriter, threads, errors);
+
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (batchWriter.getPendingCount() < threads.length && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(threads.length, batchWriter.getPendingCount());
+
+        final long start = System.currentTimeMillis();
+        batchWriter.destroy();
+        assertTrue("destroy() waited for the batch delay", System.currentTimeMillis() - start < 30000);
+
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull("error writing event " + i, errors[i]);
+        }
+        assertEquals(0, batchWriter.getPendingCount());
+        assertEquals("event count", threads.length, getJdbcTemplate().queryForInt("select count(*) from events"));
+    }
+
+    public void testProcessFailsAfterDestroy() throws Exception {
+        final JdbcEventWriter batchWriter = createBatchWriter(10, 50);
+        batchWriter.afterPropertiesSet();
+        batchWriter.destroy();
+
+        try {
+            batchWriter.process(null, new EventBuilder("uei.opennms.org/foo", "testProcessFailsAfterDestroy").getEvent());
+            fail("expected an EventProcessorException");
+        } catch (final EventProcessorException e) {
+            // expected
+        }
+    }
+
+    public void testWriteEventsBatched() throws Exception {
+        final JdbcEventWriter batchWriter = createBatchWriter(10, 50);
+        batchWriter.afterPropertiesSet();
+
+        try {
+            writeEventsConcurrently(batchWriter);
+        } finally {
+            batchWriter.destroy();
+        }
+    }
+
+    private void writeEventsConcurrently(final JdbcEventWriter batchWriter) throws Exception {
+        Thread[] threads = new Thread[5];
+        final Event[] events = new Event[threads.length];
+        final Exception[] errors = new Exception[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "testWriteEventsBatched");
+            bldr.setLogDest("logndisplay");
+            events[i] = bldr.getEvent();
+
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        batchWriter.process(null, events[index]);
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            assertNull("error writing event " + i, errors[i]);
+            // the dbid must be set and the row committed by the time process() returns
+            assertEquals(1, getJdbcTemplate().queryForInt("select count(*) from events where eventId = ?", events[i].getDbid()));
+        }
+
+        assertEquals("event count", threads.length, getJdbcTemplate().queryForInt("select count(*) from events"));
+    }
+
+    private JdbcEventWriter createBatchWriter(final int batchSize, final long batchDelay) throws Exception {
+        JdbcEventdServiceManager eventdServiceManager = new JdbcEventdServiceManager();
+        eventdServiceManager.setDataSource(getDataSource());
+        eventdServiceManager.afterPropertiesSet();
+
+        final JdbcEventWriter batchWriter = new JdbcEventWriter();
+        batchWriter.setEventdServiceManager(eventdServiceManager);
+        batchWriter.setDataSource(getDataSource());
+        batchWriter.setGetNextIdString("SELECT nextval('eventsNxtId')");
+        batchWriter.setBatchSize(batchSize);
+        batchWriter.setBatchDelay(batchDelay);
+        return batchWriter;
+    }
+
+    private static void startProcessing(final JdbcEventWriter batchWriter, final Thread[] threads, final Exception[] errors) {
+        for (int i = 0; i < threads.length; i++) {
+            EventBuilder bldr = new EventBuilder("uei.opennms.org/foo", "startProcessing");
+            bldr.setLogDest("logndisplay");
+            final Event event = bldr.getEvent();
+
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        batchWriter.process(null, event);
+                    } catch (Exception e) {
+                        errors[index] = e;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+    }
 }
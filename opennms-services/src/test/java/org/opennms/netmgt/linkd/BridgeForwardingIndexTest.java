@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.linkd;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BridgeForwardingIndexTest {
+
+    private LinkableNode m_bridge1;
+    private LinkableNode m_bridge2;
+    private BridgeForwardingIndex m_index;
+
+    private static LinkableNode bridge(final int nodeId, final String identifier) throws Exception {
+        final LinkableNode node = new LinkableNode(new LinkableSnmpNode(nodeId, InetAddress.getLocalHost(), ".1.3.6.1.4.1.9", "bridge" + nodeId));
+        node.addBridgeIdentifier(identifier, 1);
+        return node;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        m_bridge1 = bridge(1, "000ffe000001");
+        m_bridge2 = bridge(2, "000ffe000002");
+
+        // bridge2 and two hosts learned on port 24 of bridge1
+        m_bridge1.addMacAddress(24, "000ffe000002", 1);
+        m_bridge1.addMacAddress(24, "0022550a0001", 1);
+        m_bridge1.addMacAddress(24, "0022550a0002", 1);
+        m_bridge1.addMacAddress(3, "0022550a0003", 1);
+
+        // bridge1 and a host learned on port 1 of bridge2, the other hosts
+        // on its edge ports
+        m_bridge2.addMacAddress(1, "000ffe000001", 1);
+        m_bridge2.addMacAddress(1, "0022550a0003", 1);
+        m_bridge2.addMacAddress(5, "0022550a0001", 1);
+        m_bridge2.addMacAddress(6, "0022550a0002", 1);
+        m_bridge2.addMacAddress(7, "0022550a0002", 1);
+
+        m_index = new BridgeForwardingIndex(Arrays.asList(m_bridge1, m_bridge2));
+    }
+
+    @Test
+    public void testEncode() {
+        assertEquals(0x000ffe000001L, m_index.encode("000ffe000001"));
+        assertEquals("000ffe000001", m_index.decode(0x000ffe000001L));
+        assertEquals("000000000000", m_index.decode(m_index.encode("000000000000")));
+
+        // anything else gets a number of its own and is decoded as is
+        final long other = m_index.encode("00:0F:FE:00:00:01");
+        assertTrue(other > 0xffffffffffffL);
+        assertEquals(other, m_index.encode("00:0F:FE:00:00:01"));
+        assertEquals("00:0F:FE:00:00:01", m_index.decode(other));
+    }
+
+    @Test
+    public void testBridgePorts() {
+        assertEquals(9, m_index.getEntryCount());
+        assertArrayEquals(new int[] { 1 }, m_index.getBridgePorts(m_bridge2, m_index.encode("000ffe000001")));
+        assertArrayEquals(new int[] { 6, 7 }, m_index.getBridgePorts(m_bridge2, m_index.encode("0022550a0002")));
+        assertArrayEquals(new int[] { 24 }, m_index.getBridgePorts(m_bridge1, m_index.encode("0022550a0002")));
+        assertArrayEquals(new int[0], m_index.getBridgePorts(m_bridge1, m_index.encode("0022550a0009")));
+        assertArrayEquals(new long[0], m_index.getMacs(m_bridge1, 99));
+    }
+
+    @Test
+    public void testBridgeIdentifiers() {
+        assertTrue(m_index.isBridgeIdentifier(m_index.encode("000ffe000002")));
+        assertTrue(m_index.isBridgeIdentifier(m_bridge2, m_index.encode("000ffe000002")));
+        assertFalse(m_index.isBridgeIdentifier(m_bridge1, m_index.encode("000ffe000002")));
+        assertFalse(m_index.isBridgeIdentifier(m_index.encode("0022550a0001")));
+
+        assertSame(m_bridge2, m_index.getBridgeByIdentifier(m_index.encode("000ffe000002")));
+        assertNull(m_index.getBridgeByIdentifier(m_index.encode("0022550a0001")));
+
+        assertEquals(Collections.singletonList(m_bridge2), m_index.getBridgesOnPort(m_bridge1, 24));
+        assertEquals(Collections.singletonList(m_bridge1), m_index.getBridgesOnPort(m_bridge2, 1));
+        assertTrue(m_index.getBridgesOnPort(m_bridge1, 3).isEmpty());
+    }
+
+    @Test
+    public void testCommonMacs() {
+        assertArrayEquals(new long[] { m_index.encode("0022550a0003") }, m_index.getCommonMacs(m_bridge2, 1, m_bridge1, 3));
+        assertArrayEquals(new long[0], m_index.getCommonMacs(m_bridge1, 24, m_bridge2, 1));
+        assertNull(m_index.getCommonMacs(m_bridge1, 24, m_bridge2, 99));
+    }
+
+    @Test
+    public void testMacAddressSet() {
+        final MacAddressSet macs = new MacAddressSet();
+        for (long mac = 0; mac < 1000; mac++) {
+            assertTrue(macs.add(mac * 7919));
+        }
+        assertFalse(macs.add(7919));
+        assertEquals(1000, macs.size());
+        assertTrue(macs.contains(999 * 7919));
+        assertFalse(macs.contains(7918));
+
+        macs.clear();
+        assertTrue(macs.isEmpty());
+        assertFalse(macs.contains(7919));
+    }
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.notifd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.fiber.PausableFiber;
+import org.opennms.core.test.MockLogAppender;
+
+public class DelayQueueHandlerTest {
+
+    private NoticeQueue m_noticeQueue;
+
+    private DelayQueueHandler m_handler;
+
+    private static class LatchedTask extends NotificationTask {
+        private final CountDownLatch m_latch;
+        private volatile long m_runTime = 0;
+
+        LatchedTask(final long sendTime, final CountDownLatch latch) {
+            super(null, null, sendTime, Collections.<String, String>emptyMap(), null, null);
+            m_latch = latch;
+        }
+
+        @Override
+        public void run() {
+            m_runTime = System.currentTimeMillis();
+            m_latch.countDown();
+        }
+
+        public long getRunTime() {
+            return m_runTime;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging();
+        m_noticeQueue = new NoticeQueue();
+        m_handler = new DelayQueueHandler(2);
+        m_handler.setQueueID("test");
+        m_handler.setNoticeQueue(m_noticeQueue);
+        m_handler.setInterval("20s");
+        m_handler.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_handler.stop();
+        MockLogAppender.assertNoWarningsOrGreater();
+    }
+
+    @Test
+    public void testRunsWhenDue() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long sendTime = System.currentTimeMillis() + 300;
+        final LatchedTask task = new LatchedTask(sendTime, latch);
+        m_noticeQueue.putItem(sendTime, task);
+
+        // the tasks are handed to the handler, not kept in the map
+        assertEquals(0, m_noticeQueue.size());
+        assertEquals(1, m_handler.getQueueDepth());
+
+        // well before the 20s interval
+        assertTrue(latch.await(2000, TimeUnit.MILLISECONDS));
+        assertTrue("ran too early", task.getRunTime() >= sendTime);
+        assertTrue(task.isStarted());
+        assertEquals(1, m_handler.getDispatched());
+        assertEquals(0, m_handler.getQueueDepth());
+    }
+
+    @Test
+    public void testRunsInOrder() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final long now = System.currentTimeMillis();
+        final LatchedTask late = new LatchedTask(now + 250, latch);
+        final LatchedTask early = new LatchedTask(now + 100, latch);
+        m_noticeQueue.putItem(now + 250, late);
+        m_noticeQueue.putItem(now + 100, early);
+
+        assertTrue(latch.await(2000, TimeUnit.MILLISECONDS));
+        assertTrue(early.getRunTime() <= late.getRunTime());
+    }
+
+    @Test
+    public void testManyPending() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(10);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 5000; i++) {
+            final long sendTime = now + (i < 10 ? 50 : 3600000L + i);
+            m_noticeQueue.putItem(sendTime, new LatchedTask(sendTime, latch));
+        }
+
+        assertTrue(latch.await(2000, TimeUnit.MILLISECONDS));
+        assertEquals(4990, m_handler.getQueueDepth());
+    }
+
+    @Test
+    public void testRunsOnlyOnce() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final long sendTime = System.currentTimeMillis();
+        final LatchedTask task = new LatchedTask(sendTime, latch);
+        m_noticeQueue.putItem(sendTime, task);
+        m_noticeQueue.putItem(sendTime + 50, task);
+
+        assertFalse(latch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(1, latch.getCount());
+    }
+
+    @Test
+    public void testQueuedBeforeAttached() throws Exception {
+        final NoticeQueue noticeQueue = new NoticeQueue();
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long sendTime = System.currentTimeMillis();
+        noticeQueue.putItem(sendTime, new LatchedTask(sendTime, latch));
+
+        m_handler.setNoticeQueue(noticeQueue);
+        assertEquals(0, noticeQueue.size());
+        assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        waitForStatus(PausableFiber.RUNNING);
+        m_handler.pause();
+        waitForStatus(PausableFiber.PAUSED);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final long sendTime = System.currentTimeMillis();
+        m_noticeQueue.putItem(sendTime, new LatchedTask(sendTime, latch));
+        assertFalse(latch.await(200, TimeUnit.MILLISECONDS));
+
+        m_handler.resume();
+        assertTrue(latch.await(1000, TimeUnit.MILLISECONDS));
+        assertTrue(m_handler.getMaxLag() >= 200);
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        waitForStatus(PausableFiber.RUNNING);
+        m_handler.stop();
+        waitForStatus(PausableFiber.STOPPED);
+    }
+
+    private void waitForStatus(final int status) throws InterruptedException {
+        for (int i = 0; i < 100 && m_handler.getStatus() != status; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(status, m_handler.getStatus());
+    }
+}
@@ -41,7 +41,15 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -51,6 +59,7 @@ import org.opennms.core.db.DataSourceFactory;
 import org.opennms.core.test.ConfigurationTestUtils;
 import org.opennms.core.test.MockLogAppender;
 import org.opennms.core.test.db.MockDatabase;
+import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.core.utils.Querier;
 import org.opennms.netmgt.EventConstants;
 import org.opennms.netmgt.capsd.JdbcCapsdDbSyncer;
@@ -65,6 +74,7 @@ import org.opennms.netmgt.eventd.datablock.EventUtil;
 import org.opennms.netmgt.mock.MockElement;
 import org.opennms.netmgt.mock.MockEventUtil;
 import org.opennms.netmgt.mock.MockInterface;
+import org.opennms.netmgt.mock.MockMonitor;
 import org.opennms.netmgt.mock.MockNetwork;
 import org.opennms.netmgt.mock.MockNode;
 import org.opennms.netmgt.mock.MockOutageConfig;
@@ -79,6 +89,8 @@ import org.opennms.netmgt.mock.TestCapsdConfigManager;
 import org.opennms.netmgt.model.PollStatus;
 import org.opennms.netmgt.model.events.EventUtils;
 import org.opennms.netmgt.poller.pollables.PollableNetwork;
+import org.opennms.netmgt.poller.pollables.PollableService;
+import org.opennms.netmgt.poller.pollables.PollableServiceConfig;
 import org.opennms.netmgt.rrd.RrdUtils;
 import org.opennms.netmgt.xml.event.Event;
 import org.opennms.netmgt.xmlrpcd.OpenNMSProvisioner;
@@ -219,6 +231,7 @@ public class PollerTest {
 
 	@After
 	public void tearDown() throws Exception {
+		System.clearProperty(PollableServiceConfig.ASYNC_PROPERTY);
 		m_eventMgr.finishProcessingEvents();
 		stopDaemons();
 		sleep(200);
@@ -289,6 +302,24 @@ public class PollerTest {
         assertTrue(foundNodeDown);
     }
 
+    @Test
+    public void testStartupSchedulesExistingServices() {
+        startDaemons();
+
+        assertEquals(m_network.getServiceCount(), m_poller.getStartupServiceCount());
+        assertTrue(m_poller.getStartupTime() >= 0);
+
+        final PollableNetwork pNetwork = m_poller.getNetwork();
+        m_network.visit(new MockVisitorAdapter() {
+            @Override
+            public void visitService(MockService svc) {
+                final PollableService pSvc = pNetwork.getService(svc.getNodeId(), InetAddressUtils.addr(svc.getIpAddr()), svc.getSvcName());
+                assertNotNull("service " + svc + " was not loaded", pSvc);
+                assertNotNull("service " + svc + " was not scheduled", pSvc.getSchedule());
+            }
+        });
+    }
+
     @Test
     @Ignore
 	public void testBug1564() {
@@ -1186,10 +1217,141 @@ public class PollerTest {
 
 	}
 
+    @Test
+    public void testAsyncPolling() {
+        final AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+
+        testElementDownUp(m_network.getService(1, "192.168.1.1", "SMTP"));
+
+        assertTrue(monitor.getPollsStarted("192.168.1.1") > 0);
+    }
+
+    @Test
+    public void testAsyncPollSkippedWhilePending() {
+        final AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        monitor.hold();
+
+        startDaemons();
+
+        // the services are polled every second, but none of the polls finishes
+        sleep(3500);
+        for (final String ipAddr : new String[] { "192.168.1.1", "192.168.1.2", "192.168.1.3", "192.168.1.4", "192.168.1.5" }) {
+            assertEquals("polls started for SMTP on " + ipAddr, 1, monitor.getPollsStarted(ipAddr));
+        }
+
+        monitor.release();
+        sleep(2500);
+        assertTrue(monitor.getPollsStarted("192.168.1.1") > 1);
+    }
+
+    @Test
+    public void testAsyncPollPostponedWhileTreeLocked() throws Exception {
+        final AsyncMockMonitor monitor = useAsyncMonitor("SMTP");
+        final MockService svc = m_network.getService(1, "192.168.1.1", "SMTP");
+
+        startDaemons();
+        sleep(1500);
+
+        resetAnticipated();
+        anticipateDown(svc);
+
+        // hold the tree lock of the node, so the result of the next poll
+        // cannot be processed and has to be postponed
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch unlock = new CountDownLatch(1);
+        final Thread holder = new Thread("PollerTest-treeLock") {
+            @Override
+            public void run() {
+                m_poller.getNetwork().getNode(1).withTreeLock(new Runnable() {
+                    @Override
+                    public void run() {
+                        locked.countDown();
+                        try {
+                            unlock.await();
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+        };
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        final int started = monitor.getPollsStarted("192.168.1.1");
+        svc.bringDown();
+        sleep(3000);
+
+        // the postponed result keeps the next polls from starting
+        assertTrue(monitor.getPollsStarted("192.168.1.1") <= started + 1);
+
+        unlock.countDown();
+        holder.join();
+
+        // processed once the postponed completion runs again, 5 to 14 seconds later
+        verifyAnticipated(20000);
+    }
+
 	//
 	// Utility methods
 	//
 
+    private AsyncMockMonitor useAsyncMonitor(final String svcName) {
+        System.setProperty(PollableServiceConfig.ASYNC_PROPERTY, "true");
+        final AsyncMockMonitor monitor = new AsyncMockMonitor(m_network, svcName);
+        m_pollerConfig.getServiceMonitors().put(svcName, monitor);
+        return monitor;
+    }
+
+    /**
+     * Polls the mock network from another thread, like the monitors driven
+     * by the SocketConversationEngine do, and can hold the polls until
+     * released.
+     */
+    private static class AsyncMockMonitor extends MockMonitor implements AsyncServiceMonitor {
+        private final ExecutorService m_executor = Executors.newCachedThreadPool();
+        private final ConcurrentMap<String, AtomicInteger> m_pollsStarted = new ConcurrentHashMap<String, AtomicInteger>();
+        private volatile CountDownLatch m_hold = new CountDownLatch(0);
+
+        public AsyncMockMonitor(final MockNetwork network, final String svcName) {
+            super(network, svcName);
+        }
+
+        public void hold() {
+            m_hold = new CountDownLatch(1);
+        }
+
+        public void release() {
+            m_hold.countDown();
+        }
+
+        public int getPollsStarted(final String ipAddr) {
+            final AtomicInteger count = m_pollsStarted.get(ipAddr);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public PollFuture pollAsync(final MonitoredService svc, final Map<String, Object> parameters) {
+            m_pollsStarted.putIfAbsent(svc.getIpAddr(), new AtomicInteger());
+            m_pollsStarted.get(svc.getIpAddr()).incrementAndGet();
+
+            final DefaultPollFuture future = new DefaultPollFuture();
+            final CountDownLatch hold = m_hold;
+            m_executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        hold.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    future.setStatus(poll(svc, parameters));
+                }
+            });
+            return future;
+        }
+    }
+
 	private void startDaemons() {
 		// m_outageMgr.init();
 		m_poller.init();
@@ -48,7 +48,9 @@ import org.opennms.core.test.http.annotations.JUnitHttpServer;
 import org.opennms.core.utils.InetAddressUtils;
 import org.opennms.netmgt.config.poller.Parameter;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.poller.mock.MockMonitoredService;
 import org.opennms.netmgt.poller.mock.MonitorTestUtils;
@@ -266,6 +268,45 @@ public class HttpMonitorTest {
 
     }
 
+    @Test
+    @JUnitHttpServer(port=10342)
+    public void testMatchingTextInResponseAsync() throws Exception {
+        final AsyncServiceMonitor monitor = new HttpMonitor();
+
+        final Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", "HTTP");
+
+        m.put("port", "10342");
+        m.put("retry", "0");
+        m.put("timeout", "500");
+        m.put("response", "100-499");
+        m.put("host-name", "localhost");
+        m.put("url", "/");
+        m.put("response-text", "opennmsrulz");
+
+        PollFuture future = monitor.pollAsync(svc, m);
+        future.awaitFor();
+        MockUtil.println("Reason: "+future.getStatus().getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, future.getStatus().getStatusCode());
+        assertNotNull(future.getStatus().getReason());
+
+        m.put("response-text", "~.*[Tt]est HTTP [Ss]erver.*");
+
+        future = monitor.pollAsync(svc, m);
+        future.awaitFor();
+        MockUtil.println("Reason: "+future.getStatus().getReason());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, future.getStatus().getStatusCode());
+        assertNull(future.getStatus().getReason());
+
+        // the first port does not answer, the second one does
+        m.put("port", "10343:10342");
+        m.put("response-text", "written by monkeys");
+
+        future = monitor.pollAsync(svc, m);
+        future.awaitFor();
+        assertEquals(PollStatus.SERVICE_AVAILABLE, future.getStatus().getStatusCode());
+    }
+
     @Test
     public void testBase64Encoding() {
         if (m_runTests == false) return;
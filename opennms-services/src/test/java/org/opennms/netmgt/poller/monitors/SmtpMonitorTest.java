@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.poller.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+import org.opennms.core.utils.InetAddressUtils;
+import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
+import org.opennms.netmgt.poller.mock.MonitorTestUtils;
+
+public class SmtpMonitorTest {
+
+    /**
+     * Answers a single connection: sends the first reply on connect and
+     * each following reply after reading a line from the client.
+     */
+    private static class ScriptedServer extends Thread {
+        private final ServerSocket m_serverSocket;
+        private final boolean m_closeAfterReplies;
+        private final String[] m_replies;
+        private final List<String> m_received = Collections.synchronizedList(new ArrayList<String>());
+
+        public ScriptedServer(final boolean closeAfterReplies, final String... replies) throws IOException {
+            super("SmtpMonitorTest-server");
+            m_serverSocket = new ServerSocket(0, 1, InetAddressUtils.addr("127.0.0.1"));
+            m_closeAfterReplies = closeAfterReplies;
+            m_replies = replies;
+            setDaemon(true);
+        }
+
+        public int getPort() {
+            return m_serverSocket.getLocalPort();
+        }
+
+        public List<String> getReceived() {
+            return m_received;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Socket socket = m_serverSocket.accept();
+                try {
+                    final BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+                    final OutputStream out = socket.getOutputStream();
+                    for (int i = 0; i < m_replies.length; i++) {
+                        if (i > 0) {
+                            final String line = in.readLine();
+                            if (line == null) {
+                                return;
+                            }
+                            m_received.add(line);
+                        }
+                        out.write(m_replies[i].getBytes("US-ASCII"));
+                        out.flush();
+                    }
+                    if (!m_closeAfterReplies) {
+                        // wait for the client to hang up
+                        while (in.readLine() != null) {
+                        }
+                    }
+                } finally {
+                    socket.close();
+                }
+            } catch (final IOException e) {
+                // the test has stopped the server
+            }
+        }
+
+        public void shutdown() throws IOException {
+            m_serverSocket.close();
+        }
+    }
+
+    private ScriptedServer m_server;
+
+    @Before
+    public void setUp() throws Exception {
+        MockLogAppender.setupLogging();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (m_server != null) {
+            m_server.shutdown();
+            m_server.join(5000);
+        }
+    }
+
+    @Test
+    public void testAvailableWithMultiLineReplies() throws Exception {
+        final PollStatus status = poll(true,
+            "220-mail.example.com ESMTP\r\n220 ready\r\n",
+            "250-mail.example.com\r\n250-PIPELINING\r\n250 HELP\r\n",
+            "221 closing connection\r\n");
+
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+        assertNotNull(status.getResponseTime());
+        assertEquals(2, m_server.getReceived().size());
+        assertTrue(m_server.getReceived().get(0).startsWith("HELO "));
+        assertEquals("QUIT", m_server.getReceived().get(1));
+    }
+
+    @Test
+    public void testBannerRejected() throws Exception {
+        final PollStatus status = poll(false, "554 no SMTP service here\r\n");
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertTrue(m_server.getReceived().isEmpty());
+    }
+
+    @Test
+    public void testHeloRejected() throws Exception {
+        final PollStatus status = poll(false,
+            "220 ready\r\n",
+            "501 syntax error\r\n");
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertEquals(1, m_server.getReceived().size());
+    }
+
+    @Test
+    public void testQuitRejected() throws Exception {
+        final PollStatus status = poll(false,
+            "220 ready\r\n",
+            "250 hello\r\n",
+            "500 what?\r\n");
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+    }
+
+    @Test
+    public void testInvalidReply() throws Exception {
+        final PollStatus status = poll(false, "hello there\r\n");
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+    }
+
+    @Test
+    public void testClosedAfterConnect() throws Exception {
+        final PollStatus status = poll(true);
+
+        assertEquals(PollStatus.SERVICE_UNRESPONSIVE, status.getStatusCode());
+    }
+
+    @Test
+    public void testNoBannerTimesOut() throws Exception {
+        final PollStatus status = poll(false);
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+    }
+
+    @Test
+    public void testNothingListening() throws Exception {
+        final ServerSocket socket = new ServerSocket(0, 1, InetAddressUtils.addr("127.0.0.1"));
+        final int port = socket.getLocalPort();
+        socket.close();
+
+        final PollStatus status = poll(port);
+
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, status.getStatusCode());
+        assertNotNull(status.getReason());
+    }
+
+    @Test
+    public void testBlockingPoll() throws Exception {
+        m_server = new ScriptedServer(true, "220 ready\r\n", "250 hello\r\n", "221 bye\r\n");
+        m_server.start();
+
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(1, InetAddressUtils.addr("127.0.0.1"), "SMTP");
+        final PollStatus status = new SmtpMonitor().poll(svc, getParameters(m_server.getPort()));
+
+        assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
+    }
+
+    private PollStatus poll(final boolean closeAfterReplies, final String... replies) throws Exception {
+        m_server = new ScriptedServer(closeAfterReplies, replies);
+        m_server.start();
+        return poll(m_server.getPort());
+    }
+
+    private static PollStatus poll(final int port) throws Exception {
+        final MonitoredService svc = MonitorTestUtils.getMonitoredService(1, InetAddressUtils.addr("127.0.0.1"), "SMTP");
+        final PollFuture future = new SmtpMonitor().pollAsync(svc, getParameters(port));
+        future.awaitFor();
+        assertTrue(future.isDone());
+        return future.getStatus();
+    }
+
+    private static Map<String, Object> getParameters(final int port) {
+        final Map<String, Object> parameters = new ConcurrentSkipListMap<String, Object>();
+        parameters.put("port", String.valueOf(port));
+        parameters.put("retry", "0");
+        parameters.put("timeout", "1000");
+        return parameters;
+    }
+}
@@ -31,6 +31,7 @@ package org.opennms.netmgt.poller.monitors;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.net.UnknownHostException;
 import java.util.Map;
@@ -44,7 +45,9 @@ import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
 import org.opennms.core.test.http.annotations.JUnitHttpServer;
 import org.opennms.netmgt.config.poller.Parameter;
 import org.opennms.netmgt.model.PollStatus;
+import org.opennms.netmgt.poller.AsyncServiceMonitor;
 import org.opennms.netmgt.poller.MonitoredService;
+import org.opennms.netmgt.poller.PollFuture;
 import org.opennms.netmgt.poller.ServiceMonitor;
 import org.opennms.netmgt.poller.mock.MonitorTestUtils;
 import org.opennms.test.JUnitConfigurationEnvironment;
@@ -146,4 +149,31 @@ public class TcpMonitorTest {
         assertEquals(PollStatus.SERVICE_AVAILABLE, status.getStatusCode());
         assertNull(status.getReason());
     }
+
+    @Test
+    @JUnitHttpServer(port=10342)
+    public void testLocalhostConnectionAsync() throws Exception {
+        Map<String, Object> m = new ConcurrentSkipListMap<String, Object>();
+
+        AsyncServiceMonitor monitor = new TcpMonitor();
+        MonitoredService svc = MonitorTestUtils.getMonitoredService(3, "localhost", "TCP");
+
+        m.put("port", "10342");
+        m.put("retry", "1");
+        m.put("timeout", "500");
+
+        PollFuture future = monitor.pollAsync(svc, m);
+        future.awaitFor();
+        assertTrue(future.isDone());
+        assertEquals(PollStatus.SERVICE_AVAILABLE, future.getStatus().getStatusCode());
+
+        // nothing listens on the next port
+        m.put("port", "10343");
+
+        future = monitor.pollAsync(svc, m);
+        future.awaitFor();
+        MockUtil.println("Reason: "+future.getStatus().getReason());
+        assertEquals(PollStatus.SERVICE_UNAVAILABLE, future.getStatus().getStatusCode());
+        assertNotNull(future.getStatus().getReason());
+    }
 }
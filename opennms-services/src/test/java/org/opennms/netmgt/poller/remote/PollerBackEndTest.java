@@ -37,6 +37,10 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -753,6 +757,48 @@ public class PollerBackEndTest extends TestCase {
         m_backEnd.reportResult(1, 1, newStatus);
     }
 
+    public void testStatusUpWhenUpInBatch() throws Exception {
+        expect(m_locMonDao.get(1)).andReturn(m_locationMonitor);
+        expect(m_monSvcDao.get(1)).andReturn(m_httpService);
+
+        expect(m_locMonDao.getMostRecentStatusChange(m_locationMonitor, m_httpService)).andReturn(m_httpCurrentStatus);
+
+        // called when saving performance data for each result
+        expect(m_locMonDao.findMonitoringLocationDefinition(m_locationDefinition.getName())).andReturn(m_locationDefinition).times(2);
+        expect(m_pollerConfig.getPackage(m_locationDefinition.getPollingPackageName())).andReturn(m_package).times(2);
+
+        expect(m_pollerConfig.getServiceInPackage("HTTP", m_package)).andReturn(m_httpSvcConfig).times(2);
+        expect(m_pollerConfig.parameters(m_httpSvcConfig)).andReturn(m_httpSvcConfig.getParameterCollection()).times(2);
+
+        m_mocks.replayAll();
+
+        final PollResultBatch results = new PollResultBatch();
+        results.add(1, PollStatus.available(1776.0));
+        results.add(1, PollStatus.available(1492.0));
+
+        // expect no status change, and the second result not to look up
+        // the location monitor, the service or its status again
+        m_backEnd.reportResults(1, serializeAndDeserialize(results));
+    }
+
+    private static PollResultBatch serializeAndDeserialize(final PollResultBatch results) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(results);
+        out.close();
+
+        final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final PollResultBatch copy = (PollResultBatch)in.readObject();
+        in.close();
+
+        assertEquals(results.size(), copy.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(results.getServiceId(i), copy.getServiceId(i));
+            assertEquals(results.getStatus(i).getResponseTime(), copy.getStatus(i).getResponseTime());
+        }
+        return copy;
+    }
+
     public void testTimeOutOnCheckin() {
         final Date now = new Date();
 
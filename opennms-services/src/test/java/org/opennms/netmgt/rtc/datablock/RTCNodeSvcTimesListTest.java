@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+package org.opennms.netmgt.rtc.datablock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.ConfigurationTestUtils;
+import org.opennms.netmgt.config.RTCConfigFactory;
+
+public class RTCNodeSvcTimesListTest {
+
+    private static final long HOUR = 3600000L;
+
+    private static final long WINDOW = 24 * HOUR;
+
+    private long m_now;
+
+    private RTCNodeSvcTimesList m_list;
+
+    private List<RTCNodeSvcTime> m_expected;
+
+    @Before
+    public void setUp() throws Exception {
+        final InputStream stream = ConfigurationTestUtils.getInputStreamForConfigFile("rtc-configuration.xml");
+        try {
+            RTCConfigFactory.setInstance(new RTCConfigFactory(stream));
+        } finally {
+            stream.close();
+        }
+
+        m_now = System.currentTimeMillis();
+        m_list = new RTCNodeSvcTimesList();
+        m_expected = new ArrayList<RTCNodeSvcTime>();
+    }
+
+    @Test
+    public void testClosedOutagesInWindow() {
+        addOutage(m_now - 5 * HOUR, m_now - 4 * HOUR);
+        addOutage(m_now - 2 * HOUR, m_now - HOUR);
+
+        assertEquals(2 * HOUR, m_list.getDownTime(m_now, WINDOW));
+        assertDownTime(m_now);
+    }
+
+    @Test
+    public void testWindowMovesOverOutages() {
+        addOutage(m_now - 2 * HOUR, m_now - HOUR);
+        addOutage(m_now - 30 * 60000L, m_now - 20 * 60000L);
+
+        // move the window forward until the first outage is clipped and
+        // then expired
+        for (long curTime = m_now; curTime < m_now + WINDOW; curTime += 10 * 60000L) {
+            assertDownTime(curTime);
+        }
+    }
+
+    @Test
+    public void testOpenOutage() {
+        addOutage(m_now - 3 * HOUR, m_now - 2 * HOUR);
+        m_list.serviceLost(m_now - HOUR);
+        m_expected.add(new RTCNodeSvcTime(m_now - HOUR));
+
+        assertTrue(m_list.isServiceDown());
+        assertEquals(2 * HOUR, m_list.getDownTime(m_now, WINDOW));
+        assertDownTime(m_now + 10 * HOUR);
+
+        // a second lost service while the outage is open is ignored
+        m_list.serviceLost(m_now - 30 * 60000L);
+        assertEquals(2, m_list.size());
+        assertDownTime(m_now);
+
+        m_list.serviceRegained(m_now);
+        m_expected.get(1).setRegainedTime(m_now);
+        assertFalse(m_list.isServiceDown());
+        assertEquals(2 * HOUR, m_list.getDownTime(m_now, WINDOW));
+        assertDownTime(m_now + 23 * HOUR);
+        assertDownTime(m_now + 30 * HOUR);
+    }
+
+    @Test
+    public void testRegainedInvalidatesCachedValue() {
+        m_list.serviceLost(m_now - HOUR);
+        assertEquals(HOUR, m_list.getDownTime(m_now, WINDOW));
+
+        m_list.serviceRegained(m_now - 30 * 60000L);
+        assertEquals(30 * 60000L, m_list.getDownTime(m_now, WINDOW));
+    }
+
+    @Test
+    public void testOutOfOrderOutages() {
+        addOutage(m_now - 2 * HOUR, m_now - HOUR);
+        addOutage(m_now - 5 * HOUR, m_now - 4 * HOUR);
+
+        assertDownTime(m_now);
+        assertDownTime(m_now + 20 * HOUR);
+    }
+
+    @Test
+    public void testTimeBeforeLastOutage() {
+        addOutage(m_now - 5 * HOUR, m_now - 4 * HOUR);
+        addOutage(m_now - 2 * HOUR, m_now - HOUR);
+
+        assertDownTime(m_now - 3 * HOUR);
+        assertDownTime(m_now);
+    }
+
+    private void addOutage(final long lostTime, final long regainedTime) {
+        m_list.addSvcTime(lostTime, regainedTime);
+        m_expected.add(new RTCNodeSvcTime(lostTime, regainedTime));
+    }
+
+    private void assertDownTime(final long curTime) {
+        long expected = 0;
+        for (final RTCNodeSvcTime svcTime : m_expected) {
+            expected += svcTime.getDownTime(curTime, WINDOW);
+        }
+        assertEquals("down time at now + " + (curTime - m_now) + "ms", expected, m_list.getDownTime(curTime, WINDOW));
+    }
+}
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+
+package org.opennms.netmgt.scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LagHistogramTest {
+
+    @Test
+    public void testRecord() {
+        final LagHistogram histogram = new LagHistogram();
+        histogram.record(0);
+        histogram.record(10);
+        histogram.record(11);
+        histogram.record(60000);
+
+        final long[] bounds = histogram.getBounds();
+        final long[] counts = histogram.getCounts();
+        assertEquals(bounds.length + 1, counts.length);
+        // the bounds are inclusive
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[counts.length - 1]);
+        assertEquals(60000, histogram.getMax());
+    }
+
+    @Test
+    public void testBoundsAreCopied() {
+        final LagHistogram histogram = new LagHistogram();
+        histogram.getBounds()[0] = 1000000;
+        histogram.record(20);
+        assertEquals(0, histogram.getCounts()[0]);
+        assertEquals(1, histogram.getCounts()[1]);
+    }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Stress benchmark of the {@link LegacyScheduler} against the
+ * {@link TimingWheelScheduler} with a large number of pending tasks, as
+ * seen by pollerd and collectd on big installations.
+ *
+ * <ul>
+ * <li><code>schedule</code> measures the time it takes to add 100000
+ * tasks.</li>
+ * <li><code>dispatchLatency</code> measures the time from scheduling a task
+ * that is due immediately until it runs.</li>
+ * <li><code>dueLatency</code> measures the time from scheduling a task that
+ * is due in 200ms until it runs, so subtract 200ms for the lag.</li>
+ * </ul>
+ *
+ * This is not a unit test, run it from the test classpath with:
+ *
+ * <pre>
+ * java -cp ... org.opennms.netmgt.scheduler.SchedulerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchedulerBenchmark {
+
+    private static final long[] INTERVALS = new long[] { 30000, 60000, 120000, 300000, 900000 };
+
+    private static final ReadyRunnable NOOP = new ReadyRunnable() {
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void run() {
+        }
+    };
+
+    @Param({ "legacy", "timingwheel" })
+    public String implementation;
+
+    @Param({ "1000", "10000", "100000" })
+    public int pending;
+
+    private Scheduler m_scheduler;
+
+    private Random m_random;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        System.setProperty(SchedulerFactory.IMPLEMENTATION_PROPERTY, implementation);
+        m_scheduler = SchedulerFactory.createScheduler("SchedulerBenchmark", 10);
+        m_scheduler.start();
+
+        // keep the tasks far enough in the future that none of them run
+        // while the benchmark is measuring
+        m_random = new Random(0);
+        for (int i = 0; i < pending; i++) {
+            m_scheduler.schedule(nextInterval(), NOOP);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        m_scheduler.stop();
+    }
+
+    private long nextInterval() {
+        return 3600000L + INTERVALS[m_random.nextInt(INTERVALS.length)];
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 5, batchSize = 100000)
+    @Measurement(iterations = 10, batchSize = 100000)
+    public void schedule() {
+        m_scheduler.schedule(nextInterval(), NOOP);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void dispatchLatency() throws InterruptedException {
+        runAndWait(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void dueLatency() throws InterruptedException {
+        runAndWait(200);
+    }
+
+    private void runAndWait(final long interval) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        m_scheduler.schedule(interval, new ReadyRunnable() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Options options = new OptionsBuilder()
+            .include(SchedulerBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.opennms.core.test.MockLogAppender;
+
+public class TimingWheelSchedulerTest {
+
+    private TimingWheelScheduler m_scheduler;
+
+    private static class LatchedRunnable implements ReadyRunnable {
+        private final CountDownLatch m_latch;
+        private volatile boolean m_ready = true;
+        private volatile long m_runTime = 0;
+
+        LatchedRunnable(final int count) {
+            m_latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public boolean isReady() {
+            return m_ready;
+        }
+
+        @Override
+        public void run() {
+            m_runTime = System.currentTimeMillis();
+            m_latch.countDown();
+        }
+
+        public void setReady(final boolean ready) {
+            m_ready = ready;
+        }
+
+        public long getRunTime() {
+            return m_runTime;
+        }
+
+        public boolean await(final long millis) throws InterruptedException {
+            return m_latch.await(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        MockLogAppender.setupLogging();
+        // a small wheel so that the tests cover entries that need more than one turn
+        m_scheduler = new TimingWheelScheduler("TimingWheelSchedulerTest", 2, 10, 8, 50);
+        m_scheduler.start();
+    }
+
+    @After
+    public void tearDown() {
+        m_scheduler.stop();
+        MockLogAppender.assertNoWarningsOrGreater();
+    }
+
+    @Test
+    public void testScheduleImmediately() throws Exception {
+        final LatchedRunnable runnable = new LatchedRunnable(1);
+        m_scheduler.schedule(0, runnable);
+
+        assertTrue(runnable.await(1000));
+        assertEquals(1, m_scheduler.getNumTasksExecuted());
+        assertEquals(0, m_scheduler.getScheduled());
+    }
+
+    @Test
+    public void testScheduleAfterInterval() throws Exception {
+        final LatchedRunnable runnable = new LatchedRunnable(1);
+        final long scheduled = System.currentTimeMillis();
+        // 30 ticks, more than three turns of the wheel
+        m_scheduler.schedule(300, runnable);
+        assertEquals(1, m_scheduler.getScheduled());
+
+        assertTrue(runnable.await(2000));
+        assertTrue("ran too early: " + (runnable.getRunTime() - scheduled) + "ms", runnable.getRunTime() - scheduled >= 300);
+    }
+
+    @Test
+    public void testRunsInOrder() throws Exception {
+        final LatchedRunnable late = new LatchedRunnable(1);
+        final LatchedRunnable early = new LatchedRunnable(1);
+        m_scheduler.schedule(250, late);
+        m_scheduler.schedule(100, early);
+
+        assertTrue(late.await(2000));
+        assertTrue(early.await(0));
+        assertTrue(early.getRunTime() <= late.getRunTime());
+    }
+
+    @Test
+    public void testNotReadyIsRetried() throws Exception {
+        final LatchedRunnable runnable = new LatchedRunnable(1);
+        runnable.setReady(false);
+        m_scheduler.schedule(0, runnable);
+
+        assertFalse(runnable.await(200));
+        assertEquals(1, m_scheduler.getScheduled());
+
+        runnable.setReady(true);
+        assertTrue(runnable.await(1000));
+        assertEquals(0, m_scheduler.getScheduled());
+    }
+
+    @Test
+    public void testScheduleWithoutInterval() throws Exception {
+        final LatchedRunnable runnable = new LatchedRunnable(1);
+        m_scheduler.schedule(runnable, 300000);
+
+        assertTrue(runnable.await(1000));
+        // only runnables scheduled for a point in time count towards the lag
+        assertEquals(0, sum(m_scheduler.getLagHistogram()));
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        m_scheduler.pause();
+        waitForStatus(TimingWheelScheduler.PAUSED);
+
+        final LatchedRunnable runnable = new LatchedRunnable(1);
+        m_scheduler.schedule(0, runnable);
+        assertFalse(runnable.await(200));
+
+        m_scheduler.resume();
+        assertTrue(runnable.await(1000));
+    }
+
+    @Test
+    public void testLagHistogram() throws Exception {
+        final LatchedRunnable runnable = new LatchedRunnable(10);
+        for (int i = 0; i < 10; i++) {
+            m_scheduler.schedule(i * 20, runnable);
+        }
+
+        assertTrue(runnable.await(2000));
+        assertEquals(m_scheduler.getLagHistogramBounds().length + 1, m_scheduler.getLagHistogram().length);
+        assertEquals(10, sum(m_scheduler.getLagHistogram()));
+    }
+
+    private void waitForStatus(final int status) throws InterruptedException {
+        for (int i = 0; i < 100 && m_scheduler.getStatus() != status; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(status, m_scheduler.getStatus());
+    }
+
+    private static long sum(final long[] values) {
+        long sum = 0;
+        for (final long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opennms.netmgt.rrd.RrdDataSource;
+import org.opennms.netmgt.rrd.RrdUtils;
+
+public class CollectedValueCacheTest {
+
+    private static final String DIRECTORY = new File("target/rrd/1/eth0-000000000001").getAbsolutePath();
+
+    private static final List<RrdDataSource> DATA_SOURCES = Arrays.asList(
+        new RrdDataSource("ifInOctets", "COUNTER", 600, "U", "U"),
+        new RrdDataSource("cpuUtilization", "GAUGE", 600, "U", "U")
+    );
+
+    private final File m_inOctets = new File(DIRECTORY, "ifInOctets" + RrdUtils.getExtension());
+
+    private final File m_cpu = new File(DIRECTORY, "cpuUtilization" + RrdUtils.getExtension());
+
+    @Test
+    public void testDisabled() {
+        final CollectedValueCache cache = new CollectedValueCache(false, 10);
+        assertNull(cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0));
+        publish(cache, "cpuUtilization", System.currentTimeMillis(), 42.0);
+        assertNull(cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testOnlySubscribedValuesAreKept() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 10);
+        final long now = System.currentTimeMillis();
+
+        publish(cache, "cpuUtilization", now, 42.0);
+        assertEquals(0, cache.size());
+
+        // the first lookup subscribes and falls back to the RRD file
+        assertNull(cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0));
+        publish(cache, "cpuUtilization", now, 42.0);
+        assertEquals(1, cache.size());
+        assertEquals(42.0, cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0), 0.0);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testCounterRate() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 10);
+        final long now = System.currentTimeMillis();
+        cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0);
+
+        publish(cache, "ifInOctets", now - 300000, 1000.0);
+        assertTrue(cache.getLastValue(m_inOctets, "ifInOctets", 300000, 60000).isNaN());
+
+        publish(cache, "ifInOctets", now, 31000.0);
+        assertEquals(100.0, cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0), 0.0);
+    }
+
+    @Test
+    public void testRateOutOfRangeIsUnknown() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 10);
+        final List<RrdDataSource> dataSources = Arrays.asList(new RrdDataSource("ifInOctets", "COUNTER", 600, "0", "1000"));
+        final long now = System.currentTimeMillis();
+        cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0);
+
+        cache.publish(DIRECTORY, "ifInOctets", dataSources, now - 600000, new double[] { 1000.0 });
+        cache.publish(DIRECTORY, "ifInOctets", dataSources, now - 300000, new double[] { 31000.0 });
+        assertEquals(100.0, cache.getLastValue(m_inOctets, "ifInOctets", 300000, 60000), 0.0);
+
+        // a counter reset looks like a wrap, the huge rate is above the maximum
+        cache.publish(DIRECTORY, "ifInOctets", dataSources, now, new double[] { 0.0 });
+        assertTrue(cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0).isNaN());
+    }
+
+    @Test
+    public void testParseLimit() {
+        assertEquals(Double.POSITIVE_INFINITY, CollectedValueCache.parseLimit("U", Double.POSITIVE_INFINITY), 0.0);
+        assertEquals(Double.NEGATIVE_INFINITY, CollectedValueCache.parseLimit(null, Double.NEGATIVE_INFINITY), 0.0);
+        assertEquals(1000.0, CollectedValueCache.parseLimit("1000", Double.POSITIVE_INFINITY), 0.0);
+    }
+
+    @Test
+    public void testCounterWrap() {
+        assertEquals(11.0, CollectedValueCache.counterDelta(4294967290.0, 5.0), 0.0);
+        assertEquals(5.0, CollectedValueCache.counterDelta(10.0, 15.0), 0.0);
+    }
+
+    @Test
+    public void testCounterOverHeartbeatIsUnknown() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 10);
+        final long now = System.currentTimeMillis();
+        cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0);
+
+        publish(cache, "ifInOctets", now - 900000, 1000.0);
+        publish(cache, "ifInOctets", now, 31000.0);
+        assertTrue(cache.getLastValue(m_inOctets, "ifInOctets", 300000, 0).isNaN());
+    }
+
+    @Test
+    public void testStaleValueIsFetched() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 10);
+        final long now = System.currentTimeMillis();
+        cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0);
+
+        publish(cache, "cpuUtilization", now - 400000, 42.0);
+        assertNull(cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0));
+        assertEquals(42.0, cache.getLastValue(m_cpu, "cpuUtilization", 300000, 200000), 0.0);
+    }
+
+    @Test
+    public void testBounded() {
+        final CollectedValueCache cache = new CollectedValueCache(true, 1);
+        final long now = System.currentTimeMillis();
+        final File otherCpu = new File(DIRECTORY + "-other", "cpuUtilization" + RrdUtils.getExtension());
+        cache.getLastValue(m_cpu, "cpuUtilization", 300000, 0);
+
+        publish(cache, "cpuUtilization", now, 42.0);
+        cache.publish(DIRECTORY + "-other", "cpuUtilization", DATA_SOURCES.subList(1, 2), now, new double[] { 43.0 });
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getDropped());
+        assertNull(cache.getLastValue(otherCpu, "cpuUtilization", 300000, 0));
+    }
+
+    private static void publish(final CollectedValueCache cache, final String dsName, final long timestamp, final double value) {
+        final RrdDataSource dataSource = "ifInOctets".equals(dsName) ? DATA_SOURCES.get(0) : DATA_SOURCES.get(1);
+        cache.publish(DIRECTORY, dsName, Arrays.asList(dataSource), timestamp, new double[] { value });
+    }
+}
@@ -145,7 +145,6 @@ public class CollectionResourceWrapperTest {
 
         // Add Counter Attribute
         String attributeName = "myCounter";
-        String attributeId = "node[1].resourceType[node].instance[null].metric[" + attributeName + "]";
         Map<String, CollectionAttribute> attributes = new HashMap<String, CollectionAttribute>();
         SnmpAttribute attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", "1000");
         attributes.put(attribute.getName(), attribute);
@@ -156,10 +155,10 @@ public class CollectionResourceWrapperTest {
         // Get counter value - first time
         CollectionResourceWrapper wrapper = createWrapper(resource, attributes, baseDate);
 
-        Assert.assertFalse(CollectionResourceWrapper.s_cache.containsKey(attributeId));
+        Assert.assertNull(getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(Double.NaN), wrapper.getAttributeValue(attributeName)); // Last value is null
         Assert.assertEquals(Double.valueOf(Double.NaN), wrapper.getAttributeValue(attributeName)); // Last value is null
-        Assert.assertEquals(Double.valueOf(1000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(1000.0), getCachedValue(attributeName));
 
         // Increase counter
         attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", "2500");
@@ -169,15 +168,15 @@ public class CollectionResourceWrapperTest {
        
         // Get counter value - second time
         // Last value is 1000.0, so 2500-1000/300 = 1500/300 =  5.
-        Assert.assertEquals(Double.valueOf(1000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(1000.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(5.0), wrapper.getAttributeValue(attributeName));
         //Validate that the cached counter value has been updated
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
         //but that calling getAttributeValue doesn't re-calculate the rate inappropriately
         Assert.assertEquals(Double.valueOf(5.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(5.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
 
         // Increase counter
         attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", "5500");
@@ -187,13 +186,13 @@ public class CollectionResourceWrapperTest {
 
         // Get counter value - third time
         // Last value is 2500.0, so 5500-2500/300 = 3000/300 =  10;
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(10.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(5500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(5500.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(10.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(5500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(5500.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(10.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(5500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(5500.0), getCachedValue(attributeName));
     }
         
     
@@ -213,7 +212,6 @@ public class CollectionResourceWrapperTest {
 
 		// Add Counter Attribute
 		String attributeName = "myCounter";
-	        String attributeId = "node[1].resourceType[node].instance[null].metric[" + attributeName + "]";
 		Map<String, CollectionAttribute> attributes = new HashMap<String, CollectionAttribute>();
 		SnmpAttribute attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", "1000");
 		attributes.put(attribute.getName(), attribute);
@@ -226,14 +224,13 @@ public class CollectionResourceWrapperTest {
 		CollectionResourceWrapper wrapper = createWrapper(resource, attributes,
 				baseDate);
 
-		Assert.assertFalse(CollectionResourceWrapper.s_cache
-				.containsKey(attributeId));
+		Assert.assertNull(getCachedValue(attributeName));
 		Assert.assertEquals(Double.valueOf(Double.NaN),
 				wrapper.getAttributeValue(attributeName)); // Last value is null
 		Assert.assertEquals(Double.valueOf(Double.NaN),
 				wrapper.getAttributeValue(attributeName)); // Last value is null
 		Assert.assertEquals(Double.valueOf(1000.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 
         // Increase counter
         attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", "2500");
@@ -243,13 +240,13 @@ public class CollectionResourceWrapperTest {
        
         // Get counter value - second time
         // Last value is 1000.0, so 2500-1000/300 = 1500/300 =  5.
-        Assert.assertEquals(Double.valueOf(1000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(1000.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(5.0), wrapper.getAttributeValue(attributeName));
         //Validate that the cached counter value has been updated
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
         //but that calling getAttributeValue doesn't re-calculate the rate inappropriately or update the static cache
         Assert.assertEquals(Double.valueOf(5.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(2500.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(2500.0), getCachedValue(attributeName));
 
 		// Now create a collection that is missing the counter value; we're
 		// expecting null result and no cache updates
@@ -264,10 +261,10 @@ public class CollectionResourceWrapperTest {
 		// No change, so we expect the cache to have (and continue to) remain
 		// the same, and to get no attribute value out
 		Assert.assertEquals(Double.valueOf(2500.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 		Assert.assertNull(wrapper.getAttributeValue(attributeName)); 
 		Assert.assertEquals(Double.valueOf(2500.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 
 		// Now if we collect successfully again, we expect the counter to be the
 		// change divided by two collection cycles
@@ -284,16 +281,16 @@ public class CollectionResourceWrapperTest {
 		// Last value is 5500, but we've had two collection cycles, so
 		// 7300-2500/600 = 4800/600 = 8
 		Assert.assertEquals(Double.valueOf(2500.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 		Assert.assertEquals(Double.valueOf(8.0), wrapper.getAttributeValue(attributeName));
 		Assert.assertEquals(Double.valueOf(7300.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 		Assert.assertEquals(Double.valueOf(8.0), wrapper.getAttributeValue(attributeName));
 		Assert.assertEquals(Double.valueOf(7300.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 		Assert.assertEquals(Double.valueOf(8.0), wrapper.getAttributeValue(attributeName));
 		Assert.assertEquals(Double.valueOf(7300.0),
-				CollectionResourceWrapper.s_cache.get(attributeId).value);
+				getCachedValue(attributeName));
 
 		EasyMock.verify(agent);
 	}
@@ -310,7 +307,6 @@ public class CollectionResourceWrapperTest {
 
         // Add Counter Attribute
         String attributeName = "myCounter";
-        String attributeId = "node[1].resourceType[node].instance[null].metric[" + attributeName + "]";
         Map<String, CollectionAttribute> attributes = new HashMap<String, CollectionAttribute>();
         BigInteger initialValue = new BigDecimal(Math.pow(2, 32) - 20000).toBigInteger();
         SnmpAttribute attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", initialValue);
@@ -318,10 +314,10 @@ public class CollectionResourceWrapperTest {
         
         // Get counter value - first time
         CollectionResourceWrapper wrapper = createWrapper(resource, attributes, baseDate);
-        Assert.assertFalse(CollectionResourceWrapper.s_cache.containsKey(attributeId));
+        Assert.assertNull(getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(Double.NaN), wrapper.getAttributeValue(attributeName)); // Last value is null
         Assert.assertEquals(Double.valueOf(Double.NaN), wrapper.getAttributeValue(attributeName)); // Last value is null
-        Assert.assertEquals(Double.valueOf(initialValue.doubleValue()), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(initialValue.doubleValue()), getCachedValue(attributeName));
 
         // Increase counter
         attribute = addAttributeToCollectionResource(resource, attributeName, "counter", "0", new BigInteger("40000"));
@@ -330,13 +326,13 @@ public class CollectionResourceWrapperTest {
 
         // Get counter value - second time (wrap)
         // last = MAX - 20000, new = 40000; then last - new = 60000, rate: 60000/300 = 200
-        Assert.assertEquals(Double.valueOf(initialValue.doubleValue()), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(initialValue.doubleValue()), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(200.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(40000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(40000.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(200.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(40000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(40000.0), getCachedValue(attributeName));
         Assert.assertEquals(Double.valueOf(200.0), wrapper.getAttributeValue(attributeName));
-        Assert.assertEquals(Double.valueOf(40000.0), CollectionResourceWrapper.s_cache.get(attributeId).value);
+        Assert.assertEquals(Double.valueOf(40000.0), getCachedValue(attributeName));
 
         EasyMock.verify(agent);
     }
@@ -538,6 +534,10 @@ public class CollectionResourceWrapperTest {
         return mibObject;
     }
 
+    private static Double getCachedValue(String attributeName) {
+        return CollectionResourceWrapper.s_cache.getValue(1, "node", null, attributeName);
+    }
+
     private RrdRepository getRepository() {
         RrdRepository repo = new RrdRepository();
         repo.setRrdBaseDir(new File("/tmp"));
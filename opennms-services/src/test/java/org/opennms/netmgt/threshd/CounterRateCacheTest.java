@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.netmgt.threshd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CounterRateCacheTest {
+
+    private static final long BASE = 1400000000000L;
+
+    private final CounterRateCache m_cache = new CounterRateCache();
+
+    @Test
+    public void testRate() {
+        assertTrue(Double.isNaN(m_cache.getRate(1, "interface", "eth0", "ifInOctets", BASE, 1000, 300)));
+        assertEquals(1000.0, m_cache.getValue(1, "interface", "eth0", "ifInOctets"), 0.0);
+        assertEquals(5.0, m_cache.getRate(1, "interface", "eth0", "ifInOctets", BASE + 300000, 2500, 300), 0.0);
+        assertEquals(2500.0, m_cache.getValue(1, "interface", "eth0", "ifInOctets"), 0.0);
+
+        // other nodes, resources and attributes have their own values
+        assertNull(m_cache.getValue(2, "interface", "eth0", "ifInOctets"));
+        assertNull(m_cache.getValue(1, "interface", "eth1", "ifInOctets"));
+        assertNull(m_cache.getValue(1, "interface", "eth0", "ifOutOctets"));
+        assertEquals(1, m_cache.size());
+    }
+
+    @Test
+    public void testZeroIntervalKeepsLastValue() {
+        m_cache.getRate(1, "node", null, "counter", BASE, 1000, 300);
+        assertEquals(0.0, m_cache.getRate(1, "node", null, "counter", BASE, 2000, 300), 0.0);
+        assertEquals(1000.0, m_cache.getValue(1, "node", null, "counter"), 0.0);
+    }
+
+    @Test
+    public void testWrap() {
+        m_cache.getRate(1, "node", null, "counter", BASE, Math.pow(2, 32) - 20000, 300);
+        assertEquals(200.0, m_cache.getRate(1, "node", null, "counter", BASE + 300000, 40000, 300), 0.0);
+    }
+
+    @Test
+    public void testExpiredValueIsUnknown() {
+        m_cache.getRate(1, "node", null, "counter", BASE, 1000, 300);
+        // more than three intervals later
+        assertTrue(Double.isNaN(m_cache.getRate(1, "node", null, "counter", BASE + 1200000, 2000, 300)));
+        assertEquals(4.0, m_cache.getRate(1, "node", null, "counter", BASE + 1500000, 3200, 300), 0.0);
+    }
+
+    @Test
+    public void testExpiredValuesAreEvicted() {
+        for (int node = 0; node < 1000; node++) {
+            m_cache.getRate(node, "interface", "eth0", "ifInOctets", BASE, 1000, 300);
+        }
+        assertEquals(1000, m_cache.size());
+
+        // keep node 0 alive, the others are gone
+        for (int i = 1; i <= 4; i++) {
+            for (int resource = 0; resource < 200; resource++) {
+                m_cache.getRate(0, "interface", "eth" + resource, "ifInOctets", BASE + i * 300000, 1000, 300);
+            }
+        }
+        assertEquals(200, m_cache.size());
+        assertEquals(999, m_cache.getEvictions());
+    }
+
+    @Test
+    public void testManyCounters() {
+        final Map<String, Double> expected = new HashMap<String, Double>();
+        final Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            final int node = random.nextInt(200);
+            final String instance = "if" + random.nextInt(50);
+            final String attribute = "attr" + random.nextInt(10);
+            final double value = random.nextInt(1000000);
+            m_cache.getRate(node, "interface", instance, attribute, BASE + i * 1000L, value, 1000000);
+            expected.put(node + "/" + instance + "/" + attribute, value);
+        }
+        assertEquals(expected.size(), m_cache.size());
+        for (final Map.Entry<String, Double> entry : expected.entrySet()) {
+            final String[] parts = entry.getKey().split("/");
+            final Double value = m_cache.getValue(Integer.parseInt(parts[0]), "interface", parts[1], parts[2]);
+            assertEquals(entry.getKey(), entry.getValue(), value, 0.0);
+        }
+
+        m_cache.clear();
+        assertEquals(0, m_cache.size());
+    }
+}
@@ -171,4 +171,45 @@ public class ExpressionConfigWrapperTest {
         values.put("ifSpeed", 10.0);
         Assert.assertEquals(160.0, wrapper.evaluate(values), 0.0);
     }
+
+    @Test
+    public void testValuesAreNotModified() throws Exception {
+        Expression exp = new Expression();
+        exp.setExpression("ifSpeed = ifSpeed * 2");
+        ExpressionConfigWrapper wrapper = new ExpressionConfigWrapper(exp);
+        Map<String, Double> values = new HashMap<String,Double>();
+        values.put("ifSpeed", 10.0);
+        Assert.assertEquals(20.0, wrapper.evaluate(values), 0.0);
+        Assert.assertEquals(20.0, wrapper.evaluate(values), 0.0);
+        Assert.assertEquals(10.0, values.get("ifSpeed"), 0.0);
+    }
+
+    @Test
+    public void testConcurrentEvaluations() throws Exception {
+        final Thread[] threads = new Thread[4];
+        final Throwable[] failures = new Throwable[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            Map<String, Double> values = new HashMap<String,Double>();
+                            values.put("ifInOctets", 2000.0 * (index + 1));
+                            values.put("ifSpeed", 100000.0);
+                            Assert.assertEquals(16.0 * (index + 1), wrapper.evaluate(values), 0.0001);
+                        }
+                    } catch (Throwable t) {
+                        failures[index] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].join();
+            Assert.assertNull("thread " + i + " failed: " + failures[i], failures[i]);
+        }
+    }
 }
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * This file is part of OpenNMS(R).
+ *
+ * Copyright (C) 2014 The OpenNMS Group, Inc.
+ * OpenNMS(R) is Copyright (C) 1999-2014 The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is a registered trademark of The OpenNMS Group, Inc.
+ *
+ * OpenNMS(R) is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License,
+ * or (at your option) any later version.
+ *
+ * OpenNMS(R) is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with OpenNMS(R).  If not, see:
+ *      http://www.gnu.org/licenses/
+ *
+ * For more information contact:
+ *     OpenNMS(R) Licensing <license@opennms.org>
+ *     http://www.opennms.org/
+ *     http://www.opennms.com/
+ *******************************************************************************/
+
+package org.opennms.tools.rrd;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jrobin.core.RrdDb;
+import org.jrobin.core.RrdDef;
+import org.opennms.netmgt.rrd.RrdDataSource;
+import org.opennms.netmgt.rrd.jrobin.JRobinRrdStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the two ways collectd can hand a sample to the JRobin strategy:
+ * joining the values into a <code>timestamp:value:value...</code> string
+ * that JRobin splits and parses again, or passing the timestamp and a
+ * double[] directly.
+ *
+ * Both benchmarks start from the string values a PersistOperationBuilder
+ * holds, so the numbers include everything that differs between the two
+ * paths. The data sources alternate between non-integral GAUGE values and
+ * integral COUNTER values. Run with:
+ *
+ * <pre>
+ * java -cp opennms-rrd-stresser-jar-with-dependencies.jar org.opennms.tools.rrd.RrdUpdateBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RrdUpdateBenchmark {
+
+    /**
+     * MEMORY isolates the cost of building and parsing the update from disk
+     * I/O, FILE shows how much of it is left once the write is included
+     */
+    @Param({ "MEMORY", "FILE" })
+    public String backend;
+
+    @Param({ "1", "10", "50" })
+    public int dataSourceCount;
+
+    private JRobinRrdStrategy m_strategy;
+    private File m_file;
+    private RrdDb m_rrd;
+    private String[] m_values;
+    private long m_timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Properties properties = new Properties();
+        properties.setProperty("org.jrobin.core.RrdBackendFactory", backend);
+        m_strategy = new JRobinRrdStrategy();
+        m_strategy.setConfigurationProperties(properties);
+
+        final List<RrdDataSource> dataSources = new ArrayList<RrdDataSource>(dataSourceCount);
+        m_values = new String[dataSourceCount];
+        for (int i = 0; i < dataSourceCount; i++) {
+            if (i % 2 == 0) {
+                dataSources.add(new RrdDataSource("ds" + i, "GAUGE", 600, "U", "U"));
+                m_values[i] = String.valueOf(1234567.0 * (i + 1) / 7);
+            } else {
+                // interface octet counters, collectd's most common values
+                dataSources.add(new RrdDataSource("ds" + i, "COUNTER", 600, "U", "U"));
+                m_values[i] = i % 10 == 9 ? "U" : String.valueOf(1234567890123L * (i + 1));
+            }
+        }
+
+        m_file = File.createTempFile("RrdUpdateBenchmark", m_strategy.getDefaultFileExtension());
+        m_file.delete();
+        final String name = m_file.getName().substring(0, m_file.getName().length() - m_strategy.getDefaultFileExtension().length());
+        final RrdDef def = m_strategy.createDefinition("benchmark", m_file.getParent(), name, 1, dataSources, Collections.singletonList("RRA:AVERAGE:0.5:1:2016"));
+        m_strategy.createFile(def, null);
+
+        m_rrd = m_strategy.openFile(m_file.getAbsolutePath());
+        m_timestamp = System.currentTimeMillis() / 1000L;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        m_strategy.closeFile(m_rrd);
+        m_file.delete();
+    }
+
+    @Benchmark
+    public void stringUpdate() throws Exception {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(++m_timestamp);
+        for (final String value : m_values) {
+            sb.append(':').append(value);
+        }
+        m_strategy.updateFile(m_rrd, "benchmark", sb.toString());
+    }
+
+    @Benchmark
+    public void valuesUpdate() throws Exception {
+        final double[] values = new double[m_values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "U".equals(m_values[i]) ? Double.NaN : Double.parseDouble(m_values[i]);
+        }
+        m_strategy.updateFile(m_rrd, "benchmark", ++m_timestamp, values);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final Options options = new OptionsBuilder()
+            .include(RrdUpdateBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -37,11 +37,14 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import javax.ws.rs.core.UriInfo;
 
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.netmgt.dao.api.AcknowledgmentDao;
 import org.opennms.netmgt.dao.api.AlarmDao;
@@ -54,6 +57,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -69,9 +73,15 @@ public class AlarmRestService extends AlarmRestServiceBase {
     @Autowired
     private AcknowledgmentDao m_ackDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
     @Context
     UriInfo m_uriInfo;
 
+    @Context
+    HttpHeaders m_headers;
+
     @Context
     SecurityContext m_securityContext;
 
@@ -123,23 +133,38 @@ public class AlarmRestService extends AlarmRestServiceBase {
      * getAlarms
      * </p>
      * 
-     * @return a {@link org.opennms.netmgt.model.OnmsAlarmCollection} object.
+     * See {@link OnmsRestService.ListParameters} for paging through and
+     * streaming a large number of alarms.
+     * 
+     * @return a {@link javax.ws.rs.core.Response} object holding an
+     *         {@link org.opennms.netmgt.model.OnmsAlarmCollection}.
      */
     @GET
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
     @Transactional
-    public OnmsAlarmCollection getAlarms() {
+    public Response getAlarms() {
         readLock();
 
         try {
-            final CriteriaBuilder builder = getCriteriaBuilder(m_uriInfo.getQueryParameters(), false);
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final ListParameters listParams = removeListParameters(params);
+
+            final CriteriaBuilder builder = getCriteriaBuilder(params, false);
             builder.distinct();
-            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(builder.toCriteria()));
+            final Criteria criteria = builder.toCriteria();
 
             // For getting totalCount
-            coll.setTotalCount(m_alarmDao.countMatching(builder.clearOrder().limit(0).offset(0).toCriteria()));
+            final int totalCount = listParams.isTotalCount() ? m_alarmDao.countMatching(getCountCriteria(criteria)) : -1;
+            listParams.applyAfterId(criteria);
+
+            if (listParams.isStream() && isXmlPreferred(m_headers)) {
+                return getStreamingResponse("alarms", totalCount, m_alarmDao, criteria, m_transactionTemplate);
+            }
+
+            final OnmsAlarmCollection coll = new OnmsAlarmCollection(m_alarmDao.findMatching(criteria));
+            coll.setTotalCount(totalCount);
 
-            return coll;
+            return Response.ok(coll).build();
         } finally {
             readUnlock();
         }
@@ -48,6 +48,7 @@ import javax.ws.rs.core.UriInfo;
 
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
+import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.netmgt.dao.api.EventDao;
 import org.opennms.netmgt.model.OnmsEvent;
@@ -56,6 +57,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.spi.resource.PerRequest;
 
@@ -70,6 +72,9 @@ public class EventRestService extends OnmsRestService {
     @Autowired
     private EventDao m_eventDao;
 
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+
     @Context
     UriInfo m_uriInfo;
 
@@ -121,7 +126,8 @@ public class EventRestService extends OnmsRestService {
 
     /**
      * Returns all the events which match the filter/query in the query
-     * parameters
+     * parameters, see {@link OnmsRestService.ListParameters} for paging
+     * through and streaming a large number of events
      * 
      * @return Collection of OnmsEvents (ready to be XML-ified)
      * @throws java.text.ParseException
@@ -130,18 +136,18 @@ public class EventRestService extends OnmsRestService {
     @GET
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
     @Transactional
-    public OnmsEventCollection getEvents() throws ParseException {
+    public Response getEvents() throws ParseException {
         readLock();
 
         try {
+            final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final ListParameters listParams = removeListParameters(params);
+
             final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
-            applyQueryFilters(m_uriInfo.getQueryParameters(), builder);
+            applyQueryFilters(params, builder);
             builder.orderBy("eventTime").asc();
 
-            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(builder.toCriteria()));
-            coll.setTotalCount(m_eventDao.countMatching(builder.clearOrder().toCriteria()));
-
-            return coll;
+            return getEventsResponse(builder.toCriteria(), listParams);
         } finally {
             readUnlock();
         }
@@ -159,12 +165,13 @@ public class EventRestService extends OnmsRestService {
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
     @Path("between")
     @Transactional
-    public OnmsEventCollection getEventsBetween() throws ParseException {
+    public Response getEventsBetween() throws ParseException {
         readLock();
 
         try {
             final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
             final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final ListParameters listParams = removeListParameters(params);
 
             final String column;
             if (params.containsKey("column")) {
@@ -204,15 +211,25 @@ public class EventRestService extends OnmsRestService {
                 throw new IllegalArgumentException("Unable to parse " + begin + " and " + end + " as dates!");
             }
 
-            final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(builder.toCriteria()));
-            coll.setTotalCount(m_eventDao.countMatching(builder.clearOrder().toCriteria()));
-
-            return coll;
+            return getEventsResponse(builder.toCriteria(), listParams);
         } finally {
             readUnlock();
         }
     }
 
+    private Response getEventsResponse(final Criteria criteria, final ListParameters listParams) {
+        final int totalCount = listParams.isTotalCount() ? m_eventDao.countMatching(getCountCriteria(criteria)) : -1;
+        listParams.applyAfterId(criteria);
+
+        if (listParams.isStream() && isXmlPreferred(m_headers)) {
+            return getStreamingResponse("events", totalCount, m_eventDao, criteria, m_transactionTemplate);
+        }
+
+        final OnmsEventCollection coll = new OnmsEventCollection(m_eventDao.findMatching(criteria));
+        coll.setTotalCount(totalCount);
+        return Response.ok(coll).build();
+    }
+
     /**
      * Updates the event with id "eventid" If the "ack" parameter is "true",
      * then acks the events as the current logged in user, otherwise unacks
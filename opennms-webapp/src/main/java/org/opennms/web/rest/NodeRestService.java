@@ -40,6 +40,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
@@ -49,7 +50,6 @@ import javax.ws.rs.core.UriInfo;
 import org.opennms.core.criteria.Alias.JoinType;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
-import org.opennms.core.criteria.Order;
 import org.opennms.core.criteria.restrictions.Restriction;
 import org.opennms.core.criteria.restrictions.Restrictions;
 import org.opennms.netmgt.EventConstants;
@@ -70,6 +70,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.api.core.ResourceContext;
 import com.sun.jersey.spi.resource.PerRequest;
@@ -100,20 +101,30 @@ public class NodeRestService extends OnmsRestService {
     @Autowired
     private EventProxy m_eventProxy;
     
+    @Autowired
+    private TransactionTemplate m_transactionTemplate;
+    
     @Context 
     UriInfo m_uriInfo;
     
+    @Context
+    HttpHeaders m_headers;
+    
     @Context
     ResourceContext m_context;
 
     /**
      * <p>getNodes</p>
      *
-     * @return a {@link org.opennms.netmgt.model.OnmsNodeList} object.
+     * See {@link OnmsRestService.ListParameters} for paging through and
+     * streaming a large number of nodes.
+     *
+     * @return a {@link javax.ws.rs.core.Response} object holding an
+     *         {@link org.opennms.netmgt.model.OnmsNodeList}.
      */
     @GET
     @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.APPLICATION_ATOM_XML})
-    public OnmsNodeList getNodes() {
+    public Response getNodes() {
         readLock();
         
         try {
@@ -123,6 +134,7 @@ public class NodeRestService extends OnmsRestService {
             builder.alias("categories", "category", JoinType.LEFT_JOIN);
     
             final MultivaluedMap<String, String> params = m_uriInfo.getQueryParameters();
+            final ListParameters listParams = removeListParameters(params);
             final String type = params.getFirst("type");
     
             applyQueryFilters(params, builder);
@@ -136,15 +148,17 @@ public class NodeRestService extends OnmsRestService {
                 crit.setRestrictions(restrictions);
             }
             
+            final int totalCount = listParams.isTotalCount() ? m_nodeDao.countMatching(getCountCriteria(crit)) : -1;
+            listParams.applyAfterId(crit);
+
+            if (listParams.isStream() && isXmlPreferred(m_headers)) {
+                return getStreamingResponse("nodes", totalCount, m_nodeDao, crit, m_transactionTemplate);
+            }
+
             final OnmsNodeList coll = new OnmsNodeList(m_nodeDao.findMatching(crit));
-            
-            crit.setLimit(null);
-            crit.setOffset(null);
-            crit.setOrders(new ArrayList<Order>());
-    
-            coll.setTotalCount(m_nodeDao.countMatching(crit));
+            coll.setTotalCount(totalCount);
     
-            return coll;
+            return Response.ok(coll).build();
         } finally {
             readUnlock();
         }
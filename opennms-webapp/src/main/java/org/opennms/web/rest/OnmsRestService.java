@@ -30,23 +30,40 @@
 package org.opennms.web.rest;
 
 import java.beans.IntrospectionException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.netmgt.dao.api.EntityCallback;
+import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.model.OnmsArpInterface.StatusType;
 import org.opennms.netmgt.model.OnmsSeverity;
 import org.opennms.netmgt.model.OnmsSeverityEditor;
@@ -60,6 +77,9 @@ import org.slf4j.LoggerFactory;
 import org.slf4j.helpers.MessageFormatter;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.sun.jersey.core.util.MultivaluedMapImpl;
 
@@ -80,8 +100,65 @@ public class OnmsRestService {
 
 	protected static final int DEFAULT_LIMIT = 10;
 
+	private static final Map<Class<?>, JAXBContext> m_jaxbContexts = new ConcurrentHashMap<Class<?>, JAXBContext>();
+
 	protected enum ComparisonOperation { EQ, NE, ILIKE, LIKE, IPLIKE, GT, LT, GE, LE, CONTAINS }
 
+	/**
+	 * Parameters of the calls listing entities that control how the list is
+	 * returned rather than which entities it holds:
+	 *
+	 * <ul>
+	 * <li><code>afterId</code> returns the entities with a greater ID, in the
+	 * order of their IDs, so a client can page through a large list by
+	 * passing the last ID it got instead of an offset the database has to
+	 * skip.</li>
+	 * <li><code>totalCount=false</code> skips the query counting all the
+	 * matching entities.</li>
+	 * <li><code>stream=true</code> writes the entities as they are read from
+	 * the database. Only XML can be streamed, other formats are returned as
+	 * usual.</li>
+	 * </ul>
+	 */
+	protected static final class ListParameters {
+	    private final Integer m_afterId;
+	    private final boolean m_totalCount;
+	    private final boolean m_stream;
+
+	    public ListParameters(final Integer afterId, final boolean totalCount, final boolean stream) {
+	        m_afterId = afterId;
+	        m_totalCount = totalCount;
+	        m_stream = stream;
+	    }
+
+	    public Integer getAfterId() {
+	        return m_afterId;
+	    }
+
+	    public boolean isTotalCount() {
+	        return m_totalCount;
+	    }
+
+	    public boolean isStream() {
+	        return m_stream;
+	    }
+
+	    /**
+	     * Restricts the criteria to the entities after the <code>afterId</code>
+	     * parameter, replacing the ordering and the offset of the list.
+	     *
+	     * @param criteria the criteria of the list
+	     */
+	    public void applyAfterId(final Criteria criteria) {
+	        if (m_afterId == null) {
+	            return;
+	        }
+	        criteria.addRestriction(Restrictions.gt("id", m_afterId));
+	        criteria.setOrders(Collections.singletonList(Order.asc("id")));
+	        criteria.setOffset(null);
+	    }
+	}
+
 	/**
 	 * <p>Constructor for OnmsRestService.</p>
 	 */
@@ -245,6 +322,125 @@ public class OnmsRestService {
     	}
     }
     
+    /**
+     * Removes the parameters controlling how a list of entities is returned
+     * from the query parameters, before they are turned into restrictions by
+     * {@link #applyQueryFilters(MultivaluedMap, CriteriaBuilder)}.
+     *
+     * @param params the query parameters
+     * @return the list parameters
+     */
+    protected ListParameters removeListParameters(final MultivaluedMap<String, String> params) {
+        final String afterId = removeParameter(params, "afterId");
+        final boolean totalCount = Boolean.valueOf(removeParameter(params, "totalCount", "true"));
+        final boolean stream = Boolean.valueOf(removeParameter(params, "stream", "false"));
+        try {
+            return new ListParameters(afterId == null ? null : Integer.valueOf(afterId), totalCount, stream);
+        } catch (final NumberFormatException e) {
+            throw getException(Status.BAD_REQUEST, "Invalid afterId: {}", afterId);
+        }
+    }
+
+    /**
+     * Returns the criteria to count the entities a list holds without its
+     * ordering and without the page limits.
+     *
+     * @param criteria the criteria of the list
+     * @return a copy of the criteria for counting
+     */
+    protected static Criteria getCountCriteria(final Criteria criteria) {
+        final Criteria countCriteria = criteria.clone();
+        countCriteria.setOrders(null);
+        countCriteria.setLimit(null);
+        countCriteria.setOffset(null);
+        return countCriteria;
+    }
+
+    /**
+     * Checks whether the client prefers XML over the other formats of the
+     * calls listing entities, as only XML can be streamed.
+     *
+     * @param headers the headers of the request
+     * @return true if the list is to be returned as XML
+     */
+    protected static boolean isXmlPreferred(final HttpHeaders headers) {
+        for (final MediaType type : headers.getAcceptableMediaTypes()) {
+            if (type.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+                return true;
+            } else if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE) || type.isCompatible(MediaType.APPLICATION_ATOM_XML_TYPE)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a response that writes the entities matching the criteria as
+     * they are read from the database, instead of loading them all before
+     * marshalling the list.
+     *
+     * @param rootElement the name of the element holding the list
+     * @param totalCount the total count to report, or a negative value to leave it out
+     * @param dao the DAO to read the entities with
+     * @param criteria the criteria of the list
+     * @param transactionTemplate the template of the transaction the entities are read in
+     * @return an XML response
+     */
+    protected <T> Response getStreamingResponse(final String rootElement, final int totalCount, final OnmsDao<T, ?> dao, final Criteria criteria, final TransactionTemplate transactionTemplate) {
+        final StreamingOutput output = new StreamingOutput() {
+            @Override
+            public void write(final OutputStream out) throws IOException {
+                readLock();
+                try {
+                    final Marshaller marshaller = getJaxbContext(criteria.getCriteriaClass()).createMarshaller();
+                    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+                    final XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+
+                    writer.writeStartDocument("UTF-8", "1.0");
+                    writer.writeStartElement(rootElement);
+                    if (totalCount >= 0) {
+                        writer.writeAttribute("totalCount", Integer.toString(totalCount));
+                    }
+                    final int count = transactionTemplate.execute(new TransactionCallback<Integer>() {
+                        @Override
+                        public Integer doInTransaction(final TransactionStatus status) {
+                            return dao.forEachMatching(criteria, new EntityCallback<T>() {
+                                @Override
+                                public void process(final T entity) {
+                                    try {
+                                        marshaller.marshal(entity, writer);
+                                    } catch (final JAXBException e) {
+                                        throw new IllegalStateException("Unable to marshal " + entity, e);
+                                    }
+                                }
+                            });
+                        }
+                    });
+                    writer.writeEndElement();
+                    writer.writeEndDocument();
+                    writer.close();
+                    LOG.debug("getStreamingResponse: wrote {} {}", count, rootElement);
+                } catch (final JAXBException e) {
+                    throw new IllegalStateException("Unable to marshal " + rootElement, e);
+                } catch (final XMLStreamException e) {
+                    throw new IllegalStateException("Unable to write " + rootElement, e);
+                } finally {
+                    readUnlock();
+                }
+            }
+        };
+        return Response.ok(output, MediaType.APPLICATION_XML_TYPE).build();
+    }
+
+    private static JAXBContext getJaxbContext(final Class<?> clazz) throws JAXBException {
+        JAXBContext context = m_jaxbContexts.get(clazz);
+        if (context == null) {
+            context = JAXBContext.newInstance(clazz);
+            m_jaxbContexts.put(clazz, context);
+        }
+        return context;
+    }
+
     /**
      * <p>throwException</p>
      *
@@ -28,6 +28,7 @@
 
 package org.opennms.web.rest;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
@@ -88,4 +89,19 @@ public class EventRestServiceTest extends AbstractSpringJerseyRestTestCase {
         xml = sendRequest(GET, "/events/between", parseParamData("end=2010-01-01T01:00:00Z"), 200);
         assertTrue(xml.contains("totalCount=\"0\""));
     }
+
+    @Test
+    public void testStreamAfterId() throws Exception {
+        String xml;
+        xml = sendRequest(GET, "/events", parseParamData("stream=true&limit=0"), 200);
+        assertTrue(xml.contains("<events totalCount="));
+        assertTrue(xml.contains("<event "));
+        xml = sendRequest(GET, "/events", parseParamData("stream=true&afterId=" + Integer.MAX_VALUE + "&totalCount=false"), 200);
+        assertTrue(xml.contains("<events"));
+        assertFalse(xml.contains("<event "));
+        assertFalse(xml.contains("totalCount="));
+        xml = sendRequest(GET, "/events", parseParamData("afterId=" + Integer.MAX_VALUE + "&totalCount=false"), 200);
+        assertFalse(xml.contains("<event "));
+        assertTrue(xml.contains("totalCount=\"-1\""));
+    }
 }
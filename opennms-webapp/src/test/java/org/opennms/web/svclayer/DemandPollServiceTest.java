@@ -45,6 +45,7 @@ import junit.framework.TestCase;
 import org.easymock.IAnswer;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.netmgt.dao.api.DemandPollDao;
+import org.opennms.netmgt.dao.api.EntityCallback;
 import org.opennms.netmgt.dao.api.MonitoredServiceDao;
 import org.opennms.netmgt.model.DemandPoll;
 import org.opennms.netmgt.model.OnmsCriteria;
@@ -172,6 +173,11 @@ public class DemandPollServiceTest extends TestCase {
             throw new UnsupportedOperationException("not yet implemeneted");
         }
 
+                @Override
+        public int forEachMatching(Criteria criteria, EntityCallback<DemandPoll> callback) {
+            throw new UnsupportedOperationException("not yet implemented");
+        }
+
                 @Override
         public int countMatching(Criteria criteria) {
             throw new UnsupportedOperationException("not yet implemented");